@@ -69,6 +69,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -132,4 +133,10 @@ public class BlockDeviceResource extends StorageResource {
     return Boolean.TRUE;
   }
 
+  @Override
+  public FileChannel getWritableChannel() throws IOException {
+    // Open through the output stream to reuse its retries
+    return ((FileOutputStream) getOutputStream()).getChannel();
+  }
+
 }
@@ -64,6 +64,7 @@ package com.eucalyptus.blockstorage;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 /**
  * Abstract class for encapsulating a storage device and mechanisms for IO operations
@@ -138,4 +139,15 @@ public abstract class StorageResource {
    * @return true or false
    */
   public abstract Boolean isDownloadSynchronous();
+
+  /**
+   * Returns a {@link java.nio.channels.FileChannel} for writing to the storage device at arbitrary offsets. Storage devices that can only be written
+   * sequentially return null
+   * 
+   * @return FileChannel or null
+   * @throws Exception
+   */
+  public FileChannel getWritableChannel() throws Exception {
+    return null;
+  }
 }
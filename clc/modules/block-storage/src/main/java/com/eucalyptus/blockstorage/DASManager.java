@@ -65,6 +65,9 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.List;
@@ -701,6 +704,7 @@ public class DASManager implements LogicalStorageManager {
         volumeManager.remove(foundLVMVolumeInfo);
         File snapFile = new File(DirectStorageInfo.getStorageInfo().getVolumesDir() + File.separator + foundLVMVolumeInfo.getVolumeId());
         volumeManager.finish();
+        SnapshotBlockDeltas.deleteHashes(snapFile.getAbsolutePath());
         if (snapFile.exists()) {
           if (!snapFile.delete()) {
             throw new EucalyptusCloudException("Unable to delete: " + snapFile.getAbsolutePath());
@@ -1325,14 +1329,39 @@ public class DASManager implements LogicalStorageManager {
 
   @Override
   public boolean supportsIncrementalSnapshots() throws EucalyptusCloudException {
-    return false;
+    return true;
   }
 
   @Override
   public StorageResourceWithCallback prepIncrementalSnapshotForUpload(String volumeId, String snapshotId, String snapPointId, String prevSnapshotId,
       String prevSnapPointId) throws EucalyptusCloudException {
-    // TODO may be throw unsupported exception?
-    return null;
+    String snapPath = getSnapshotPath(snapshotId);
+    String prevSnapPath = null;
+    try {
+      prevSnapPath = getSnapshotPath(prevSnapshotId);
+    } catch (EntityNotFoundException e) {
+      LOG.debug("Previous snapshot " + prevSnapshotId + " not found on backend, delta for " + snapshotId + " will include all blocks");
+    }
+
+    Path deltaPath = null;
+    try {
+      deltaPath = Files.createTempFile(Paths.get("/var/tmp"), snapshotId + "_" + prevSnapshotId + "_", ".diff");
+      SnapshotBlockDeltas.generate(snapPath, prevSnapPath, deltaPath);
+    } catch (Exception e) {
+      deleteDeltaFile(deltaPath);
+      LOG.warn("Failed to generate snapshot delta between " + snapshotId + " and " + prevSnapshotId, e);
+      throw new EucalyptusCloudException("Failed to generate snapshot delta between " + snapshotId + " and " + prevSnapshotId, e);
+    }
+
+    final Path snapDeltaPath = deltaPath;
+    return new StorageResourceWithCallback(new FileResource(snapshotId, deltaPath.toString()), new Function<StorageResource, String>() {
+
+      @Override
+      public String apply(StorageResource arg0) {
+        deleteDeltaFile(snapDeltaPath);
+        return null;
+      }
+    });
   }
 
   @Override
@@ -1348,9 +1377,19 @@ public class DASManager implements LogicalStorageManager {
   }
 
   @Override
-  public StorageResourceWithCallback prepSnapshotBaseForRestore(String snapshotId, int size, String snapshotPointId) throws EucalyptusCloudException {
-    // TODO Auto-generated method stub
-    return null;
+  public StorageResourceWithCallback prepSnapshotBaseForRestore(final String snapshotId, int size, String snapshotPointId)
+      throws EucalyptusCloudException {
+    // The full snapshot is downloaded to the snapshot file and deltas are applied to it in place. The snapshot is only made available once
+    // the deltas are applied, see completeSnapshotRestorationFromDeltas()
+    StorageResourceWithCallback srwc = prepSnapshotForDownload(snapshotId, size, size * StorageProperties.KB);
+    return new StorageResourceWithCallback(srwc.getSr(), new Function<StorageResource, String>() {
+
+      @Override
+      public String apply(StorageResource arg0) {
+        LOG.debug("Downloaded base for restoring " + snapshotId);
+        return null;
+      }
+    });
   }
 
   @Override
@@ -1364,11 +1403,42 @@ public class DASManager implements LogicalStorageManager {
 
   @Override
   public void restoreSnapshotDelta(String currentSnapId, String prevSnapId, String baseId, StorageResource sr) throws EucalyptusCloudException {
-    // TODO Auto-generated method stub
+    Path deltaPath = Paths.get(sr.getPath());
+    try {
+      LOG.debug("Applying snapshot delta between " + currentSnapId + " and " + prevSnapId + " on base " + baseId);
+      SnapshotBlockDeltas.apply(deltaPath, getSnapshotPath(baseId));
+    } catch (EucalyptusCloudException e) {
+      throw e;
+    } catch (Exception e) {
+      LOG.warn("Failed to apply delta between " + currentSnapId + " and " + prevSnapId + " on base " + baseId, e);
+      throw new EucalyptusCloudException("Failed to apply delta between " + currentSnapId + " and " + prevSnapId + " on base " + baseId, e);
+    } finally {
+      deleteDeltaFile(deltaPath);
+    }
   }
 
   @Override
   public void completeSnapshotRestorationFromDeltas(String snapshotId) throws EucalyptusCloudException {
-    // TODO Auto-generated method stub
+    try {
+      if (!SnapshotBlockDeltas.verify(getSnapshotPath(snapshotId))) {
+        LOG.debug("No block digests recorded for restored snapshot " + snapshotId + ", skipping verification");
+      }
+    } catch (EucalyptusCloudException e) {
+      throw e;
+    } catch (Exception e) {
+      LOG.warn("Failed to verify restored snapshot " + snapshotId, e);
+      throw new EucalyptusCloudException("Failed to verify restored snapshot " + snapshotId, e);
+    }
+    finishVolume(snapshotId);
+  }
+
+  private static void deleteDeltaFile(Path deltaPath) {
+    if (deltaPath != null) {
+      try {
+        Files.deleteIfExists(deltaPath);
+      } catch (IOException e) {
+        LOG.debug("Failed to delete snapshot delta file " + deltaPath);
+      }
+    }
   }
 }
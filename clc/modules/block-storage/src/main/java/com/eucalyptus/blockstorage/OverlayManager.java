@@ -849,6 +849,7 @@ public class OverlayManager extends DASManager {
         volumeManager.remove(foundLVMVolumeInfo);
         File snapFile = new File(DirectStorageInfo.getStorageInfo().getVolumesDir() + File.separator + foundLVMVolumeInfo.getVolumeId());
         volumeManager.finish();
+        SnapshotBlockDeltas.deleteHashes(snapFile.getAbsolutePath());
         if (snapFile.exists()) {
           if (!snapFile.delete()) {
             throw new EucalyptusCloudException("Unable to delete: " + snapFile.getAbsolutePath());
@@ -63,17 +63,28 @@
 package com.eucalyptus.blockstorage;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -83,6 +94,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -131,7 +143,9 @@ import com.eucalyptus.objectstorage.client.EucaS3Client;
 import com.eucalyptus.objectstorage.client.EucaS3ClientFactory;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.util.Exceptions;
+import com.eucalyptus.util.Pair;
 import com.google.common.base.Function;
+import com.google.common.base.Objects;
 
 /**
  * S3SnapshotTransfer manages snapshot transfers between SC and S3 API such as objectstorage gateway. An instance of the class must be obtained using
@@ -168,6 +182,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   // Constants
   private static final Integer REFRESH_TOKEN_RETRIES = 1;
   private static final String UNCOMPRESSED_SIZE_KEY = "uncompressedsize";
+  private static final String MANIFEST_KEY_SUFFIX = ".manifest";
 
   public S3SnapshotTransfer() throws SnapshotTransferException {
     initializeEucaS3Client();
@@ -252,14 +267,16 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     ArrayBlockingQueue<SnapshotPart> partQueue = null;
     SnapshotPart part = null;
     SnapshotUploadInfo snapUploadInfo = null;
-    Future<List<PartETag>> uploadPartsFuture = null;
+    AtomicBoolean partsDone = new AtomicBoolean(false);
+    List<Future<List<PartETag>>> uploadPartsFutures = new ArrayList<Future<List<PartETag>>>();
     Future<String> completeUploadFuture = null;
+    Deque<Pair<Integer, Future<byte[]>>> segments = new ArrayDeque<Pair<Integer, Future<byte[]>>>();
+    List<ManifestPart> manifest = new ArrayList<ManifestPart>();
 
-    byte[] buffer = new byte[readBufferSize];
     Long readOffset = 0L;
+    Long compressedOffset = 0L;
     Long bytesRead = 0L;
     Long bytesWritten = 0L;
-    int len;
     int partNumber = 1;
 
     try {
@@ -273,25 +290,27 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       part = SnapshotPart.createPart(snapUploadInfo, zipFilePath.toString(), partNumber, readOffset);
 
       InputStream inputStream = storageResource.getInputStream();
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      GZIPOutputStream gzipStream = new GZIPOutputStream(baos);
       FileOutputStream outputStream = new FileOutputStream(zipFilePath.toString());
+      int maxSegments = 2 * Objects.firstNonNull(SnapshotTransferThreadPool.getCompressionPoolSize(), 1);
 
       try {
+        // Segments of the snapshot are gzipped independently and in parallel. Each part is the in-order concatenation of one or more compressed
+        // segments, so the uploaded object is a multi-member gzip stream as before.
         LOG.debug("Reading snapshot " + snapshotId + " and compressing it to disk in chunks of size " + partSize + " bytes or greater");
-        while ((len = inputStream.read(buffer)) > 0) {
-          bytesRead += len;
-          gzipStream.write(buffer, 0, len);
-
-          if ((bytesWritten + baos.size()) < partSize) {
-            baos.writeTo(outputStream);
-            bytesWritten += baos.size();
-            baos.reset();
-          } else {
-            gzipStream.close();
-            baos.writeTo(outputStream); // Order is important. Closing the gzip stream flushes stuff
-            bytesWritten += baos.size();
-            baos.reset();
+        boolean moreInput = readAhead(inputStream, segments, maxSegments, progressCallback);
+        while (!segments.isEmpty()) {
+          Pair<Integer, Future<byte[]>> segment = segments.poll();
+          byte[] compressed = segment.getRight().get();
+          outputStream.write(compressed);
+          bytesRead += segment.getLeft();
+          bytesWritten += compressed.length;
+
+          // Keep compression busy, this also tells if there is more input before the part is cut
+          if (moreInput) {
+            moreInput = readAhead(inputStream, segments, maxSegments, progressCallback);
+          }
+
+          if (bytesWritten >= partSize && !segments.isEmpty()) {
             outputStream.close();
 
             if (partNumber > 1) {// Update the part status
@@ -303,12 +322,14 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
               snapUploadInfo = snapUploadInfo.updateUploadId(uploadId); // update uploadId so its available for future parts
               part = part.updateStateCreated(uploadId, bytesWritten, bytesRead, Boolean.FALSE);
               partQueue = new ArrayBlockingQueue<SnapshotPart>(queueSize);
-              uploadPartsFuture = SnapshotTransferThreadPool.add(new UploadPartTask(partQueue, progressCallback));
+              for (int i = 0; i < Math.min(queueSize, SnapshotTransferThreadPool.PARTS_PER_TRANSFER); i++) {
+                uploadPartsFutures.add(SnapshotTransferThreadPool.add(new UploadPartTask(partQueue, partsDone, progressCallback)));
+              }
             }
 
-            // Check for the future task before adding part to the queue.
-            if (uploadPartsFuture != null && uploadPartsFuture.isDone()) {
-              // This task shouldn't be done until the last part is added. If it is done at this point, then something might have gone wrong
+            // Check for the future tasks before adding part to the queue.
+            if (isAnyDone(uploadPartsFutures)) {
+              // These tasks shouldn't be done until the last part is added. If one is done at this point, then something might have gone wrong
               throw new SnapshotUploadPartException(
                   "Error uploading parts, aborting part creation process. Check previous log messages for the exact error");
             }
@@ -317,6 +338,8 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
             partQueue.put(part);
 
             // Prep the metadata for the next part
+            manifest.add(new ManifestPart(partNumber, compressedOffset, bytesWritten, readOffset, bytesRead));
+            compressedOffset += bytesWritten;
             readOffset += bytesRead;
             bytesRead = 0L;
             bytesWritten = 0L;
@@ -325,20 +348,16 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
             zipFilePath = Files.createTempFile(Paths.get("/var/tmp"), keyName + '-', '-' + String.valueOf((++partNumber)));
             part = SnapshotPart.createPart(snapUploadInfo, zipFilePath.toString(), partNumber, readOffset);
 
-            gzipStream = new GZIPOutputStream(baos);
             outputStream = new FileOutputStream(zipFilePath.toString());
           }
         }
 
-        gzipStream.close();
-        baos.writeTo(outputStream);
-        bytesWritten += baos.size();
-        baos.reset();
         outputStream.close();
         inputStream.close();
 
         // Update the part status
         part = part.updateStateCreated(bytesWritten, bytesRead, Boolean.TRUE);
+        manifest.add(new ManifestPart(partNumber, compressedOffset, bytesWritten, readOffset, bytesRead));
 
         // Update the snapshot upload info status
         snapUploadInfo = snapUploadInfo.updateStateCreatedParts(partNumber);
@@ -354,13 +373,6 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
           }
         }
-        if (gzipStream != null) {
-          try {
-            gzipStream.close();
-          } catch (Exception e) {
-
-          }
-        }
         if (outputStream != null) {
           try {
             outputStream.close();
@@ -368,20 +380,24 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
 
           }
         }
-        baos.reset();
+        for (Pair<Integer, Future<byte[]>> segment : segments) {
+          segment.getRight().cancel(true);
+        }
+        segments.clear();
       }
 
       if (partNumber > 1) {
-        // Check for the future task before adding the last part to the queue.
-        if (uploadPartsFuture != null && uploadPartsFuture.isDone()) {
-          // This task shouldn't be done until the last part is added. If it is done at this point, then something might have gone wrong
+        // Check for the future tasks before adding the last part to the queue.
+        if (isAnyDone(uploadPartsFutures)) {
+          // These tasks shouldn't be done until the last part is added. If one is done at this point, then something might have gone wrong
           throw new SnapshotUploadPartException(
               "Error uploading parts, aborting part upload process. Check previous log messages for the exact error");
         }
         // Add the last part to the queue
         partQueue.put(part);
         // Kick off the completion task
-        completeUploadFuture = SnapshotTransferThreadPool.add(new CompleteMpuTask(uploadPartsFuture, snapUploadInfo, partNumber));
+        completeUploadFuture =
+            SnapshotTransferThreadPool.add(new CompleteMpuTask(uploadPartsFutures, snapUploadInfo, partNumber, manifest, progressCallback));
       } else {
         try {
           LOG.info("Uploading snapshot " + snapshotId + " to objectstorage as a single object. Compressed size of snapshot (" + bytesWritten
@@ -406,11 +422,14 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     } finally {
       if (error) {
         abortUpload(snapUploadInfo);
+        partsDone.set(true);
         if (partQueue != null) {
           partQueue.clear();
         }
-        if (uploadPartsFuture != null && !uploadPartsFuture.isDone()) {
-          uploadPartsFuture.cancel(true);
+        for (Future<List<PartETag>> uploadPartsFuture : uploadPartsFutures) {
+          if (!uploadPartsFuture.isDone()) {
+            uploadPartsFuture.cancel(true);
+          }
         }
         if (completeUploadFuture != null && !completeUploadFuture.isDone()) {
           completeUploadFuture.cancel(true);
@@ -449,12 +468,27 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   }
 
   /**
-   * Downloads the compressed snapshot from objectstorage gateway to the filesystem
+   * Downloads the compressed snapshot from objectstorage gateway to the filesystem. Snapshots uploaded with a part manifest are fetched using
+   * concurrent ranged requests and written at their offsets if the storage resource allows it, others are streamed and decompressed in order
    */
   public void download(StorageResource storageResource) throws SnapshotTransferException {
     validateInput();
     loadTransferConfig();
 
+    List<ManifestPart> manifest = getManifest();
+    if (manifest != null) {
+      FileChannel channel = null;
+      try {
+        channel = storageResource.getWritableChannel();
+      } catch (Exception e) {
+        throw new SnapshotTransferException("Failed to open storage backend for writing snapshot " + snapshotId, e);
+      }
+      if (channel != null) {
+        downloadParts(manifest, channel);
+        return;
+      }
+    }
+
     S3Object snapObj = download();
 
     if (snapObj != null && snapObj.getObjectContent() != null) {
@@ -617,6 +651,22 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       throw new SnapshotTransferException("Failed to delete snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName
           + ", key=" + keyName, e);
     }
+
+    try {
+      retryAfterRefresh(new Function<DeleteObjectRequest, String>() {
+
+        @Override
+        @Nullable
+        public String apply(@Nullable DeleteObjectRequest arg0) {
+          eucaS3Client.refreshEndpoint();
+          eucaS3Client.deleteObject(arg0);
+          return null;
+        }
+      }, new DeleteObjectRequest(bucketName, keyName + MANIFEST_KEY_SUFFIX), REFRESH_TOKEN_RETRIES);
+    } catch (Exception e) {
+      LOG.debug("Failed to delete part manifest of snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key="
+          + keyName + MANIFEST_KEY_SUFFIX);
+    }
   }
 
   @Override
@@ -759,16 +809,7 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   private S3Object download() throws SnapshotTransferException {
     try {
       LOG.debug("Downloading snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
-      return retryAfterRefresh(new Function<GetObjectRequest, S3Object>() {
-
-        @Override
-        @Nullable
-        public S3Object apply(@Nullable GetObjectRequest arg0) {
-          eucaS3Client.refreshEndpoint();
-          return eucaS3Client.getObject(arg0);
-        }
-
-      }, new GetObjectRequest(bucketName, keyName), REFRESH_TOKEN_RETRIES);
+      return getObject(new GetObjectRequest(bucketName, keyName));
     } catch (Exception e) {
       LOG.warn("Failed to download snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName + ", key=" + keyName);
       throw new SnapshotTransferException("Failed to download snapshot from objectstorage: snapshotId=" + snapshotId + ", bucket=" + bucketName
@@ -776,6 +817,102 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     }
   }
 
+  private S3Object getObject(GetObjectRequest request) throws SnapshotTransferException {
+    return retryAfterRefresh(new Function<GetObjectRequest, S3Object>() {
+
+      @Override
+      @Nullable
+      public S3Object apply(@Nullable GetObjectRequest arg0) {
+        eucaS3Client.refreshEndpoint();
+        return eucaS3Client.getObject(arg0);
+      }
+
+    }, request, REFRESH_TOKEN_RETRIES);
+  }
+
+  /**
+   * Fetch the part manifest of the snapshot
+   * 
+   * @return the manifest parts in order, or null if the snapshot was not uploaded with a manifest
+   */
+  private List<ManifestPart> getManifest() {
+    S3Object manifestObj = null;
+    try {
+      manifestObj = getObject(new GetObjectRequest(bucketName, keyName + MANIFEST_KEY_SUFFIX));
+      List<ManifestPart> manifest = new ArrayList<ManifestPart>();
+      BufferedReader reader = new BufferedReader(new InputStreamReader(manifestObj.getObjectContent(), StandardCharsets.UTF_8));
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (StringUtils.isNotBlank(line)) {
+          manifest.add(ManifestPart.parse(line));
+        }
+      }
+      return manifest.isEmpty() ? null : manifest;
+    } catch (Exception e) {
+      LOG.debug("No part manifest available for snapshot " + snapshotId + ", it will be downloaded as a single stream");
+      return null;
+    } finally {
+      if (manifestObj != null) {
+        try {
+          manifestObj.getObjectContent().close();
+        } catch (Exception e) {
+
+        }
+      }
+    }
+  }
+
+  private void uploadManifest(List<ManifestPart> manifest) throws SnapshotTransferException {
+    StringBuilder builder = new StringBuilder();
+    for (ManifestPart part : manifest) {
+      builder.append(part).append('\n');
+    }
+    byte[] content = builder.toString().getBytes(StandardCharsets.UTF_8);
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    objectMetadata.setContentLength(content.length);
+
+    retryAfterRefresh(new Function<PutObjectRequest, PutObjectResult>() {
+
+      @Override
+      @Nullable
+      public PutObjectResult apply(@Nullable PutObjectRequest arg0) {
+        eucaS3Client.refreshEndpoint();
+        return eucaS3Client.putObject(arg0);
+      }
+
+    }, new PutObjectRequest(bucketName, keyName + MANIFEST_KEY_SUFFIX, new ByteArrayInputStream(content), objectMetadata), REFRESH_TOKEN_RETRIES);
+  }
+
+  /**
+   * Download the parts listed in the manifest concurrently and write them to the channel at their uncompressed offsets
+   */
+  private void downloadParts(List<ManifestPart> manifest, FileChannel channel) throws SnapshotTransferException {
+    LOG.info("Downloading snapshot " + snapshotId + " from objectstorage in " + manifest.size() + " parts");
+    Deque<Future<Long>> partFutures = new ArrayDeque<Future<Long>>();
+    try {
+      int nextPart = 0;
+      while (nextPart < manifest.size() || !partFutures.isEmpty()) {
+        while (nextPart < manifest.size() && partFutures.size() < SnapshotTransferThreadPool.PARTS_PER_TRANSFER) {
+          partFutures.add(SnapshotTransferThreadPool.add(new DownloadPartTask(manifest.get(nextPart++), channel)));
+        }
+        partFutures.poll().get(transferTimeout, TimeUnit.HOURS);
+      }
+      channel.force(false);
+      LOG.info("Downloaded snapshot " + snapshotId + " to storage backend");
+    } catch (Exception e) {
+      for (Future<Long> partFuture : partFutures) {
+        partFuture.cancel(true);
+      }
+      throw new SnapshotTransferException("Failed to download snapshot " + snapshotId + " to storage backend", e);
+    } finally {
+      try {
+        channel.close();
+      } catch (Exception e) {
+
+      }
+    }
+  }
+
   private String uploadSnapshotAsSingleObject(final String compressedSnapFileName, Long actualSize, Long uncompressedSize,
       final SnapshotProgressCallback callback) throws SnapshotUploadObjectException {
     callback.setUploadSize(actualSize);
@@ -950,6 +1087,39 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     }
   }
 
+  /**
+   * Read segments of the snapshot and queue them for compression until the given number of segments are pending.
+   *
+   * @return false if the end of the input was reached
+   */
+  private boolean readAhead(InputStream inputStream, Deque<Pair<Integer, Future<byte[]>>> segments, int maxSegments,
+      SnapshotProgressCallback progressCallback) throws Exception {
+    while (segments.size() < maxSegments) {
+      long startTime = System.currentTimeMillis();
+      byte[] buffer = new byte[readBufferSize];
+      int length = 0;
+      int len;
+      while (length < buffer.length && (len = inputStream.read(buffer, length, buffer.length - length)) > 0) {
+        length += len;
+      }
+      progressCallback.addStageTime(SnapshotProgressCallback.STAGE_READ, System.currentTimeMillis() - startTime);
+      if (length == 0) {
+        return false;
+      }
+      segments.add(Pair.pair(length, SnapshotTransferThreadPool.add(new CompressSegmentTask(buffer, length, progressCallback))));
+    }
+    return true;
+  }
+
+  private static boolean isAnyDone(List<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      if (future.isDone()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private <F, T> T retryAfterRefresh(Function<F, T> function, F input, int retries) throws SnapshotTransferException {
     int failedAttempts = 0;
     T output = null;
@@ -977,17 +1147,24 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
   public static abstract class UploadPart implements Callable<List<PartETag>> {
   }
 
+  /**
+   * Uploads parts from the queue. Several tasks can share a queue to upload parts concurrently, the task that takes the last part or fails signals
+   * the others to finish via the shared flag.
+   */
   class UploadPartTask extends UploadPart {
 
     private ArrayBlockingQueue<SnapshotPart> partQueue;
+    private AtomicBoolean partsDone;
     private SnapshotProgressCallback progressCallback;
     private List<PartETag> partETags;
 
-    public UploadPartTask(ArrayBlockingQueue<SnapshotPart> partQueue, SnapshotProgressCallback progressCallback) throws EucalyptusCloudException {
-      if (partQueue == null || progressCallback == null) {
+    public UploadPartTask(ArrayBlockingQueue<SnapshotPart> partQueue, AtomicBoolean partsDone, SnapshotProgressCallback progressCallback)
+        throws EucalyptusCloudException {
+      if (partQueue == null || partsDone == null || progressCallback == null) {
         throw new EucalyptusCloudException("Invalid constructor parameters. Cannot proceed without part queue and or snapshot progress callback");
       }
       this.partQueue = partQueue;
+      this.partsDone = partsDone;
       this.progressCallback = progressCallback;
       this.partETags = new ArrayList<PartETag>();
     }
@@ -995,14 +1172,13 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     @Override
     public List<PartETag> call() throws Exception {
       Boolean error = Boolean.FALSE;
-      Boolean isLast = Boolean.FALSE;
 
       try {
         do {
           SnapshotPart part = null;
 
           try {
-            part = partQueue.take();
+            part = partQueue.poll(1, TimeUnit.SECONDS);
           } catch (InterruptedException ex) { // Should rarely happen
             error = Boolean.TRUE;
             LOG.error("Failed to upload snapshot " + snapshotId + " due to an retrieving parts from queue", ex);
@@ -1012,9 +1188,13 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
           if (part != null) {
             if (part.getState().equals(SnapshotPartState.created) || part.getState().equals(SnapshotPartState.uploading)
                 || part.getState().equals(SnapshotPartState.failed)) {
-              isLast = part.getIsLast();
+              if (part.getIsLast()) {
+                partsDone.set(true);
+              }
               try {
+                long startTime = System.currentTimeMillis();
                 PartETag partEtag = uploadPart(part);
+                progressCallback.addStageTime(SnapshotProgressCallback.STAGE_UPLOAD, System.currentTimeMillis() - startTime);
                 partETags.add(partEtag);
 
                 progressCallback.updateUploadProgress(part.getInputFileBytesRead());
@@ -1038,12 +1218,8 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
             } else {
               LOG.warn("Not sure what to do with part in state " + part.getState() + ". Ignoring " + part);
             }
-          } else {
-            error = Boolean.TRUE;
-            LOG.warn("Null reference snapshot part found in queue for " + snapshotId + ". Aborting snapshot upload");
-            return null;
           }
-        } while (!isLast);
+        } while (!partsDone.get());
 
         return partETags;
       } catch (Throwable t) {
@@ -1053,25 +1229,62 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       } finally {
         if (error && partQueue != null) { // drain the queue so the upload process does not hang
           LOG.debug("Clearing part queue for " + snapshotId + " due to a previous error uploading");
+          partsDone.set(true);
           partQueue.clear();
         }
       }
     }
   }
 
+  public static abstract class CompressSegment implements Callable<byte[]> {
+  }
+
+  /**
+   * Compresses a segment of the snapshot as a complete gzip member
+   */
+  class CompressSegmentTask extends CompressSegment {
+
+    private byte[] segment;
+    private int length;
+    private SnapshotProgressCallback progressCallback;
+
+    public CompressSegmentTask(byte[] segment, int length, SnapshotProgressCallback progressCallback) {
+      this.segment = segment;
+      this.length = length;
+      this.progressCallback = progressCallback;
+    }
+
+    @Override
+    public byte[] call() throws Exception {
+      long startTime = System.currentTimeMillis();
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(length / 2);
+      try (GZIPOutputStream gzipStream = new GZIPOutputStream(baos)) {
+        gzipStream.write(segment, 0, length);
+      }
+      segment = null;
+      progressCallback.addStageTime(SnapshotProgressCallback.STAGE_COMPRESS, System.currentTimeMillis() - startTime);
+      return baos.toByteArray();
+    }
+  }
+
   public static abstract class CompleteUpload implements Callable<String> {
   }
 
   class CompleteMpuTask extends CompleteUpload {
 
-    private Future<List<PartETag>> uploadTaskFuture;
+    private List<Future<List<PartETag>>> uploadTaskFutures;
     private SnapshotUploadInfo snapUploadInfo;
     private Integer totalParts;
+    private List<ManifestPart> manifest;
+    private SnapshotProgressCallback progressCallback;
 
-    public CompleteMpuTask(Future<List<PartETag>> uploadTaskFuture, SnapshotUploadInfo snapUploadInfo, Integer totalParts) {
-      this.uploadTaskFuture = uploadTaskFuture;
+    public CompleteMpuTask(List<Future<List<PartETag>>> uploadTaskFutures, SnapshotUploadInfo snapUploadInfo, Integer totalParts,
+        List<ManifestPart> manifest, SnapshotProgressCallback progressCallback) {
+      this.uploadTaskFutures = uploadTaskFutures;
       this.snapUploadInfo = snapUploadInfo;
       this.totalParts = totalParts;
+      this.manifest = manifest;
+      this.progressCallback = progressCallback;
     }
 
     @Override
@@ -1079,17 +1292,37 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
       Boolean error = Boolean.FALSE;
       String etag = null;
       try {
-        List<PartETag> partETags = uploadTaskFuture.get(transferTimeout, TimeUnit.HOURS);
+        List<PartETag> partETags = new ArrayList<PartETag>();
+        for (Future<List<PartETag>> uploadTaskFuture : uploadTaskFutures) {
+          List<PartETag> uploaded = uploadTaskFuture.get(transferTimeout, TimeUnit.HOURS);
+          if (uploaded == null) {
+            partETags = null;
+            break;
+          }
+          partETags.addAll(uploaded);
+        }
         if (partETags != null && partETags.size() == totalParts) {
           try {
+            Collections.sort(partETags, new Comparator<PartETag>() {
+              @Override
+              public int compare(PartETag part1, PartETag part2) {
+                return Integer.compare(part1.getPartNumber(), part2.getPartNumber());
+              }
+            });
             etag = finalizeMultipartUpload(partETags);
+            try {
+              uploadManifest(manifest);
+            } catch (Exception e) { // downloads fall back to streaming the snapshot
+              LOG.warn("Failed to upload part manifest for " + snapshotId, e);
+            }
             // markSnapshotAvailable();
             try {
               snapUploadInfo = snapUploadInfo.updateStateUploaded(etag);
             } catch (Exception e) {
               LOG.debug("Failed to update status in DB for " + snapUploadInfo);
             }
-            LOG.debug("Uploaded snapshot " + snapUploadInfo.getSnapshotId() + " to objectstorage");
+            LOG.debug("Uploaded snapshot " + snapUploadInfo.getSnapshotId() + " to objectstorage at " + progressCallback.getThroughput()
+                + " bytes/sec, time in stages (ms): " + progressCallback.getStageTimes());
           } catch (Exception e) {
             error = Boolean.TRUE;
             LOG.error("Failed to upload " + snapshotId + " due to an error completing the upload", e);
@@ -1154,6 +1387,130 @@ public class S3SnapshotTransfer implements SnapshotTransfer {
     }
   }
 
+  public static abstract class DownloadPart implements Callable<Long> {
+  }
+
+  /**
+   * Fetches a part of the snapshot using a ranged request, decompresses it and writes it to the channel at the part's uncompressed offset
+   */
+  class DownloadPartTask extends DownloadPart {
+
+    private ManifestPart part;
+    private FileChannel channel;
+
+    public DownloadPartTask(ManifestPart part, FileChannel channel) {
+      this.part = part;
+      this.channel = channel;
+    }
+
+    @Override
+    public Long call() throws Exception {
+      S3Object partObj =
+          getObject(new GetObjectRequest(bucketName, keyName).withRange(part.compressedOffset, part.compressedOffset + part.compressedSize - 1));
+      long position = part.uncompressedOffset;
+      try (InputStream inputStream = new GZIPInputStream(new RangeInputStream(partObj.getObjectContent(), part.compressedSize), readBufferSize)) {
+        byte[] buffer = new byte[readBufferSize];
+        int len;
+        while ((len = inputStream.read(buffer)) > 0) {
+          ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, len);
+          while (byteBuffer.hasRemaining()) {
+            position += channel.write(byteBuffer, position);
+          }
+        }
+      }
+
+      long written = position - part.uncompressedOffset;
+      if (written != part.uncompressedSize) {
+        throw new SnapshotTransferException("Part " + part.partNumber + " of snapshot " + snapshotId + " decompressed to " + written
+            + " bytes, expected " + part.uncompressedSize + " bytes");
+      }
+      return written;
+    }
+  }
+
+  /**
+   * Location of an independently decompressable part in the compressed snapshot and in the snapshot itself
+   */
+  static class ManifestPart {
+
+    private final int partNumber;
+    private final long compressedOffset;
+    private final long compressedSize;
+    private final long uncompressedOffset;
+    private final long uncompressedSize;
+
+    ManifestPart(int partNumber, long compressedOffset, long compressedSize, long uncompressedOffset, long uncompressedSize) {
+      this.partNumber = partNumber;
+      this.compressedOffset = compressedOffset;
+      this.compressedSize = compressedSize;
+      this.uncompressedOffset = uncompressedOffset;
+      this.uncompressedSize = uncompressedSize;
+    }
+
+    static ManifestPart parse(String line) {
+      String[] fields = line.trim().split(" ");
+      if (fields.length != 5) {
+        throw new IllegalArgumentException("Invalid manifest entry: " + line);
+      }
+      return new ManifestPart(Integer.parseInt(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+          Long.parseLong(fields[4]));
+    }
+
+    @Override
+    public String toString() {
+      return partNumber + " " + compressedOffset + " " + compressedSize + " " + uncompressedOffset + " " + uncompressedSize;
+    }
+  }
+
+  /**
+   * Reports the bytes remaining in a ranged response as available. {@link GZIPInputStream} only reads past the end of a gzip member when input is
+   * available, which a network stream may not report.
+   */
+  static class RangeInputStream extends FilterInputStream {
+
+    private long remaining;
+
+    RangeInputStream(InputStream in, long length) {
+      super(in);
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        remaining--;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) {
+        remaining -= read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      remaining -= skipped;
+      return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(Math.max(remaining, 0), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+
   public static abstract class StorageWriter implements Callable<String> {
   }
 
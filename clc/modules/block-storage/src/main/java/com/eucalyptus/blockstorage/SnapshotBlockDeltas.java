@@ -0,0 +1,244 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Incremental snapshots for storage managers that keep snapshots as raw files.
+ * 
+ * A snapshot is split into fixed size blocks and an MD5 digest of every block is kept next to the snapshot file. A delta holds only the blocks
+ * whose digest differs from the previous snapshot of the volume, any block not in the delta is taken from the parent snapshot when the chain is
+ * restored. If the digests of the previous snapshot are not available every block is included, such a delta restores correctly on any base.
+ * 
+ * Delta format: magic, version, snapshot size, block size, then (block index, length, data) records terminated by a block index of -1, then the
+ * number of blocks and the digest of every block of the snapshot. The digests are recorded for the restored snapshot when the delta is applied so
+ * the result of applying a delta chain can be verified.
+ */
+public class SnapshotBlockDeltas {
+  private static Logger LOG = Logger.getLogger(SnapshotBlockDeltas.class);
+
+  public static final int BLOCK_SIZE = 1024 * 1024;
+
+  private static final int MAGIC = 0x45444c54;
+  private static final int VERSION = 1;
+  private static final int DIGEST_LENGTH = 16;
+  private static final String HASHES_SUFFIX = ".blockhashes";
+
+  private SnapshotBlockDeltas() {}
+
+  /**
+   * Write the delta between the snapshot and the previous snapshot of the volume and record the block digests of the snapshot
+   * 
+   * @param snapshotPath raw snapshot file
+   * @param prevSnapshotPath raw file of the previous snapshot, may be null or missing
+   * @param deltaPath file the delta is written to
+   * @return number of blocks in the delta
+   */
+  public static long generate(String snapshotPath, String prevSnapshotPath, Path deltaPath) throws Exception {
+    byte[] prevHashes = loadHashes(prevSnapshotPath);
+    Path hashesPath = Paths.get(snapshotPath + HASHES_SUFFIX);
+    Path tmpHashesPath = Paths.get(snapshotPath + HASHES_SUFFIX + ".tmp");
+    long changedBlocks = 0;
+    long blocks = 0;
+
+    try {
+      try (FileChannel snapshot = FileChannel.open(Paths.get(snapshotPath));
+          DataOutputStream delta = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(deltaPath), BLOCK_SIZE));
+          BufferedOutputStream hashes = new BufferedOutputStream(Files.newOutputStream(tmpHashesPath))) {
+        long size = snapshot.size();
+        delta.writeInt(MAGIC);
+        delta.writeInt(VERSION);
+        delta.writeLong(size);
+        delta.writeInt(BLOCK_SIZE);
+
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        for (long index = 0; index * BLOCK_SIZE < size; index++, blocks++) {
+          block.clear();
+          long position = index * BLOCK_SIZE;
+          while (block.hasRemaining()) {
+            if (snapshot.read(block, position + block.position()) <= 0) {
+              break;
+            }
+          }
+          int length = block.position();
+
+          md5.update(block.array(), 0, length);
+          byte[] digest = md5.digest();
+          hashes.write(digest);
+
+          if (prevHashes == null || (index + 1) * DIGEST_LENGTH > prevHashes.length
+              || !Arrays.equals(digest, Arrays.copyOfRange(prevHashes, (int) (index * DIGEST_LENGTH), (int) ((index + 1) * DIGEST_LENGTH)))) {
+            delta.writeLong(index);
+            delta.writeInt(length);
+            delta.write(block.array(), 0, length);
+            changedBlocks++;
+          }
+        }
+        delta.writeLong(-1L);
+        hashes.flush();
+        delta.writeLong(blocks);
+        Files.copy(tmpHashesPath, delta);
+      }
+      Files.move(tmpHashesPath, hashesPath, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(tmpHashesPath);
+    }
+
+    LOG.debug("Generated delta for " + snapshotPath + " with " + changedBlocks + " of " + blocks + " blocks");
+    return changedBlocks;
+  }
+
+  /**
+   * Write the blocks in the delta to the base snapshot file and record the block digests of the resulting snapshot
+   */
+  public static void apply(Path deltaPath, String basePath) throws Exception {
+    Path hashesPath = Paths.get(basePath + HASHES_SUFFIX);
+    Path tmpHashesPath = Paths.get(basePath + HASHES_SUFFIX + ".tmp");
+    try (DataInputStream delta = new DataInputStream(new BufferedInputStream(Files.newInputStream(deltaPath), BLOCK_SIZE));
+        RandomAccessFile baseFile = new RandomAccessFile(basePath, "rw")) {
+      if (delta.readInt() != MAGIC) {
+        throw new IOException("Unrecognized snapshot delta format in " + deltaPath);
+      }
+      int version = delta.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported snapshot delta version " + version + " in " + deltaPath);
+      }
+      long size = delta.readLong();
+      int blockSize = delta.readInt();
+
+      FileChannel base = baseFile.getChannel();
+      byte[] data = new byte[blockSize];
+      long index;
+      while ((index = delta.readLong()) >= 0) {
+        int length = delta.readInt();
+        if (length > blockSize) {
+          throw new IOException("Invalid block length " + length + " in snapshot delta " + deltaPath);
+        }
+        delta.readFully(data, 0, length);
+        ByteBuffer block = ByteBuffer.wrap(data, 0, length);
+        long position = index * blockSize;
+        while (block.hasRemaining()) {
+          position += base.write(block, position);
+        }
+      }
+      baseFile.setLength(size);
+      base.force(false);
+
+      long blocks = delta.readLong();
+      if (blocks != (size + blockSize - 1) / blockSize) {
+        throw new IOException("Invalid block count " + blocks + " in snapshot delta " + deltaPath);
+      }
+      byte[] hashes = new byte[(int) (blocks * DIGEST_LENGTH)];
+      delta.readFully(hashes);
+      Files.write(tmpHashesPath, hashes);
+      Files.move(tmpHashesPath, hashesPath, StandardCopyOption.REPLACE_EXISTING);
+    } catch (EOFException e) {
+      throw new IOException("Truncated snapshot delta " + deltaPath, e);
+    } finally {
+      Files.deleteIfExists(tmpHashesPath);
+    }
+  }
+
+  /**
+   * Check the snapshot file against the block digests recorded when the last delta was applied
+   * 
+   * @return false if there are no recorded digests for the snapshot
+   * @throws IOException if the snapshot does not match the recorded digests
+   */
+  public static boolean verify(String snapshotPath) throws Exception {
+    Path hashesPath = Paths.get(snapshotPath + HASHES_SUFFIX);
+    if (!Files.isRegularFile(hashesPath)) {
+      return false;
+    }
+    if (!Arrays.equals(Files.readAllBytes(hashesPath), computeHashes(Paths.get(snapshotPath)))) {
+      throw new IOException("Block digests do not match for snapshot " + snapshotPath);
+    }
+    return true;
+  }
+
+  public static void deleteHashes(String snapshotPath) {
+    try {
+      Files.deleteIfExists(Paths.get(snapshotPath + HASHES_SUFFIX));
+    } catch (IOException e) {
+      LOG.debug("Failed to delete block digests of snapshot " + snapshotPath);
+    }
+  }
+
+  /**
+   * Block digests of a snapshot, computed from the snapshot file if they were not recorded
+   * 
+   * @return digests or null if neither the digests nor the snapshot are available
+   */
+  private static byte[] loadHashes(String snapshotPath) throws Exception {
+    if (snapshotPath == null) {
+      return null;
+    }
+    Path hashesPath = Paths.get(snapshotPath + HASHES_SUFFIX);
+    if (Files.isRegularFile(hashesPath)) {
+      return Files.readAllBytes(hashesPath);
+    }
+    Path path = Paths.get(snapshotPath);
+    if (!Files.isRegularFile(path)) {
+      return null;
+    }
+
+    return computeHashes(path);
+  }
+
+  private static byte[] computeHashes(Path path) throws Exception {
+    LOG.debug("Computing block digests of " + path);
+    long size = Files.size(path);
+    byte[] hashes = new byte[(int) (((size + BLOCK_SIZE - 1) / BLOCK_SIZE) * DIGEST_LENGTH)];
+    MessageDigest md5 = MessageDigest.getInstance("MD5");
+    byte[] block = new byte[BLOCK_SIZE];
+    try (InputStream in = Files.newInputStream(path)) {
+      for (int offset = 0; offset < hashes.length; offset += DIGEST_LENGTH) {
+        int length = 0;
+        int len;
+        while (length < block.length && (len = in.read(block, length, block.length - length)) > 0) {
+          length += len;
+        }
+        md5.update(block, 0, length);
+        md5.digest(hashes, offset, DIGEST_LENGTH);
+      }
+    }
+    return hashes;
+  }
+}
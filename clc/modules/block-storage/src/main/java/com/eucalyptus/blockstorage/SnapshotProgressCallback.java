@@ -62,6 +62,7 @@
 
 package com.eucalyptus.blockstorage;
 
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
 
@@ -75,6 +76,8 @@ import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.TransactionException;
 import com.eucalyptus.system.Threads;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 
 /**
  * Callback that updates snapshot upload info in the db after at least N percent upload change. Currently set at 3%
@@ -88,6 +91,11 @@ public class SnapshotProgressCallback {
   private static Logger LOG = Logger.getLogger(SnapshotProgressCallback.class);
   private static final int PROGRESS_TICK = 3; // Percent between updates
 
+  // Snapshot transfer stages for timing
+  public static final String STAGE_READ = "read";
+  public static final String STAGE_COMPRESS = "compress";
+  public static final String STAGE_UPLOAD = "upload";
+
   private String snapshotId;
   private long uploadSize;
   private long bytesTransferred;
@@ -95,6 +103,8 @@ public class SnapshotProgressCallback {
   private int uploadProgress;
   private int backendProgress;
   private ServiceConfiguration scConfig;
+  private long transferStartTime = System.currentTimeMillis();
+  private final Map<String, Long> stageTimes = Maps.newTreeMap();
 
   public SnapshotProgressCallback(String snapshotId) {
     this.snapshotId = snapshotId;
@@ -115,6 +125,27 @@ public class SnapshotProgressCallback {
     this.uploadSize = uploadSize;
   }
 
+  /**
+   * Record time spent in a stage of the snapshot transfer. Stages run concurrently on several threads so the time for a stage is the sum across
+   * threads and may exceed the elapsed time of the transfer.
+   */
+  public synchronized void addStageTime(final String stage, final long timeMillis) {
+    final Long total = stageTimes.get(stage);
+    stageTimes.put(stage, total == null ? timeMillis : total + timeMillis);
+  }
+
+  public synchronized Map<String, Long> getStageTimes() {
+    return ImmutableMap.copyOf(stageTimes);
+  }
+
+  /**
+   * @return Uncompressed bytes per second transferred since this callback was created
+   */
+  public synchronized long getThroughput() {
+    final long elapsedMillis = Math.max(1, System.currentTimeMillis() - transferStartTime);
+    return (bytesTransferred * 1000) / elapsedMillis;
+  }
+
   public synchronized void updateUploadProgress(final long bytesTransferred) {
     if (this.uploadSize > 0) {
       this.bytesTransferred += bytesTransferred;
@@ -247,8 +247,13 @@ public class VolumeCreator implements Runnable {
                         prevSnap = currentSnap;
                       }
                     }
-                    // Cleanup snapshot state and set it up for volume creation
-                    blockManager.completeSnapshotRestorationFromDeltas(this.snapshotId);
+                    // Verify the restored snapshot and set it up for volume creation
+                    try {
+                      blockManager.completeSnapshotRestorationFromDeltas(this.snapshotId);
+                    } catch (EucalyptusCloudException ece) {
+                      cleanFailedSnapshot(this.snapshotId);
+                      throw ece;
+                    }
                   } else {
                     LOG.warn("Snapshot " + this.snapshotId
                         + " cannot be restored in this availability zone since it does not support incremental snapshots. Failing volume "
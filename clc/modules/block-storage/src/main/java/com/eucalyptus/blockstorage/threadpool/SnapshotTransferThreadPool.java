@@ -73,6 +73,8 @@ import org.apache.log4j.Logger;
 
 import com.amazonaws.services.s3.model.PartETag;
 import com.eucalyptus.blockstorage.S3SnapshotTransfer.CompleteUpload;
+import com.eucalyptus.blockstorage.S3SnapshotTransfer.CompressSegment;
+import com.eucalyptus.blockstorage.S3SnapshotTransfer.DownloadPart;
 import com.eucalyptus.blockstorage.S3SnapshotTransfer.StorageWriter;
 import com.eucalyptus.blockstorage.S3SnapshotTransfer.UploadPart;
 import com.eucalyptus.blockstorage.Storage;
@@ -84,6 +86,13 @@ public class SnapshotTransferThreadPool {
   private static ThreadPoolExecutor uploadPartPool;
   private static ThreadPoolExecutor completeMpuPool;
   private static ThreadPoolExecutor backendWriterPool;
+  private static ThreadPoolExecutor compressionPool;
+  private static ThreadPoolExecutor downloadPartPool;
+
+  /**
+   * Number of parts of a single snapshot that may be uploaded or downloaded concurrently
+   */
+  public static final int PARTS_PER_TRANSFER = 3;
 
   private static final ReentrantLock RLOCK = new ReentrantLock();
 
@@ -96,7 +105,7 @@ public class SnapshotTransferThreadPool {
       LOG.info("Initializing SC thread pool catering to snapshot transfers");
 
       uploadPartPool =
-          new ThreadPoolExecutor(poolSize, poolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
+          new ThreadPoolExecutor(poolSize * PARTS_PER_TRANSFER, poolSize * PARTS_PER_TRANSFER, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
               UploadPart.class), new ThreadPoolExecutor.AbortPolicy());
       completeMpuPool =
           new ThreadPoolExecutor(poolSize, poolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
@@ -104,6 +113,13 @@ public class SnapshotTransferThreadPool {
       backendWriterPool =
           new ThreadPoolExecutor(poolSize, poolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(Storage.class,
               StorageWriter.class), new ThreadPoolExecutor.AbortPolicy());
+      int compressionPoolSize = Runtime.getRuntime().availableProcessors();
+      compressionPool =
+          new ThreadPoolExecutor(compressionPoolSize, compressionPoolSize, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), Threads.lookup(
+              Storage.class, CompressSegment.class), new ThreadPoolExecutor.AbortPolicy());
+      downloadPartPool =
+          new ThreadPoolExecutor(poolSize * PARTS_PER_TRANSFER, poolSize * PARTS_PER_TRANSFER, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+              Threads.lookup(Storage.class, DownloadPart.class), new ThreadPoolExecutor.AbortPolicy());
     } finally {
       RLOCK.unlock();
     }
@@ -139,10 +155,38 @@ public class SnapshotTransferThreadPool {
     }
   }
 
+  public static Future<byte[]> add(CompressSegment task) throws ThreadPoolNotInitializedException {
+    if (compressionPool != null && !compressionPool.isShutdown()) {
+      return compressionPool.submit(task);
+    } else {
+      LOG.warn("SC thread pool catering to snapshot transfers (compression pool) is either not initalized or shut down");
+      throw new ThreadPoolNotInitializedException(
+          "SC thread pool catering to snapshot transfers (compression pool) is either not initalized or shut down");
+    }
+  }
+
+  public static Future<Long> add(DownloadPart task) throws ThreadPoolNotInitializedException {
+    if (downloadPartPool != null && !downloadPartPool.isShutdown()) {
+      return downloadPartPool.submit(task);
+    } else {
+      LOG.warn("SC thread pool catering to snapshot transfers (download part pool) is either not initalized or shut down");
+      throw new ThreadPoolNotInitializedException(
+          "SC thread pool catering to snapshot transfers (download part pool) is either not initalized or shut down");
+    }
+  }
+
+  public static Integer getCompressionPoolSize() {
+    if (compressionPool != null && !compressionPool.isShutdown()) {
+      return compressionPool.getCorePoolSize();
+    } else {
+      return null;
+    }
+  }
+
   public static Integer getPoolSize() {
     if (uploadPartPool != null && !uploadPartPool.isShutdown() && completeMpuPool != null && !completeMpuPool.isShutdown()
         && backendWriterPool != null && !backendWriterPool.isShutdown()) {
-      return uploadPartPool.getCorePoolSize();
+      return completeMpuPool.getCorePoolSize();
     } else {
       return null;
     }
@@ -150,13 +194,17 @@ public class SnapshotTransferThreadPool {
 
   public static void updatePoolSize(Integer newSize) {
     if (uploadPartPool != null && !uploadPartPool.isShutdown() && completeMpuPool != null && !completeMpuPool.isShutdown()
-        && backendWriterPool != null && !backendWriterPool.isShutdown() && newSize != null && uploadPartPool.getCorePoolSize() != newSize) {
-      uploadPartPool.setCorePoolSize(newSize);
-      uploadPartPool.setMaximumPoolSize(newSize);
+        && backendWriterPool != null && !backendWriterPool.isShutdown() && newSize != null && completeMpuPool.getCorePoolSize() != newSize) {
+      uploadPartPool.setCorePoolSize(newSize * PARTS_PER_TRANSFER);
+      uploadPartPool.setMaximumPoolSize(newSize * PARTS_PER_TRANSFER);
       completeMpuPool.setCorePoolSize(newSize);
       completeMpuPool.setMaximumPoolSize(newSize);
       backendWriterPool.setCorePoolSize(newSize);
       backendWriterPool.setMaximumPoolSize(newSize);
+      if (downloadPartPool != null && !downloadPartPool.isShutdown()) {
+        downloadPartPool.setCorePoolSize(newSize * PARTS_PER_TRANSFER);
+        downloadPartPool.setMaximumPoolSize(newSize * PARTS_PER_TRANSFER);
+      }
     }
   }
 
@@ -184,6 +232,16 @@ public class SnapshotTransferThreadPool {
         LOG.debug("Number of queued snapshots for download: " + awaitingExecution.size());
         backendWriterPool = null;
       }
+      if (compressionPool != null) {
+        LOG.info("Shutting down SC thread pool catering to snapshot transfers (compression pool)");
+        compressionPool.shutdownNow();
+        compressionPool = null;
+      }
+      if (downloadPartPool != null) {
+        LOG.info("Shutting down SC thread pool catering to snapshot transfers (download part pool)");
+        downloadPartPool.shutdownNow();
+        downloadPartPool = null;
+      }
     } finally {
       RLOCK.unlock();
     }
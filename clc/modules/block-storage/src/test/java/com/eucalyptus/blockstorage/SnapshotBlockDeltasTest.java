@@ -0,0 +1,115 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+package com.eucalyptus.blockstorage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SnapshotBlockDeltasTest {
+
+  private Path dir;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = Files.createTempDirectory("snapshot-deltas");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    for (Path path : Files.newDirectoryStream(dir)) {
+      Files.delete(path);
+    }
+    Files.delete(dir);
+  }
+
+  @Test
+  public void testDeltaChain() throws Exception {
+    int size = 3 * SnapshotBlockDeltas.BLOCK_SIZE + 1000;
+    byte[] content = new byte[size];
+    new Random(1).nextBytes(content);
+    Path full = write("snap-full", content);
+
+    // No previous snapshot, every block is included
+    Path delta = dir.resolve("full.diff");
+    assertEquals(4, SnapshotBlockDeltas.generate(full.toString(), null, delta));
+
+    content[SnapshotBlockDeltas.BLOCK_SIZE + 5]++;
+    Path first = write("snap-first", content);
+    delta = dir.resolve("first.diff");
+    assertEquals(1, SnapshotBlockDeltas.generate(first.toString(), full.toString(), delta));
+
+    Path base = write("snap-restored", Files.readAllBytes(full));
+    SnapshotBlockDeltas.apply(delta, base.toString());
+    assertArrayEquals(content, Files.readAllBytes(base));
+
+    // Previous digests come from the recorded file, the tail block changes
+    content[size - 1]++;
+    Path second = write("snap-second", content);
+    delta = dir.resolve("second.diff");
+    assertEquals(1, SnapshotBlockDeltas.generate(second.toString(), first.toString(), delta));
+
+    SnapshotBlockDeltas.apply(delta, base.toString());
+    assertArrayEquals(content, Files.readAllBytes(base));
+    assertTrue(SnapshotBlockDeltas.verify(base.toString()));
+  }
+
+  @Test
+  public void testVerify() throws Exception {
+    byte[] content = new byte[2 * SnapshotBlockDeltas.BLOCK_SIZE];
+    new Random(2).nextBytes(content);
+    Path full = write("snap-full", content);
+    Path base = write("snap-restored", content);
+    assertFalse("no digests before a delta is applied", SnapshotBlockDeltas.verify(base.toString()));
+
+    content[10]++;
+    Path first = write("snap-first", content);
+    Path delta = dir.resolve("first.diff");
+    assertEquals(1, SnapshotBlockDeltas.generate(first.toString(), full.toString(), delta));
+    SnapshotBlockDeltas.apply(delta, base.toString());
+    assertTrue(SnapshotBlockDeltas.verify(base.toString()));
+
+    // Corrupt a block that was not in the delta
+    content[SnapshotBlockDeltas.BLOCK_SIZE + 10]++;
+    write("snap-restored", content);
+    try {
+      SnapshotBlockDeltas.verify(base.toString());
+      fail("Expected verification failure");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  private Path write(String name, byte[] content) throws Exception {
+    return Files.write(dir.resolve(name), content);
+  }
+}
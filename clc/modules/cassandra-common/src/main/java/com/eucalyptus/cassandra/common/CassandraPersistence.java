@@ -31,6 +31,7 @@ import org.springframework.retry.policy.TimeoutRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.NettyOptions;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.ThreadingOptions;
 import com.datastax.driver.core.exceptions.NoHostAvailableException;
@@ -45,6 +46,7 @@ import com.eucalyptus.util.LockResource;
 import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.Parameters;
 import com.eucalyptus.util.ThrowingFunction;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -57,6 +59,8 @@ public class CassandraPersistence {
   private static final ConcurrentMap<String,Session> sessionMap = Maps.newConcurrentMap( ); // sessions by keyspace
   private static final ConcurrentMap<Pair<String,Class<? extends CassandraPersistenceRepository>>,
       CassandraPersistenceRepository> repositoryMap = Maps.newConcurrentMap( ); // repositories by keyspace/type
+  private static final ConcurrentMap<Session,ConcurrentMap<String,PreparedStatement>> preparedStatementMap =
+      new MapMaker( ).weakKeys( ).makeMap( ); // prepared statements by session/cql
   private static final Lock sessionLock = new ReentrantLock( );
   private static final RetryTemplate template =
       buildRetryTemplate( NoSuchElementException.class, 15_000L, TimeUnit.MINUTES.toMillis( 5 ) );
@@ -226,6 +230,31 @@ public class CassandraPersistence {
     return callbackFunction.apply( getRepository( repositoryType ) );
   }
 
+  /**
+   * Get a prepared statement for the given cql, preparing it on first use.
+   *
+   * Statements are registered per session so each distinct cql string is
+   * parsed by the server once rather than on every execution.
+   *
+   * @param session The session to prepare the statement with
+   * @param cql The cql for the statement
+   * @return The prepared statement
+   */
+  public static PreparedStatement prepare( final Session session, final String cql ) {
+    final ConcurrentMap<String,PreparedStatement> statementMap =
+        preparedStatementMap.computeIfAbsent( session, key -> Maps.newConcurrentMap( ) );
+    PreparedStatement statement = statementMap.get( cql );
+    if ( statement == null ) {
+      // prepare outside of any map lock, a concurrent duplicate prepare is harmless
+      statement = session.prepare( cql );
+      final PreparedStatement existing = statementMap.putIfAbsent( cql, statement );
+      if ( existing != null ) {
+        statement = existing;
+      }
+    }
+    return statement;
+  }
+
   /**
    * Temporary helper used to check if cassandra is available.
    *
@@ -58,6 +58,8 @@ import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmNotFoundExce
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
 import com.eucalyptus.cloudwatch.common.policy.CloudWatchPolicySpec;
 import com.eucalyptus.cloudwatch.workflow.DBCleanupService;
+import com.eucalyptus.cloudwatch.workflow.MetricRollupService;
+import com.eucalyptus.cloudwatch.workflow.alarms.AlarmEvaluationIndex;
 import com.eucalyptus.cloudwatch.workflow.alarms.AlarmStateEvaluationDispatcher;
 import com.eucalyptus.component.Faults;
 import com.eucalyptus.component.annotation.ComponentNamed;
@@ -99,6 +101,10 @@ public class CloudWatchBackendService {
         .newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudwatch-db-cleanup-pool-%d" ) );
     dbCleanupService.scheduleAtFixedRate(new DBCleanupService(), 1, 24,
         TimeUnit.HOURS);
+    ScheduledExecutorService metricRollupService = Executors
+        .newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudwatch-metric-rollup-pool-%d" ) );
+    metricRollupService.scheduleWithFixedDelay(new MetricRollupService(), 2, 5,
+        TimeUnit.MINUTES);
   }
 
   private static final Logger LOG = Logger.getLogger(CloudWatchBackendService.class);
@@ -162,6 +168,7 @@ public class CloudWatchBackendService {
           evaluationPeriods, insufficientDataActions, metricName,
           CloudWatchBackendServiceFieldValidator.getMetricTypeFromNamespace(namespace), namespace, okActions, period,
           statistic, threshold, unit);
+      AlarmEvaluationIndex.invalidate();
     } catch (Exception ex) {
       handleException(ex);
     }
@@ -364,6 +371,7 @@ public class CloudWatchBackendService {
           RestrictedTypes.<CloudWatchMetadata.AlarmMetadata>filterPrivileged( ) ) ) {
         throw new EucalyptusCloudException("User does not have permission");
       }
+      AlarmEvaluationIndex.invalidate();
     } catch (Exception ex) {
       handleException(ex);
     }
@@ -52,7 +52,8 @@ public class DBCleanupService implements Runnable {
       LOG.error(ex, ex);
     }
     try {
-      ListMetricManager.deleteMetrics(twoWeeksAgo);
+      // list metrics catalogs expire metrics using the same retention period
+      ListMetricManager.deleteMetrics(new Date(System.currentTimeMillis() - ListMetricManager.LIST_METRIC_RETENTION_MILLIS));
     } catch (Exception ex) {
       LOG.error(ex);
       LOG.error(ex, ex);
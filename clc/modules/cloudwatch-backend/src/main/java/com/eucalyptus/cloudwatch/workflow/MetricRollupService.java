@@ -0,0 +1,56 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.workflow;
+
+import java.util.Date;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.bootstrap.Bootstrap;
+import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupManager;
+import com.eucalyptus.component.Topology;
+
+public class MetricRollupService implements Runnable {
+  Logger LOG = Logger.getLogger(MetricRollupService.class);
+  public MetricRollupService() {
+  }
+
+  @Override
+  public void run() {
+    if (!( Bootstrap.isOperational() &&
+        Topology.isEnabled( CloudWatchBackend.class ) )) {
+      LOG.debug("Cloudwatch service is not ENABLED");
+      return;
+    }
+    if (!CloudWatchConfigProperties.METRIC_DATA_USE_ROLLUPS) {
+      return;
+    }
+    try {
+      long before = System.currentTimeMillis();
+      MetricRollupManager.rollup(new Date());
+      LOG.debug("Metric rollups updated in " + (System.currentTimeMillis() - before) + "ms");
+    } catch (Exception ex) {
+      LOG.error(ex, ex);
+    }
+  }
+
+}
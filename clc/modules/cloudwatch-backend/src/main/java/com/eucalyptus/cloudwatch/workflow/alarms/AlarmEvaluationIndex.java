@@ -0,0 +1,192 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.workflow.alarms;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricSeriesActivity;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+/**
+ * Index of alarms by metric series used to select alarms for evaluation.
+ *
+ * An alarm is due for evaluation when its metric series received data or
+ * when a period has passed since it was last evaluated (the evaluation
+ * window moves even if no data arrives.) Alarms remain due until marked
+ * as evaluated, so alarms are selected again if an evaluation fails.
+ *
+ * The index is rebuilt from the database when invalidated due to alarm
+ * changes and periodically in case alarms were changed elsewhere.
+ */
+public class AlarmEvaluationIndex {
+
+  private static final AlarmEvaluationIndex instance = new AlarmEvaluationIndex( );
+
+  private final Map<String, IndexedAlarm> alarmsByNaturalId = Maps.newHashMap( );
+  private final Multimap<String, IndexedAlarm> alarmsBySeries = HashMultimap.create( );
+  private volatile boolean stale = true;
+  private long loadedTimestamp = 0L;
+
+  public static AlarmEvaluationIndex getInstance( ) {
+    return instance;
+  }
+
+  /**
+   * Mark the index for rebuilding on next use.
+   */
+  public static void invalidate( ) {
+    instance.stale = true;
+  }
+
+  public synchronized boolean isReloadRequired( final long now ) {
+    return stale ||
+        now - loadedTimestamp >= TimeUnit.MINUTES.toMillis( CloudWatchConfigProperties.ALARM_INDEX_REFRESH_MINUTES );
+  }
+
+  /**
+   * Rebuild the index for the given alarms, retaining evaluation times for known alarms.
+   */
+  public synchronized void reload( final Collection<AlarmEntity> alarmEntities, final long now ) {
+    stale = false;
+    loadedTimestamp = now;
+    final Map<String, IndexedAlarm> previous = Maps.newHashMap( alarmsByNaturalId );
+    alarmsByNaturalId.clear( );
+    alarmsBySeries.clear( );
+    for ( final AlarmEntity alarmEntity : alarmEntities ) {
+      final IndexedAlarm indexedAlarm = new IndexedAlarm(
+          alarmEntity.getNaturalId( ),
+          MetricSeriesActivity.seriesKey(
+              alarmEntity.getAccountId( ),
+              alarmEntity.getNamespace( ),
+              alarmEntity.getMetricName( ),
+              alarmEntity.getMetricType( ),
+              MetricManager.hash( alarmEntity.getDimensionMap( ) ) ),
+          alarmEntity.getPeriod( ) );
+      final IndexedAlarm previousAlarm = previous.get( indexedAlarm.naturalId );
+      if ( previousAlarm != null ) {
+        indexedAlarm.dataPending = previousAlarm.dataPending;
+        if ( previousAlarm.period == indexedAlarm.period ) {
+          indexedAlarm.lastEvaluated = previousAlarm.lastEvaluated;
+        }
+      }
+      alarmsByNaturalId.put( indexedAlarm.naturalId, indexedAlarm );
+      alarmsBySeries.put( indexedAlarm.seriesKey, indexedAlarm );
+    }
+  }
+
+  /**
+   * Record data for metric series, alarms for the series are due until evaluated.
+   *
+   * @param activeSeries Keys for series that received data
+   */
+  public synchronized void recordActivity( final Set<String> activeSeries ) {
+    for ( final String seriesKey : activeSeries ) {
+      for ( final IndexedAlarm indexedAlarm : alarmsBySeries.get( seriesKey ) ) {
+        indexedAlarm.dataPending = true;
+      }
+    }
+  }
+
+  /**
+   * Select alarms that are due for evaluation.
+   *
+   * Selected alarms remain due until marked as evaluated.
+   *
+   * @param now The evaluation time
+   * @return The natural identifiers of the alarms to evaluate
+   * @see #markEvaluated(Collection, long)
+   */
+  public synchronized Set<String> selectForEvaluation( final long now ) {
+    final long evaluationMinute = evaluationMinute( now );
+    final Set<String> due = Sets.newHashSet( );
+    for ( final IndexedAlarm indexedAlarm : alarmsByNaturalId.values( ) ) {
+      if ( indexedAlarm.dataPending ||
+          evaluationMinute - indexedAlarm.lastEvaluated >= TimeUnit.SECONDS.toMillis( indexedAlarm.period ) ) {
+        due.add( indexedAlarm.naturalId );
+      }
+    }
+    return due;
+  }
+
+  /**
+   * Mark alarms as evaluated following successful evaluation.
+   *
+   * @param naturalIds The natural identifiers of the evaluated alarms
+   * @param now The evaluation time used when selecting the alarms
+   */
+  public synchronized void markEvaluated( final Collection<String> naturalIds, final long now ) {
+    final long evaluationMinute = evaluationMinute( now );
+    for ( final String naturalId : naturalIds ) {
+      final IndexedAlarm indexedAlarm = alarmsByNaturalId.get( naturalId );
+      if ( indexedAlarm != null ) {
+        indexedAlarm.dataPending = false;
+        indexedAlarm.lastEvaluated = Math.max( indexedAlarm.lastEvaluated, evaluationMinute );
+      }
+    }
+  }
+
+  public synchronized int size( ) {
+    return alarmsByNaturalId.size( );
+  }
+
+  /**
+   * Select the given alarms from a list.
+   */
+  public static List<AlarmEntity> filter( final Collection<AlarmEntity> alarmEntities, final Set<String> naturalIds ) {
+    final List<AlarmEntity> filtered = Lists.newArrayList( );
+    for ( final AlarmEntity alarmEntity : alarmEntities ) {
+      if ( naturalIds.contains( alarmEntity.getNaturalId( ) ) ) {
+        filtered.add( alarmEntity );
+      }
+    }
+    return filtered;
+  }
+
+  private static long evaluationMinute( final long now ) {
+    return MetricUtils.stripSeconds( new Date( now ) ).getTime( );
+  }
+
+  private static final class IndexedAlarm {
+    private final String naturalId;
+    private final String seriesKey;
+    private final int period;
+    private long lastEvaluated = 0L;
+    private boolean dataPending = false;
+
+    private IndexedAlarm( final String naturalId, final String seriesKey, final Integer period ) {
+      this.naturalId = naturalId;
+      this.seriesKey = seriesKey;
+      this.period = period == null ? 60 : period;
+    }
+  }
+}
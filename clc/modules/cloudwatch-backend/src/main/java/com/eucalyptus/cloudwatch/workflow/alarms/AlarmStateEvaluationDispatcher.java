@@ -51,6 +51,7 @@ import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntityFactory;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricSeriesActivity;
 import com.eucalyptus.entities.TransactionResource;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.LinkedListMultimap;
@@ -59,6 +60,7 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.criterion.Restrictions;
 
 import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cloudwatch.common.CloudWatchBackend;
@@ -82,9 +84,25 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
       int size = 0;
       long before = 0;
       List<List<AlarmEntity>> resultsList = null;
+      final long now = System.currentTimeMillis();
+      final AlarmEvaluationIndex index = AlarmEvaluationIndex.getInstance();
+      index.recordActivity(MetricSeriesActivity.drain());
       try (final TransactionResource db = Entities.transactionFor(AlarmEntity.class)) {
-        Criteria criteria = Entities.createCriteria(AlarmEntity.class);
-        List<AlarmEntity> results = (List<AlarmEntity>) criteria.list();
+        final List<AlarmEntity> results;
+        if (index.isReloadRequired(now)) {
+          Criteria criteria = Entities.createCriteria(AlarmEntity.class);
+          List<AlarmEntity> allAlarms = (List<AlarmEntity>) criteria.list();
+          index.reload(allAlarms, now);
+          results = AlarmEvaluationIndex.filter(allAlarms, index.selectForEvaluation(now));
+        } else {
+          // only load alarms with new data or a window that has moved on
+          results = Lists.newArrayList();
+          for (List<String> naturalIds : Iterables.partition(index.selectForEvaluation(now), 500)) {
+            Criteria criteria = Entities.createCriteria(AlarmEntity.class);
+            criteria = criteria.add(Restrictions.in("naturalId", naturalIds));
+            results.addAll((List<AlarmEntity>) criteria.list());
+          }
+        }
         resultsList = makeResultsList(results);
         before = System.currentTimeMillis();
         size = results.size();
@@ -94,21 +112,30 @@ public class AlarmStateEvaluationDispatcher implements Runnable {
           ExecutorCompletionService executorCompletionService = new ExecutorCompletionService(executorService);
           Set<Future> futures = Sets.newHashSet();
           for (List<AlarmEntity> alarmEntityList: resultsList) {
-            futures.add(executorCompletionService.submit(new AlarmStateEvaluationWorker(alarmEntityList), new Object()));
+            final AlarmStateEvaluationWorker worker = new AlarmStateEvaluationWorker(alarmEntityList);
+            futures.add(executorCompletionService.submit(worker, worker));
           }
           Future completedFuture;
           while (futures.size() > 0) {
             completedFuture = executorCompletionService.take();
             futures.remove(completedFuture);
             try {
-              completedFuture.get();
+              final AlarmStateEvaluationWorker worker = (AlarmStateEvaluationWorker) completedFuture.get();
+              if (worker.isEvaluated()) {
+                // alarms not evaluated remain due for the next run
+                final List<String> naturalIds = Lists.newArrayList();
+                for (AlarmEntity alarmEntity : worker.getAlarmEntities()) {
+                  naturalIds.add(alarmEntity.getNaturalId());
+                }
+                index.markEvaluated(naturalIds, now);
+              }
             } catch (ExecutionException e) {
               Throwable cause = e.getCause();
               LOG.error(cause);
             }
           }
           long after = System.currentTimeMillis();
-          LOG.debug("Done evaluating " + size + " alarms, time = " + (after - before) + " ms");
+          LOG.debug("Done evaluating " + size + " of " + index.size() + " alarms, time = " + (after - before) + " ms");
         }
       } catch (InterruptedException e) {
         LOG.debug(e);
@@ -65,11 +65,23 @@ import com.eucalyptus.component.Topology;
 
 public class AlarmStateEvaluationWorker implements Runnable {
   private Collection<AlarmEntity> alarmEntities;
+  private volatile boolean evaluated = false;
   private static final Logger LOG = Logger.getLogger(AlarmStateEvaluationWorker.class);
   public AlarmStateEvaluationWorker(Collection<AlarmEntity> alarmEntities) {
     super();
     this.alarmEntities = alarmEntities;
   }
+
+  public Collection<AlarmEntity> getAlarmEntities() {
+    return alarmEntities;
+  }
+
+  /**
+   * True if the alarms were evaluated and any state changes stored.
+   */
+  public boolean isEvaluated() {
+    return evaluated;
+  }
   @Override
   public void run() {
     try {
@@ -90,6 +102,7 @@ public class AlarmStateEvaluationWorker implements Runnable {
         }
         AlarmManager.changeAlarmStateBatch(statesToUpdate, evaluationDate);
         AlarmManager.addAlarmHistoryEvents(historyList);
+        evaluated = true;
       }
     } catch(Exception e) {
       LOG.error(e);
@@ -18,15 +18,19 @@ package com.eucalyptus.cloudwatch.domain.metricdata; /**************************
  * additional information or have any questions.
  ************************************************************************/
 
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
+import com.google.common.collect.Lists;
 import org.apache.log4j.Logger;
 import org.junit.Ignore;
 
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Ignore("Manual development test")
@@ -75,4 +79,42 @@ public class MetricTest {
     }
     MetricManager.deleteAllMetrics();
   }
+
+  /**
+   * Compare insert throughput for the JDBC batch and entity persist paths.
+   */
+  public static void benchmarkAddMetricBatch(final int rows) {
+    final List<SimpleMetricEntity> dataBatch = Lists.newArrayList();
+    final long now = System.currentTimeMillis();
+    for (int i = 0; i < rows; i++) {
+      final Map<String, String> dimensionMap = new HashMap<String, String>();
+      dimensionMap.put("InstanceId", "i-" + (i % 1000));
+      final SimpleMetricEntity entity = new SimpleMetricEntity();
+      entity.setAccountId("account" + (i % 10));
+      entity.setMetricName("metric" + (i % 7));
+      entity.setNamespace("namespace1");
+      entity.setDimensionMap(dimensionMap);
+      entity.setMetricType(MetricType.Custom);
+      entity.setUnits(Units.None);
+      entity.setTimestamp(new Date(now - (i % 60) * 60000L));
+      entity.setSampleMax(1.0);
+      entity.setSampleMin(1.0);
+      entity.setSampleSum(1.0);
+      entity.setSampleSize(1.0);
+      dataBatch.add(entity);
+    }
+    final boolean useJdbcBatch = CloudWatchConfigProperties.METRIC_DATA_USE_JDBC_BATCH_INSERT;
+    try {
+      for (final boolean jdbcBatch : new boolean[]{ false, true }) {
+        CloudWatchConfigProperties.METRIC_DATA_USE_JDBC_BATCH_INSERT = jdbcBatch;
+        final long before = System.currentTimeMillis();
+        MetricManager.addMetricBatch(dataBatch);
+        final long elapsed = Math.max(1, System.currentTimeMillis() - before);
+        LOG.fatal((jdbcBatch ? "JDBC batch" : "Entity persist") + " rows/second: " + (rows * 1000L / elapsed));
+        MetricManager.deleteAllMetrics();
+      }
+    } finally {
+      CloudWatchConfigProperties.METRIC_DATA_USE_JDBC_BATCH_INSERT = useJdbcBatch;
+    }
+  }
 }
@@ -0,0 +1,112 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.workflow.alarms
+
+import com.eucalyptus.cloudwatch.common.internal.domain.alarms.AlarmEntity
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricSeriesActivity
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for alarm selection and evaluation marking.
+ */
+class AlarmEvaluationIndexTest {
+
+  private static final long NOW = TimeUnit.MINUTES.toMillis( 25_000_000 )
+
+  @Test
+  void testLoadedAlarmsDue( ) {
+    final AlarmEvaluationIndex index = index( alarm( 'alarm-1', 'metric-1', 300 ), alarm( 'alarm-2', 'metric-2', 60 ) )
+    assertEquals( 'Due', [ 'alarm-1', 'alarm-2' ] as Set, index.selectForEvaluation( NOW ) )
+  }
+
+  @Test
+  void testNotEvaluatedRemainsDue( ) {
+    final AlarmEvaluationIndex index = index( alarm( 'alarm-1', 'metric-1', 300 ) )
+    assertEquals( 'Due', [ 'alarm-1' ] as Set, index.selectForEvaluation( NOW ) )
+    // evaluation failed, so not marked
+    assertEquals( 'Due after failure', [ 'alarm-1' ] as Set, index.selectForEvaluation( NOW + 60_000 ) )
+  }
+
+  @Test
+  void testEvaluatedDueAfterPeriod( ) {
+    final AlarmEvaluationIndex index = index( alarm( 'alarm-1', 'metric-1', 300 ) )
+    index.markEvaluated( index.selectForEvaluation( NOW ), NOW )
+    assertEquals( 'Due within period', [ ] as Set, index.selectForEvaluation( NOW + 240_000 ) )
+    assertEquals( 'Due after period', [ 'alarm-1' ] as Set, index.selectForEvaluation( NOW + 300_000 ) )
+  }
+
+  @Test
+  void testActivityDueUntilEvaluated( ) {
+    final AlarmEvaluationIndex index = index( alarm( 'alarm-1', 'metric-1', 300 ), alarm( 'alarm-2', 'metric-2', 300 ) )
+    index.markEvaluated( index.selectForEvaluation( NOW ), NOW )
+
+    index.recordActivity( [ seriesKey( 'metric-1' ) ] as Set )
+    assertEquals( 'Due for data', [ 'alarm-1' ] as Set, index.selectForEvaluation( NOW + 60_000 ) )
+    assertEquals( 'Due for data after failure', [ 'alarm-1' ] as Set, index.selectForEvaluation( NOW + 120_000 ) )
+    index.markEvaluated( [ 'alarm-1' ], NOW + 120_000 )
+    assertEquals( 'Due after evaluation', [ ] as Set, index.selectForEvaluation( NOW + 180_000 ) )
+  }
+
+  @Test
+  void testReloadRetainsEvaluationState( ) {
+    final AlarmEntity alarm1 = alarm( 'alarm-1', 'metric-1', 300 )
+    final AlarmEntity alarm2 = alarm( 'alarm-2', 'metric-2', 300 )
+    final AlarmEvaluationIndex index = index( alarm1, alarm2 )
+    index.markEvaluated( index.selectForEvaluation( NOW ), NOW )
+    index.recordActivity( [ seriesKey( 'metric-2' ) ] as Set )
+
+    index.reload( [ alarm1, alarm2, alarm( 'alarm-3', 'metric-3', 300 ) ], NOW + 60_000 )
+    assertEquals( 'Due after reload', [ 'alarm-2', 'alarm-3' ] as Set, index.selectForEvaluation( NOW + 60_000 ) )
+  }
+
+  @Test
+  void testMarkEvaluatedUnknownAlarm( ) {
+    final AlarmEvaluationIndex index = index( alarm( 'alarm-1', 'metric-1', 300 ) )
+    index.markEvaluated( [ 'alarm-1', 'alarm-deleted' ], NOW )
+    assertEquals( 'Size', 1, index.size( ) )
+  }
+
+  private static AlarmEvaluationIndex index( final AlarmEntity... alarms ) {
+    final AlarmEvaluationIndex index = new AlarmEvaluationIndex( )
+    index.reload( alarms as List<AlarmEntity>, NOW )
+    index
+  }
+
+  private static AlarmEntity alarm( final String naturalId, final String metricName, final int period ) {
+    final AlarmEntity alarm = new AlarmEntity( )
+    alarm.setNaturalId( naturalId )
+    alarm.setAccountId( '000000000001' )
+    alarm.setNamespace( 'Test' )
+    alarm.setMetricName( metricName )
+    alarm.setMetricType( MetricType.Custom )
+    alarm.setPeriod( period )
+    alarm
+  }
+
+  private static String seriesKey( final String metricName ) {
+    MetricSeriesActivity.seriesKey( '000000000001', 'Test', metricName, MetricType.Custom, MetricManager.hash( [:] ) )
+  }
+}
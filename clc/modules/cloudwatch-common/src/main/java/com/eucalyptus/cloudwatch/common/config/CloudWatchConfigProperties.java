@@ -31,6 +31,42 @@ public class CloudWatchConfigProperties {
   @ConfigurableField(initial = "1000", description = "Size of the reporting data set that stores cloud watch queues performance info (debug only prop)")
   public static volatile int CLOUDWATCH_MONITORING_HISTORY_SIZE = 1000;
 
+  @ConfigurableField(initial = "50000", description = "Maximum number of pending metric series per metric data ingest shard before put metric data requests are throttled")
+  public static volatile int METRIC_DATA_SHARD_CAPACITY = 50000;
+
+  @ConfigurableField(initial = "10", description = "Maximum number of seconds metric data is held in an ingest shard before it is written")
+  public static volatile int METRIC_DATA_FLUSH_INTERVAL_SECONDS = 10;
+
+  @ConfigurableField(initial = "true", description = "Set this to false to write metric data as individually persisted entities rather than with JDBC batch inserts", changeListener = PropertyChangeListeners.IsBoolean.class)
+  public static volatile boolean METRIC_DATA_USE_JDBC_BATCH_INSERT = true;
+
+  @ConfigurableField(initial = "500", description = "Number of metric data rows per JDBC batch when batch inserts are enabled", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_DATA_NUM_ROWS_PER_JDBC_BATCH = 500;
+
+  @ConfigurableField(initial = "true", description = "Set this to false to stop building metric rollups and serve all metric statistics from raw metric data", changeListener = PropertyChangeListeners.IsBoolean.class)
+  public static volatile boolean METRIC_DATA_USE_ROLLUPS = true;
+
+  @ConfigurableField(initial = "2", description = "Minutes after the end of a bucket before it is rolled up", changeListener = PropertyChangeListeners.IsNonNegativeInteger.class)
+  public static volatile int METRIC_ROLLUP_DELAY_MINUTES = 2;
+
+  @ConfigurableField(initial = "60", description = "Minutes of rolled up buckets rebuilt for all series on a catch up rollup run, late metric data otherwise only rebuilds the written series", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_ROLLUP_LOOKBACK_MINUTES = 60;
+
+  @ConfigurableField(initial = "360", description = "Minutes between catch up rollup runs", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_ROLLUP_CATCHUP_MINUTES = 360;
+
+  @ConfigurableField(initial = "24", description = "Maximum number of chunks rolled up per resolution on each rollup run", changeListener = PropertyChangeListeners.IsPositiveInteger.class)
+  public static volatile int METRIC_ROLLUP_MAX_CHUNKS_PER_RUN = 24;
+
+  @ConfigurableField(initial = "15", description = "Minutes between full reloads of the alarm evaluation index")
+  public static volatile int ALARM_INDEX_REFRESH_MINUTES = 15;
+
+  @ConfigurableField(initial = "60", description = "Minutes between last update timestamp writes for a known metric in the list metrics catalog")
+  public static volatile int LIST_METRICS_TIMESTAMP_REFRESH_MINUTES = 60;
+
+  @ConfigurableField(initial = "5", description = "Minutes between refreshes of the list metrics catalog with metrics updated on other hosts")
+  public static volatile int LIST_METRICS_CATALOG_RELOAD_MINUTES = 5;
+
   public static Boolean isDisabledCloudWatchService() {
     return !ENABLE_CLOUDWATCH_SERVICE;
   }
@@ -23,6 +23,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Table;
 import org.apache.log4j.Logger;
@@ -31,7 +32,9 @@ import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.
 
 @Entity
 @PersistenceContext(name="eucalyptus_cloudwatch")
-@Table(name="list_metrics")
+@Table(name="list_metrics", indexes = {
+    @Index( name = "list_metrics_last_update_timestamp_idx", columnList = "last_update_timestamp" )
+} )
 public class ListMetric extends AbstractPersistentWithDimensions {
 
   @Override
@@ -0,0 +1,330 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.listmetrics;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * In memory catalog of the metrics known to exist as list metrics.
+ *
+ * The catalog is loaded from the database once and kept current with the
+ * metrics written by this host. Metrics written on other hosts are applied
+ * on the next refresh, which loads only the metrics updated since the
+ * previous refresh. Metrics are deleted only when not updated within the
+ * retention period, so each refresh drops expired metrics locally rather
+ * than relying on the deleting host.
+ */
+public class ListMetricCatalog {
+
+  private static final ListMetricCatalog instance = new ListMetricCatalog();
+
+  private volatile Index index = new Index();
+
+  public static ListMetricCatalog getInstance() {
+    return instance;
+  }
+
+  public boolean isReloadRequired(final long now) {
+    final long refreshedAt = index.refreshedAt;
+    return refreshedAt == 0L ||
+        now - refreshedAt >= TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.LIST_METRICS_CATALOG_RELOAD_MINUTES);
+  }
+
+  /**
+   * The time the catalog was last loaded or refreshed, zero if not loaded.
+   */
+  public long getRefreshedAt() {
+    return index.refreshedAt;
+  }
+
+  /**
+   * The catalog can be used for listing if it was loaded within three reload
+   * intervals, otherwise callers should query the database.
+   */
+  public boolean isListable(final long now) {
+    final long refreshedAt = index.refreshedAt;
+    return refreshedAt != 0L &&
+        now - refreshedAt < 3 * TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.LIST_METRICS_CATALOG_RELOAD_MINUTES);
+  }
+
+  /**
+   * Replace the catalog contents with the given (detached) metrics.
+   */
+  public void reload(final Iterable<ListMetric> metrics, final long now) {
+    final Index reloaded = new Index();
+    for (final ListMetric metric : metrics) {
+      reloaded.add(metric);
+    }
+    reloaded.refreshedAt = now;
+    index = reloaded;
+  }
+
+  /**
+   * Apply the given (detached) metrics updated since the last refresh and
+   * remove metrics last updated before the retention time.
+   *
+   * @param retainAfter Metrics last updated before this time are removed
+   */
+  public void refresh(final Iterable<ListMetric> updated, final long retainAfter, final long now) {
+    final Index index = this.index;
+    for (final ListMetric metric : updated) {
+      Entry entry = index.add(metric);
+      if (!entry.naturalId.equals(metric.getNaturalId())) {
+        // deleted and created again
+        index.remove(entry);
+        entry = index.add(metric);
+      }
+      if (metric.getLastUpdateTimestamp() != null && metric.getLastUpdateTimestamp().getTime() > entry.lastUpdated) {
+        entry.setLastUpdated(metric.getLastUpdateTimestamp().getTime());
+      }
+    }
+    for (final Entry entry : index.byKey.values()) {
+      if (entry.lastUpdated < retainAfter) {
+        index.remove(entry);
+      }
+    }
+    index.refreshedAt = now;
+  }
+
+  /**
+   * Discard the catalog contents, the catalog is not used until reloaded.
+   */
+  public void invalidate() {
+    index = new Index();
+  }
+
+  public int size() {
+    return index.byKey.size();
+  }
+
+  @Nullable
+  public Entry lookup(final ListMetric metric) {
+    return index.byKey.get(new Key(metric));
+  }
+
+  /**
+   * Add a metric that exists in the database, the metric must be detached.
+   */
+  public Entry add(final ListMetric metric) {
+    return index.add(metric);
+  }
+
+  public void remove(final Entry entry) {
+    index.remove(entry);
+  }
+
+  /**
+   * List metrics using the same filters and ordering as the database query.
+   *
+   * @return the matching metrics or null if the next token is not known
+   * @see ListMetricManager#listMetrics
+   */
+  @Nullable
+  public List<ListMetric> listMetrics(
+      @Nullable final String accountId,
+      @Nullable final String metricName,
+      @Nullable final String namespace,
+      @Nullable final Map<String, String> dimensionMap,
+      @Nullable final Date after,
+      @Nullable final Date before,
+      @Nullable final Integer maxRecords,
+      @Nullable final String nextToken
+  ) {
+    final Index index = this.index;
+    NavigableSet<Entry> candidates = accountId == null ? index.ordered : index.byAccount.get(accountId);
+    if (candidates == null) {
+      candidates = Collections.emptyNavigableSet();
+    }
+    if (nextToken != null) {
+      final Entry nextTokenEntry = index.byId.get(nextToken);
+      if (nextTokenEntry == null) {
+        return null;
+      }
+      candidates = candidates.tailSet(nextTokenEntry, false);
+    }
+    final List<ListMetric> results = Lists.newArrayList();
+    for (final Entry entry : candidates) {
+      if (maxRecords != null && results.size() >= maxRecords) {
+        break;
+      }
+      if (entry.matches(metricName, namespace, dimensionMap, after, before)) {
+        results.add(entry.metric);
+      }
+    }
+    return results;
+  }
+
+  public static final class Entry {
+    private final Key key;
+    private final ListMetric metric;
+    private final String naturalId;
+    private final long created;
+    private volatile long lastUpdated;
+
+    private Entry(final Key key, final ListMetric metric) {
+      this.key = key;
+      this.metric = metric;
+      this.naturalId = metric.getNaturalId();
+      this.created = metric.getCreationTimestamp() == null ? 0L : metric.getCreationTimestamp().getTime();
+      this.lastUpdated = metric.getLastUpdateTimestamp() == null ? created : metric.getLastUpdateTimestamp().getTime();
+    }
+
+    public String getNaturalId() {
+      return naturalId;
+    }
+
+    public long getLastUpdated() {
+      return lastUpdated;
+    }
+
+    public void setLastUpdated(final long lastUpdated) {
+      this.lastUpdated = lastUpdated;
+    }
+
+    private boolean matches(
+        final String metricName,
+        final String namespace,
+        final Map<String, String> dimensionMap,
+        final Date after,
+        final Date before
+    ) {
+      if (metricName != null && !metricName.equals(key.metricName)) return false;
+      if (namespace != null && !namespace.equals(key.namespace)) return false;
+      if (after != null && lastUpdated < after.getTime()) return false;
+      if (before != null && lastUpdated > before.getTime()) return false;
+      if (dimensionMap != null) {
+        for (final Map.Entry<String, String> dimension : dimensionMap.entrySet()) {
+          if (!key.dimensionMap.containsKey(dimension.getKey()) ||
+              !Objects.equal(dimension.getValue(), key.dimensionMap.get(dimension.getKey()))) return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  private static final Comparator<Entry> CREATION_ORDER = new Comparator<Entry>() {
+    @Override
+    public int compare(final Entry e1, final Entry e2) {
+      final int result = Long.compare(e1.created, e2.created);
+      return result != 0 ? result : e1.naturalId.compareTo(e2.naturalId);
+    }
+  };
+
+  private static final class Index {
+    private volatile long refreshedAt;
+    private final ConcurrentMap<Key, Entry> byKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry> byId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NavigableSet<Entry>> byAccount = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ordered = new ConcurrentSkipListSet<>(CREATION_ORDER);
+
+    private Entry add(final ListMetric metric) {
+      final Key key = new Key(metric);
+      final Entry entry = new Entry(key, metric);
+      final Entry existing = byKey.putIfAbsent(key, entry);
+      if (existing != null) {
+        return existing;
+      }
+      byId.put(entry.naturalId, entry);
+      NavigableSet<Entry> accountEntries = byAccount.get(key.accountId);
+      if (accountEntries == null) {
+        final NavigableSet<Entry> newAccountEntries = new ConcurrentSkipListSet<>(CREATION_ORDER);
+        accountEntries = byAccount.putIfAbsent(key.accountId, newAccountEntries);
+        if (accountEntries == null) {
+          accountEntries = newAccountEntries;
+        }
+      }
+      accountEntries.add(entry);
+      ordered.add(entry);
+      return entry;
+    }
+
+    private void remove(final Entry entry) {
+      if (byKey.remove(entry.key, entry)) {
+        byId.remove(entry.naturalId, entry);
+        final NavigableSet<Entry> accountEntries = byAccount.get(entry.key.accountId);
+        if (accountEntries != null) {
+          accountEntries.remove(entry);
+        }
+        ordered.remove(entry);
+      }
+    }
+  }
+
+  private static final class Key {
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final TreeMap<String, String> dimensionMap;
+    private final int hashCode;
+
+    private Key(final ListMetric metric) {
+      this.accountId = metric.getAccountId();
+      this.namespace = metric.getNamespace();
+      this.metricName = metric.getMetricName();
+      this.metricType = metric.getMetricType();
+      this.dimensionMap = new TreeMap<>(metric.getDimensionMap());
+      int result = accountId != null ? accountId.hashCode() : 0;
+      result = 31 * result + (namespace != null ? namespace.hashCode() : 0);
+      result = 31 * result + (metricName != null ? metricName.hashCode() : 0);
+      result = 31 * result + (metricType != null ? metricType.hashCode() : 0);
+      result = 31 * result + dimensionMap.hashCode();
+      this.hashCode = result;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      final Key that = (Key) o;
+
+      if (hashCode != that.hashCode) return false;
+      if (accountId != null ? !accountId.equals(that.accountId) : that.accountId != null) return false;
+      if (namespace != null ? !namespace.equals(that.namespace) : that.namespace != null) return false;
+      if (metricName != null ? !metricName.equals(that.metricName) : that.metricName != null) return false;
+      if (metricType != that.metricType) return false;
+
+      return dimensionMap.equals(that.dimensionMap);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
@@ -19,6 +19,10 @@
  ************************************************************************/
 package com.eucalyptus.cloudwatch.common.internal.domain.listmetrics;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -29,10 +33,12 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 import javax.persistence.EntityTransaction;
 
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.InvalidTokenException;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity;
 import com.eucalyptus.configurable.ConfigurableClass;
@@ -43,6 +49,7 @@ import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
 import org.apache.log4j.Logger;
 import org.hibernate.Criteria;
+import org.hibernate.jdbc.Work;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Restrictions;
 
@@ -63,6 +70,15 @@ public class ListMetricManager {
 
   public static volatile Integer LIST_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH = 50;
 
+  public static volatile Integer LIST_METRIC_NUM_ROWS_PER_JDBC_BATCH = 500;
+
+  public static volatile Integer LIST_METRIC_NUM_ROWS_PER_CATALOG_LOAD = 10000;
+
+  /**
+   * Metrics not updated within this period are deleted by the cleanup service.
+   */
+  public static final long LIST_METRIC_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(14);
+
   private static final Logger LOG = Logger.getLogger(ListMetricManager.class);
   public static void addMetric(String accountId, String metricName, String namespace, Map<String, String> dimensionMap, MetricType metricType) {
     try (final TransactionResource db = Entities.transactionFor(ListMetric.class)) {
@@ -123,6 +139,7 @@ public class ListMetricManager {
       Entities.deleteAll(ListMetric.class);
       db.commit();
     }
+    ListMetricCatalog.getInstance().invalidate();
   }
 
   /**
@@ -136,8 +153,62 @@ public class ListMetricManager {
       Entities.deleteAllMatching(ListMetric.class, "WHERE lastUpdateTimestamp < :before", criteria);
       db.commit();
     }
+    ListMetricCatalog.getInstance().invalidate();
+  }
+
+  /**
+   * Load or refresh the list metrics catalog if the configured interval has passed.
+   *
+   * The catalog is loaded in full once, after that only metrics updated since
+   * the previous refresh are loaded. The previous refresh time is moved back
+   * by one interval so that metrics written by transactions still in progress
+   * at the previous refresh, or by hosts with skewed clocks, are not missed.
+   */
+  public static void reloadCatalogIfRequired() {
+    final ListMetricCatalog catalog = ListMetricCatalog.getInstance();
+    final long now = System.currentTimeMillis();
+    if (catalog.isReloadRequired(now)) {
+      final long refreshedAt = catalog.getRefreshedAt();
+      if (refreshedAt == 0L) {
+        final List<ListMetric> metrics = loadCatalogMetrics(null);
+        catalog.reload(metrics, now);
+        LOG.debug("Loaded " + metrics.size() + " metrics into list metrics catalog");
+      } else {
+        final Date updatedSince = new Date(refreshedAt -
+            TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.LIST_METRICS_CATALOG_RELOAD_MINUTES));
+        final List<ListMetric> metrics = loadCatalogMetrics(updatedSince);
+        catalog.refresh(metrics, now - LIST_METRIC_RETENTION_MILLIS, now);
+        LOG.debug("Refreshed " + metrics.size() + " metrics in list metrics catalog");
+      }
+    }
+  }
+
+  private static List<ListMetric> loadCatalogMetrics(@Nullable final Date updatedSince) {
+    final List<ListMetric> metrics = Lists.newArrayList();
+    String nextToken = null;
+    Date nextTokenCreatedTime = null;
+    while (true) {
+      final List<ListMetric> metricsPartial;
+      try (final TransactionResource db = Entities.transactionFor(ListMetric.class)) {
+        Criteria criteria = Entities.createCriteria(ListMetric.class).setReadOnly(true);
+        if (updatedSince != null) {
+          criteria = criteria.add(Restrictions.ge("lastUpdateTimestamp", updatedSince));
+        }
+        criteria = NextTokenUtils.addNextTokenConstraints(LIST_METRIC_NUM_ROWS_PER_CATALOG_LOAD, nextToken, nextTokenCreatedTime, criteria);
+        metricsPartial = (List<ListMetric>) criteria.list();
+        db.commit();
+      }
+      metrics.addAll(metricsPartial);
+      if (metricsPartial.size() < LIST_METRIC_NUM_ROWS_PER_CATALOG_LOAD) {
+        break;
+      }
+      final ListMetric last = metricsPartial.get(metricsPartial.size() - 1);
+      nextToken = last.getNaturalId();
+      nextTokenCreatedTime = last.getCreationTimestamp();
+    }
+    return metrics;
   }
-   
+
   /**
    * Returns the metrics that are associated with the applied parameters
    * @param accountId the account Id.  If null, this filter will not be used.
@@ -154,6 +225,14 @@ public class ListMetricManager {
     if (dimensionMap != null && dimensionMap.size() > ListMetric.MAX_DIM_NUM) {
       throw new IllegalArgumentException("Too many dimensions " + dimensionMap.size());
     }
+    final ListMetricCatalog catalog = ListMetricCatalog.getInstance();
+    if (catalog.isListable(System.currentTimeMillis())) {
+      final List<ListMetric> catalogResult =
+          catalog.listMetrics(accountId, metricName, namespace, dimensionMap, after, before, maxRecords, nextToken);
+      if (catalogResult != null) {
+        return catalogResult;
+      }
+    }
     try (final TransactionResource db = Entities.transactionFor(ListMetric.class)) {
       Date nextTokenCreatedTime = NextTokenUtils.getNextTokenCreatedTime(nextToken, ListMetric.class);
       Map<String, String> sortedDimensionMap = new TreeMap<String, String>();
@@ -304,7 +383,75 @@ public class ListMetricManager {
       return result;
     }
   }
+  /**
+   * Add or refresh the given metrics.
+   *
+   * Metrics in the catalog are only written when their last update timestamp
+   * is older than the configured refresh interval, other metrics are looked
+   * up and created if necessary.
+   */
   public static void addMetricBatch(List<ListMetric> dataBatch) {
+    final ListMetricCatalog catalog = ListMetricCatalog.getInstance();
+    final long now = System.currentTimeMillis();
+    final long refreshMillis =
+        TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.LIST_METRICS_TIMESTAMP_REFRESH_MINUTES);
+    final List<ListMetric> unknownMetrics = Lists.newArrayList();
+    final Set<ListMetricCatalog.Entry> refreshEntries = Sets.newLinkedHashSet();
+    for (final ListMetric listMetric : dataBatch) {
+      final ListMetricCatalog.Entry entry = catalog.lookup(listMetric);
+      if (entry == null) {
+        unknownMetrics.add(listMetric);
+      } else if (now - entry.getLastUpdated() >= refreshMillis) {
+        refreshEntries.add(entry);
+      }
+    }
+    refreshTimestamps(refreshEntries, now);
+    addMetricBatchPersisted(unknownMetrics);
+  }
+
+  private static void refreshTimestamps(final Collection<ListMetricCatalog.Entry> entries, final long now) {
+    final ListMetricCatalog catalog = ListMetricCatalog.getInstance();
+    for (final List<ListMetricCatalog.Entry> entriesPartial : Iterables.partition(entries, LIST_METRIC_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
+      final int[] updateCounts = new int[entriesPartial.size()];
+      try (final TransactionResource db = Entities.transactionFor(ListMetric.class)) {
+        Entities.doWork(ListMetric.class, new Work() {
+          @Override
+          public void execute(final Connection connection) throws SQLException {
+            try (final PreparedStatement statement = connection.prepareStatement(
+                "UPDATE list_metrics SET last_update_timestamp = ?, version = version + 1 WHERE metadata_perm_uuid = ?")) {
+              int numRows = 0;
+              for (final ListMetricCatalog.Entry entry : entriesPartial) {
+                statement.setTimestamp(1, new Timestamp(now));
+                statement.setString(2, entry.getNaturalId());
+                statement.addBatch();
+                if (++numRows % LIST_METRIC_NUM_ROWS_PER_JDBC_BATCH == 0) {
+                  final int[] batchCounts = statement.executeBatch();
+                  System.arraycopy(batchCounts, 0, updateCounts, numRows - batchCounts.length, batchCounts.length);
+                }
+              }
+              if (numRows % LIST_METRIC_NUM_ROWS_PER_JDBC_BATCH != 0) {
+                final int[] batchCounts = statement.executeBatch();
+                System.arraycopy(batchCounts, 0, updateCounts, numRows - batchCounts.length, batchCounts.length);
+              }
+            }
+          }
+        });
+        db.commit();
+      }
+      int index = 0;
+      for (final ListMetricCatalog.Entry entry : entriesPartial) {
+        if (updateCounts[index++] == 0) {
+          // deleted since the catalog was loaded, look it up again on next add
+          catalog.remove(entry);
+        } else {
+          entry.setLastUpdated(now);
+        }
+      }
+    }
+  }
+
+  private static void addMetricBatchPersisted(List<ListMetric> dataBatch) {
+    final ListMetricCatalog catalog = ListMetricCatalog.getInstance();
     // sort the collection by common items to require fewer lookups
     Multimap<PrefetchFields, ListMetric> dataBatchPrefetchMap = LinkedListMultimap.create();
     for (final ListMetric item: dataBatch) {
@@ -313,6 +460,7 @@ public class ListMetricManager {
     }
     // do db stuff in a certain number of operations per connection
     for (List<PrefetchFields> prefetchFieldsListPartial : Iterables.partition(dataBatchPrefetchMap.keySet(), LIST_METRIC_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
+      final List<ListMetric> catalogMetrics = Lists.newArrayList();
       try (final TransactionResource db = Entities.transactionFor(ListMetric.class)) {
         int numOperations = 0;
         for (PrefetchFields prefetchFields: prefetchFieldsListPartial) {
@@ -335,6 +483,7 @@ public class ListMetricManager {
               dataCache.put(cacheKey, listMetric);
             }
           }
+          catalogMetrics.addAll(dataCache.values());
           numOperations++;
           if (numOperations % LIST_METRIC_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH == 0) {
             Entities.flushSession(ListMetric.class);
@@ -343,6 +492,9 @@ public class ListMetricManager {
         }
         db.commit();
       }
+      for (final ListMetric listMetric : catalogMetrics) {
+        catalog.add(listMetric);
+      }
     }
   }
 
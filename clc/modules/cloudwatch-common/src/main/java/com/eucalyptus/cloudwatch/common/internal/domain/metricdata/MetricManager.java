@@ -19,6 +19,10 @@
  ************************************************************************/
 package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -30,8 +34,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.persistence.EntityTransaction;
+import javax.persistence.Table;
 
 import com.eucalyptus.cloudwatch.common.internal.domain.AbstractPersistentWithDimensions;
 import com.eucalyptus.configurable.ConfigurableClass;
@@ -50,7 +57,9 @@ import org.hibernate.criterion.Order;
 import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.jdbc.Work;
 
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.DimensionEntity;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
 import com.eucalyptus.cloudwatch.common.internal.hashing.HashUtils;
@@ -67,6 +76,8 @@ public class MetricManager {
   public static volatile Integer METRIC_DATA_NUM_DB_OPERATIONS_PER_TRANSACTION = 10000;
   public static volatile Integer METRIC_DATA_NUM_DB_OPERATIONS_UNTIL_SESSION_FLUSH = 50;
 
+  private static final ConcurrentMap<Class, String> insertStatements = Maps.newConcurrentMap();
+
   public static final Logger LOG = Logger.getLogger(MetricManager.class);
   public static void addMetric(String accountId, 
       String metricName, String namespace, Map<String, String> dimensionMap,
@@ -129,6 +140,87 @@ public class MetricManager {
   }
 
   private static void addManyMetrics(Multimap<Class, MetricEntity> metricMap) {
+    if (CloudWatchConfigProperties.METRIC_DATA_USE_JDBC_BATCH_INSERT) {
+      addManyMetricsBatched(metricMap);
+    } else {
+      addManyMetricsPersisted(metricMap);
+    }
+    MetricRollupManager.markDirty(metricMap.values());
+  }
+
+  /**
+   * Insert metrics using JDBC batches, one statement per shard table.
+   *
+   * Metric rows are never updated once written so there is no need for
+   * the session to track the entities.
+   */
+  private static void addManyMetricsBatched(Multimap<Class, MetricEntity> metricMap) {
+    for (final Class c : metricMap.keySet()) {
+      for (final List<MetricEntity> dataBatchPartial : Iterables.partition(metricMap.get(c), METRIC_DATA_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
+        try (final TransactionResource db = Entities.transactionFor(c)) {
+          insertMetrics(c, dataBatchPartial);
+          db.commit();
+        }
+      }
+    }
+  }
+
+  /**
+   * Insert metrics in JDBC batches using the current transaction for the given class.
+   */
+  static void insertMetrics(final Class c, final Iterable<? extends MetricEntity> metricEntities) {
+    final String insertStatement = insertStatement(c);
+    Entities.doWork(c, new Work() {
+      @Override
+      public void execute(final Connection connection) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement(insertStatement)) {
+          int numRows = 0;
+          for (final MetricEntity me : metricEntities) {
+            bind(statement, me);
+            statement.addBatch();
+            if (++numRows % CloudWatchConfigProperties.METRIC_DATA_NUM_ROWS_PER_JDBC_BATCH == 0) {
+              statement.executeBatch();
+            }
+          }
+          if (numRows % CloudWatchConfigProperties.METRIC_DATA_NUM_ROWS_PER_JDBC_BATCH != 0) {
+            statement.executeBatch();
+          }
+        }
+      }
+    });
+  }
+
+  private static String insertStatement(final Class c) {
+    String insertStatement = insertStatements.get(c);
+    if (insertStatement == null) {
+      final Table table = (Table) c.getAnnotation(Table.class);
+      if (table == null) {
+        throw new IllegalArgumentException("No table for metric entity " + c.getName());
+      }
+      insertStatement = "INSERT INTO " + table.name() + " (id, account_id, namespace, metric_name, dimension_hash, " +
+          "units, metric_type, timestamp, sample_size, sample_max, sample_min, sample_sum) " +
+          "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+      insertStatements.putIfAbsent(c, insertStatement);
+    }
+    return insertStatement;
+  }
+
+  private static void bind(final PreparedStatement statement, final MetricEntity me) throws SQLException {
+    statement.setString(1, me.getId() != null ? me.getId() : UUID.randomUUID().toString().replace("-", ""));
+    statement.setString(2, me.getAccountId());
+    statement.setString(3, me.getNamespace());
+    statement.setString(4, me.getMetricName());
+    statement.setString(5, me.getDimensionHash());
+    statement.setString(6, me.getUnits().name());
+    statement.setString(7, me.getMetricType().name());
+    statement.setTimestamp(8, new Timestamp(me.getTimestamp().getTime()));
+    statement.setDouble(9, me.getSampleSize());
+    statement.setDouble(10, me.getSampleMax());
+    statement.setDouble(11, me.getSampleMin());
+    statement.setDouble(12, me.getSampleSum());
+  }
+
+  private static void addManyMetricsPersisted(Multimap<Class, MetricEntity> metricMap) {
     for (Class c : metricMap.keySet()) {
       for (List<MetricEntity> dataBatchPartial : Iterables.partition(metricMap.get(c), METRIC_DATA_NUM_DB_OPERATIONS_PER_TRANSACTION)) {
         try (final TransactionResource db = Entities.transactionFor(c)) {
@@ -168,12 +260,13 @@ public class MetricManager {
   }
 
   public static void deleteAllMetrics() {
-    for (Class c : MetricEntityFactory.getAllClassesForEntitiesGet()) {
+    for (Class c : Iterables.concat(MetricEntityFactory.getAllClassesForEntitiesGet(), MetricRollupManager.getAllClassesForEntitiesGet())) {
       try (final TransactionResource db = Entities.transactionFor(c)) {
         Entities.deleteAll(c);
         db.commit();
       }
     }
+    MetricRollupManager.deleteAllStatus();
   }
 
   /**
@@ -183,7 +276,8 @@ public class MetricManager {
    *          the date to delete before (inclusive)
    */
   public static void deleteMetrics(Date before) {
-    for (Class c : MetricEntityFactory.getAllClassesForEntitiesGet()) {
+    MetricRollupManager.deleteBefore(before);
+    for (Class c : Iterables.concat(MetricEntityFactory.getAllClassesForEntitiesGet(), MetricRollupManager.getAllClassesForEntitiesGet())) {
       try (final TransactionResource db = Entities.transactionFor(c)) {
         Map<String, Date> criteria = new HashMap<String, Date>();
         criteria.put("before", before);
@@ -446,13 +540,35 @@ public class MetricManager {
     getMetricStatisticsParams.validate(now);
     Class metricEntityClass = MetricEntityFactory.getClassForEntitiesGet(getMetricStatisticsParams.getMetricType(), getMetricStatisticsParams.getDimensionHash());
     Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap = new TreeMap<GetMetricStatisticsAggregationKey, MetricStatistics>(GetMetricStatisticsAggregationKey.COMPARATOR_WITH_NULLS.INSTANCE);
+    // use the coarsest rollup that covers the start of the range, raw data for the rest
+    Date rawStartTime = getMetricStatisticsParams.getStartTime();
+    final MetricRollupManager.RollupRange rollupRange = MetricRollupManager.planRollupRange(
+        getMetricStatisticsParams.getStartTime(), getMetricStatisticsParams.getEndTime(), getMetricStatisticsParams.getPeriod());
+    if (rollupRange != null) {
+      aggregateMetricStatistics(rollupRange.getResolution().getEntityClass(), getMetricStatisticsParams,
+          rollupRange.getStartTime(), rollupRange.getEndTime(), aggregationMap);
+      rawStartTime = rollupRange.getEndTime();
+    }
+    if (rawStartTime.before(getMetricStatisticsParams.getEndTime())) {
+      aggregateMetricStatistics(metricEntityClass, getMetricStatisticsParams,
+          rawStartTime, getMetricStatisticsParams.getEndTime(), aggregationMap);
+    }
+    return Lists.newArrayList(aggregationMap.values());
+  }
+
+  private static void aggregateMetricStatistics(
+      final Class metricEntityClass,
+      final GetMetricStatisticsParams getMetricStatisticsParams,
+      final Date startTime,
+      final Date endTime,
+      final Map<GetMetricStatisticsAggregationKey, MetricStatistics> aggregationMap) {
     try (final TransactionResource db = Entities.transactionFor(metricEntityClass)) {
       Criteria criteria = Entities.createCriteria(metricEntityClass);
       criteria = criteria.add(Restrictions.eq("accountId", getMetricStatisticsParams.getAccountId()));
       criteria = criteria.add(Restrictions.eq("metricName", getMetricStatisticsParams.getMetricName()));
       criteria = criteria.add(Restrictions.eq("namespace", getMetricStatisticsParams.getNamespace()));
-      criteria = criteria.add(Restrictions.lt("timestamp", getMetricStatisticsParams.getEndTime()));
-      criteria = criteria.add(Restrictions.ge("timestamp", getMetricStatisticsParams.getStartTime()));
+      criteria = criteria.add(Restrictions.lt("timestamp", endTime));
+      criteria = criteria.add(Restrictions.ge("timestamp", startTime));
       criteria = criteria.add(Restrictions.eq("dimensionHash", getMetricStatisticsParams.getDimensionHash()));
       if (getMetricStatisticsParams.getUnits() != null) {
         criteria = criteria.add(Restrictions.eq("units", getMetricStatisticsParams.getUnits()));
@@ -483,10 +599,9 @@ public class MetricManager {
         }
       }
     }
-    return Lists.newArrayList(aggregationMap.values());
   }
 
-  private static MetricEntity getMetricEntity(ScrollableResults results) {
+  static MetricEntity getMetricEntity(ScrollableResults results) {
     Double sampleMax = (Double) results.get(0);
     Double sampleMin = (Double) results.get(1);
     Double sampleSize = (Double) results.get(2);
@@ -559,6 +674,9 @@ public class MetricManager {
       metricEntities.addAll(hash(simpleMetricEntity));
     }
     addManyMetrics(makeMetricMap(metricEntities));
+    for (MetricEntity metricEntity : metricEntities) {
+      MetricSeriesActivity.record(metricEntity);
+    }
   }
 
   private static void validateMetricQueueItem(SimpleMetricEntity simpleMetricEntity) {
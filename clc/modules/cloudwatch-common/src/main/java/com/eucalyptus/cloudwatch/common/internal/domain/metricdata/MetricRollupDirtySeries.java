@@ -0,0 +1,154 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.component.annotation.RemotablePersistence;
+
+/**
+ * A metric series with data written after its buckets were rolled up.
+ *
+ * Rows are inserted for each resolution with rolled up buckets when late
+ * data is written and deleted once the series is rebuilt. Rows are never
+ * updated, a series can have more than one row.
+ */
+@Entity
+@PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+@RemotablePersistence
+@Table(name = "metric_rollup_dirty_series", indexes = {
+    @Index( name = "metric_rollup_dirty_series_resolution_idx", columnList = "resolution" )
+} )
+public class MetricRollupDirtySeries {
+
+  @Id
+  @Column(name = "id")
+  private String id;
+  @Column(name = "resolution", nullable = false)
+  private String resolution;
+  @Column(name = "account_id", nullable = false)
+  private String accountId;
+  @Column(name = "namespace", nullable = false)
+  private String namespace;
+  @Column(name = "metric_name", nullable = false)
+  private String metricName;
+  @Column(name = "metric_type", nullable = false)
+  @Enumerated(EnumType.STRING)
+  private MetricType metricType;
+  @Column(name = "dimension_hash", nullable = false)
+  private String dimensionHash;
+  @Column(name = "dirty_from", nullable = false)
+  private Date dirtyFrom;
+
+  public MetricRollupDirtySeries() {
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getResolution() {
+    return resolution;
+  }
+
+  public void setResolution(String resolution) {
+    this.resolution = resolution;
+  }
+
+  public String getAccountId() {
+    return accountId;
+  }
+
+  public void setAccountId(String accountId) {
+    this.accountId = accountId;
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public void setNamespace(String namespace) {
+    this.namespace = namespace;
+  }
+
+  public String getMetricName() {
+    return metricName;
+  }
+
+  public void setMetricName(String metricName) {
+    this.metricName = metricName;
+  }
+
+  public MetricType getMetricType() {
+    return metricType;
+  }
+
+  public void setMetricType(MetricType metricType) {
+    this.metricType = metricType;
+  }
+
+  public String getDimensionHash() {
+    return dimensionHash;
+  }
+
+  public void setDimensionHash(String dimensionHash) {
+    this.dimensionHash = dimensionHash;
+  }
+
+  /**
+   * Earliest time of the metric data written late for the series.
+   */
+  public Date getDirtyFrom() {
+    return dirtyFrom;
+  }
+
+  public void setDirtyFrom(Date dirtyFrom) {
+    this.dirtyFrom = dirtyFrom;
+  }
+
+  public String getSeriesKey() {
+    return MetricSeriesActivity.seriesKey(accountId, namespace, metricName, metricType, dimensionHash);
+  }
+
+  @Override
+  public String toString() {
+    return "MetricRollupDirtySeries [resolution=" + resolution
+        + ", accountId=" + accountId
+        + ", namespace=" + namespace
+        + ", metricName=" + metricName
+        + ", metricType=" + metricType
+        + ", dimensionHash=" + dimensionHash
+        + ", dirtyFrom=" + dirtyFrom + "]";
+  }
+}
@@ -0,0 +1,742 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import org.apache.log4j.Logger;
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
+import org.hibernate.LockMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.jdbc.Work;
+
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
+import com.eucalyptus.component.annotation.RemotablePersistence;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Maintains time bucketed rollups of metric data.
+ *
+ * Rollups are built from raw metric data (five minutes) or from the next
+ * finer rollup (one hour, one day). Each resolution tracks the time range
+ * it covers so queries can use rollups for the covered part of a range and
+ * raw data for the remainder.
+ *
+ * Each run rolls up the buckets completed since the last run. Writes of
+ * data older than the rollup delay record the written series as dirty and
+ * mark the rollups dirty from the data timestamp. Dirty buckets are not used
+ * for queries, following runs rebuild only the dirty series and then clear
+ * the dirty time. The status used for queries is cached, so on other hosts
+ * rollups may be used for a dirty range for up to the cache period (30
+ * seconds).
+ *
+ * Buckets within the lookback window are rebuilt for all series on a catch
+ * up run, performed at the configured interval by each host running rollups,
+ * in case data was written without being recorded as dirty.
+ */
+public class MetricRollupManager {
+  private static final Logger LOG = Logger.getLogger(MetricRollupManager.class);
+
+  private static final long STATUS_CACHE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static volatile Map<Resolution, MetricRollupStatus> statusCache = Collections.emptyMap();
+  private static volatile long statusCacheTimestamp = 0L;
+  private static final Map<Resolution, Long> lastCatchUp = Maps.newConcurrentMap();
+
+  public enum Resolution {
+    FiveMinutes(TimeUnit.MINUTES.toSeconds(5), TimeUnit.HOURS.toSeconds(1), FiveMinuteMetricRollupEntity.class),
+    OneHour(TimeUnit.HOURS.toSeconds(1), TimeUnit.DAYS.toSeconds(1), OneHourMetricRollupEntity.class),
+    OneDay(TimeUnit.DAYS.toSeconds(1), TimeUnit.DAYS.toSeconds(1), OneDayMetricRollupEntity.class),
+    ;
+
+    private final long seconds;
+    private final long chunkSeconds;
+    private final Class<? extends MetricEntity> entityClass;
+
+    Resolution(final long seconds, final long chunkSeconds, final Class<? extends MetricEntity> entityClass) {
+      this.seconds = seconds;
+      this.chunkSeconds = chunkSeconds;
+      this.entityClass = entityClass;
+    }
+
+    public long getMillis() {
+      return TimeUnit.SECONDS.toMillis(seconds);
+    }
+
+    public int getSeconds() {
+      return (int) seconds;
+    }
+
+    public Class<? extends MetricEntity> getEntityClass() {
+      return entityClass;
+    }
+
+    /**
+     * The resolution this resolution is built from, absent for raw data.
+     */
+    public Resolution getSource() {
+      return ordinal() == 0 ? null : values()[ordinal() - 1];
+    }
+
+    long getChunkMillis() {
+      return TimeUnit.SECONDS.toMillis(chunkSeconds);
+    }
+
+    long floor(final long timestamp) {
+      return timestamp - (timestamp % getMillis());
+    }
+
+    boolean isAligned(final Date timestamp) {
+      return timestamp.getTime() % getMillis() == 0;
+    }
+  }
+
+  /**
+   * A range of a query that can be served from a rollup.
+   */
+  public static final class RollupRange {
+    private final Resolution resolution;
+    private final Date startTime;
+    private final Date endTime;
+
+    RollupRange(final Resolution resolution, final Date startTime, final Date endTime) {
+      this.resolution = resolution;
+      this.startTime = startTime;
+      this.endTime = endTime;
+    }
+
+    public Resolution getResolution() {
+      return resolution;
+    }
+
+    public Date getStartTime() {
+      return startTime;
+    }
+
+    public Date getEndTime() {
+      return endTime;
+    }
+  }
+
+  /**
+   * Find the coarsest rollup that can serve the start of a query.
+   *
+   * A rollup can be used if the period is a multiple of the rollup
+   * resolution and the start time is aligned with it, so that every rollup
+   * bucket falls entirely within one period.
+   *
+   * @return The range to read from the rollup, or null if raw data must be used
+   */
+  public static RollupRange planRollupRange(final Date startTime, final Date endTime, final Integer period) {
+    if (!CloudWatchConfigProperties.METRIC_DATA_USE_ROLLUPS || period == null) return null;
+    final Map<Resolution, MetricRollupStatus> statuses = getStatuses();
+    for (final Resolution resolution : Lists.reverse(ImmutableList.copyOf(Resolution.values()))) {
+      final MetricRollupStatus status = statuses.get(resolution);
+      if (status == null ||
+          period % resolution.getSeconds() != 0 ||
+          !resolution.isAligned(startTime) ||
+          startTime.before(status.getRolledUpFrom())) {
+        continue;
+      }
+      long rolledUpUntil = status.getRolledUpUntil().getTime();
+      if (status.getDirtyFrom() != null) {
+        rolledUpUntil = Math.min(rolledUpUntil, status.getDirtyFrom().getTime());
+      }
+      final long rollupEnd = resolution.floor(Math.min(endTime.getTime(), rolledUpUntil));
+      if (rollupEnd > startTime.getTime()) {
+        return new RollupRange(resolution, startTime, new Date(rollupEnd));
+      }
+    }
+    return null;
+  }
+
+  public static Collection<Class> getAllClassesForEntitiesGet() {
+    final List<Class> classes = Lists.newArrayList();
+    for (final Resolution resolution : Resolution.values()) {
+      classes.add(resolution.getEntityClass());
+    }
+    return classes;
+  }
+
+  /**
+   * Mark rollups dirty for metric data that was written late.
+   *
+   * Data newer than the rollup delay cannot be in a rolled up bucket so
+   * is ignored. Each late series is recorded as dirty for the resolutions
+   * that are rolled up past its data. The status update only ever moves the
+   * dirty time earlier and is made after recording the series, in the same
+   * transaction.
+   *
+   * @param written The metric data written
+   */
+  static void markDirty(final Iterable<? extends MetricEntity> written) {
+    final long rollupLimit = Resolution.FiveMinutes.floor(
+        System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.METRIC_ROLLUP_DELAY_MINUTES));
+    final Collection<MetricEntity> lateSeries = lateSeries(written, rollupLimit);
+    if (lateSeries.isEmpty()) return;
+    Date oldest = null;
+    for (final MetricEntity metricEntity : lateSeries) {
+      if (oldest == null || metricEntity.getTimestamp().before(oldest)) {
+        oldest = metricEntity.getTimestamp();
+      }
+    }
+    final Timestamp dirtyFrom = new Timestamp(oldest.getTime());
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupStatus.class)) {
+      Entities.doWork(MetricRollupStatus.class, new Work() {
+        @Override
+        public void execute(final Connection connection) throws SQLException {
+          try (final PreparedStatement statement = connection.prepareStatement(
+              "INSERT INTO metric_rollup_dirty_series " +
+                  "(id, resolution, account_id, namespace, metric_name, metric_type, dimension_hash, dirty_from) " +
+                  "SELECT ? || resolution, resolution, ?, ?, ?, ?, ?, ? FROM metric_rollup_status " +
+                  "WHERE rolled_up_until > ?")) {
+            for (final MetricEntity metricEntity : lateSeries) {
+              final Timestamp seriesDirtyFrom = new Timestamp(metricEntity.getTimestamp().getTime());
+              statement.setString(1, UUID.randomUUID().toString().replace("-", ""));
+              statement.setString(2, metricEntity.getAccountId());
+              statement.setString(3, metricEntity.getNamespace());
+              statement.setString(4, metricEntity.getMetricName());
+              statement.setString(5, metricEntity.getMetricType().name());
+              statement.setString(6, metricEntity.getDimensionHash());
+              statement.setTimestamp(7, seriesDirtyFrom);
+              statement.setTimestamp(8, seriesDirtyFrom);
+              statement.addBatch();
+            }
+            statement.executeBatch();
+          }
+          try (final PreparedStatement statement = connection.prepareStatement(
+              "UPDATE metric_rollup_status SET dirty_from = ? " +
+                  "WHERE rolled_up_until > ? AND (dirty_from IS NULL OR dirty_from > ?)")) {
+            statement.setTimestamp(1, dirtyFrom);
+            statement.setTimestamp(2, dirtyFrom);
+            statement.setTimestamp(3, dirtyFrom);
+            statement.executeUpdate();
+          }
+        }
+      });
+      db.commit();
+    } catch (Exception ex) {
+      LOG.error("Error marking metric rollups dirty from " + oldest, ex);
+    }
+    statusCacheTimestamp = 0L;
+  }
+
+  /**
+   * Find the series with data older than the rollup limit.
+   *
+   * @return The oldest written data for each late series
+   */
+  static Collection<MetricEntity> lateSeries(final Iterable<? extends MetricEntity> written, final long rollupLimit) {
+    final Map<String, MetricEntity> lateSeries = Maps.newHashMap();
+    for (final MetricEntity metricEntity : written) {
+      if (metricEntity.getTimestamp().getTime() >= rollupLimit) continue;
+      final String seriesKey = MetricSeriesActivity.seriesKey(
+          metricEntity.getAccountId(),
+          metricEntity.getNamespace(),
+          metricEntity.getMetricName(),
+          metricEntity.getMetricType(),
+          metricEntity.getDimensionHash());
+      final MetricEntity oldest = lateSeries.get(seriesKey);
+      if (oldest == null || metricEntity.getTimestamp().before(oldest.getTimestamp())) {
+        lateSeries.put(seriesKey, metricEntity);
+      }
+    }
+    return lateSeries.values();
+  }
+
+  /**
+   * Build rollups for completed buckets at each resolution.
+   */
+  public static void rollup(final Date now) {
+    for (final Resolution resolution : Resolution.values()) {
+      try {
+        rollup(resolution, now);
+      } catch (Exception ex) {
+        LOG.error("Error building " + resolution + " metric rollups", ex);
+      }
+    }
+    statusCacheTimestamp = 0L;
+  }
+
+  private static void rollup(final Resolution resolution, final Date now) {
+    // load dirty series first, a series written later has its source marked dirty
+    final List<MetricRollupDirtySeries> dirtySeries = loadDirtySeries(resolution);
+    final Map<Resolution, MetricRollupStatus> statuses = loadStatuses();
+    final MetricRollupStatus status = statuses.get(resolution);
+    final Resolution source = resolution.getSource();
+    final MetricRollupStatus sourceStatus = source == null ? null : statuses.get(source);
+    if (source != null && sourceStatus == null) return;
+    final long until = rollupUntil(
+        resolution,
+        now.getTime(),
+        TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.METRIC_ROLLUP_DELAY_MINUTES),
+        sourceStatus);
+    final Collection<Class> sourceClasses = source == null ?
+        MetricEntityFactory.getAllClassesForEntitiesGet() :
+        Collections.<Class>singleton(source.getEntityClass());
+
+    final long rolledUpFrom;
+    long from;
+    if (status == null) {
+      if (sourceStatus == null) {
+        // all raw data is available so a partial first bucket is complete
+        final Date oldest = oldestTimestamp(sourceClasses);
+        rolledUpFrom = resolution.floor(oldest == null ? until : Math.min(oldest.getTime(), until));
+      } else {
+        // start from the first bucket that is completely covered by the source
+        rolledUpFrom = Math.min(until, resolution.floor(sourceStatus.getRolledUpFrom().getTime() + resolution.getMillis() - 1));
+      }
+      from = rolledUpFrom;
+      updateStatus(resolution, rolledUpFrom, from);
+    } else {
+      rolledUpFrom = status.getRolledUpFrom().getTime();
+      final Long lastCatchUpTime = lastCatchUp.get(resolution);
+      final boolean catchUp = lastCatchUpTime == null ||
+          now.getTime() - lastCatchUpTime >= TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.METRIC_ROLLUP_CATCHUP_MINUTES);
+      from = rollupFrom(
+          resolution,
+          status,
+          catchUp ? TimeUnit.MINUTES.toMillis(CloudWatchConfigProperties.METRIC_ROLLUP_LOOKBACK_MINUTES) : 0L);
+      if (catchUp) {
+        lastCatchUp.put(resolution, now.getTime());
+      }
+    }
+
+    int chunks = 0;
+    while (from < until && chunks++ < CloudWatchConfigProperties.METRIC_ROLLUP_MAX_CHUNKS_PER_RUN) {
+      final long to = Math.min(from + resolution.getChunkMillis(), until);
+      rollupChunk(resolution, sourceClasses, new Date(from), new Date(to));
+      updateStatus(resolution, rolledUpFrom, to);
+      from = to;
+    }
+
+    // rebuild series with late data once the source is rebuilt
+    if (status != null && !dirtySeries.isEmpty() && (sourceStatus == null || sourceStatus.getDirtyFrom() == null)) {
+      for (final MetricRollupDirtySeries series : mergeDirtySeries(dirtySeries)) {
+        final long seriesFrom = Math.max(rolledUpFrom, resolution.floor(series.getDirtyFrom().getTime()));
+        final long seriesTo = status.getRolledUpUntil().getTime();
+        if (seriesFrom < seriesTo) {
+          rollupSeries(resolution, series, new Date(seriesFrom), new Date(seriesTo));
+        }
+      }
+      clearDirty(resolution, dirtySeries);
+    }
+  }
+
+  /**
+   * Get the end of the buckets that can be rolled up.
+   *
+   * Buckets are rolled up once the rollup delay has passed since the end of
+   * the bucket and, for rollups built from another rollup, when the source
+   * covers the whole bucket and is not dirty.
+   */
+  static long rollupUntil(final Resolution resolution,
+                          final long now,
+                          final long delayMillis,
+                          final MetricRollupStatus sourceStatus) {
+    long until = resolution.floor(now - delayMillis);
+    if (sourceStatus != null) {
+      until = Math.min(until, resolution.floor(sourceStatus.getRolledUpUntil().getTime()));
+      if (sourceStatus.getDirtyFrom() != null) {
+        // wait for the source to be rebuilt
+        until = Math.min(until, resolution.floor(sourceStatus.getDirtyFrom().getTime()));
+      }
+    }
+    return until;
+  }
+
+  /**
+   * Get the start of the buckets to roll up.
+   *
+   * @param lookbackMillis The period to rebuild for all series, zero to only roll up new buckets
+   */
+  static long rollupFrom(final Resolution resolution,
+                         final MetricRollupStatus status,
+                         final long lookbackMillis) {
+    final long rolledUpFrom = status.getRolledUpFrom().getTime();
+    final long rolledUpUntil = status.getRolledUpUntil().getTime();
+    if (lookbackMillis <= 0) {
+      return Math.max(rolledUpFrom, rolledUpUntil);
+    }
+    final long lookback = Math.max(resolution.getMillis(), lookbackMillis);
+    return Math.max(rolledUpFrom, resolution.floor(rolledUpUntil - lookback));
+  }
+
+  /**
+   * Merge dirty series rows, using the earliest dirty time for each series.
+   */
+  static Collection<MetricRollupDirtySeries> mergeDirtySeries(final Iterable<MetricRollupDirtySeries> dirtySeries) {
+    final Map<String, MetricRollupDirtySeries> merged = Maps.newLinkedHashMap();
+    for (final MetricRollupDirtySeries series : dirtySeries) {
+      final MetricRollupDirtySeries existing = merged.get(series.getSeriesKey());
+      if (existing == null || series.getDirtyFrom().before(existing.getDirtyFrom())) {
+        merged.put(series.getSeriesKey(), series);
+      }
+    }
+    return merged.values();
+  }
+
+  private static void rollupChunk(
+      final Resolution resolution,
+      final Collection<Class> sourceClasses,
+      final Date from,
+      final Date to) {
+    final RollupAggregator aggregator = new RollupAggregator(resolution, from);
+    for (final Class c : sourceClasses) {
+      try (final TransactionResource db = Entities.transactionFor(c)) {
+        Criteria criteria = Entities.createCriteria(c);
+        criteria = criteria.add(Restrictions.lt("timestamp", to));
+        criteria = criteria.add(Restrictions.ge("timestamp", from));
+        aggregate(criteria, aggregator);
+      }
+    }
+    final Class rollupClass = resolution.getEntityClass();
+    try (final TransactionResource db = Entities.transactionFor(rollupClass)) {
+      final Map<String, Date> criteria = Maps.newHashMap();
+      criteria.put("from", from);
+      criteria.put("to", to);
+      Entities.deleteAllMatching(rollupClass, "WHERE timestamp >= :from AND timestamp < :to", criteria);
+      MetricManager.insertMetrics(rollupClass, aggregator.getRollups());
+      db.commit();
+    }
+  }
+
+  /**
+   * Rebuild the rollups for a single series.
+   */
+  private static void rollupSeries(
+      final Resolution resolution,
+      final MetricRollupDirtySeries series,
+      final Date from,
+      final Date to) {
+    final Resolution source = resolution.getSource();
+    final Class sourceClass = source == null ?
+        MetricEntityFactory.getClassForEntitiesGet(series.getMetricType(), series.getDimensionHash()) :
+        source.getEntityClass();
+    final RollupAggregator aggregator = new RollupAggregator(resolution, from);
+    try (final TransactionResource db = Entities.transactionFor(sourceClass)) {
+      Criteria criteria = Entities.createCriteria(sourceClass);
+      criteria = criteria.add(Restrictions.eq("accountId", series.getAccountId()));
+      criteria = criteria.add(Restrictions.eq("namespace", series.getNamespace()));
+      criteria = criteria.add(Restrictions.eq("metricName", series.getMetricName()));
+      criteria = criteria.add(Restrictions.eq("metricType", series.getMetricType()));
+      criteria = criteria.add(Restrictions.eq("dimensionHash", series.getDimensionHash()));
+      criteria = criteria.add(Restrictions.lt("timestamp", to));
+      criteria = criteria.add(Restrictions.ge("timestamp", from));
+      aggregate(criteria, aggregator);
+    }
+    final Class rollupClass = resolution.getEntityClass();
+    try (final TransactionResource db = Entities.transactionFor(rollupClass)) {
+      final Map<String, Object> criteria = Maps.newHashMap();
+      criteria.put("accountId", series.getAccountId());
+      criteria.put("namespace", series.getNamespace());
+      criteria.put("metricName", series.getMetricName());
+      criteria.put("metricType", series.getMetricType());
+      criteria.put("dimensionHash", series.getDimensionHash());
+      criteria.put("from", from);
+      criteria.put("to", to);
+      Entities.deleteAllMatching(rollupClass,
+          "WHERE accountId = :accountId AND namespace = :namespace AND metricName = :metricName " +
+              "AND metricType = :metricType AND dimensionHash = :dimensionHash " +
+              "AND timestamp >= :from AND timestamp < :to",
+          criteria);
+      MetricManager.insertMetrics(rollupClass, aggregator.getRollups());
+      db.commit();
+    }
+  }
+
+  private static void aggregate(final Criteria criteria, final RollupAggregator aggregator) {
+    ProjectionList projectionList = Projections.projectionList();
+    projectionList.add(Projections.max("sampleMax"));
+    projectionList.add(Projections.min("sampleMin"));
+    projectionList.add(Projections.sum("sampleSize"));
+    projectionList.add(Projections.sum("sampleSum"));
+    projectionList.add(Projections.groupProperty("units"));
+    projectionList.add(Projections.groupProperty("timestamp"));
+    projectionList.add(Projections.groupProperty("accountId"));
+    projectionList.add(Projections.groupProperty("metricName"));
+    projectionList.add(Projections.groupProperty("metricType"));
+    projectionList.add(Projections.groupProperty("namespace"));
+    projectionList.add(Projections.groupProperty("dimensionHash"));
+    criteria.setProjection(projectionList);
+    ScrollableResults results = criteria.setCacheMode(CacheMode.IGNORE).scroll(ScrollMode.FORWARD_ONLY);
+    while (results.next()) {
+      aggregator.add(MetricManager.getMetricEntity(results));
+    }
+  }
+
+  /**
+   * Aggregates source data into rollup buckets.
+   */
+  static final class RollupAggregator {
+    private final Resolution resolution;
+    private final Date from;
+    private final Map<GetMetricStatisticsAggregationKey, MetricEntity> rollups = Maps.newHashMap();
+
+    /**
+     * @param from The start of the range to aggregate, aligned with the resolution
+     */
+    RollupAggregator(final Resolution resolution, final Date from) {
+      this.resolution = resolution;
+      this.from = from;
+    }
+
+    void add(final MetricEntity me) {
+      final GetMetricStatisticsAggregationKey key =
+          new GetMetricStatisticsAggregationKey(me, from, resolution.getSeconds(), me.getDimensionHash());
+      final MetricEntity totalSoFar = rollups.get(key);
+      if (totalSoFar == null) {
+        final MetricEntity rollup = newRollupEntity(resolution);
+        rollup.setAccountId(me.getAccountId());
+        rollup.setNamespace(me.getNamespace());
+        rollup.setMetricName(me.getMetricName());
+        rollup.setMetricType(me.getMetricType());
+        rollup.setDimensionHash(me.getDimensionHash());
+        rollup.setUnits(me.getUnits());
+        rollup.setTimestamp(MetricUtils.getPeriodStart(me.getTimestamp(), from, resolution.getSeconds()));
+        rollup.setSampleMax(me.getSampleMax());
+        rollup.setSampleMin(me.getSampleMin());
+        rollup.setSampleSize(me.getSampleSize());
+        rollup.setSampleSum(me.getSampleSum());
+        rollups.put(key, rollup);
+      } else {
+        totalSoFar.setSampleMax(Math.max(me.getSampleMax(), totalSoFar.getSampleMax()));
+        totalSoFar.setSampleMin(Math.min(me.getSampleMin(), totalSoFar.getSampleMin()));
+        totalSoFar.setSampleSize(totalSoFar.getSampleSize() + me.getSampleSize());
+        totalSoFar.setSampleSum(totalSoFar.getSampleSum() + me.getSampleSum());
+      }
+    }
+
+    Collection<MetricEntity> getRollups() {
+      return rollups.values();
+    }
+  }
+
+  private static MetricEntity newRollupEntity(final Resolution resolution) {
+    try {
+      return resolution.getEntityClass().newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Date oldestTimestamp(final Collection<Class> classes) {
+    Date oldest = null;
+    for (final Class c : classes) {
+      try (final TransactionResource db = Entities.transactionFor(c)) {
+        final Date classOldest = (Date) Entities.createCriteria(c)
+            .setProjection(Projections.min("timestamp"))
+            .uniqueResult();
+        if (classOldest != null && (oldest == null || classOldest.before(oldest))) {
+          oldest = classOldest;
+        }
+      }
+    }
+    return oldest;
+  }
+
+  private static Map<Resolution, MetricRollupStatus> getStatuses() {
+    if (System.currentTimeMillis() - statusCacheTimestamp > STATUS_CACHE_MILLIS) {
+      try {
+        statusCache = loadStatuses();
+        statusCacheTimestamp = System.currentTimeMillis();
+      } catch (Exception ex) {
+        LOG.debug("Error loading metric rollup status", ex);
+        return Collections.emptyMap();
+      }
+    }
+    return statusCache;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<MetricRollupDirtySeries> loadDirtySeries(final Resolution resolution) {
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupDirtySeries.class)) {
+      return (List<MetricRollupDirtySeries>) Entities.createCriteria(MetricRollupDirtySeries.class)
+          .add(Restrictions.eq("resolution", resolution.name()))
+          .list();
+    }
+  }
+
+  /**
+   * Delete rebuilt dirty series and update the dirty time for any remaining.
+   *
+   * The status is locked before checking for remaining dirty series, so a
+   * series recorded concurrently is either found or updates the dirty time
+   * after this update.
+   */
+  private static void clearDirty(final Resolution resolution, final Collection<MetricRollupDirtySeries> rebuilt) {
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupStatus.class)) {
+      final MetricRollupStatus status =
+          (MetricRollupStatus) Entities.createCriteria(MetricRollupStatus.class)
+              .add(Restrictions.eq("resolution", resolution.name()))
+              .setLockMode(LockMode.PESSIMISTIC_WRITE)
+              .uniqueResult();
+      final List<String> ids = Lists.newArrayList();
+      for (final MetricRollupDirtySeries series : rebuilt) {
+        ids.add(series.getId());
+      }
+      for (final List<String> idBatch : Iterables.partition(ids, 500)) {
+        Entities.deleteAllMatching(MetricRollupDirtySeries.class, "WHERE id IN (:ids)",
+            Collections.singletonMap("ids", idBatch));
+      }
+      if (status != null) {
+        final Date remainingDirtyFrom = (Date) Entities.createCriteria(MetricRollupDirtySeries.class)
+            .add(Restrictions.eq("resolution", resolution.name()))
+            .setProjection(Projections.min("dirtyFrom"))
+            .uniqueResult();
+        status.setDirtyFrom(remainingDirtyFrom);
+      }
+      db.commit();
+    }
+  }
+
+  private static Map<Resolution, MetricRollupStatus> loadStatuses() {
+    final Map<Resolution, MetricRollupStatus> statuses = new EnumMap<>(Resolution.class);
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupStatus.class)) {
+      for (final Object result : Entities.createCriteria(MetricRollupStatus.class).list()) {
+        final MetricRollupStatus status = (MetricRollupStatus) result;
+        try {
+          statuses.put(Resolution.valueOf(status.getResolution()), status);
+        } catch (IllegalArgumentException e) {
+          LOG.debug("Ignoring unknown metric rollup resolution " + status.getResolution());
+        }
+      }
+    }
+    return statuses;
+  }
+
+  /**
+   * Update the rolled up range for a resolution.
+   *
+   * The dirty time is not changed, it is cleared once dirty series are rebuilt.
+   */
+  private static void updateStatus(final Resolution resolution,
+                                   final long rolledUpFrom,
+                                   final long rolledUpUntil) {
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupStatus.class)) {
+      final MetricRollupStatus status =
+          (MetricRollupStatus) Entities.createCriteria(MetricRollupStatus.class)
+              .add(Restrictions.eq("resolution", resolution.name()))
+              .uniqueResult();
+      if (status == null) {
+        Entities.persist(new MetricRollupStatus(resolution.name(), new Date(rolledUpFrom), new Date(rolledUpUntil)));
+      } else {
+        status.setRolledUpFrom(new Date(rolledUpFrom));
+        status.setRolledUpUntil(new Date(Math.max(rolledUpUntil, status.getRolledUpUntil().getTime())));
+      }
+      db.commit();
+    }
+  }
+
+  /**
+   * Delete rollup status so that rollups are rebuilt from the remaining data.
+   */
+  static void deleteAllStatus() {
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupStatus.class)) {
+      Entities.deleteAll(MetricRollupStatus.class);
+      Entities.deleteAll(MetricRollupDirtySeries.class);
+      db.commit();
+    }
+    statusCacheTimestamp = 0L;
+  }
+
+  /**
+   * Move the start of the rolled up range after deleting old data.
+   */
+  static void deleteBefore(final Date before) {
+    try (final TransactionResource db = Entities.transactionFor(MetricRollupStatus.class)) {
+      for (final Object result : Entities.createCriteria(MetricRollupStatus.class).list()) {
+        final MetricRollupStatus status = (MetricRollupStatus) result;
+        if (status.getRolledUpFrom().before(before)) {
+          status.setRolledUpFrom(before);
+          if (status.getRolledUpUntil().before(before)) {
+            status.setRolledUpUntil(before);
+          }
+        }
+      }
+      db.commit();
+    }
+    statusCacheTimestamp = 0L;
+  }
+
+  @Entity
+  @PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+  @RemotablePersistence
+  @Table(name = "metric_rollup_5m", indexes = {
+      @Index( name = "metric_rollup_5m_timestamp_idx", columnList = "timestamp" ),
+      @Index( name = "metric_rollup_5m_series_idx", columnList = "account_id, namespace, metric_name, dimension_hash, timestamp" )
+  } )
+  public static class FiveMinuteMetricRollupEntity extends MetricEntity {
+    public FiveMinuteMetricRollupEntity() {
+      super();
+    }
+  }
+
+  @Entity
+  @PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+  @RemotablePersistence
+  @Table(name = "metric_rollup_1h", indexes = {
+      @Index( name = "metric_rollup_1h_timestamp_idx", columnList = "timestamp" ),
+      @Index( name = "metric_rollup_1h_series_idx", columnList = "account_id, namespace, metric_name, dimension_hash, timestamp" )
+  } )
+  public static class OneHourMetricRollupEntity extends MetricEntity {
+    public OneHourMetricRollupEntity() {
+      super();
+    }
+  }
+
+  @Entity
+  @PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+  @RemotablePersistence
+  @Table(name = "metric_rollup_1d", indexes = {
+      @Index( name = "metric_rollup_1d_timestamp_idx", columnList = "timestamp" ),
+      @Index( name = "metric_rollup_1d_series_idx", columnList = "account_id, namespace, metric_name, dimension_hash, timestamp" )
+  } )
+  public static class OneDayMetricRollupEntity extends MetricEntity {
+    public OneDayMetricRollupEntity() {
+      super();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Table;
+
+import com.eucalyptus.component.annotation.RemotablePersistence;
+
+/**
+ * Range of metric data covered by the rollups for a resolution.
+ */
+@Entity
+@PersistenceContext(name = "eucalyptus_cloudwatch_backend")
+@RemotablePersistence
+@Table(name = "metric_rollup_status")
+public class MetricRollupStatus {
+
+  @Id
+  @Column(name = "resolution")
+  private String resolution;
+  @Column(name = "rolled_up_from", nullable = false)
+  private Date rolledUpFrom;
+  @Column(name = "rolled_up_until", nullable = false)
+  private Date rolledUpUntil;
+  @Column(name = "dirty_from")
+  private Date dirtyFrom;
+
+  public MetricRollupStatus() {
+  }
+
+  public MetricRollupStatus(final String resolution, final Date rolledUpFrom, final Date rolledUpUntil) {
+    this.resolution = resolution;
+    this.rolledUpFrom = rolledUpFrom;
+    this.rolledUpUntil = rolledUpUntil;
+  }
+
+  public String getResolution() {
+    return resolution;
+  }
+
+  public void setResolution(String resolution) {
+    this.resolution = resolution;
+  }
+
+  public Date getRolledUpFrom() {
+    return rolledUpFrom;
+  }
+
+  public void setRolledUpFrom(Date rolledUpFrom) {
+    this.rolledUpFrom = rolledUpFrom;
+  }
+
+  public Date getRolledUpUntil() {
+    return rolledUpUntil;
+  }
+
+  public void setRolledUpUntil(Date rolledUpUntil) {
+    this.rolledUpUntil = rolledUpUntil;
+  }
+
+  /**
+   * Earliest time of metric data written after its bucket was rolled up.
+   */
+  public Date getDirtyFrom() {
+    return dirtyFrom;
+  }
+
+  public void setDirtyFrom(Date dirtyFrom) {
+    this.dirtyFrom = dirtyFrom;
+  }
+
+  @Override
+  public String toString() {
+    return "MetricRollupStatus [resolution=" + resolution
+        + ", rolledUpFrom=" + rolledUpFrom
+        + ", rolledUpUntil=" + rolledUpUntil
+        + ", dirtyFrom=" + dirtyFrom + "]";
+  }
+}
@@ -0,0 +1,78 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.google.common.collect.Sets;
+
+/**
+ * Records the metric series that received data.
+ *
+ * Activity is only visible within the JVM that stored the metric data,
+ * consumers must not rely on activity for series written elsewhere.
+ *
+ * Keys are removed individually when drained so activity recorded while
+ * draining is returned by this or the next drain.
+ */
+public class MetricSeriesActivity {
+
+  private static final Set<String> activeSeries =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  public static String seriesKey(
+      final String accountId,
+      final String namespace,
+      final String metricName,
+      final MetricType metricType,
+      final String dimensionHash
+  ) {
+    return accountId + "|" + namespace + "|" + metricName + "|" + metricType + "|" + dimensionHash;
+  }
+
+  static void record(final MetricEntity metricEntity) {
+    record(seriesKey(
+        metricEntity.getAccountId(),
+        metricEntity.getNamespace(),
+        metricEntity.getMetricName(),
+        metricEntity.getMetricType(),
+        metricEntity.getDimensionHash()));
+  }
+
+  static void record(final String seriesKey) {
+    activeSeries.add(seriesKey);
+  }
+
+  /**
+   * Get the keys for series that received data since the last drain.
+   */
+  public static Set<String> drain() {
+    final Set<String> drained = Sets.newHashSet();
+    for (final String seriesKey : activeSeries) {
+      if (activeSeries.remove(seriesKey)) {
+        drained.add(seriesKey);
+      }
+    }
+    return drained;
+  }
+}
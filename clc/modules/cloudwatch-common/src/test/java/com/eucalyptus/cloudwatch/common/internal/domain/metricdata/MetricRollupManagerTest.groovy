@@ -0,0 +1,152 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntityFactory.MetricEntitySingle
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricRollupManager.Resolution
+import org.junit.Test
+
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for metric rollup bucket boundaries and late data handling.
+ */
+class MetricRollupManagerTest {
+
+  private static final long HOUR = TimeUnit.HOURS.toMillis( 1 )
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis( 1 )
+  private static final long START = 1_000L * HOUR
+
+  @Test
+  void testAggregateBucketBoundaries( ) {
+    final MetricRollupManager.RollupAggregator aggregator =
+        new MetricRollupManager.RollupAggregator( Resolution.FiveMinutes, new Date( START ) )
+    aggregator.add( metric( 'series-1', START, 1 ) )
+    aggregator.add( metric( 'series-1', START + 5 * MINUTE - 1, 3 ) )
+    aggregator.add( metric( 'series-1', START + 5 * MINUTE, 7 ) )
+    aggregator.add( metric( 'series-2', START + MINUTE, 5 ) )
+
+    final Map<String,MetricEntity> rollups = aggregator.getRollups( ).collectEntries { MetricEntity rollup ->
+      [ "${rollup.dimensionHash}@${rollup.timestamp.time - START}" as String, rollup ]
+    }
+    assertEquals( 'Buckets', [ 'series-1@0', "series-1@${5 * MINUTE}" as String, 'series-2@0' ] as Set, rollups.keySet( ) )
+
+    final MetricEntity first = rollups[ 'series-1@0' ]
+    assertTrue( 'Rollup entity', first instanceof MetricRollupManager.FiveMinuteMetricRollupEntity )
+    assertEquals( 'Sample count', 2d, first.sampleSize, 0d )
+    assertEquals( 'Sum', 4d, first.sampleSum, 0d )
+    assertEquals( 'Min', 1d, first.sampleMin, 0d )
+    assertEquals( 'Max', 3d, first.sampleMax, 0d )
+    assertEquals( 'Next bucket sum', 7d, rollups[ "series-1@${5 * MINUTE}" as String ].sampleSum, 0d )
+  }
+
+  @Test
+  void testRollupUntil( ) {
+    final long delay = 2 * MINUTE
+    assertEquals( 'Delay not passed', START - 5 * MINUTE,
+        MetricRollupManager.rollupUntil( Resolution.FiveMinutes, START + delay - 1, delay, null ) )
+    assertEquals( 'Delay passed', START,
+        MetricRollupManager.rollupUntil( Resolution.FiveMinutes, START + delay, delay, null ) )
+
+    final MetricRollupStatus source = new MetricRollupStatus( 'FiveMinutes', new Date( START - 24 * HOUR ), new Date( START + 55 * MINUTE ) )
+    assertEquals( 'Source covers partial bucket', START,
+        MetricRollupManager.rollupUntil( Resolution.OneHour, START + 3 * HOUR, delay, source ) )
+    source.setDirtyFrom( new Date( START - 90 * MINUTE ) )
+    assertEquals( 'Source dirty', START - 2 * HOUR,
+        MetricRollupManager.rollupUntil( Resolution.OneHour, START + 3 * HOUR, delay, source ) )
+  }
+
+  @Test
+  void testRollupFrom( ) {
+    final MetricRollupStatus status = new MetricRollupStatus( 'FiveMinutes', new Date( START - 30 * MINUTE ), new Date( START ) )
+    assertEquals( 'New buckets only', START,
+        MetricRollupManager.rollupFrom( Resolution.FiveMinutes, status, 0L ) )
+    assertEquals( 'Catch up clamped to rolled up range', START - 30 * MINUTE,
+        MetricRollupManager.rollupFrom( Resolution.FiveMinutes, status, HOUR ) )
+    assertEquals( 'Catch up', START - 20 * MINUTE,
+        MetricRollupManager.rollupFrom( Resolution.FiveMinutes, status, 20 * MINUTE ) )
+    assertEquals( 'Catch up at least one bucket', START - HOUR,
+        MetricRollupManager.rollupFrom( Resolution.OneHour,
+            new MetricRollupStatus( 'OneHour', new Date( START - 24 * HOUR ), new Date( START ) ), 20 * MINUTE ) )
+  }
+
+  @Test
+  void testLateSeries( ) {
+    final long rollupLimit = START
+    final Collection<MetricEntity> late = MetricRollupManager.lateSeries( [
+        metric( 'series-1', START - 10 * MINUTE, 1 ),
+        metric( 'series-1', START - 20 * MINUTE, 1 ),
+        metric( 'series-1', START - 15 * MINUTE, 1 ),
+        metric( 'series-2', START, 1 ),
+        metric( 'series-3', START - 1, 1 ),
+    ], rollupLimit )
+    final Map<String,Long> oldest = late.collectEntries { MetricEntity metric ->
+      [ metric.dimensionHash, metric.timestamp.time ]
+    }
+    assertEquals( 'Late series', [
+        'series-1': START - 20 * MINUTE,
+        'series-3': START - 1,
+    ], oldest )
+    assertTrue( 'Current data', MetricRollupManager.lateSeries( [ metric( 'series-1', START, 1 ) ], rollupLimit ).isEmpty( ) )
+  }
+
+  @Test
+  void testMergeDirtySeries( ) {
+    final Collection<MetricRollupDirtySeries> merged = MetricRollupManager.mergeDirtySeries( [
+        dirty( 'id-1', 'series-1', START - 10 * MINUTE ),
+        dirty( 'id-2', 'series-1', START - 30 * MINUTE ),
+        dirty( 'id-3', 'series-2', START - 5 * MINUTE ),
+        dirty( 'id-4', 'series-1', START - 20 * MINUTE ),
+    ] )
+    assertEquals( 'Merged', [ 'id-2', 'id-3' ], merged.collect { it.id } )
+  }
+
+  private static MetricEntity metric( final String dimensionHash, final long timestamp, final double value ) {
+    final MetricEntity metric = new MetricEntitySingle( )
+    metric.accountId = '000000000001'
+    metric.namespace = 'Test'
+    metric.metricName = 'Metric'
+    metric.metricType = MetricType.Custom
+    metric.dimensionHash = dimensionHash
+    metric.units = Units.Count
+    metric.timestamp = new Date( timestamp )
+    metric.sampleSize = 1d
+    metric.sampleSum = value
+    metric.sampleMin = value
+    metric.sampleMax = value
+    metric
+  }
+
+  private static MetricRollupDirtySeries dirty( final String id, final String dimensionHash, final long dirtyFrom ) {
+    final MetricRollupDirtySeries series = new MetricRollupDirtySeries( )
+    series.id = id
+    series.resolution = 'FiveMinutes'
+    series.accountId = '000000000001'
+    series.namespace = 'Test'
+    series.metricName = 'Metric'
+    series.metricType = MetricType.Custom
+    series.dimensionHash = dimensionHash
+    series.dirtyFrom = new Date( dirtyFrom )
+    series
+  }
+}
@@ -0,0 +1,66 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.common.internal.domain.metricdata
+
+import org.junit.Test
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for metric series activity.
+ */
+class MetricSeriesActivityTest {
+
+  @Test
+  void testDrain( ) {
+    MetricSeriesActivity.drain( )
+    MetricSeriesActivity.record( 'series-1' )
+    MetricSeriesActivity.record( 'series-2' )
+    MetricSeriesActivity.record( 'series-1' )
+    assertEquals( 'Drained', [ 'series-1', 'series-2' ] as Set, MetricSeriesActivity.drain( ) )
+    assertEquals( 'Drained again', [ ] as Set, MetricSeriesActivity.drain( ) )
+  }
+
+  @Test
+  void testConcurrentRecordAndDrain( ) {
+    MetricSeriesActivity.drain( )
+    final int threads = 4
+    final int keysPerThread = 20_000
+    final CountDownLatch start = new CountDownLatch( 1 )
+    final List<Thread> recorders = ( 1..threads ).collect { final int thread ->
+      Thread.start {
+        start.await( 5, TimeUnit.SECONDS )
+        for ( int i = 0; i < keysPerThread; i++ ) {
+          MetricSeriesActivity.record( "series-${thread}-${i}" as String )
+        }
+      }
+    }
+    final Set<String> drained = [ ] as Set
+    start.countDown( )
+    while ( recorders.any { it.isAlive( ) } ) {
+      drained.addAll( MetricSeriesActivity.drain( ) )
+    }
+    drained.addAll( MetricSeriesActivity.drain( ) )
+    assertEquals( 'Drained series', threads * keysPerThread, drained.size( ) )
+  }
+}
@@ -112,7 +112,11 @@ public class CloudWatchService {
       final List<MetricDatum> metricData = CloudWatchServiceFieldValidator.validateMetricData(request.getMetricData(), metricType);
       LOG.trace("Namespace=" + namespace);
       LOG.trace("metricData="+metricData);
-      MetricDataQueue.getInstance().insertMetricData(ownerFullName.getAccountNumber(), namespace, metricData, metricType);
+      final boolean accepted =
+          MetricDataQueue.getInstance().insertMetricData(ownerFullName.getAccountNumber(), namespace, metricData, metricType);
+      if (!accepted) {
+        throw new ThrottlingException("Rate exceeded");
+      }
     } catch (Exception ex) {
       handleException(ex);
     }
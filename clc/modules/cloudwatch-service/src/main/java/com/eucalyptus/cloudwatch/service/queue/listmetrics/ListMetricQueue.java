@@ -103,6 +103,11 @@ public class ListMetricQueue {
         List<ListMetric> listMetrics = convertToListMetrics(dataBatch);
         long t4 = System.currentTimeMillis();
         ThruputMetrics.addDataPoint(MonitoredAction.LIST_METRIC_CONVERT, t4-t3);
+        try {
+          ListMetricManager.reloadCatalogIfRequired();
+        } catch (Throwable ex) {
+          LOG.error("Error reloading list metrics catalog", ex);
+        }
         ListMetricManager.addMetricBatch(listMetrics);
         long t5 = System.currentTimeMillis();
         ThruputMetrics.addDataPoint(MonitoredAction.LIST_METRIC_MERTIC_ADD_BATCH, t5-t4);
@@ -0,0 +1,330 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch.service.queue.metricdata;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
+import com.eucalyptus.cloudwatch.common.msgs.Dimension;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Table of pre-aggregated metric samples keyed by series and minute.
+ *
+ * Series (account, namespace, name, type, units and dimensions) are interned
+ * so that the dimension map is only built once per series. Samples for a series and minute are folded into primitive columns,
+ * so adding a sample for a known slot does not allocate.
+ *
+ * The table is not thread safe, callers must synchronize.
+ */
+public class MetricDataAggregationTable {
+
+  private static final int EMPTY = -1;
+  private static final long MINUTE_MILLIS = 60_000L;
+
+  private final Map<SeriesKey,Series> seriesByKey = Maps.newHashMap( );
+  private Series[] seriesById = new Series[ 16 ];
+
+  private int[] index;
+  private int[] slotSeries;
+  private long[] slotMinute;
+  private double[] slotMax;
+  private double[] slotMin;
+  private double[] slotSum;
+  private double[] slotSize;
+  private int size;
+
+  public MetricDataAggregationTable( ) {
+    allocate( 64 );
+  }
+
+  /**
+   * Build the (interned) series key for the given values.
+   */
+  public static SeriesKey key(
+      final String accountId,
+      final String namespace,
+      final String metricName,
+      final MetricType metricType,
+      final Units units,
+      final List<Dimension> dimensions
+  ) {
+    return new SeriesKey( accountId, namespace, metricName, metricType, units, dimensions );
+  }
+
+  /**
+   * Fold a sample into the table.
+   *
+   * @param capacity The maximum number of slots the table may hold
+   * @return false if the sample is for a new slot and the table is at capacity
+   */
+  public boolean fold(
+      final SeriesKey key,
+      final long timestamp,
+      final double sampleMax,
+      final double sampleMin,
+      final double sampleSum,
+      final double sampleSize,
+      final int capacity
+  ) {
+    final long minute = minute( timestamp );
+    Series series = seriesByKey.get( key );
+    if ( series == null ) {
+      if ( size >= capacity ) {
+        return false;
+      }
+      series = intern( key );
+    }
+    final int seriesId = series.id;
+    final int mask = index.length - 1;
+    int position = mix( seriesId, minute ) & mask;
+    int slot;
+    while ( ( slot = index[ position ] ) != EMPTY ) {
+      if ( slotSeries[ slot ] == seriesId && slotMinute[ slot ] == minute ) {
+        slotMax[ slot ] = Math.max( slotMax[ slot ], sampleMax );
+        slotMin[ slot ] = Math.min( slotMin[ slot ], sampleMin );
+        slotSum[ slot ] += sampleSum;
+        slotSize[ slot ] += sampleSize;
+        return true;
+      }
+      position = ( position + 1 ) & mask;
+    }
+    if ( size >= capacity ) {
+      return false;
+    }
+    slot = size++;
+    index[ position ] = slot;
+    slotSeries[ slot ] = seriesId;
+    slotMinute[ slot ] = minute;
+    slotMax[ slot ] = sampleMax;
+    slotMin[ slot ] = sampleMin;
+    slotSum[ slot ] = sampleSum;
+    slotSize[ slot ] = sampleSize;
+    if ( size * 2 > index.length ) {
+      grow( );
+    }
+    return true;
+  }
+
+  /**
+   * Check if the table has a slot for the given series and time.
+   */
+  public boolean contains( final SeriesKey key, final long timestamp ) {
+    final Series series = seriesByKey.get( key );
+    if ( series == null ) {
+      return false;
+    }
+    final long minute = minute( timestamp );
+    final int mask = index.length - 1;
+    int position = mix( series.id, minute ) & mask;
+    int slot;
+    while ( ( slot = index[ position ] ) != EMPTY ) {
+      if ( slotSeries[ slot ] == series.id && slotMinute[ slot ] == minute ) {
+        return true;
+      }
+      position = ( position + 1 ) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * The number of (series, minute) slots in the table.
+   */
+  public int size( ) {
+    return size;
+  }
+
+  public boolean isEmpty( ) {
+    return size == 0;
+  }
+
+  /**
+   * Remove all slots from the table returning them as metric entities.
+   *
+   * Interned series are retained unless there are more than the given limit.
+   */
+  public List<SimpleMetricEntity> drain( final int seriesLimit ) {
+    final List<SimpleMetricEntity> entities = Lists.newArrayListWithCapacity( size );
+    for ( int slot = 0; slot < size; slot++ ) {
+      final Series series = seriesById[ slotSeries[ slot ] ];
+      final SimpleMetricEntity entity = new SimpleMetricEntity( );
+      entity.setAccountId( series.key.accountId );
+      entity.setNamespace( series.key.namespace );
+      entity.setMetricName( series.key.metricName );
+      entity.setMetricType( series.key.metricType );
+      entity.setUnits( series.key.units );
+      entity.setDimensionMap( series.dimensionMap );
+      entity.setTimestamp( new Date( slotMinute[ slot ] * MINUTE_MILLIS ) );
+      entity.setSampleMax( slotMax[ slot ] );
+      entity.setSampleMin( slotMin[ slot ] );
+      entity.setSampleSum( slotSum[ slot ] );
+      entity.setSampleSize( slotSize[ slot ] );
+      entities.add( entity );
+    }
+    size = 0;
+    Arrays.fill( index, EMPTY );
+    if ( seriesByKey.size( ) > seriesLimit ) {
+      seriesByKey.clear( );
+      Arrays.fill( seriesById, null );
+    }
+    return entities;
+  }
+
+  private Series intern( final SeriesKey key ) {
+    final Series series = new Series( seriesByKey.size( ), key );
+    if ( series.id == seriesById.length ) {
+      seriesById = Arrays.copyOf( seriesById, seriesById.length * 2 );
+    }
+    seriesById[ series.id ] = series;
+    seriesByKey.put( key, series );
+    return series;
+  }
+
+  private void allocate( final int indexSize ) {
+    index = new int[ indexSize ];
+    Arrays.fill( index, EMPTY );
+    final int slots = indexSize / 2;
+    slotSeries = slotSeries == null ? new int[ slots ] : Arrays.copyOf( slotSeries, slots );
+    slotMinute = slotMinute == null ? new long[ slots ] : Arrays.copyOf( slotMinute, slots );
+    slotMax = slotMax == null ? new double[ slots ] : Arrays.copyOf( slotMax, slots );
+    slotMin = slotMin == null ? new double[ slots ] : Arrays.copyOf( slotMin, slots );
+    slotSum = slotSum == null ? new double[ slots ] : Arrays.copyOf( slotSum, slots );
+    slotSize = slotSize == null ? new double[ slots ] : Arrays.copyOf( slotSize, slots );
+  }
+
+  private void grow( ) {
+    allocate( index.length * 2 );
+    final int mask = index.length - 1;
+    for ( int slot = 0; slot < size; slot++ ) {
+      int position = mix( slotSeries[ slot ], slotMinute[ slot ] ) & mask;
+      while ( index[ position ] != EMPTY ) {
+        position = ( position + 1 ) & mask;
+      }
+      index[ position ] = slot;
+    }
+  }
+
+  static long minute( final long timestamp ) {
+    return timestamp / MINUTE_MILLIS;
+  }
+
+  private static int mix( final int seriesId, final long minute ) {
+    final int hash = 31 * seriesId + (int) ( minute ^ ( minute >>> 32 ) );
+    return hash ^ ( hash >>> 16 );
+  }
+
+  /**
+   * Identity of a metric series, dimensions are held in name order.
+   */
+  public static final class SeriesKey {
+    private static final Comparator<Dimension> DIMENSION_ORDER = new Comparator<Dimension>( ) {
+      @Override
+      public int compare( final Dimension d1, final Dimension d2 ) {
+        return d1.getName( ).compareTo( d2.getName( ) );
+      }
+    };
+    private static final Dimension[] NO_DIMENSIONS = new Dimension[ 0 ];
+
+    private final String accountId;
+    private final String namespace;
+    private final String metricName;
+    private final MetricType metricType;
+    private final Units units;
+    private final Dimension[] dimensions;
+    private final int hash;
+
+    private SeriesKey(
+        final String accountId,
+        final String namespace,
+        final String metricName,
+        final MetricType metricType,
+        final Units units,
+        final List<Dimension> dimensions
+    ) {
+      this.accountId = accountId;
+      this.namespace = namespace;
+      this.metricName = metricName;
+      this.metricType = metricType;
+      this.units = units;
+      if ( dimensions == null || dimensions.isEmpty( ) ) {
+        this.dimensions = NO_DIMENSIONS;
+      } else {
+        this.dimensions = dimensions.toArray( new Dimension[ dimensions.size( ) ] );
+        Arrays.sort( this.dimensions, DIMENSION_ORDER );
+      }
+      int result = Objects.hashCode( accountId, namespace, metricName, metricType, units );
+      for ( final Dimension dimension : this.dimensions ) {
+        result = 31 * result + dimension.getName( ).hashCode( );
+        result = 31 * result + Objects.hashCode( dimension.getValue( ) );
+      }
+      this.hash = result;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final SeriesKey that = (SeriesKey) o;
+      if ( hash != that.hash ) return false;
+      if ( metricType != that.metricType ) return false;
+      if ( units != that.units ) return false;
+      if ( !Objects.equal( metricName, that.metricName ) ) return false;
+      if ( !Objects.equal( namespace, that.namespace ) ) return false;
+      if ( !Objects.equal( accountId, that.accountId ) ) return false;
+      if ( dimensions.length != that.dimensions.length ) return false;
+      for ( int i = 0; i < dimensions.length; i++ ) {
+        if ( !dimensions[ i ].getName( ).equals( that.dimensions[ i ].getName( ) ) ||
+            !Objects.equal( dimensions[ i ].getValue( ), that.dimensions[ i ].getValue( ) ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode( ) {
+      return hash;
+    }
+  }
+
+  private static final class Series {
+    private final int id;
+    private final SeriesKey key;
+    private final Map<String,String> dimensionMap;
+
+    private Series( final int id, final SeriesKey key ) {
+      this.id = id;
+      this.key = key;
+      final Map<String,String> dimensionMap = Maps.newTreeMap( );
+      for ( final Dimension dimension : key.dimensions ) {
+        dimensionMap.put( dimension.getName( ), dimension.getValue( ) );
+      }
+      this.dimensionMap = Collections.unmodifiableMap( dimensionMap );
+    }
+  }
+}
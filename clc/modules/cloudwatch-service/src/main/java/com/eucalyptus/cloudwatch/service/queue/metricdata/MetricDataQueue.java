@@ -19,41 +19,47 @@
  ************************************************************************/
 package com.eucalyptus.cloudwatch.service.queue.metricdata;
 
-import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricManager;
+import com.eucalyptus.cloudwatch.common.config.CloudWatchConfigProperties;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricManager;
-import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
 import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
-import com.eucalyptus.cloudwatch.common.msgs.Dimension;
 import com.eucalyptus.cloudwatch.common.msgs.MetricDatum;
+import com.eucalyptus.cloudwatch.common.msgs.StatisticSet;
 import com.eucalyptus.cloudwatch.service.queue.listmetrics.ListMetricQueue;
 import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.metrics.MonitoredAction;
 import com.eucalyptus.util.metrics.ThruputMetrics;
-import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class MetricDataQueue {
   private static final Logger LOG = Logger.getLogger(MetricDataQueue.class);
-  final static LinkedBlockingQueue<MetricQueueItem> dataQueue = new LinkedBlockingQueue<MetricQueueItem>();
+
+  /**
+   * Number of ingest shards, each shard is drained by its own worker.
+   */
+  static final int SHARD_COUNT = Math.max( 2, Runtime.getRuntime( ).availableProcessors( ) );
+
+  private static final MetricDataShard[] shards = new MetricDataShard[ SHARD_COUNT ];
 
   private static final ScheduledExecutorService dataFlushTimer = Executors
-      .newSingleThreadScheduledExecutor( Threads.threadFactory( "cloudwatch-metric-data-flush-%d" ) );
+      .newScheduledThreadPool( SHARD_COUNT, Threads.threadFactory( "cloudwatch-metric-data-flush-%d" ) );
 
   private static MetricDataQueue singleton = getInstance();
 
@@ -65,26 +71,150 @@ public class MetricDataQueue {
     return singleton;
   }
 
-  private void queue(Supplier<MetricQueueItem> metriMetaDataSupplier) {
-    final MetricQueueItem metricData = metriMetaDataSupplier.get();
-    dataQueue.offer(metricData);
+  /**
+   * Pending (pre-aggregated) metric data for a subset of the aggregation key space.
+   *
+   * Data is folded into the shard as it arrives so the memory used is bounded
+   * by the number of distinct series per minute rather than the number of
+   * samples. A shard refuses new series once it holds its capacity.
+   *
+   * Shards are locked in index order when data for a request spans shards.
+   */
+  private static final class MetricDataShard {
+    private final Lock lock = new ReentrantLock( );
+    private final MetricDataAggregationTable pending = new MetricDataAggregationTable( );
+    private long oldestPendingTimestamp = 0L;
+    private long lastFlushTimestamp = System.currentTimeMillis( );
+
+    /**
+     * Caller must hold the shard lock.
+     */
+    boolean hasCapacity( final Collection<MetricSample> samples ) {
+      final Set<MetricSample> newSlots = Sets.newHashSet( );
+      for ( final MetricSample sample : samples ) {
+        if ( !pending.contains( sample.key, sample.timestamp ) ) {
+          newSlots.add( sample );
+        }
+      }
+      return pending.size( ) + newSlots.size( ) <= CloudWatchConfigProperties.METRIC_DATA_SHARD_CAPACITY;
+    }
+
+    /**
+     * Caller must hold the shard lock.
+     */
+    void offer( final Collection<MetricSample> samples ) {
+      if ( pending.isEmpty( ) ) {
+        oldestPendingTimestamp = System.currentTimeMillis( );
+      }
+      for ( final MetricSample sample : samples ) {
+        pending.fold( sample.key, sample.timestamp, sample.sampleMax, sample.sampleMin, sample.sampleSum, sample.sampleSize,
+            CloudWatchConfigProperties.METRIC_DATA_SHARD_CAPACITY );
+      }
+    }
+
+    boolean isFlushRequired( final long now ) {
+      lock.lock( );
+      try {
+        return !pending.isEmpty( ) && (
+            pending.size( ) >= CloudWatchConfigProperties.METRIC_DATA_SHARD_CAPACITY / 2 ||
+            now - lastFlushTimestamp >= TimeUnit.SECONDS.toMillis( CloudWatchConfigProperties.METRIC_DATA_FLUSH_INTERVAL_SECONDS ) );
+      } finally {
+        lock.unlock( );
+      }
+    }
+
+    int size( ) {
+      lock.lock( );
+      try {
+        return pending.size( );
+      } finally {
+        lock.unlock( );
+      }
+    }
+
+    long getOldestPendingTimestamp( ) {
+      lock.lock( );
+      try {
+        return oldestPendingTimestamp;
+      } finally {
+        lock.unlock( );
+      }
+    }
+
+    List<SimpleMetricEntity> drain( final long now ) {
+      lock.lock( );
+      try {
+        lastFlushTimestamp = now;
+        return pending.drain( 4 * CloudWatchConfigProperties.METRIC_DATA_SHARD_CAPACITY );
+      } finally {
+        lock.unlock( );
+      }
+    }
+  }
+
+  /**
+   * A sample for a series, equal to other samples for the same series and minute.
+   */
+  private static final class MetricSample {
+    private final MetricDataAggregationTable.SeriesKey key;
+    private final long timestamp;
+    private final long minute;
+    private final double sampleMax;
+    private final double sampleMin;
+    private final double sampleSum;
+    private final double sampleSize;
+
+    MetricSample(
+        final MetricDataAggregationTable.SeriesKey key,
+        final long timestamp,
+        final double sampleMax,
+        final double sampleMin,
+        final double sampleSum,
+        final double sampleSize
+    ) {
+      this.key = key;
+      this.timestamp = timestamp;
+      this.minute = MetricDataAggregationTable.minute( timestamp );
+      this.sampleMax = sampleMax;
+      this.sampleMin = sampleMin;
+      this.sampleSum = sampleSum;
+      this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final MetricSample that = (MetricSample) o;
+      return minute == that.minute && key.equals( that.key );
+    }
+
+    @Override
+    public int hashCode( ) {
+      return 31 * key.hashCode( ) + (int) ( minute ^ ( minute >>> 32 ) );
+    }
   }
 
-  private static Runnable safeRunner = new Runnable() {
+  private static final class MetricDataShardFlusher implements Runnable {
+    private final MetricDataShard shard;
+
+    MetricDataShardFlusher( final MetricDataShard shard ) {
+      this.shard = shard;
+    }
+
     @Override
     public void run() {
       long before = System.currentTimeMillis();
+      if ( !shard.isFlushRequired( before ) ) {
+        return;
+      }
       try {
-        List<MetricQueueItem> dataBatch = Lists.newArrayList();
-        dataQueue.drainTo(dataBatch);
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_SIZE, dataBatch.size( ));
-        long t1 = System.currentTimeMillis();
-        List<SimpleMetricEntity> simpleDataBatch = convertToSimpleDataBatch(dataBatch);
-        long t2 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_CONVERT, t2-t1);
-        simpleDataBatch = aggregate(simpleDataBatch);
+        final long oldestPendingTimestamp = shard.getOldestPendingTimestamp( );
+        List<SimpleMetricEntity> simpleDataBatch = shard.drain( before );
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_SIZE, simpleDataBatch.size( ));
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_LATENCY, before - oldestPendingTimestamp);
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_DEPTH, getPendingCount());
         long t3 = System.currentTimeMillis();
-        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_AGGREGATE, t3-t2);
         MetricManager.addMetricBatch(simpleDataBatch);
         long t4 = System.currentTimeMillis();
         ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_ADD_BATCH, t4-t3);
@@ -93,95 +223,105 @@ public class MetricDataQueue {
         ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL, t5-t4);
       } catch (Throwable ex) {
         LOG.debug("PutMetricDataQueue:error");
-        ex.printStackTrace();
         LOG.error(ex,ex);
       } finally {
         ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_TIMING, System.currentTimeMillis()-before);
       }
     }
-  };
-
-  static {
-    dataFlushTimer.scheduleAtFixedRate(safeRunner, 0, 1, TimeUnit.MINUTES);
   }
 
-  public static List<SimpleMetricEntity> aggregate(List<SimpleMetricEntity> dataBatch) {
-    HashMap<PutMetricDataAggregationKey, SimpleMetricEntity> aggregationMap = Maps.newHashMap();
-    for (SimpleMetricEntity item: dataBatch) {
-      item.setTimestamp(MetricUtils.stripSeconds(item.getTimestamp()));
-      PutMetricDataAggregationKey key = new PutMetricDataAggregationKey(item);
-      if (!aggregationMap.containsKey(key)) {
-        aggregationMap.put(key, new SimpleMetricEntity(item));
-      } else {
-        SimpleMetricEntity totalSoFar = aggregationMap.get(key);
-        totalSoFar.setSampleMax(Math.max(item.getSampleMax(), totalSoFar.getSampleMax()));
-        totalSoFar.setSampleMin(Math.min(item.getSampleMin(), totalSoFar.getSampleMin()));
-        totalSoFar.setSampleSize(totalSoFar.getSampleSize() + item.getSampleSize());
-        totalSoFar.setSampleSum(totalSoFar.getSampleSum() + item.getSampleSum());
-      }
+  static {
+    for ( int i = 0; i < SHARD_COUNT; i++ ) {
+      shards[ i ] = new MetricDataShard( );
+      dataFlushTimer.scheduleWithFixedDelay( new MetricDataShardFlusher( shards[ i ] ), i * 100L, 1000L, TimeUnit.MILLISECONDS );
     }
-    return Lists.newArrayList(aggregationMap.values());
   }
 
-  protected static List<SimpleMetricEntity> convertToSimpleDataBatch(
-      List<MetricQueueItem> stupidDataBatch) {
-    ArrayList<SimpleMetricEntity> returnValue = new ArrayList<SimpleMetricEntity>();
-    for(MetricQueueItem item: stupidDataBatch) {
-      SimpleMetricEntity metricMetadata = new SimpleMetricEntity();
-      metricMetadata.setAccountId(item.getAccountId());
-      MetricDatum datum = item.getMetricDatum();
-      
-      metricMetadata.setMetricName(datum.getMetricName());
-      metricMetadata.setNamespace(item.getNamespace());
-      final List<Dimension> dimensions = datum.getDimensions( ) == null ?
-          Collections.<Dimension>emptyList( ) :
-          datum.getDimensions( ).getMember( );
-      metricMetadata.setDimensionMap(makeDimensionMap(dimensions));
-      metricMetadata.setMetricType(item.getMetricType());
-      metricMetadata.setUnits(Units.fromValue(datum.getUnit()));
-      metricMetadata.setTimestamp(datum.getTimestamp());
-      if (datum.getValue() != null) { // Either or case taken care of in service
-        metricMetadata.setSampleMax(datum.getValue());
-        metricMetadata.setSampleMin(datum.getValue());
-        metricMetadata.setSampleSum(datum.getValue());
-        metricMetadata.setSampleSize(1.0);
-      } else if ((datum.getStatisticValues() != null) &&
-            (datum.getStatisticValues().getMaximum() != null) &&
-            (datum.getStatisticValues().getMinimum() != null) &&
-            (datum.getStatisticValues().getSum() != null) &&
-            (datum.getStatisticValues().getSampleCount() != null)) {
-          metricMetadata.setSampleMax(datum.getStatisticValues().getMaximum());
-          metricMetadata.setSampleMin(datum.getStatisticValues().getMinimum());
-          metricMetadata.setSampleSum(datum.getStatisticValues().getSum());
-          metricMetadata.setSampleSize(datum.getStatisticValues().getSampleCount());
-      } else {
-        throw new RuntimeException("Statistics set (all values) or Value must be set"); 
-      }
-      returnValue.add(metricMetadata);
-    }
-    return returnValue;
+  private static int shardIndexFor( final MetricDataAggregationTable.SeriesKey key ) {
+    return ( key.hashCode( ) & Integer.MAX_VALUE ) % SHARD_COUNT;
   }
 
-  public void insertMetricData(final String ownerAccountId, final String nameSpace,
-                               final List<MetricDatum> metricDatum, final MetricType metricType) {
-    // Some points do not actually go in.  If a data point represents an absolute value, the first one does not go in.
-    // Also, some data points are added while we go through the list (derived metrics)
+  /**
+   * Add metric data to the ingest shards.
+   *
+   * Data is only added if the shards have capacity for all of it, a rejected
+   * request leaves nothing queued so it is safe for the caller to retry.
+   *
+   * @return True if the data was added, false if rejected due to full shards
+   */
+  public boolean insertMetricData(final String ownerAccountId, final String nameSpace,
+                                  final List<MetricDatum> metricDatum, final MetricType metricType) {
     Date now = new Date();
 
+    final SortedMap<Integer,List<MetricSample>> samplesByShard = Maps.newTreeMap( );
     for (final MetricDatum datum : metricDatum) {
       scrub(datum, now);
-      queue(new Supplier<MetricQueueItem>() {
-        @Override
-        public MetricQueueItem get() {
-          MetricQueueItem metricMetadata = new MetricQueueItem();
-          metricMetadata.setAccountId(ownerAccountId);
-          metricMetadata.setMetricDatum(datum);
-          metricMetadata.setNamespace(nameSpace);
-          metricMetadata.setMetricType(metricType);
-          return metricMetadata;
+      final MetricDataAggregationTable.SeriesKey key = MetricDataAggregationTable.key(
+          ownerAccountId,
+          nameSpace,
+          datum.getMetricName(),
+          metricType,
+          Units.fromValue(datum.getUnit()),
+          datum.getDimensions( ) == null ? null : datum.getDimensions( ).getMember( ) );
+      final long timestamp = datum.getTimestamp().getTime();
+      final Double value = datum.getValue(); // Either or case taken care of in service
+      final StatisticSet statistics = datum.getStatisticValues();
+      if (value == null && (statistics == null ||
+          statistics.getMaximum() == null ||
+          statistics.getMinimum() == null ||
+          statistics.getSum() == null ||
+          statistics.getSampleCount() == null)) {
+        throw new RuntimeException("Statistics set (all values) or Value must be set");
+      }
+      final MetricSample sample = value != null ?
+          new MetricSample(key, timestamp, value, value, value, 1.0) :
+          new MetricSample(key, timestamp,
+              statistics.getMaximum(), statistics.getMinimum(), statistics.getSum(), statistics.getSampleCount());
+      final int shardIndex = shardIndexFor(key);
+      List<MetricSample> samples = samplesByShard.get(shardIndex);
+      if (samples == null) {
+        samples = Lists.newArrayList();
+        samplesByShard.put(shardIndex, samples);
+      }
+      samples.add(sample);
+    }
+
+    final List<MetricDataShard> locked = Lists.newArrayListWithCapacity(samplesByShard.size());
+    try {
+      boolean accepted = true;
+      for (final Map.Entry<Integer,List<MetricSample>> entry : samplesByShard.entrySet()) {
+        final MetricDataShard shard = shards[entry.getKey()];
+        shard.lock.lock();
+        locked.add(shard);
+        if (!shard.hasCapacity(entry.getValue())) {
+          accepted = false;
+          break;
         }
-      });
+      }
+      if (accepted) {
+        for (final Map.Entry<Integer,List<MetricSample>> entry : samplesByShard.entrySet()) {
+          shards[entry.getKey()].offer(entry.getValue());
+        }
+      } else {
+        ThruputMetrics.addDataPoint(MonitoredAction.PUT_DATA_QUEUE_REJECTED, metricDatum.size());
+      }
+      return accepted;
+    } finally {
+      for (final MetricDataShard shard : locked) {
+        shard.lock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Get the number of pending metric series across all shards.
+   */
+  public static int getPendingCount() {
+    int pending = 0;
+    for (final MetricDataShard shard : shards) {
+      pending += shard.size();
     }
+    return pending;
   }
 
   private void scrub(MetricDatum datum, Date now) {
@@ -189,15 +329,4 @@ public class MetricDataQueue {
     if (datum.getTimestamp() == null) datum.setTimestamp(now);
   }
 
-  private static Map<String, String> makeDimensionMap(
-    final List<Dimension> dimensions
-  ) {
-    Map<String,String> returnValue = Maps.newTreeMap();
-    for (Dimension dimension: dimensions) {
-      returnValue.put(dimension.getName(), dimension.getValue());
-    }
-    return returnValue;
-  }
-
-
 }
@@ -0,0 +1,125 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricUtils;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.SimpleMetricEntity;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.Units;
+import com.eucalyptus.cloudwatch.common.msgs.Dimension;
+import com.eucalyptus.cloudwatch.service.queue.metricdata.MetricDataAggregationTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestAggregationTable {
+
+  private static final double TOLERANCE = 0.000000001;
+
+  @Test
+  public void testFoldDimensionOrder() {
+    final Date now = MetricUtils.stripSeconds(new Date());
+    final MetricDataAggregationTable table = new MetricDataAggregationTable();
+    for (int i=0;i<10;i++) {
+      final List<Dimension> dimensions = (i % 3 == 0) ?
+          Lists.newArrayList(new Dimension("dim1", "val1"), new Dimension("dim2", "val2")) :
+          Lists.newArrayList(new Dimension("dim2", "val2"), new Dimension("dim1", "val1"));
+      assertTrue(table.fold(
+          MetricDataAggregationTable.key("account"+(i % 2), "namespace1", "metric1", MetricType.Custom, Units.None, dimensions),
+          now.getTime() + i * 1000, i, i, i, 1, 100));
+    }
+    assertEquals(2, table.size());
+
+    final List<SimpleMetricEntity> aggregateList = table.drain(100);
+    assertEquals(2, aggregateList.size());
+    assertEquals(0, table.size());
+    final SimpleMetricEntity even = aggregateList.get(0).getAccountId().equals("account0") ?
+        aggregateList.get(0) :
+        aggregateList.get(1);
+    // even totals are 0,2,4,6,8 so total = 20, max = 8, min = 0, count = 5
+    assertEquals(8.0, even.getSampleMax(), TOLERANCE);
+    assertEquals(0.0, even.getSampleMin(), TOLERANCE);
+    assertEquals(5.0, even.getSampleSize(), TOLERANCE);
+    assertEquals(20.0, even.getSampleSum(), TOLERANCE);
+    assertEquals(ImmutableMap.of("dim1", "val1", "dim2", "val2"), even.getDimensionMap());
+    assertEquals("metric1", even.getMetricName());
+    assertEquals(MetricType.Custom, even.getMetricType());
+    assertEquals("namespace1", even.getNamespace());
+    assertEquals(now, even.getTimestamp());
+    assertEquals(Units.None, even.getUnits());
+  }
+
+  @Test
+  public void testDistinctMinutesAndGrowth() {
+    final long start = MetricUtils.stripSeconds(new Date()).getTime();
+    final MetricDataAggregationTable table = new MetricDataAggregationTable();
+    for (int minute=0;minute<1000;minute++) {
+      for (int sample=0;sample<3;sample++) {
+        assertTrue(table.fold(
+            MetricDataAggregationTable.key("account", "namespace1", "metric" + (minute % 7), MetricType.Custom, Units.Count, null),
+            start + minute * 60000L, sample, sample, sample, 1, 10000));
+      }
+    }
+    assertEquals(1000, table.size());
+    for (final SimpleMetricEntity entity : table.drain(100)) {
+      assertEquals(2.0, entity.getSampleMax(), TOLERANCE);
+      assertEquals(0.0, entity.getSampleMin(), TOLERANCE);
+      assertEquals(3.0, entity.getSampleSize(), TOLERANCE);
+      assertEquals(3.0, entity.getSampleSum(), TOLERANCE);
+    }
+  }
+
+  @Test
+  public void testCapacity() {
+    final long now = System.currentTimeMillis();
+    final MetricDataAggregationTable table = new MetricDataAggregationTable();
+    final MetricDataAggregationTable.SeriesKey key1 =
+        MetricDataAggregationTable.key("account", "namespace1", "metric1", MetricType.Custom, Units.None, null);
+    final MetricDataAggregationTable.SeriesKey key2 =
+        MetricDataAggregationTable.key("account", "namespace1", "metric2", MetricType.Custom, Units.None, null);
+    assertTrue(table.fold(key1, now, 1, 1, 1, 1, 1));
+    assertTrue("existing slot", table.fold(key1, now, 1, 1, 1, 1, 1));
+    assertFalse("new slot at capacity", table.fold(key2, now, 1, 1, 1, 1, 1));
+    assertEquals(1, table.drain(0).size());
+    assertTrue(table.fold(key2, now, 1, 1, 1, 1, 1));
+  }
+
+  @Test
+  public void testContains() {
+    final long now = MetricUtils.stripSeconds(new Date()).getTime();
+    final MetricDataAggregationTable table = new MetricDataAggregationTable();
+    final MetricDataAggregationTable.SeriesKey key1 =
+        MetricDataAggregationTable.key("account", "namespace1", "metric1", MetricType.Custom, Units.None, null);
+    final MetricDataAggregationTable.SeriesKey key2 =
+        MetricDataAggregationTable.key("account", "namespace1", "metric2", MetricType.Custom, Units.None, null);
+    assertFalse(table.contains(key1, now));
+    assertTrue(table.fold(key1, now, 1, 1, 1, 1, 10));
+    assertTrue("same minute", table.contains(key1, now + 59000));
+    assertFalse("next minute", table.contains(key1, now + 60000));
+    assertFalse("other series", table.contains(key2, now));
+  }
+}
@@ -0,0 +1,137 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.cloudwatch;
+
+import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetric;
+import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricCatalog;
+import com.eucalyptus.cloudwatch.common.internal.domain.listmetrics.ListMetricManager;
+import com.eucalyptus.cloudwatch.common.internal.domain.metricdata.MetricEntity.MetricType;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestListMetricCatalog {
+
+  @Test
+  public void testLookup() {
+    final ListMetricCatalog catalog = new ListMetricCatalog();
+    assertTrue(catalog.isReloadRequired(System.currentTimeMillis()));
+    assertFalse(catalog.isListable(System.currentTimeMillis()));
+
+    final ListMetric stored = metric("account1", "metric1", ImmutableMap.of("dim1", "val1", "dim2", "val2"), 1000);
+    catalog.reload(Lists.newArrayList(stored), System.currentTimeMillis());
+    assertFalse(catalog.isReloadRequired(System.currentTimeMillis()));
+    assertTrue(catalog.isListable(System.currentTimeMillis()));
+
+    final ListMetricCatalog.Entry entry = catalog.lookup(ListMetricManager.createListMetric(
+        "account1", "metric1", MetricType.Custom, "namespace1", ImmutableMap.of("dim2", "val2", "dim1", "val1")));
+    assertNotNull(entry);
+    assertEquals(stored.getNaturalId(), entry.getNaturalId());
+    assertNull(catalog.lookup(ListMetricManager.createListMetric(
+        "account1", "metric1", MetricType.Custom, "namespace1", ImmutableMap.of("dim1", "val1"))));
+    assertNull(catalog.lookup(ListMetricManager.createListMetric(
+        "account2", "metric1", MetricType.Custom, "namespace1", ImmutableMap.of("dim2", "val2", "dim1", "val1"))));
+
+    catalog.remove(entry);
+    assertEquals(0, catalog.size());
+  }
+
+  @Test
+  public void testListMetrics() {
+    final ListMetricCatalog catalog = new ListMetricCatalog();
+    final List<ListMetric> metrics = Lists.newArrayList();
+    for (int i=0;i<10;i++) {
+      metrics.add(metric("account" + (i % 2), "metric" + (i % 3), ImmutableMap.of("dim1", "val" + i), i * 1000));
+    }
+    catalog.reload(Lists.reverse(metrics), System.currentTimeMillis());
+    assertEquals(10, catalog.size());
+
+    final List<ListMetric> account0 = catalog.listMetrics("account0", null, null, null, null, null, null, null);
+    assertEquals(5, account0.size());
+    for (int i=0;i<5;i++) {
+      assertSame(metrics.get(i * 2), account0.get(i));
+    }
+
+    final List<ListMetric> firstPage = catalog.listMetrics(null, null, null, null, null, null, 4, null);
+    assertEquals(4, firstPage.size());
+    final List<ListMetric> secondPage = catalog.listMetrics(null, null, null, null, null, null, 4,
+        firstPage.get(3).getNaturalId());
+    assertEquals(4, secondPage.size());
+    assertSame(metrics.get(4), secondPage.get(0));
+    assertNull(catalog.listMetrics(null, null, null, null, null, null, 4, "unknown-token"));
+
+    assertEquals(2, catalog.listMetrics("account1", "metric0", "namespace1", null, null, null, null, null).size());
+    assertEquals(1, catalog.listMetrics(null, null, null, ImmutableMap.of("dim1", "val3"), null, null, null, null).size());
+    assertEquals(0, catalog.listMetrics(null, null, null, ImmutableMap.of("dim2", "val3"), null, null, null, null).size());
+    assertEquals(0, catalog.listMetrics(null, null, "namespace2", null, null, null, null, null).size());
+    assertEquals(3, catalog.listMetrics(null, null, null, null, new Date(metrics.get(7).getLastUpdateTimestamp().getTime()), null, null, null).size());
+  }
+
+  @Test
+  public void testRefresh() {
+    final ListMetricCatalog catalog = new ListMetricCatalog();
+    final long now = System.currentTimeMillis();
+    final ListMetric expiring = metric("account1", "metric1", ImmutableMap.of("dim1", "val1"), 0);
+    final ListMetric updated = metric("account1", "metric2", ImmutableMap.of("dim1", "val1"), 1000);
+    catalog.reload(Lists.newArrayList(expiring, updated), now);
+    assertEquals(now, catalog.getRefreshedAt());
+
+    // loaded again after a timestamp update on another host
+    final ListMetric updatedElsewhere = updated;
+    updatedElsewhere.setLastUpdateTimestamp(new Date(updated.getLastUpdateTimestamp().getTime() + 5000));
+    final ListMetric createdElsewhere = metric("account2", "metric1", ImmutableMap.of("dim1", "val1"), 2000);
+    final ListMetric recreatedElsewhere = metric("account1", "metric1", ImmutableMap.of("dim1", "val1"), 3000);
+    catalog.refresh(Lists.newArrayList(updatedElsewhere, createdElsewhere), expiring.getLastUpdateTimestamp().getTime(), now + 1);
+    assertEquals(now + 1, catalog.getRefreshedAt());
+    assertEquals(3, catalog.size());
+    assertEquals(updatedElsewhere.getLastUpdateTimestamp().getTime(), catalog.lookup(updated).getLastUpdated());
+    assertNotNull(catalog.lookup(createdElsewhere));
+
+    catalog.refresh(Lists.newArrayList(recreatedElsewhere), 0L, now + 2);
+    assertEquals(recreatedElsewhere.getNaturalId(), catalog.lookup(expiring).getNaturalId());
+    assertEquals(3, catalog.size());
+
+    // expired metrics are removed as they are deleted from the database
+    catalog.refresh(Lists.<ListMetric>newArrayList(), updatedElsewhere.getLastUpdateTimestamp().getTime(), now + 3);
+    assertEquals(1, catalog.size());
+    assertNotNull(catalog.lookup(updated));
+    assertEquals(1, catalog.listMetrics(null, null, null, null, null, null, null, null).size());
+  }
+
+  private static ListMetric metric(final String accountId, final String metricName, final Map<String, String> dimensions, final long offset) {
+    final ListMetric metric = ListMetricManager.createListMetric(accountId, metricName, MetricType.Custom, "namespace1", dimensions);
+    metric.updateTimeStamps();
+    final Date timestamp = new Date(metric.getCreationTimestamp().getTime() + offset);
+    metric.setCreationTimestamp(timestamp);
+    metric.setLastUpdateTimestamp(timestamp);
+    return metric;
+  }
+}
@@ -127,6 +127,8 @@ public class NetworkGroups extends com.eucalyptus.compute.common.internal.networ
   public static volatile String       NETWORK_CONFIGURATION         = "";
   @ConfigurableField( description = "Minimum interval between broadcasts of network information (seconds).", initial = "5" )
   public static volatile Integer      MIN_BROADCAST_INTERVAL        = 5;
+  @ConfigurableField( description = "Maximum interval between broadcasts of unchanged network information to a cluster (seconds).", initial = "60" )
+  public static volatile Integer      MAX_BROADCAST_INTERVAL        = 60;
   @ConfigurableField( description = "Maximum time to apply network information (seconds).", initial = "120" )
   public static volatile Integer      MAX_BROADCAST_APPLY           = 120;
 
@@ -61,14 +61,18 @@ import com.eucalyptus.network.NetworkInfoBroadcasts.VersionedNetworkView;
 import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.HasName;
 import com.eucalyptus.util.LockResource;
+import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.SemaphoreResource;
 import com.eucalyptus.util.TypeMappers;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.eucalyptus.compute.common.internal.vm.VmInstance;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
@@ -90,6 +94,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -106,30 +111,32 @@ public class NetworkInfoBroadcaster {
   private static final AtomicLong lastBroadcastTime = new AtomicLong( 0L );
   private static final Lock lastBroadcastTimeLock = new ReentrantLock( );
   private static final Semaphore activeBroadcastSemaphore = new Semaphore( 1 );
+  private static final List<String> DEFAULT_NAMESERVERS = ImmutableList.of( "127.0.0.1" );
+  private static final AtomicReference<Pair<Long,NetworkInfo>> lastBuiltNetworkInfo = new AtomicReference<>( );
   private static final EntityCache<VmInstance,NetworkInfoBroadcasts.VmInstanceNetworkView> instanceCache = new EntityCache<>(
       VmInstance.named(null),
       Restrictions.not( VmInstance.criterion( TORNDOWN.array( ) ) ),
       Sets.newHashSet( "networkGroups" ),
       Sets.newHashSet( "bootRecord.machineImage", "bootRecord.vmType" ),
-      TypeMappers.lookup( VmInstance.class, VmInstanceNetworkView.class )  );
+      TypeMappers.lookup( VmInstance.class, VmInstanceNetworkView.class )  ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<NetworkGroup,NetworkGroupNetworkView> securityGroupCache =
-      new EntityCache<>( NetworkGroup.withNaturalId( null ), TypeMappers.lookup( NetworkGroup.class, NetworkGroupNetworkView.class )  );
+      new EntityCache<>( NetworkGroup.withNaturalId( null ), TypeMappers.lookup( NetworkGroup.class, NetworkGroupNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<Vpc,VpcNetworkView> vpcCache =
-      new EntityCache<>( Vpc.exampleWithOwner( null ), TypeMappers.lookup( Vpc.class, VpcNetworkView.class )  );
+      new EntityCache<>( Vpc.exampleWithOwner( null ), TypeMappers.lookup( Vpc.class, VpcNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<Subnet,SubnetNetworkView> subnetCache =
-      new EntityCache<>( Subnet.exampleWithOwner( null ), TypeMappers.lookup( Subnet.class, SubnetNetworkView.class )  );
+      new EntityCache<>( Subnet.exampleWithOwner( null ), TypeMappers.lookup( Subnet.class, SubnetNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<DhcpOptionSet,DhcpOptionSetNetworkView> dhcpOptionsCache =
-      new EntityCache<>( DhcpOptionSet.exampleWithOwner( null ), TypeMappers.lookup( DhcpOptionSet.class, DhcpOptionSetNetworkView.class )  );
+      new EntityCache<>( DhcpOptionSet.exampleWithOwner( null ), TypeMappers.lookup( DhcpOptionSet.class, DhcpOptionSetNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<NetworkAcl,NetworkAclNetworkView> networkAclCache =
-      new EntityCache<>( NetworkAcl.exampleWithOwner( null ), TypeMappers.lookup( NetworkAcl.class, NetworkAclNetworkView.class )  );
+      new EntityCache<>( NetworkAcl.exampleWithOwner( null ), TypeMappers.lookup( NetworkAcl.class, NetworkAclNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<RouteTable,RouteTableNetworkView> routeTableCache =
-      new EntityCache<>( RouteTable.exampleWithOwner( null ), TypeMappers.lookup( RouteTable.class, RouteTableNetworkView.class )  );
+      new EntityCache<>( RouteTable.exampleWithOwner( null ), TypeMappers.lookup( RouteTable.class, RouteTableNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<InternetGateway,InternetGatewayNetworkView> internetGatewayCache =
-      new EntityCache<>( InternetGateway.exampleWithOwner( null ), TypeMappers.lookup( InternetGateway.class, InternetGatewayNetworkView.class )  );
+      new EntityCache<>( InternetGateway.exampleWithOwner( null ), TypeMappers.lookup( InternetGateway.class, InternetGatewayNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<NetworkInterface,NetworkInterfaceNetworkView> networkInterfaceCache =
-      new EntityCache<>( NetworkInterface.exampleWithOwner( null ), TypeMappers.lookup( NetworkInterface.class, NetworkInterfaceNetworkView.class )  );
+      new EntityCache<>( NetworkInterface.exampleWithOwner( null ), TypeMappers.lookup( NetworkInterface.class, NetworkInterfaceNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final EntityCache<NatGateway,NatGatewayNetworkView> natGatewayCache =
-      new EntityCache<>( NatGateway.exampleWithOwner( null ), TypeMappers.lookup( NatGateway.class, NatGatewayNetworkView.class )  );
+      new EntityCache<>( NatGateway.exampleWithOwner( null ), TypeMappers.lookup( NatGateway.class, NatGatewayNetworkView.class )   ).trackChanges( 1, TimeUnit.MINUTES );
   private static final VpcRouteStateInvalidator vpcRouteStateInvalidator = new EventFiringVpcRouteStateInvalidator( );
 
   private static NetworkInfoSource cacheSource( ) {
@@ -225,32 +232,50 @@ public class NetworkInfoBroadcaster {
       final NetworkInfoSource source = cacheSource( );
       final Set<String> dirtyPublicAddresses = PublicAddresses.dirtySnapshot( );
       final Set<RouteKey> invalidStateRoutes = Sets.newHashSetWithExpectedSize( 50 );
-      final int sourceFingerprint = fingerprint( source, clusters, dirtyPublicAddresses, NetworkGroups.NETWORK_CONFIGURATION );
-      final NetworkInfo info = NetworkInfoBroadcasts.buildNetworkConfiguration(
-              networkConfiguration,
-              source,
-              Suppliers.ofInstance( clusters ),
-              Suppliers.ofInstance( otherClusters ),
-              new Supplier<String>( ) {
-                @Override
-                public String get() {
-                  return Topology.lookup( Eucalyptus.class ).getInetAddress( ).getHostAddress( );
-                }
-              },
-              new Function<List<String>, List<String>>( ) {
-                @Nullable
-                @Override
-                public List<String> apply( final List<String> defaultServers ) {
-                  return NetworkConfigurations.loadSystemNameservers( defaultServers );
-                }
-              },
-              dirtyPublicAddresses,
-              invalidStateRoutes
-          );
-          info.setVersion( BaseEncoding.base16( ).lowerCase( ).encode( Ints.toByteArray( sourceFingerprint ) ) );
+      final String clcAddress = Topology.lookup( Eucalyptus.class ).getInetAddress( ).getHostAddress( );
+      final List<String> systemNameservers = NetworkConfigurations.loadSystemNameservers( DEFAULT_NAMESERVERS );
+      final int sourceFingerprint = fingerprint(
+          source,
+          clusters,
+          otherClusters,
+          clcAddress,
+          systemNameservers,
+          dirtyPublicAddresses,
+          NetworkGroups.NETWORK_CONFIGURATION );
+      final String version = BaseEncoding.base16( ).lowerCase( ).encode( Ints.toByteArray( sourceFingerprint ) );
+      final Pair<Long,NetworkInfo> lastBuilt = lastBuiltNetworkInfo.get( );
+      final NetworkInfo info;
+      if ( lastBuilt != null &&
+          version.equals( lastBuilt.getRight( ).getVersion( ) ) &&
+          lastBuilt.getLeft( ) + TimeUnit.SECONDS.toMillis( NetworkGroups.MAX_BROADCAST_INTERVAL ) > System.currentTimeMillis( ) ) {
+        info = lastBuilt.getRight( );
+      } else {
+        final long buildStart = System.currentTimeMillis( );
+        info = NetworkInfoBroadcasts.buildNetworkConfiguration(
+                networkConfiguration,
+                source,
+                Suppliers.ofInstance( clusters ),
+                Suppliers.ofInstance( otherClusters ),
+                Suppliers.ofInstance( clcAddress ),
+                new Function<List<String>, List<String>>( ) {
+                  @Nullable
+                  @Override
+                  public List<String> apply( final List<String> defaultServers ) {
+                    return DEFAULT_NAMESERVERS.equals( defaultServers ) ?
+                        systemNameservers :
+                        NetworkConfigurations.loadSystemNameservers( defaultServers );
+                  }
+                },
+                dirtyPublicAddresses,
+                invalidStateRoutes
+            );
+        info.setVersion( version );
+        ThruputMetrics.addDataPoint( MonitoredAction.NETWORK_INFO_BUILD, System.currentTimeMillis( ) - buildStart );
+        lastBuiltNetworkInfo.set( Pair.pair( buildStart, info ) );
 
-      if ( !invalidStateRoutes.isEmpty( ) ) {
-        vpcRouteStateInvalidator.accept( invalidStateRoutes );
+        if ( !invalidStateRoutes.isEmpty( ) ) {
+          vpcRouteStateInvalidator.accept( invalidStateRoutes );
+        }
       }
 
       Applicators.apply( clusters, info );
@@ -264,6 +289,9 @@ public class NetworkInfoBroadcaster {
   private static int fingerprint(
       final NetworkInfoSource source,
       final List<com.eucalyptus.cluster.Cluster> clusters,
+      final List<com.eucalyptus.cluster.Cluster> otherClusters,
+      final String clcAddress,
+      final List<String> systemNameservers,
       final Set<String> dirtyPublicAddresses,
       final String networkConfiguration
   ) {
@@ -285,6 +313,13 @@ public class NetworkInfoBroadcaster {
       }
     }
     hasher.putString( Joiner.on( ',' ).join( Sets.newTreeSet( Iterables.transform( clusters, HasName.GET_NAME ) ) ), StandardCharsets.UTF_8 );
+    hasher.putChar( '|' );
+    hasher.putString( Joiner.on( ',' ).join( Sets.newTreeSet( Iterables.transform( otherClusters, HasName.GET_NAME ) ) ), StandardCharsets.UTF_8 );
+    hasher.putChar( '|' );
+    hasher.putString( clcAddress, StandardCharsets.UTF_8 );
+    hasher.putChar( '|' );
+    hasher.putString( Joiner.on( ',' ).join( systemNameservers ), StandardCharsets.UTF_8 );
+    hasher.putChar( '|' );
     hasher.putString( Joiner.on( ',' ).join( Sets.newTreeSet( dirtyPublicAddresses ) ), StandardCharsets.UTF_8 );
     hasher.putInt( networkConfiguration.hashCode( ) );
     return hasher.hash( ).asInt( );
@@ -19,6 +19,7 @@
  ************************************************************************/
 package com.eucalyptus.network.applicator;
 
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
@@ -29,9 +30,16 @@ import com.eucalyptus.crypto.util.B64;
 import com.eucalyptus.event.ClockTick;
 import com.eucalyptus.event.EventListener;
 import com.eucalyptus.event.Listeners;
+import com.eucalyptus.network.NetworkGroups;
+import com.eucalyptus.util.Callback;
+import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.async.AsyncRequests;
 import com.eucalyptus.util.async.UnconditionalCallback;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import edu.ucsb.eucalyptus.msgs.BroadcastNetworkInfoResponseType;
 
@@ -44,34 +52,63 @@ public class BroadcastingApplicator implements Applicator {
 
   private static final ConcurrentMap<String,Long> activeBroadcastMap = Maps.newConcurrentMap( );
 
+  /**
+   * Last version/applied version delivered to each partition, unchanged
+   * information is only sent again after the maximum broadcast interval.
+   */
+  private static final ConcurrentMap<String,Pair<Long,String>> deliveredVersionMap = Maps.newConcurrentMap( );
+
   @Override
   public void apply( final ApplicatorContext context, final ApplicatorChain chain ) throws ApplicatorException {
     final NetworkInfo netInfo = context.getNetworkInfo( );
-    final String networkInfo = MarshallingApplicatorHelper.getMarshalledNetworkInfo( context );
-    final String encodedNetworkInfo =
-        new String( B64.standard.enc( networkInfo.getBytes( Charsets.UTF_8 ) ), Charsets.UTF_8 );
-
-    final BroadcastNetworkInfoCallback callback = new BroadcastNetworkInfoCallback(
-        encodedNetworkInfo,
-        netInfo.getVersion( ),
-        netInfo.getAppliedVersion( )
-    );
+    final String broadcastVersion = netInfo.getVersion( ) + "/" + netInfo.getAppliedVersion( );
+    final long now = System.currentTimeMillis( );
+    final List<com.eucalyptus.cluster.Cluster> broadcastClusters = Lists.newArrayList( );
     for ( final com.eucalyptus.cluster.Cluster cluster : context.getClusters( ) ) {
-      final Long broadcastTime = System.currentTimeMillis( );
-      if ( null == activeBroadcastMap.putIfAbsent( cluster.getPartition( ), broadcastTime ) ) {
-        try {
-          AsyncRequests.newRequest( callback.newInstance( ) ).then( new UnconditionalCallback<BroadcastNetworkInfoResponseType>() {
-            @Override
-            public void fire( ) {
-              activeBroadcastMap.remove( cluster.getPartition( ), broadcastTime );
-            }
-          } ).dispatch( cluster.getConfiguration( ) );
-        } catch ( Exception e ) {
-          activeBroadcastMap.remove( cluster.getPartition( ), broadcastTime );
-          logger.error( "Error broadcasting network information to cluster (" + cluster.getPartition() + ") ("+cluster.getName()+")", e );
+      final Pair<Long,String> delivered = deliveredVersionMap.get( cluster.getPartition( ) );
+      if ( delivered == null ||
+          !broadcastVersion.equals( delivered.getRight( ) ) ||
+          delivered.getLeft( ) + TimeUnit.SECONDS.toMillis( NetworkGroups.MAX_BROADCAST_INTERVAL ) < now ) {
+        broadcastClusters.add( cluster );
+      }
+    }
+    ThruputMetrics.addDataPoint(
+        MonitoredAction.NETWORK_INFO_BROADCAST_SKIPPED,
+        Iterables.size( context.getClusters( ) ) - broadcastClusters.size( ) );
+
+    if ( !broadcastClusters.isEmpty( ) ) {
+      final String networkInfo = MarshallingApplicatorHelper.getMarshalledNetworkInfo( context );
+      final String encodedNetworkInfo =
+          new String( B64.standard.enc( networkInfo.getBytes( Charsets.UTF_8 ) ), Charsets.UTF_8 );
+      ThruputMetrics.addDataPoint( MonitoredAction.NETWORK_INFO_BROADCAST_SIZE, encodedNetworkInfo.length( ) );
+
+      final BroadcastNetworkInfoCallback callback = new BroadcastNetworkInfoCallback(
+          encodedNetworkInfo,
+          netInfo.getVersion( ),
+          netInfo.getAppliedVersion( )
+      );
+      for ( final com.eucalyptus.cluster.Cluster cluster : broadcastClusters ) {
+        final Long broadcastTime = System.currentTimeMillis( );
+        if ( null == activeBroadcastMap.putIfAbsent( cluster.getPartition( ), broadcastTime ) ) {
+          try {
+            AsyncRequests.newRequest( callback.newInstance( ) ).then( new Callback.Success<BroadcastNetworkInfoResponseType>() {
+              @Override
+              public void fire( final BroadcastNetworkInfoResponseType response ) {
+                deliveredVersionMap.put( cluster.getPartition( ), Pair.pair( broadcastTime, broadcastVersion ) );
+              }
+            } ).then( new UnconditionalCallback<BroadcastNetworkInfoResponseType>() {
+              @Override
+              public void fire( ) {
+                activeBroadcastMap.remove( cluster.getPartition( ), broadcastTime );
+              }
+            } ).dispatch( cluster.getConfiguration( ) );
+          } catch ( Exception e ) {
+            activeBroadcastMap.remove( cluster.getPartition( ), broadcastTime );
+            logger.error( "Error broadcasting network information to cluster (" + cluster.getPartition() + ") ("+cluster.getName()+")", e );
+          }
+        } else {
+          logger.warn( "Skipping network information broadcast for active partition " + cluster.getPartition( ) );
         }
-      } else {
-        logger.warn( "Skipping network information broadcast for active partition " + cluster.getPartition( ) );
       }
     }
 
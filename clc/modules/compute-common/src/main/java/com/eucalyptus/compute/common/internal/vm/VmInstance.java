@@ -105,6 +105,7 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
 import com.eucalyptus.auth.Accounts;
+import com.eucalyptus.auth.AuthException;
 import com.eucalyptus.auth.principal.BaseInstanceProfile;
 import com.eucalyptus.compute.common.CloudMetadata.VmInstanceMetadata;
 import com.eucalyptus.compute.common.Compute;
@@ -182,6 +183,7 @@ import groovy.sql.Sql;
     @Index( name = "metadata_instances_display_name_idx", columnList = "metadata_display_name" ),
     @Index( name = "metadata_vm_private_address_idx", columnList = "metadata_vm_private_address" ),
     @Index( name = "metadata_vm_public_address_idx", columnList = "metadata_vm_public_address" ),
+    @Index( name = "metadata_vm_reservation_instance_idx", columnList = "metadata_vm_reservation_id, metadata_display_name" ),
 } )
 public class VmInstance extends UserMetadata<VmState> implements VmInstanceMetadata, PrivateAddressReferrer {
   private static final long    serialVersionUID = 1L;
@@ -1007,10 +1009,50 @@ public class VmInstance extends UserMetadata<VmState> implements VmInstanceMetad
             getPrivateAddress( );
   }
 
-  private static boolean dns( ) {
+  /**
+   * Are instance DNS names displayed (rather than addresses)
+   */
+  public static boolean dns( ) {
     return StackConfiguration.USE_INSTANCE_DNS && !ComponentIds.lookup( Dns.class ).runLimitedServices( );
   }
 
+  /**
+   * Is the instance profile for the instance identified by ARN or name only.
+   *
+   * @see #lookupIamInstanceProfile
+   */
+  public boolean isIamInstanceProfileLookup( ) {
+    return Strings.isNullOrEmpty( getIamInstanceProfileId( ) ) && !Strings.isNullOrEmpty( getIamInstanceProfileArn( ) );
+  }
+
+  /**
+   * Lookup an instance profile for an instance by ARN or name.
+   *
+   * @param accountNumber The account number for the instance owner
+   * @param arnOrName The instance profile ARN or name
+   * @return The instance profile or null if not found
+   */
+  @Nullable
+  public static IamInstanceProfile lookupIamInstanceProfile( final String accountNumber,
+                                                             final String arnOrName ) {
+    final String name = arnOrName.startsWith( "arn:" ) ?
+        arnOrName.substring( arnOrName.lastIndexOf( '/' ) + 1, arnOrName.length( ) ) :
+        arnOrName;
+    try {
+      final BaseInstanceProfile instanceProfile = Accounts.lookupInstanceProfileByName( accountNumber, name );
+      final String profileArn = Accounts.getInstanceProfileArn( instanceProfile );
+      final IamInstanceProfile iamInstanceProfile = new IamInstanceProfile( );
+      iamInstanceProfile.setArn( profileArn );
+      iamInstanceProfile.setId( instanceProfile.getInstanceProfileId( ) );
+      return iamInstanceProfile;
+    } catch ( final NoSuchElementException nsee ) {
+      LOG.debug( "profile " + ( arnOrName.startsWith( "arn:" ) ? "arn" : "name" ) + " : " + name, nsee );
+      return null;
+    } catch ( final AuthException e ) {
+      throw Exceptions.toUndeclared( e );
+    }
+  }
+
   @TypeMapper
   public enum Transform implements Function<VmInstance, RunningInstancesItemType> {
     INSTANCE;
@@ -1070,37 +1112,11 @@ public class VmInstance extends UserMetadata<VmState> implements VmInstanceMetad
                 input.getIamInstanceProfileArn( ),
                 input.getIamInstanceProfileId( )
             ) );
-          } else if ( !Strings.isNullOrEmpty( input.getIamInstanceProfileArn( ) ) &&
-              input.getIamInstanceProfileArn().startsWith("arn:") ) {
-
-            final String rawName = input.getIamInstanceProfileArn();
-            final int nameIndex = input.getIamInstanceProfileArn().lastIndexOf('/');
-            final String name = input.getIamInstanceProfileArn().substring(nameIndex + 1, rawName.length());
-
-            try {
-              BaseInstanceProfile instanceProfile = Accounts.lookupInstanceProfileByName( input.getOwnerAccountNumber( ), name);
-              final String profileArn = Accounts.getInstanceProfileArn(instanceProfile);
-              IamInstanceProfile iamInstanceProfile = new IamInstanceProfile();
-              iamInstanceProfile.setArn(profileArn);
-              iamInstanceProfile.setId(instanceProfile.getInstanceProfileId());
-              runningInstance.setIamInstanceProfile(iamInstanceProfile);
-
-            } catch (NoSuchElementException nsee ) {
-              LOG.debug("profile arn : " + name, nsee);
-            }
-
-          } else if ( !Strings.isNullOrEmpty( input.getIamInstanceProfileArn( ) ) &&
-              !input.getIamInstanceProfileArn().startsWith("arn:") ) {
-
-            try {
-              final BaseInstanceProfile instanceProfile = Accounts.lookupInstanceProfileByName(input.getOwnerAccountNumber(), input.getIamInstanceProfileArn());
-              final String profileArn = Accounts.getInstanceProfileArn(instanceProfile);
-              IamInstanceProfile iamInstanceProfile = new IamInstanceProfile();
-              iamInstanceProfile.setArn(profileArn);
-              iamInstanceProfile.setId(instanceProfile.getInstanceProfileId());
-              runningInstance.setIamInstanceProfile(iamInstanceProfile);
-            } catch (NoSuchElementException nsee ) {
-              LOG.debug("profile name : " + input.getIamInstanceProfileArn(),nsee);
+          } else if ( input.isIamInstanceProfileLookup( ) ) {
+            final IamInstanceProfile iamInstanceProfile =
+                lookupIamInstanceProfile( input.getOwnerAccountNumber( ), input.getIamInstanceProfileArn( ) );
+            if ( iamInstanceProfile != null ) {
+              runningInstance.setIamInstanceProfile( iamInstanceProfile );
             }
           }
 
@@ -73,6 +73,11 @@ public class VmInstanceTag extends Tag<VmInstanceTag> {
     this.instance = instance;
   }
 
+  @Nonnull
+  public static VmInstanceTag all( ) {
+    return new VmInstanceTag( );
+  }
+
   @Nonnull
   public static VmInstanceTag key( @Nonnull final String key ) {
     Preconditions.checkNotNull( key, "key" );
@@ -144,14 +144,13 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 
 import edu.ucsb.eucalyptus.msgs.BaseMessage;
 import edu.ucsb.eucalyptus.msgs.BaseMessages;
@@ -166,6 +165,8 @@ import javaslang.control.Option;
 public class ComputeService {
   private static Logger LOG = Logger.getLogger( ComputeService.class );
 
+  private static final List<String> INSTANCE_PAGE_ORDER = ImmutableList.of( "vmId.reservationId", "displayName" );
+
   private final DhcpOptionSets dhcpOptionSets;
   private final InternetGateways internetGateways;
   private final NatGateways natGateways;
@@ -444,9 +445,8 @@ public class ComputeService {
     final DescribeInstancesResponseType reply = msg.getReply( );
     Context ctx = Contexts.lookup( );
     boolean showAll = msg.getInstancesSet( ).remove( "verbose" ) || !msg.getInstancesSet( ).isEmpty( );
-    final Multimap<String, RunningInstancesItemType> instanceMap = TreeMultimap.create();
-    final Map<String, ReservationInfoType> reservations = Maps.newHashMap();
     final Collection<String> identifiers = normalizeInstanceIdentifiers( msg.getInstancesSet() );
+    final boolean paged = DescribePages.paged( identifiers, msg.getMaxResults( ), msg.getNextToken( ) );
     final Filter filter = Filters.generateFor( msg.getFilterSet(), VmInstance.class )
         .withOptionalInternalFilter( "instance-id", identifiers )
         .generate();
@@ -459,33 +459,74 @@ public class ComputeService {
     final OwnerFullName ownerFullName = ( ctx.isAdministrator( ) && showAll )
         ? null
         : ctx.getUserFullName( ).asAccountFullName( );
+    final Optional<List<VmInstanceReadModel.InstanceView>> modelInstances = paged ?
+        Optional.<List<VmInstanceReadModel.InstanceView>>absent( ) :
+        VmInstanceReadModel.instances( ownerFullName, identifiers, msg.getFilterSet( ), Filters.DEFAULT_FILTERS );
+    if ( modelInstances.isPresent( ) && !VmInstanceReadModel.isConsistencyCheck( ) ) {
+      final Set<String> notFound = Sets.newLinkedHashSet( identifiers );
+      final Map<String,List<ResourceTag>> tagsMap =
+          VmInstanceReadModel.tags( ctx.getAccountNumber( ), instanceIds( modelInstances.get( ), notFound ) );
+      errorIfNotFound( "InvalidInstanceID.NotFound", "instance ID", notFound );
+      reply.getReservationSet( ).addAll( VmInstanceReadModel.reservations( modelInstances.get( ), tagsMap ) );
+      return reply;
+    }
     try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( VmInstance.class ) ) {
-      final List<VmInstance> instances = VmInstances.list(
-          ownerFullName,
-          persistenceFilter.asCriterionWithConjunction( Restrictions.not( VmInstance.criterion( VmInstance.VmState.BURIED ) ) ),
-          persistenceFilter.getAliases( ),
-          Predicates.and( new TrackingPredicate<VmInstance>( identifiers ), requestedAndAccessible ) );
-      errorIfNotFound( "InvalidInstanceID.NotFound", "instance ID", identifiers );
+      final Criterion criterion =
+          persistenceFilter.asCriterionWithConjunction( Restrictions.not( VmInstance.criterion( VmInstance.VmState.BURIED ) ) );
+      final List<VmInstance> instances;
+      if ( paged ) {
+        final VmInstance example = VmInstance.named( ownerFullName, null );
+        final int batchSize = DescribePages.pageSize( msg.getMaxResults( ) );
+        final DescribePages.DescribePage<VmInstance> page = DescribePages.describe(
+            new Function<List<String>,List<VmInstance>>( ) {
+              @Override
+              public List<VmInstance> apply( final List<String> pageKey ) {
+                return Entities.queryPage(
+                    example, true, criterion, persistenceFilter.getAliases( ), INSTANCE_PAGE_ORDER, pageKey, batchSize );
+              }
+            },
+            Predicates.and( RestrictedTypes.filterByOwner( ownerFullName ), requestedAndAccessible ),
+            InstancePageKey.INSTANCE,
+            INSTANCE_PAGE_ORDER.size( ),
+            DescribePages.scope(
+                "DescribeInstances",
+                ctx.getUserFullName( ).getUserId( ),
+                ownerFullName == null ? null : ownerFullName.getAccountNumber( ),
+                msg.getFilterSet( ) ),
+            msg.getNextToken( ),
+            msg.getMaxResults( ) );
+        instances = page.getItems( );
+        reply.setNextToken( page.getNextToken( ) );
+      } else {
+        instances = Ordering.<String>natural( ).lexicographical( ).onResultOf( InstancePageKey.INSTANCE )
+            .sortedCopy( VmInstances.list(
+                ownerFullName,
+                criterion,
+                persistenceFilter.getAliases( ),
+                Predicates.and( new TrackingPredicate<VmInstance>( identifiers ), requestedAndAccessible ) ) );
+        if ( modelInstances.isPresent( ) ) {
+          VmInstanceReadModel.check(
+              "DescribeInstances", VmInstanceReadModel.CheckedItem.INSTANCE, modelInstances.get( ), instances );
+        }
+        errorIfNotFound( "InvalidInstanceID.NotFound", "instance ID", identifiers );
+      }
       final Map<String,List<Tag>> tagsMap = TagSupport.forResourceClass( VmInstance.class )
           .getResourceTagMap(  AccountFullName.getInstance( ctx.getAccountNumber() ),
               Iterables.transform( instances, CloudMetadatas.toDisplayName() ) );
 
+      // instances are ordered by reservation so reservations are built in order
+      final Map<String, ReservationInfoType> reservations = Maps.newLinkedHashMap( );
       for ( final VmInstance vm : instances ) {
-        if ( instanceMap.put( vm.getReservationId( ), VmInstance.transform( vm ) ) && !reservations.containsKey( vm.getReservationId( ) ) ) {
-          reservations.put( vm.getReservationId( ), TypeMappers.transform( vm, ReservationInfoType.class ) );
-        }
-      }
-      List<ReservationInfoType> replyReservations = reply.getReservationSet( );
-      for ( ReservationInfoType r : reservations.values( ) ) {
-        Collection<RunningInstancesItemType> instanceSet = instanceMap.get( r.getReservationId( ) );
-        if ( !instanceSet.isEmpty( ) ) {
-          for ( final RunningInstancesItemType instancesItemType : instanceSet ) {
-            Tags.addFromTags( instancesItemType.getTagSet(), ResourceTag.class, tagsMap.get( instancesItemType.getInstanceId() ) );
-          }
-          r.getInstancesSet( ).addAll( instanceSet );
-          replyReservations.add( r );
+        ReservationInfoType reservation = reservations.get( vm.getReservationId( ) );
+        if ( reservation == null ) {
+          reservation = TypeMappers.transform( vm, ReservationInfoType.class );
+          reservations.put( vm.getReservationId( ), reservation );
         }
+        final RunningInstancesItemType instancesItemType = VmInstance.transform( vm );
+        Tags.addFromTags( instancesItemType.getTagSet(), ResourceTag.class, tagsMap.get( instancesItemType.getInstanceId() ) );
+        reservation.getInstancesSet( ).add( instancesItemType );
       }
+      reply.getReservationSet( ).addAll( reservations.values( ) );
     } catch ( final Exception e ) {
       Exceptions.findAndRethrow( e, ComputeServiceException.class );
       LOG.error( e );
@@ -514,12 +555,35 @@ public class ComputeService {
     final OwnerFullName ownerFullName = ( ctx.isAdministrator( ) && showAll )
         ? null
         : ctx.getUserFullName( ).asAccountFullName( );
+    final Optional<List<VmInstanceReadModel.InstanceView>> modelInstances =
+        VmInstanceReadModel.instances( ownerFullName, identifiers, msg.getFilterSet( ), "status" );
+    final List<VmInstanceReadModel.InstanceView> modelStatusInstances = Lists.newArrayList( );
+    if ( modelInstances.isPresent( ) ) {
+      for ( final VmInstanceReadModel.InstanceView view : modelInstances.get( ) ) {
+        if ( includeAllInstances || view.getState( ) == VmInstance.VmState.RUNNING ) {
+          modelStatusInstances.add( view );
+        }
+      }
+      if ( !VmInstanceReadModel.isConsistencyCheck( ) ) {
+        final Set<String> notFound = Sets.newLinkedHashSet( identifiers );
+        instanceIds( modelInstances.get( ), notFound );
+        errorIfNotFound( "InvalidInstanceID.NotFound", "instance ID", notFound );
+        for ( final VmInstanceReadModel.InstanceView view : modelStatusInstances ) {
+          reply.getInstanceStatusSet( ).getItem( ).add( view.getStatus( ) );
+        }
+        return reply;
+      }
+    }
     try {
       final List<VmInstance> instances = VmInstances.list(
           ownerFullName,
           persistenceFilter.asCriterionWithConjunction( Restrictions.not( VmInstance.criterion( VmInstance.VmState.BURIED ) ) ),
           persistenceFilter.getAliases( ),
           Predicates.and( new TrackingPredicate<VmInstance>( identifiers ), requestedAndAccessible ) );
+      if ( modelInstances.isPresent( ) ) {
+        VmInstanceReadModel.check(
+            "DescribeInstanceStatus", VmInstanceReadModel.CheckedItem.STATUS, modelStatusInstances, instances );
+      }
       errorIfNotFound( "InvalidInstanceID.NotFound", "instance ID", identifiers );
       Iterables.addAll(
           reply.getInstanceStatusSet().getItem(),
@@ -2130,6 +2194,29 @@ public class ComputeService {
     throw exception;
   }
 
+  private enum InstancePageKey implements Function<VmInstance,List<String>> {
+    INSTANCE {
+      @Override
+      public List<String> apply( final VmInstance instance ) {
+        return ImmutableList.of( instance.getReservationId( ), instance.getDisplayName( ) );
+      }
+    }
+  }
+
+  /**
+   * Get the identifiers for the given instances, removing any found from the
+   * given identifiers.
+   */
+  private static List<String> instanceIds( final List<VmInstanceReadModel.InstanceView> instances,
+                                           final Collection<String> identifiers ) {
+    final List<String> instanceIds = Lists.newArrayListWithCapacity( instances.size( ) );
+    for ( final VmInstanceReadModel.InstanceView view : instances ) {
+      instanceIds.add( view.getInstanceId( ) );
+      identifiers.remove( view.getInstanceId( ) );
+    }
+    return instanceIds;
+  }
+
   private static class TrackingPredicate<T extends RestrictedType> implements Predicate<T> {
     private final Function<? super T,String> idFunction;
     private final Collection<String> identifiers;
@@ -0,0 +1,211 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.compute.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import com.eucalyptus.compute.common.Filter;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Support for describe operations using keyset pagination.
+ *
+ * <p>Resources are queried in a unique order, the next token identifies the
+ * last resource examined so the following page can be queried from that
+ * point.</p>
+ *
+ * <p>Tokens are bound to a scope, a digest of the caller, action and filters
+ * for the request. A token is rejected if used with a different scope. The
+ * scope is not a security control, the resources in a page are always
+ * filtered for the caller.</p>
+ */
+final class DescribePages {
+
+  static final int MIN_RESULTS = 5;
+  static final int MAX_RESULTS = 1000;
+
+  private static final int SCOPE_LENGTH = 16;
+
+  /**
+   * Check the paging parameters for a request.
+   *
+   * @param identifiers The requested resource identifiers
+   * @param maxResults The maximum results parameter
+   * @param nextToken The next token parameter
+   * @return True if the request is paged
+   * @throws ComputeServiceClientException If the paging parameters are not valid
+   */
+  static boolean paged(
+      @Nonnull  final Collection<String> identifiers,
+      @Nullable final Integer maxResults,
+      @Nullable final String nextToken
+  ) throws ComputeServiceClientException {
+    final boolean paged = maxResults != null || !Strings.isNullOrEmpty( nextToken );
+    if ( paged && !identifiers.isEmpty( ) ) {
+      throw new ComputeServiceClientException(
+          "InvalidParameterCombination",
+          "The parameter instancesSet cannot be used with the parameter maxResults" );
+    }
+    pageSize( maxResults );
+    return paged;
+  }
+
+  /**
+   * Get the page size for the maximum results parameter.
+   *
+   * @throws ComputeServiceClientException If the maximum results are out of range
+   */
+  static int pageSize( @Nullable final Integer maxResults ) throws ComputeServiceClientException {
+    if ( maxResults == null ) {
+      return MAX_RESULTS;
+    }
+    if ( maxResults < MIN_RESULTS || maxResults > MAX_RESULTS ) {
+      throw new ComputeServiceClientException(
+          "InvalidParameterValue",
+          "Value ( " + maxResults + " ) for parameter maxResults is invalid. Expecting a value between " +
+              MIN_RESULTS + " and " + MAX_RESULTS );
+    }
+    return maxResults;
+  }
+
+  /**
+   * Get the scope for a request.
+   *
+   * @param action The action for the request
+   * @param callerId The identifier for the caller
+   * @param ownerScope The owner the request is scoped to, null for all owners
+   * @param filters The filters for the request
+   * @return The scope
+   */
+  static String scope(
+      @Nonnull  final String action,
+      @Nonnull  final String callerId,
+      @Nullable final String ownerScope,
+      @Nullable final Collection<Filter> filters
+  ) {
+    final List<String> filterStrings = Lists.newArrayList( );
+    if ( filters != null ) for ( final Filter filter : filters ) {
+      filterStrings.add( filter.getName( ) + '=' +
+          Joiner.on( ',' ).useForNull( "" ).join( Ordering.natural( ).nullsFirst( ).sortedCopy( filter.getValueSet( ) ) ) );
+    }
+    final String scope = Joiner.on( '\n' ).useForNull( "" ).join(
+        action,
+        callerId,
+        ownerScope,
+        Joiner.on( '\n' ).join( Ordering.natural( ).sortedCopy( filterStrings ) ) );
+    return Hashing.sha256( ).hashString( scope, StandardCharsets.UTF_8 ).toString( ).substring( 0, SCOPE_LENGTH );
+  }
+
+  /**
+   * Describe a page of resources.
+   *
+   * @param query Function to query a batch of resources ordered after the given key
+   * @param predicate Predicate for accessible resources
+   * @param keyFunction Function for the (unique) ordering key of a resource
+   * @param keySize The number of values in the ordering key
+   * @param scope The scope for the request
+   * @param nextToken The token for the page, null for the first page
+   * @param maxResults The maximum number of resources for the page
+   * @return The page of resources
+   */
+  static <T> DescribePage<T> describe(
+      @Nonnull  final Function<List<String>,List<T>> query,
+      @Nonnull  final Predicate<? super T> predicate,
+      @Nonnull  final Function<? super T,List<String>> keyFunction,
+                final int keySize,
+      @Nonnull  final String scope,
+      @Nullable final String nextToken,
+      @Nullable final Integer maxResults
+  ) throws ComputeServiceClientException {
+    final int pageSize = pageSize( maxResults );
+    List<String> pageKey = parseToken( nextToken, scope, keySize );
+    final List<T> items = Lists.newArrayList( );
+    boolean more = true;
+    while ( more && items.size( ) < pageSize ) {
+      final List<T> batch = query.apply( pageKey );
+      more = !batch.isEmpty( );
+      for ( final T item : batch ) {
+        pageKey = keyFunction.apply( item );
+        if ( predicate.apply( item ) ) {
+          items.add( item );
+          if ( items.size( ) >= pageSize ) break;
+        }
+      }
+    }
+    return new DescribePage<>( items, more ? token( scope, pageKey ) : null );
+  }
+
+  static String token( @Nonnull final String scope, @Nonnull final List<String> pageKey ) {
+    return BaseEncoding.base64Url( ).encode(
+        Joiner.on( '/' ).join( Lists.asList( scope, pageKey.toArray( new String[ pageKey.size( ) ] ) ) )
+            .getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  @Nullable
+  static List<String> parseToken(
+      @Nullable final String nextToken,
+      @Nonnull  final String scope,
+                final int keySize
+  ) throws ComputeServiceClientException {
+    if ( Strings.isNullOrEmpty( nextToken ) ) {
+      return null;
+    }
+    try {
+      final List<String> tokenParts = Splitter.on( '/' ).splitToList(
+          new String( BaseEncoding.base64Url( ).decode( nextToken ), StandardCharsets.UTF_8 ) );
+      if ( tokenParts.size( ) == keySize + 1 && scope.equals( tokenParts.get( 0 ) ) ) {
+        return tokenParts.subList( 1, tokenParts.size( ) );
+      }
+    } catch ( final IllegalArgumentException e ) {
+      // invalid token
+    }
+    throw new ComputeServiceClientException( "InvalidParameterValue", "Invalid value for parameter nextToken" );
+  }
+
+  static final class DescribePage<T> {
+    private final List<T> items;
+    private final String nextToken;
+
+    private DescribePage( final List<T> items, @Nullable final String nextToken ) {
+      this.items = items;
+      this.nextToken = nextToken;
+    }
+
+    public List<T> getItems( ) {
+      return items;
+    }
+
+    @Nullable
+    public String getNextToken( ) {
+      return nextToken;
+    }
+  }
+}
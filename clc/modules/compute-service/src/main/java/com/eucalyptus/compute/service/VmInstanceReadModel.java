@@ -0,0 +1,957 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.compute.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.apache.log4j.Logger;
+import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.auth.principal.OwnerFullName;
+import com.eucalyptus.compute.common.GroupItemType;
+import com.eucalyptus.compute.common.IamInstanceProfile;
+import com.eucalyptus.compute.common.InstanceStatusItemType;
+import com.eucalyptus.compute.common.ReservationInfoType;
+import com.eucalyptus.compute.common.ResourceTag;
+import com.eucalyptus.compute.common.RunningInstancesItemType;
+import com.eucalyptus.compute.common.internal.tags.Filter;
+import com.eucalyptus.compute.common.internal.tags.FilterSupport;
+import com.eucalyptus.compute.common.internal.tags.Filters;
+import com.eucalyptus.compute.common.internal.tags.InvalidFilterException;
+import com.eucalyptus.compute.common.internal.vm.VmInstance;
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmState;
+import com.eucalyptus.compute.common.internal.vm.VmInstanceTag;
+import com.eucalyptus.compute.common.internal.vm.VmRuntimeState;
+import com.eucalyptus.compute.common.internal.vpc.NetworkInterface;
+import com.eucalyptus.configurable.ConfigurableClass;
+import com.eucalyptus.configurable.ConfigurableField;
+import com.eucalyptus.configurable.PropertyChangeListeners;
+import com.eucalyptus.context.Contexts;
+import com.eucalyptus.entities.EntityCache;
+import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.TypeMapper;
+import com.eucalyptus.util.TypeMappers;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ComparisonChain;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
+import edu.ucsb.eucalyptus.msgs.BaseMessages;
+import edu.ucsb.eucalyptus.msgs.EucalyptusData;
+
+/**
+ * In-memory read model for instance describe requests.
+ *
+ * <p>Instances, their tags and network interfaces are cached as immutable
+ * views stamped with the entity version. The caches are loaded and refreshed
+ * by a background task while the model is enabled, requests are served from
+ * the database until the first load completes.</p>
+ *
+ * <p>Views are refreshed from changes committed in this JVM (e.g. instance
+ * state transitions and tag updates) when next used or by the background
+ * task within a second. A full version scan at the configured interval picks
+ * up any other changes, so changes from other hosts can be stale for up to
+ * the full refresh interval plus the time taken for the scan.</p>
+ *
+ * <p>The read model is only used when filters for a request can be evaluated
+ * against the views and when no resource level permission check is required.
+ * In all other cases (or when the model is disabled) callers should use the
+ * database.</p>
+ */
+@ConfigurableClass( root = "cloud.vmstate",
+                    description = "Parameters controlling the lifecycle of virtual machines." )
+public class VmInstanceReadModel {
+
+  private static final Logger logger = Logger.getLogger( VmInstanceReadModel.class );
+
+  @ConfigurableField( description = "Use an in-memory read model for administrative instance describe requests.",
+                      initial = "false", changeListener = PropertyChangeListeners.IsBoolean.class )
+  public static volatile Boolean DESCRIBE_READ_MODEL = false;
+
+  @ConfigurableField( description = "Compare instance describe results from the read model with the database and log any differences.",
+                      initial = "false", changeListener = PropertyChangeListeners.IsBoolean.class )
+  public static volatile Boolean DESCRIBE_READ_MODEL_CHECK = false;
+
+  @ConfigurableField( description = "Interval in seconds between full refreshes of the instance read model, changes from other hosts can be stale for this interval.",
+                      initial = "60", changeListener = PropertyChangeListeners.IsPositiveInteger.class )
+  public static volatile Integer DESCRIBE_READ_MODEL_FULL_REFRESH_SECS = 60;
+
+  private static final long REFRESH_DELAY_MILLIS = 1000L;
+
+  private static final AtomicBoolean refreshStarted = new AtomicBoolean( );
+
+  private static volatile boolean refreshed = false;
+
+  public static boolean isConsistencyCheck( ) {
+    return Objects.firstNonNull( DESCRIBE_READ_MODEL_CHECK, Boolean.FALSE );
+  }
+
+  /**
+   * List instance views for the given request parameters.
+   *
+   * @param owner The owner to filter by, null for any owner
+   * @param identifiers The requested instance identifiers (not modified)
+   * @param filters The request filters
+   * @param qualifier The filter qualifier
+   * @return The ordered views or absent if the database should be used
+   */
+  @Nonnull
+  public static Optional<List<InstanceView>> instances( @Nullable final OwnerFullName owner,
+                                                        @Nonnull  final Collection<String> identifiers,
+                                                        @Nonnull  final Iterable<com.eucalyptus.compute.common.Filter> filters,
+                                                        @Nonnull  final String qualifier ) {
+    if ( !isEnabled( ) ) {
+      return Optional.absent( );
+    }
+    if ( refreshStarted.compareAndSet( false, true ) ) {
+      Caches.refreshExecutor.scheduleWithFixedDelay( new Runnable( ) {
+        @Override
+        public void run( ) {
+          refresh( );
+        }
+      }, 0, REFRESH_DELAY_MILLIS, TimeUnit.MILLISECONDS );
+    }
+    if ( !refreshed ||
+        !Contexts.lookup( ).hasAdministrativePrivileges( ) ||
+        FilterSupport.forResource( InstanceView.class, qualifier ) == null ) {
+      return Optional.absent( );
+    }
+
+    final Filter filter;
+    try {
+      filter = Filters.generateFor( filters, InstanceView.class, qualifier )
+          .withOptionalInternalFilter( "instance-id", identifiers )
+          .generate( );
+    } catch ( final InvalidFilterException e ) {
+      return Optional.absent( ); // unsupported filter, e.g. tags or network interfaces
+    }
+
+    final Iterable<InstanceView> instanceViews;
+    final ImmutableListMultimap<String,NetworkInterfaceView> networkInterfaces;
+    try {
+      instanceViews = Caches.instances.getIfLoaded( ).get( );
+      networkInterfaces = Caches.networkInterfaces.index( );
+    } catch ( final Exception e ) {
+      logger.error( "Error refreshing instance read model", e );
+      return Optional.absent( );
+    }
+
+    final String ownerAccountNumber = owner == null ? null : owner.getAccountNumber( );
+    final Set<String> requested = ImmutableSet.copyOf( identifiers );
+    final Predicate<Object> filterPredicate = filter.asPredicate( );
+    final List<InstanceView> views = Lists.newArrayList( );
+    for ( final InstanceView view : instanceViews ) {
+      if ( ( ownerAccountNumber == null || ownerAccountNumber.equals( view.getOwnerAccountNumber( ) ) ) &&
+          ( requested.isEmpty( ) || requested.contains( view.getInstanceId( ) ) ) &&
+          filterPredicate.apply( view ) ) {
+        for ( final Map.Entry<String,Integer> networkInterfaceVersion : view.getNetworkInterfaceVersions( ).entrySet( ) ) {
+          final List<NetworkInterfaceView> current = networkInterfaces.get( networkInterfaceVersion.getKey( ) );
+          if ( current.isEmpty( ) || !networkInterfaceVersion.getValue( ).equals( current.get( 0 ).getVersion( ) ) ) {
+            return Optional.absent( ); // interface changed since the instance view was built
+          }
+        }
+        views.add( view );
+      }
+    }
+    return Optional.<List<InstanceView>>of( views );
+  }
+
+  /**
+   * Get the tags owned by the given account for the given instances.
+   *
+   * @return Tags by instance identifier, ordered by key
+   */
+  @Nonnull
+  public static Map<String,List<ResourceTag>> tags( @Nonnull final String accountNumber,
+                                                    @Nonnull final Iterable<String> instanceIds ) {
+    final ImmutableListMultimap<String,TagView> tagIndex = Caches.tags.index( );
+    final Map<String,List<ResourceTag>> tagMap = Maps.newHashMap( );
+    for ( final String instanceId : instanceIds ) {
+      final List<ResourceTag> tags = Lists.newArrayList( );
+      for ( final TagView tag : tagIndex.get( instanceId ) ) {
+        if ( accountNumber.equals( tag.getOwnerAccountNumber( ) ) ) {
+          tags.add( new ResourceTag( tag.getKey( ), tag.getValue( ) ) );
+        }
+      }
+      tagMap.put( instanceId, tags );
+    }
+    return tagMap;
+  }
+
+  /**
+   * Build reservations for the given views.
+   *
+   * <p>Views are ordered by reservation so reservations are built in order,
+   * as for the database.</p>
+   *
+   * @param views The ordered views
+   * @param tags Tags by instance identifier
+   * @return The reservations with instances and tags
+   */
+  @Nonnull
+  public static List<ReservationInfoType> reservations( @Nonnull final List<InstanceView> views,
+                                                        @Nonnull final Map<String,List<ResourceTag>> tags ) {
+    final Map<String,ReservationInfoType> reservations = Maps.newLinkedHashMap( );
+    for ( final InstanceView view : views ) {
+      ReservationInfoType reservation = reservations.get( view.getReservationId( ) );
+      if ( reservation == null ) {
+        reservation = view.getReservation( );
+        reservations.put( view.getReservationId( ), reservation );
+      }
+      final RunningInstancesItemType instance = view.getInstance( );
+      final List<ResourceTag> instanceTags = tags.get( view.getInstanceId( ) );
+      if ( instanceTags != null ) {
+        instance.getTagSet( ).addAll( instanceTags );
+      }
+      reservation.getInstancesSet( ).add( instance );
+    }
+    return Lists.newArrayList( reservations.values( ) );
+  }
+
+  /**
+   * Compare read model results with those from the database, logging any
+   * differences.
+   *
+   * <p>Items for instances at the same version are compared with those
+   * built from the database.</p>
+   *
+   * @param action The request action, for logging
+   * @param item The response items to compare
+   * @param views The results from the read model
+   * @param instances The results from the database
+   * @return True if the results were consistent
+   */
+  public static boolean check( @Nonnull final String action,
+                               @Nonnull final CheckedItem item,
+                               @Nonnull final List<InstanceView> views,
+                               @Nonnull final List<VmInstance> instances ) {
+    final Map<String,InstanceView> modelViews = Maps.newLinkedHashMap( );
+    for ( final InstanceView view : views ) {
+      modelViews.put( view.getInstanceId( ), view );
+    }
+    final Map<String,VmInstance> databaseInstances = Maps.newLinkedHashMap( );
+    for ( final VmInstance instance : instances ) {
+      databaseInstances.put( instance.getInstanceId( ), instance );
+    }
+    final Set<String> missing = Sets.difference( databaseInstances.keySet( ), modelViews.keySet( ) );
+    final Set<String> unexpected = Sets.difference( modelViews.keySet( ), databaseInstances.keySet( ) );
+    final Set<String> stale = Sets.newTreeSet( );
+    final Set<String> different = Sets.newTreeSet( );
+    for ( final Map.Entry<String,VmInstance> entry : databaseInstances.entrySet( ) ) {
+      final InstanceView view = modelViews.get( entry.getKey( ) );
+      if ( view != null ) {
+        if ( !view.getVersion( ).equals( entry.getValue( ).getVersion( ) ) ) {
+          stale.add( entry.getKey( ) );
+        } else if ( !item.viewItems( view ).equals( item.instanceItems( entry.getValue( ) ) ) ) {
+          different.add( entry.getKey( ) );
+        }
+      }
+    }
+    final boolean consistent = missing.isEmpty( ) && unexpected.isEmpty( ) && stale.isEmpty( ) && different.isEmpty( );
+    if ( !consistent ) {
+      logger.warn( "Instance read model inconsistent with database for " + action +
+          " missing " + missing + " unexpected " + unexpected + " stale " + stale + " different " + different );
+    }
+    return consistent;
+  }
+
+  /**
+   * Response items compared when checking the read model.
+   */
+  public enum CheckedItem {
+    /**
+     * Reservation and instance items, requires an active transaction.
+     */
+    INSTANCE {
+      @Override
+      List<JsonNode> viewItems( final InstanceView view ) {
+        return ImmutableList.of(
+            BaseMessages.toTree( view.getReservation( ) ),
+            BaseMessages.toTree( view.getInstance( ) ) );
+      }
+
+      @Override
+      List<JsonNode> instanceItems( final VmInstance instance ) {
+        return ImmutableList.of(
+            BaseMessages.toTree( TypeMappers.transform( instance, ReservationInfoType.class ) ),
+            BaseMessages.toTree( VmInstance.transform( instance ) ) );
+      }
+    },
+    STATUS {
+      @Override
+      List<JsonNode> viewItems( final InstanceView view ) {
+        return ImmutableList.of( BaseMessages.toTree( view.getStatus( ) ) );
+      }
+
+      @Override
+      List<JsonNode> instanceItems( final VmInstance instance ) {
+        return ImmutableList.of( BaseMessages.toTree( TypeMappers.transform( instance, InstanceStatusItemType.class ) ) );
+      }
+    },
+    ;
+
+    abstract List<JsonNode> viewItems( InstanceView view );
+
+    abstract List<JsonNode> instanceItems( VmInstance instance );
+  }
+
+  private static boolean isEnabled( ) {
+    return Objects.firstNonNull( DESCRIBE_READ_MODEL, Boolean.FALSE );
+  }
+
+  private static long fullRefreshSecs( ) {
+    return Objects.firstNonNull( DESCRIBE_READ_MODEL_FULL_REFRESH_SECS, 60 );
+  }
+
+  /**
+   * Refresh the caches, this loads the caches on first use.
+   *
+   * <p>The model is not used while disabled or after a refresh fails. Changes
+   * committed while disabled are still tracked so are applied on the next
+   * refresh.</p>
+   */
+  private static void refresh( ) {
+    if ( !isEnabled( ) ) {
+      refreshed = false;
+      return;
+    }
+    try {
+      for ( final EntityCache<?,?> cache : Caches.all ) {
+        cache.trackChanges( fullRefreshSecs( ), TimeUnit.SECONDS ).get( );
+      }
+      refreshed = true;
+    } catch ( final Exception e ) {
+      refreshed = false;
+      logger.error( "Error refreshing instance read model", e );
+    }
+  }
+
+  /**
+   * Caches are only created when first used as they track entity changes.
+   */
+  private static final class Caches {
+    private static final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+        Threads.threadFactoryBuilder( ).setDaemon( true ).setNameFormat( "instance-read-model-refresh-%d" ).build( ) );
+
+    private static final EntityCache<VmInstance,InstanceView> instances = new EntityCache<>(
+        VmInstance.named( null ),
+        Restrictions.not( VmInstance.criterion( VmState.BURIED ) ),
+        Sets.newHashSet( "transientVolumeState.attachments" ),
+        Sets.newHashSet( "bootRecord.machineImage", "bootRecord.vmType", "networkGroups" ),
+        TypeMappers.lookup( VmInstance.class, InstanceView.class ) ).trackChanges( fullRefreshSecs( ), TimeUnit.SECONDS );
+
+    private static final EntityCache<VmInstanceTag,TagView> tagCache = new EntityCache<>(
+        VmInstanceTag.all( ),
+        Restrictions.conjunction( ),
+        Collections.singleton( "instance" ),
+        Collections.<String>emptySet( ),
+        TypeMappers.lookup( VmInstanceTag.class, TagView.class ) ).trackChanges( fullRefreshSecs( ), TimeUnit.SECONDS );
+
+    private static final EntityCache<NetworkInterface,NetworkInterfaceView> networkInterfaceCache = new EntityCache<>(
+        NetworkInterface.exampleWithOwner( null ),
+        TypeMappers.lookup( NetworkInterface.class, NetworkInterfaceView.class ) ).trackChanges( fullRefreshSecs( ), TimeUnit.SECONDS );
+
+    private static final List<EntityCache<?,?>> all = ImmutableList.<EntityCache<?,?>>of(
+        instances, tagCache, networkInterfaceCache );
+
+    private static final Index<TagView> tags = new Index<>( tagCache );
+
+    private static final Index<NetworkInterfaceView> networkInterfaces = new Index<>( networkInterfaceCache );
+  }
+
+  /**
+   * Views of an entity cache indexed by identifier, rebuilt when the cache
+   * snapshot changes.
+   */
+  private static final class Index<V extends Comparable<V> & Identified> {
+    private final EntityCache<?,V> cache;
+    private Iterable<V> snapshot;
+    private ImmutableListMultimap<String,V> index;
+
+    private Index( final EntityCache<?,V> cache ) {
+      this.cache = cache;
+    }
+
+    /**
+     * Get the index, the cache must be loaded.
+     */
+    synchronized ImmutableListMultimap<String,V> index( ) {
+      final Iterable<V> current = cache.getIfLoaded( ).get( );
+      if ( current != snapshot ) {
+        index = Multimaps.index( current, IdentifiedId.INSTANCE );
+        snapshot = current;
+      }
+      return index;
+    }
+  }
+
+  private interface Identified {
+    String getId( );
+  }
+
+  private enum IdentifiedId implements Function<Identified,String> {
+    INSTANCE;
+
+    @Override
+    public String apply( final Identified identified ) {
+      return identified.getId( );
+    }
+  }
+
+  /**
+   * Immutable view of an instance.
+   *
+   * <p>Response items are built for each request from the items for the
+   * instance entity version. Items that depend on state that is not part of
+   * the instance (DNS configuration, instance profiles) are resolved when
+   * built.</p>
+   *
+   * <p>Built items are shallow copies with their own lists, nested items are
+   * shared with the view and must not be modified.</p>
+   */
+  public static final class InstanceView implements Comparable<InstanceView> {
+    private final String instanceId;
+    private final String reservationId;
+    private final String ownerAccountNumber;
+    private final Integer version;
+    private final VmState state;
+    private final String availabilityZone;
+    private final String publicDnsName;
+    private final String ipAddress;
+    private final String privateDnsName;
+    private final String privateIpAddress;
+    private final String iamInstanceProfileLookup;
+    private final String instanceStatus;
+    private final String reachabilityStatus;
+    private final ImmutableSet<String> groupIds;
+    private final ImmutableSet<String> groupNames;
+    private final ImmutableMap<String,Integer> networkInterfaceVersions;
+    private final ReservationInfoType reservation;
+    private final RunningInstancesItemType instance;
+    private final InstanceStatusItemType status;
+
+    /**
+     * Create a view, the given items must not be modified.
+     *
+     * @param version The instance entity version
+     * @param state The instance state
+     * @param publicDnsName The public DNS name, empty if torn down
+     * @param ipAddress The display public address
+     * @param privateDnsName The private DNS name, empty if torn down
+     * @param privateIpAddress The display private address
+     * @param iamInstanceProfileLookup The instance profile ARN or name when looked up by name
+     * @param instanceStatus The instance status
+     * @param reachabilityStatus The instance reachability status
+     * @param networkInterfaceVersions Versions of attached network interfaces
+     * @param reservation The reservation item
+     * @param instance The instance item
+     * @param status The instance status item
+     */
+    InstanceView( final Integer version,
+                  final VmState state,
+                  final String publicDnsName,
+                  final String ipAddress,
+                  final String privateDnsName,
+                  final String privateIpAddress,
+                  @Nullable final String iamInstanceProfileLookup,
+                  final String instanceStatus,
+                  final String reachabilityStatus,
+                  final ImmutableMap<String,Integer> networkInterfaceVersions,
+                  final ReservationInfoType reservation,
+                  final RunningInstancesItemType instance,
+                  final InstanceStatusItemType status ) {
+      final ImmutableSet.Builder<String> groupIds = ImmutableSet.builder( );
+      final ImmutableSet.Builder<String> groupNames = ImmutableSet.builder( );
+      for ( final GroupItemType group : reservation.getGroupSet( ) ) {
+        groupIds.add( group.getGroupId( ) );
+        groupNames.add( group.getGroupName( ) );
+      }
+      this.instanceId = instance.getInstanceId( );
+      this.reservationId = reservation.getReservationId( );
+      this.ownerAccountNumber = reservation.getOwnerId( );
+      this.version = version;
+      this.state = state;
+      this.availabilityZone = instance.getPlacement( );
+      this.publicDnsName = publicDnsName;
+      this.ipAddress = ipAddress;
+      this.privateDnsName = privateDnsName;
+      this.privateIpAddress = privateIpAddress;
+      this.iamInstanceProfileLookup = iamInstanceProfileLookup;
+      this.instanceStatus = instanceStatus;
+      this.reachabilityStatus = reachabilityStatus;
+      this.groupIds = groupIds.build( );
+      this.groupNames = groupNames.build( );
+      this.networkInterfaceVersions = networkInterfaceVersions;
+      this.reservation = reservation;
+      this.instance = instance;
+      this.status = status;
+    }
+
+    public String getInstanceId( ) {
+      return instanceId;
+    }
+
+    public String getReservationId( ) {
+      return reservationId;
+    }
+
+    public String getOwnerAccountNumber( ) {
+      return ownerAccountNumber;
+    }
+
+    public Integer getVersion( ) {
+      return version;
+    }
+
+    public VmState getState( ) {
+      return state;
+    }
+
+    public ImmutableMap<String,Integer> getNetworkInterfaceVersions( ) {
+      return networkInterfaceVersions;
+    }
+
+    /**
+     * @see VmInstance#getDisplayPublicDnsName()
+     */
+    public String getDnsName( ) {
+      return VmInstance.dns( ) ? publicDnsName : ipAddress;
+    }
+
+    /**
+     * @see VmInstance#getDisplayPrivateDnsName()
+     */
+    public String getPrivateDnsName( ) {
+      return VmInstance.dns( ) ? privateDnsName : privateIpAddress;
+    }
+
+    /**
+     * Build a reservation with no instances.
+     */
+    public ReservationInfoType getReservation( ) {
+      final ReservationInfoType reservation = copy( this.reservation );
+      reservation.setGroupSet( Lists.newArrayList( this.reservation.getGroupSet( ) ) );
+      reservation.setInstancesSet( Lists.<RunningInstancesItemType>newArrayList( ) );
+      return reservation;
+    }
+
+    /**
+     * Build an instance with no tags.
+     */
+    public RunningInstancesItemType getInstance( ) {
+      final RunningInstancesItemType instance = copy( this.instance );
+      instance.setProductCodes( Lists.newArrayList( this.instance.getProductCodes( ) ) );
+      instance.setBlockDevices( Lists.newArrayList( this.instance.getBlockDevices( ) ) );
+      instance.setGroupSet( Lists.newArrayList( this.instance.getGroupSet( ) ) );
+      instance.setDnsName( getDnsName( ) );
+      instance.setPrivateDnsName( getPrivateDnsName( ) );
+      if ( iamInstanceProfileLookup != null ) {
+        instance.setIamInstanceProfile( Objects.firstNonNull(
+            VmInstance.lookupIamInstanceProfile( ownerAccountNumber, iamInstanceProfileLookup ),
+            new IamInstanceProfile( ) ) );
+      }
+      instance.setTagSet( Lists.<ResourceTag>newArrayList( ) );
+      return instance;
+    }
+
+    /**
+     * Build an instance status.
+     */
+    public InstanceStatusItemType getStatus( ) {
+      return copy( status );
+    }
+
+    @Override
+    public int compareTo( @Nonnull final InstanceView o ) {
+      return ComparisonChain.start( )
+          .compare( reservationId, o.reservationId )
+          .compare( instanceId, o.instanceId )
+          .result( );
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static <T extends EucalyptusData> T copy( final T data ) {
+      return (T) data.clone( );
+    }
+  }
+
+  public static final class TagView implements Comparable<TagView>, Identified {
+    private final String instanceId;
+    private final String ownerAccountNumber;
+    private final String key;
+    private final String value;
+
+    private TagView( final VmInstanceTag tag ) {
+      this.instanceId = tag.getResourceId( );
+      this.ownerAccountNumber = tag.getOwnerAccountNumber( );
+      this.key = tag.getKey( );
+      this.value = tag.getValue( );
+    }
+
+    @Override
+    public String getId( ) {
+      return instanceId;
+    }
+
+    public String getOwnerAccountNumber( ) {
+      return ownerAccountNumber;
+    }
+
+    public String getKey( ) {
+      return key;
+    }
+
+    public String getValue( ) {
+      return value;
+    }
+
+    @Override
+    public int compareTo( @Nonnull final TagView o ) {
+      return ComparisonChain.start( )
+          .compare( instanceId, o.instanceId )
+          .compare( key, o.key )
+          .compare( ownerAccountNumber, o.ownerAccountNumber )
+          .result( );
+    }
+  }
+
+  public static final class NetworkInterfaceView implements Comparable<NetworkInterfaceView>, Identified {
+    private final String networkInterfaceId;
+    private final Integer version;
+
+    private NetworkInterfaceView( final NetworkInterface networkInterface ) {
+      this.networkInterfaceId = networkInterface.getDisplayName( );
+      this.version = networkInterface.getVersion( );
+    }
+
+    @Override
+    public String getId( ) {
+      return networkInterfaceId;
+    }
+
+    public Integer getVersion( ) {
+      return version;
+    }
+
+    @Override
+    public int compareTo( @Nonnull final NetworkInterfaceView o ) {
+      return networkInterfaceId.compareTo( o.networkInterfaceId );
+    }
+  }
+
+  @TypeMapper
+  public enum VmInstanceToInstanceView implements Function<VmInstance,InstanceView> {
+    INSTANCE;
+
+    @Override
+    public InstanceView apply( final VmInstance vm ) {
+      final VmRuntimeState runtimeState = vm.getRuntimeState( );
+      final boolean tornDown = VmInstance.VmStateSet.TORNDOWN.apply( vm );
+      final ImmutableMap.Builder<String,Integer> networkInterfaceVersions = ImmutableMap.builder( );
+      for ( final NetworkInterface networkInterface : vm.getNetworkInterfaces( ) ) {
+        networkInterfaceVersions.put( networkInterface.getDisplayName( ), networkInterface.getVersion( ) );
+      }
+      return new InstanceView(
+          vm.getVersion( ),
+          vm.getState( ),
+          tornDown ? "" : vm.getPublicDnsName( ),
+          vm.getDisplayPublicAddress( ),
+          tornDown ? "" : vm.getPrivateDnsName( ),
+          vm.getDisplayPrivateAddress( ),
+          vm.isIamInstanceProfileLookup( ) ? vm.getIamInstanceProfileArn( ) : null,
+          Objects.firstNonNull( runtimeState.getInstanceStatus( ), VmRuntimeState.InstanceStatus.Ok ).toString( ),
+          Objects.firstNonNull( runtimeState.getReachabilityStatus( ), VmRuntimeState.ReachabilityStatus.Passed ).toString( ),
+          networkInterfaceVersions.build( ),
+          TypeMappers.transform( vm, ReservationInfoType.class ),
+          VmInstance.transform( vm ),
+          TypeMappers.transform( vm, InstanceStatusItemType.class ) );
+    }
+  }
+
+  @TypeMapper
+  public enum VmInstanceTagToTagView implements Function<VmInstanceTag,TagView> {
+    INSTANCE;
+
+    @Override
+    public TagView apply( final VmInstanceTag tag ) {
+      return new TagView( tag );
+    }
+  }
+
+  @TypeMapper
+  public enum NetworkInterfaceToNetworkInterfaceView implements Function<NetworkInterface,NetworkInterfaceView> {
+    INSTANCE;
+
+    @Override
+    public NetworkInterfaceView apply( final NetworkInterface networkInterface ) {
+      return new NetworkInterfaceView( networkInterface );
+    }
+  }
+
+  public static class InstanceViewFilterSupport extends FilterSupport<InstanceView> {
+    public InstanceViewFilterSupport( ) {
+      super( builderFor( InstanceView.class )
+          .withStringProperty( "availability-zone", InstanceViewFilterFunctions.AVAILABILITY_ZONE )
+          .withStringProperty( "client-token", InstanceViewFilterFunctions.CLIENT_TOKEN )
+          .withStringProperty( "dns-name", InstanceViewFilterFunctions.DNS_NAME )
+          .withStringSetProperty( "group-id", InstanceViewStringSetFilterFunctions.GROUP_ID )
+          .withStringSetProperty( "group-name", InstanceViewStringSetFilterFunctions.GROUP_NAME )
+          .withStringProperty( "image-id", InstanceViewFilterFunctions.IMAGE_ID )
+          .withStringProperty( "instance-id", InstanceViewFilterFunctions.INSTANCE_ID )
+          .withConstantProperty( "instance-lifecycle", "" )
+          .withIntegerProperty( "instance-state-code", InstanceViewIntegerFilterFunctions.INSTANCE_STATE_CODE )
+          .withStringProperty( "instance-state-name", InstanceViewFilterFunctions.INSTANCE_STATE_NAME )
+          .withStringProperty( "instance-type", InstanceViewFilterFunctions.INSTANCE_TYPE )
+          .withStringSetProperty( "instance.group-id", InstanceViewStringSetFilterFunctions.GROUP_ID )
+          .withStringSetProperty( "instance.group-name", InstanceViewStringSetFilterFunctions.GROUP_NAME )
+          .withStringProperty( "ip-address", InstanceViewFilterFunctions.IP_ADDRESS )
+          .withStringProperty( "kernel-id", InstanceViewFilterFunctions.KERNEL_ID )
+          .withStringProperty( "key-name", InstanceViewFilterFunctions.KEY_NAME )
+          .withStringProperty( "launch-index", InstanceViewFilterFunctions.LAUNCH_INDEX )
+          .withDateProperty( "launch-time", InstanceViewDateFilterFunctions.LAUNCH_TIME )
+          .withStringProperty( "monitoring-state", InstanceViewFilterFunctions.MONITORING_STATE )
+          .withStringProperty( "owner-id", InstanceViewFilterFunctions.OWNER_ID )
+          .withStringProperty( "platform", InstanceViewFilterFunctions.PLATFORM )
+          .withStringProperty( "private-dns-name", InstanceViewFilterFunctions.PRIVATE_DNS_NAME )
+          .withStringProperty( "private-ip-address", InstanceViewFilterFunctions.PRIVATE_IP_ADDRESS )
+          .withStringProperty( "ramdisk-id", InstanceViewFilterFunctions.RAMDISK_ID )
+          .withStringProperty( "reason", InstanceViewFilterFunctions.REASON )
+          .withStringProperty( "reservation-id", InstanceViewFilterFunctions.RESERVATION_ID )
+          .withStringProperty( "subnet-id", InstanceViewFilterFunctions.SUBNET_ID )
+          .withConstantProperty( "tenancy", "default" )
+          .withStringProperty( "virtualization-type", InstanceViewFilterFunctions.VIRTUALIZATION_TYPE )
+          .withStringProperty( "vpc-id", InstanceViewFilterFunctions.VPC_ID )
+      );
+    }
+  }
+
+  public static class InstanceViewStatusFilterSupport extends FilterSupport<InstanceView> {
+    public InstanceViewStatusFilterSupport( ) {
+      super( qualifierBuilderFor( InstanceView.class, "status" )
+          .withStringProperty( "availability-zone", InstanceViewFilterFunctions.AVAILABILITY_ZONE )
+          .withInternalStringProperty( "instance-id", InstanceViewFilterFunctions.INSTANCE_ID )
+          .withIntegerProperty( "instance-state-code", InstanceViewIntegerFilterFunctions.INSTANCE_STATE_CODE )
+          .withStringProperty( "instance-state-name", InstanceViewFilterFunctions.INSTANCE_STATE_NAME )
+          .withStringProperty( "system-status.status", InstanceViewFilterFunctions.INSTANCE_STATUS )
+          .withStringProperty( "system-status.reachability", InstanceViewFilterFunctions.INSTANCE_REACHABILITY_STATUS )
+          .withStringProperty( "instance-status.status", InstanceViewFilterFunctions.INSTANCE_STATUS )
+          .withStringProperty( "instance-status.reachability", InstanceViewFilterFunctions.INSTANCE_REACHABILITY_STATUS )
+      );
+    }
+  }
+
+  private enum InstanceViewDateFilterFunctions implements Function<InstanceView,Date> {
+    LAUNCH_TIME {
+      @Override
+      public Date apply( final InstanceView view ) {
+        return view.instance.getLaunchTime( );
+      }
+    },
+  }
+
+  private enum InstanceViewIntegerFilterFunctions implements Function<InstanceView,Integer> {
+    INSTANCE_STATE_CODE {
+      @Override
+      public Integer apply( final InstanceView view ) {
+        return view.state.getDisplayState( ).getCode( );
+      }
+    },
+  }
+
+  private enum InstanceViewStringSetFilterFunctions implements Function<InstanceView,Set<String>> {
+    GROUP_ID {
+      @Override
+      public Set<String> apply( final InstanceView view ) {
+        return view.groupIds;
+      }
+    },
+    GROUP_NAME {
+      @Override
+      public Set<String> apply( final InstanceView view ) {
+        return view.groupNames;
+      }
+    },
+  }
+
+  private enum InstanceViewFilterFunctions implements Function<InstanceView,String> {
+    AVAILABILITY_ZONE {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.availabilityZone;
+      }
+    },
+    CLIENT_TOKEN {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getClientToken( );
+      }
+    },
+    DNS_NAME {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.getDnsName( );
+      }
+    },
+    IMAGE_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getImageId( );
+      }
+    },
+    INSTANCE_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instanceId;
+      }
+    },
+    INSTANCE_REACHABILITY_STATUS {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.reachabilityStatus;
+      }
+    },
+    INSTANCE_STATE_NAME {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.state.getDisplayState( ).getName( );
+      }
+    },
+    INSTANCE_STATUS {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instanceStatus;
+      }
+    },
+    INSTANCE_TYPE {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getInstanceType( );
+      }
+    },
+    IP_ADDRESS {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.ipAddress;
+      }
+    },
+    KERNEL_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getKernel( );
+      }
+    },
+    KEY_NAME {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getKeyName( );
+      }
+    },
+    LAUNCH_INDEX {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getAmiLaunchIndex( );
+      }
+    },
+    MONITORING_STATE {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getMonitoring( );
+      }
+    },
+    OWNER_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.ownerAccountNumber;
+      }
+    },
+    PLATFORM {
+      @Override
+      public String apply( final InstanceView view ) {
+        return "windows".equals( view.instance.getPlatform( ) ) ? "windows" : "";
+      }
+    },
+    PRIVATE_DNS_NAME {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.getPrivateDnsName( );
+      }
+    },
+    PRIVATE_IP_ADDRESS {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.privateIpAddress;
+      }
+    },
+    RAMDISK_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getRamdisk( );
+      }
+    },
+    REASON {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getReason( );
+      }
+    },
+    RESERVATION_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.reservationId;
+      }
+    },
+    SUBNET_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getSubnetId( );
+      }
+    },
+    VIRTUALIZATION_TYPE {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getVirtualizationType( );
+      }
+    },
+    VPC_ID {
+      @Override
+      public String apply( final InstanceView view ) {
+        return view.instance.getVpcId( );
+      }
+    },
+  }
+}
@@ -0,0 +1,179 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.compute.service
+
+import com.eucalyptus.compute.common.Filter
+import com.google.common.base.Function
+import com.google.common.base.Predicate
+import com.google.common.base.Predicates
+import com.google.common.collect.Ordering
+import com.google.common.io.BaseEncoding
+import org.junit.Test
+
+import java.nio.charset.StandardCharsets
+
+import static org.junit.Assert.*
+
+/**
+ *
+ */
+class DescribePagesTest {
+
+  private static final String SCOPE = DescribePages.scope( 'DescribeInstances', 'AIDAAAAAAAAAAAAAAAAAA', '000000000000', [] )
+
+  // (reservation id, instance id) keys, reservations with varying instance counts
+  private static final List<List<String>> KEYS = Ordering.natural( ).lexicographical( ).sortedCopy(
+      ( 1..7 ).collectMany { Integer reservation ->
+        ( 1..reservation ).collect { Integer instance ->
+          [ "r-${reservation}".toString( ), "i-${reservation}${instance}".toString( ) ]
+        }
+      } as List<List<String>> )
+
+  @Test
+  void testPagesAcrossReservations( ) {
+    assertEquals( 'All keys', KEYS, pages( KEYS, Predicates.alwaysTrue( ), 5 ) )
+  }
+
+  @Test
+  void testPagesAcrossReservationsFiltered( ) {
+    final Predicate<List<String>> predicate = { List<String> key -> key[1].endsWith( '1' ) } as Predicate<List<String>>
+    assertEquals( 'Filtered keys', KEYS.findAll { predicate.apply( it ) }, pages( KEYS, predicate, 5 ) )
+  }
+
+  @Test
+  void testLastPageHasNoToken( ) {
+    final DescribePages.DescribePage<List<String>> page = DescribePages.describe(
+        query( KEYS.subList( 0, 3 ) ), Predicates.alwaysTrue( ), key( ), 2, SCOPE, null, 5 )
+    assertEquals( 'Page items', KEYS.subList( 0, 3 ), page.items )
+    assertNull( 'Next token', page.nextToken )
+  }
+
+  @Test
+  void testTokenScope( ) {
+    final String token = DescribePages.token( SCOPE, [ 'r-1', 'i-11' ] )
+    assertEquals( 'Parsed key', [ 'r-1', 'i-11' ], DescribePages.parseToken( token, SCOPE, 2 ) )
+    final String otherCaller = DescribePages.scope( 'DescribeInstances', 'AIDABBBBBBBBBBBBBBBBB', '000000000000', [] )
+    final String otherOwner = DescribePages.scope( 'DescribeInstances', 'AIDAAAAAAAAAAAAAAAAAA', null, [] )
+    final String otherFilters = DescribePages.scope( 'DescribeInstances', 'AIDAAAAAAAAAAAAAAAAAA', '000000000000', [
+        new Filter( name: 'instance-state-name', valueSet: [ 'running' ] )
+    ] )
+    for ( String scope : [ otherCaller, otherOwner, otherFilters ] ) {
+      assertFalse( 'Scope', SCOPE == scope )
+      assertInvalidToken( token, scope )
+    }
+  }
+
+  @Test
+  void testScopeFilterOrder( ) {
+    assertEquals( 'Scope',
+        DescribePages.scope( 'DescribeInstances', 'AIDAAAAAAAAAAAAAAAAAA', null, [
+            new Filter( name: 'a', valueSet: [ '1', '2' ] ), new Filter( name: 'b', valueSet: [ '3' ] ) ] ),
+        DescribePages.scope( 'DescribeInstances', 'AIDAAAAAAAAAAAAAAAAAA', null, [
+            new Filter( name: 'b', valueSet: [ '3' ] ), new Filter( name: 'a', valueSet: [ '2', '1' ] ) ] ) )
+  }
+
+  @Test
+  void testMalformedTokens( ) {
+    for ( String token : [
+        'not base64!',
+        BaseEncoding.base64Url( ).encode( 'r-1/i-11'.getBytes( StandardCharsets.UTF_8 ) ),
+        BaseEncoding.base64Url( ).encode( "${SCOPE}/r-1".toString( ).getBytes( StandardCharsets.UTF_8 ) ),
+        BaseEncoding.base64Url( ).encode( "${SCOPE}/r-1/i-11/x".toString( ).getBytes( StandardCharsets.UTF_8 ) ),
+    ] ) {
+      assertInvalidToken( token, SCOPE )
+    }
+  }
+
+  @Test
+  void testMaxResultsRange( ) {
+    assertEquals( 'Default page size', 1000, DescribePages.pageSize( null ) )
+    assertEquals( 'Minimum page size', 5, DescribePages.pageSize( 5 ) )
+    assertEquals( 'Maximum page size', 1000, DescribePages.pageSize( 1000 ) )
+    for ( Integer maxResults : [ -1, 0, 4, 1001, Integer.MAX_VALUE ] ) {
+      try {
+        DescribePages.pageSize( maxResults )
+        fail( "Expected failure for maxResults ${maxResults}" )
+      } catch ( ComputeServiceClientException e ) {
+        assertEquals( 'Error code', 'InvalidParameterValue', e.code )
+      }
+    }
+  }
+
+  @Test
+  void testPaged( ) {
+    assertFalse( 'Not paged', DescribePages.paged( [ ], null, null ) )
+    assertFalse( 'Not paged with identifiers', DescribePages.paged( [ 'i-11' ], null, '' ) )
+    assertTrue( 'Paged max results', DescribePages.paged( [ ], 5, null ) )
+    assertTrue( 'Paged token', DescribePages.paged( [ ], null, 'token' ) )
+  }
+
+  @Test
+  void testPagedWithIdentifiers( ) {
+    for ( List<Object> params : [ [ 5, null ], [ null, 'token' ] ] ) {
+      try {
+        DescribePages.paged( [ 'i-11' ], (Integer) params[0], (String) params[1] )
+        fail( "Expected failure for instancesSet with ${params}" )
+      } catch ( ComputeServiceClientException e ) {
+        assertEquals( 'Error code', 'InvalidParameterCombination', e.code )
+      }
+    }
+  }
+
+  private static void assertInvalidToken( String token, String scope ) {
+    try {
+      DescribePages.parseToken( token, scope, 2 )
+      fail( "Expected failure for token ${token}" )
+    } catch ( ComputeServiceClientException e ) {
+      assertEquals( 'Error code', 'InvalidParameterValue', e.code )
+    }
+  }
+
+  private static List<List<String>> pages(
+      List<List<String>> keys,
+      Predicate<? super List<String>> predicate,
+      int maxResults
+  ) {
+    final List<List<String>> results = [ ]
+    String token = null
+    int pageCount = 0
+    while ( true ) {
+      final DescribePages.DescribePage<List<String>> page =
+          DescribePages.describe( query( keys ), predicate, key( ), 2, SCOPE, token, maxResults )
+      assertTrue( 'Page size', page.items.size( ) <= maxResults )
+      results.addAll( page.items )
+      token = page.nextToken
+      if ( token == null ) break
+      assertTrue( 'Page count', ++pageCount < keys.size( ) )
+    }
+    results
+  }
+
+  private static Function<List<String>,List<List<String>>> query( List<List<String>> keys ) {
+    return { List<String> after ->
+      keys.findAll { List<String> key ->
+        after == null || Ordering.natural( ).lexicographical( ).compare( key, after ) > 0
+      }.take( 5 )
+    } as Function<List<String>,List<List<String>>>
+  }
+
+  private static Function<List<String>,List<String>> key( ) {
+    return { List<String> key -> key } as Function<List<String>,List<String>>
+  }
+}
@@ -0,0 +1,366 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.compute.service
+
+import com.eucalyptus.compute.common.GroupItemType
+import com.eucalyptus.compute.common.IamInstanceProfile
+import com.eucalyptus.compute.common.InstanceBlockDeviceMapping
+import com.eucalyptus.compute.common.InstanceStateType
+import com.eucalyptus.compute.common.InstanceStatusEventType
+import com.eucalyptus.compute.common.InstanceStatusEventsSetType
+import com.eucalyptus.compute.common.InstanceStatusItemType
+import com.eucalyptus.compute.common.InstanceStatusType
+import com.eucalyptus.compute.common.ReservationInfoType
+import com.eucalyptus.compute.common.ResourceTag
+import com.eucalyptus.compute.common.RunningInstancesItemType
+import com.eucalyptus.compute.common.internal.tags.FilterSupport
+import com.eucalyptus.compute.common.internal.tags.InvalidFilterException
+import com.eucalyptus.compute.common.internal.vm.VmInstance.VmState
+import com.eucalyptus.compute.service.VmInstanceReadModel.InstanceView
+import com.google.common.collect.ImmutableMap
+import edu.ucsb.eucalyptus.msgs.BaseData
+import edu.ucsb.eucalyptus.msgs.BaseMessages
+import org.junit.Test
+
+import static org.junit.Assert.*
+import static org.junit.Assume.assumeNotNull
+
+/**
+ * Unit tests for the instance read model.
+ *
+ * <p>Views are built from the items the database path would return for an
+ * instance, so the read model must return the same items and match the same
+ * filters.</p>
+ */
+@SuppressWarnings("GroovyAccessibility")
+class VmInstanceReadModelTest {
+
+  // Filters for VmInstances.VmInstanceFilterSupport (cluster-manager)
+  private static final Set<String> INSTANCE_FILTERS = [
+      'architecture', 'association.allocation-id', 'association.association-id', 'association.ip-owner-id',
+      'association.public-ip', 'availability-zone', 'block-device-mapping.attach-time',
+      'block-device-mapping.delete-on-termination', 'block-device-mapping.device-name',
+      'block-device-mapping.status', 'block-device-mapping.volume-id', 'client-token', 'dns-name', 'group-id',
+      'group-name', 'hypervisor', 'iam-instance-profile.arn', 'image-id', 'instance-id', 'instance-lifecycle',
+      'instance-state-code', 'instance-state-name', 'instance-type', 'instance.group-id', 'instance.group-name',
+      'ip-address', 'kernel-id', 'key-name', 'launch-index', 'launch-time', 'monitoring-state',
+      'network-interface-private-dns-name', 'network-interface.addresses.association.ip-owner-id',
+      'network-interface.addresses.association.public-ip', 'network-interface.addresses.primary',
+      'network-interface.addresses.private-ip-address', 'network-interface.attachment.attach-time',
+      'network-interface.attachment.attachment-id', 'network-interface.attachment.delete-on-termination',
+      'network-interface.attachment.device-index', 'network-interface.attachment.instance-id',
+      'network-interface.attachment.instance-owner-id', 'network-interface.attachment.status',
+      'network-interface.availability-zone', 'network-interface.description', 'network-interface.group-id',
+      'network-interface.group-name', 'network-interface.mac-address', 'network-interface.network-interface.id',
+      'network-interface.owner-id', 'network-interface.requester-id', 'network-interface.requester-managed',
+      'network-interface.source-destination-check', 'network-interface.status', 'network-interface.subnet-id',
+      'network-interface.vpc-id', 'owner-id', 'placement-group-name', 'platform', 'private-dns-name',
+      'private-ip-address', 'product-code', 'product-code.type', 'ramdisk-id', 'reason', 'requester-id',
+      'reservation-id', 'root-device-name', 'root-device-type', 'source-dest-check', 'spot-instance-request-id',
+      'state-reason-code', 'state-reason-message', 'subnet-id', 'tenancy', 'virtualization-type', 'vpc-id',
+  ] as Set<String>
+
+  // Filters for VmInstances.VmInstanceStatusFilterSupport (cluster-manager)
+  private static final Set<String> INSTANCE_STATUS_FILTERS = [
+      'availability-zone', 'event.code', 'event.description', 'event.not-after', 'event.not-before',
+      'instance-id', 'instance-state-code', 'instance-state-name', 'instance-status.reachability',
+      'instance-status.status', 'system-status.reachability', 'system-status.status',
+  ] as Set<String>
+
+  // Filters that are not supported by the read model, requests with these filters use the database
+  private static final Set<String> DATABASE_FILTERS = ( INSTANCE_FILTERS.findAll { String filter ->
+    filter.startsWith( 'association.' ) ||
+        filter.startsWith( 'block-device-mapping.' ) ||
+        filter.startsWith( 'network-interface' ) ||
+        filter.startsWith( 'product-code' ) ||
+        filter.startsWith( 'root-device-' ) ||
+        filter.startsWith( 'state-reason-' )
+  } + [
+      'architecture', 'hypervisor', 'iam-instance-profile.arn', 'placement-group-name', 'requester-id',
+      'source-dest-check', 'spot-instance-request-id',
+  ] ) as Set<String>
+
+  private static final Set<String> DATABASE_STATUS_FILTERS = [
+      'event.code', 'event.description', 'event.not-after', 'event.not-before',
+  ] as Set<String>
+
+  @Test
+  void testFilterParity( ) {
+    assertEquals( 'Instance filters', INSTANCE_FILTERS - DATABASE_FILTERS,
+        filterNames( new VmInstanceReadModel.InstanceViewFilterSupport( ) ) )
+    assertEquals( 'Instance internal filters', [ ] as Set,
+        new VmInstanceReadModel.InstanceViewFilterSupport( ).internalFilters )
+    assertEquals( 'Instance status filters', INSTANCE_STATUS_FILTERS - DATABASE_STATUS_FILTERS,
+        filterNames( new VmInstanceReadModel.InstanceViewStatusFilterSupport( ) ) )
+    assertEquals( 'Instance status internal filters', [ 'instance-id' ] as Set,
+        new VmInstanceReadModel.InstanceViewStatusFilterSupport( ).internalFilters )
+  }
+
+  @Test
+  void testInstanceFilterSupportParity( ) {
+    // only available when run with the cluster manager classes
+    final FilterSupport instanceFilterSupport = filterSupport( 'com.eucalyptus.vm.VmInstances$VmInstanceFilterSupport' )
+    final FilterSupport statusFilterSupport = filterSupport( 'com.eucalyptus.vm.VmInstances$VmInstanceStatusFilterSupport' )
+    assumeNotNull( instanceFilterSupport, statusFilterSupport )
+    assertEquals( 'Instance filters', INSTANCE_FILTERS, filterNames( instanceFilterSupport ) )
+    assertEquals( 'Instance status filters', INSTANCE_STATUS_FILTERS, filterNames( statusFilterSupport ) )
+    assertEquals( 'Instance status internal filters', [ 'instance-id' ] as Set, statusFilterSupport.internalFilters )
+  }
+
+  @Test
+  void testUnsupportedFilters( ) {
+    for ( String filter : DATABASE_FILTERS + [ 'tag:Name', 'tag-key', 'tag-value' ] ) {
+      try {
+        new VmInstanceReadModel.InstanceViewFilterSupport( ).generate( [ (filter): [ 'value' ] as Set ], false, '000000000001' )
+        fail( "Expected failure for filter ${filter}" )
+      } catch ( InvalidFilterException e ) {
+        // expected, database is used
+      }
+    }
+  }
+
+  @Test
+  void testInstanceFilterMatch( ) {
+    final RunningInstancesItemType instance = instanceItem( 'i-00000001' )
+    final ReservationInfoType reservation = reservationItem( 'r-00000001' )
+    final InstanceView view = view( reservation, instance, statusItem( 'i-00000001' ) )
+    // values as for the database path, from the items for the instance
+    final Map<String,String> values = [
+        'availability-zone': instance.placement,
+        'client-token': instance.clientToken,
+        'dns-name': instance.dnsName,
+        'group-id': reservation.groupSet[0].groupId,
+        'group-name': reservation.groupSet[0].groupName,
+        'image-id': instance.imageId,
+        'instance-id': instance.instanceId,
+        'instance-lifecycle': '',
+        'instance-state-code': instance.stateCode,
+        'instance-state-name': instance.stateName,
+        'instance-type': instance.instanceType,
+        'instance.group-id': reservation.groupSet[0].groupId,
+        'instance.group-name': reservation.groupSet[0].groupName,
+        'ip-address': instance.ipAddress,
+        'kernel-id': instance.kernel,
+        'key-name': instance.keyName,
+        'launch-index': instance.amiLaunchIndex,
+        'launch-time': '1970-01-01T00:00:00.000Z',
+        'monitoring-state': instance.monitoring,
+        'owner-id': reservation.ownerId,
+        'platform': '',
+        'private-dns-name': instance.privateDnsName,
+        'private-ip-address': instance.privateIpAddress,
+        'ramdisk-id': instance.ramdisk,
+        'reason': instance.reason,
+        'reservation-id': reservation.reservationId,
+        'subnet-id': instance.subnetId,
+        'tenancy': 'default',
+        'virtualization-type': instance.virtualizationType,
+        'vpc-id': instance.vpcId,
+    ]
+    final VmInstanceReadModel.InstanceViewFilterSupport filterSupport = new VmInstanceReadModel.InstanceViewFilterSupport( )
+    assertEquals( 'Filters tested', filterNames( filterSupport ), values.keySet( ) )
+    values.each { String filter, String value ->
+      assertMatch( filterSupport, true, filter, value, view )
+      assertMatch( filterSupport, false, filter, 'other', view )
+    }
+    assertMatch( filterSupport, true, 'instance-id', 'i-*', view )
+    assertMatch( filterSupport, true, 'group-id', 'sg-00000002', view )
+  }
+
+  @Test
+  void testStatusFilterMatch( ) {
+    final InstanceStatusItemType status = statusItem( 'i-00000001' )
+    final InstanceView view = view( reservationItem( 'r-00000001' ), instanceItem( 'i-00000001' ), status )
+    final Map<String,String> values = [
+        'availability-zone': status.availabilityZone,
+        'instance-id': status.instanceId,
+        'instance-state-code': String.valueOf( status.instanceState.code ),
+        'instance-state-name': status.instanceState.name,
+        'instance-status.reachability': 'passed',
+        'instance-status.status': status.instanceStatus.status,
+        'system-status.reachability': 'passed',
+        'system-status.status': status.systemStatus.status,
+    ]
+    final VmInstanceReadModel.InstanceViewStatusFilterSupport filterSupport = new VmInstanceReadModel.InstanceViewStatusFilterSupport( )
+    assertEquals( 'Filters tested', filterNames( filterSupport ), values.keySet( ) )
+    values.each { String filter, String value ->
+      assertMatch( filterSupport, true, filter, value, view )
+      assertMatch( filterSupport, false, filter, 'other', view )
+    }
+  }
+
+  @Test
+  void testItems( ) {
+    final ReservationInfoType reservation = reservationItem( 'r-00000001' )
+    final RunningInstancesItemType instance = instanceItem( 'i-00000001' )
+    final InstanceStatusItemType status = statusItem( 'i-00000001' )
+    final InstanceView view = view( reservation, instance, status )
+    assertEquals( 'Reservation', tree( reservation ), tree( view.getReservation( ) ) )
+    assertEquals( 'Instance', tree( instance ), tree( view.getInstance( ) ) )
+    assertEquals( 'Status', tree( status ), tree( view.getStatus( ) ) )
+  }
+
+  @Test
+  void testItemsBuiltPerRequest( ) {
+    final InstanceView view = view( reservationItem( 'r-00000001' ), instanceItem( 'i-00000001' ), statusItem( 'i-00000001' ) )
+    final ReservationInfoType reservation = view.getReservation( )
+    final RunningInstancesItemType instance = view.getInstance( )
+    final InstanceStatusItemType status = view.getStatus( )
+    reservation.groupSet.clear( )
+    reservation.instancesSet.add( instance )
+    reservation.ownerId = '000000000002'
+    instance.tagSet.add( new ResourceTag( 'Name', 'value' ) )
+    instance.blockDevices.clear( )
+    instance.groupSet.clear( )
+    instance.productCodes.add( 'code' )
+    instance.dnsName = 'other.example.com'
+    instance.iamInstanceProfile = new IamInstanceProfile( arn: 'arn:aws:iam::000000000001:instance-profile/other' )
+    status.instanceStatus = null
+    assertEquals( 'Reservation', tree( reservationItem( 'r-00000001' ) ), tree( view.getReservation( ) ) )
+    assertEquals( 'Instance', tree( instanceItem( 'i-00000001' ) ), tree( view.getInstance( ) ) )
+    assertEquals( 'Status', tree( statusItem( 'i-00000001' ) ), tree( view.getStatus( ) ) )
+  }
+
+  @Test
+  void testReservations( ) {
+    final List<InstanceView> views = [
+        [ 'r-00000001', 'i-00000011' ],
+        [ 'r-00000001', 'i-00000012' ],
+        [ 'r-00000002', 'i-00000021' ],
+        [ 'r-00000003', 'i-00000031' ],
+        [ 'r-00000003', 'i-00000032' ],
+    ].collect { List<String> ids ->
+      view( reservationItem( ids[0] ), instanceItem( ids[1] ), statusItem( ids[1] ) )
+    }
+    final Map<String,List<ResourceTag>> tags = [
+        'i-00000011': [ new ResourceTag( 'Name', 'one' ) ],
+        'i-00000021': [ new ResourceTag( 'Name', 'two' ), new ResourceTag( 'Type', 'web' ) ],
+    ]
+
+    // reservations as built by the database path
+    final Map<String,ReservationInfoType> expected = [:]
+    views.each { InstanceView view ->
+      final ReservationInfoType reservation =
+          expected.get( view.reservationId ) ?: ( expected[ view.reservationId ] = reservationItem( view.reservationId ) )
+      final RunningInstancesItemType instance = instanceItem( view.instanceId )
+      instance.tagSet.addAll( tags.get( view.instanceId ) ?: [ ] )
+      reservation.instancesSet.add( instance )
+    }
+
+    final List<ReservationInfoType> reservations = VmInstanceReadModel.reservations( views, tags )
+    assertEquals( 'Reservation count', 3, reservations.size( ) )
+    assertEquals( 'Reservations', expected.values( ).collect { tree( it ) }, reservations.collect { tree( it ) } )
+    assertEquals( 'Tags unchanged', 1, tags.get( 'i-00000011' ).size( ) )
+  }
+
+  private static Set<String> filterNames( final FilterSupport filterSupport ) {
+    new TreeSet<String>( filterSupport.predicateFunctions.keySet( ) )
+  }
+
+  private static FilterSupport filterSupport( final String className ) {
+    try {
+      (FilterSupport) Class.forName( className ).newInstance( )
+    } catch ( ClassNotFoundException e ) {
+      null
+    }
+  }
+
+  private static void assertMatch( final FilterSupport filterSupport,
+                                   final boolean expectedMatch,
+                                   final String filterKey,
+                                   final String filterValue,
+                                   final InstanceView target ) {
+    final boolean match = filterSupport.generate( [ (filterKey): [ filterValue ] as Set ], true, '000000000001' )
+        .asPredicate( )
+        .apply( target )
+    assertEquals( "Match for ${filterKey}=${filterValue}", expectedMatch, match )
+  }
+
+  private static Object tree( final BaseData data ) {
+    BaseMessages.toTree( data )
+  }
+
+  private static InstanceView view( final ReservationInfoType reservation,
+                                    final RunningInstancesItemType instance,
+                                    final InstanceStatusItemType status ) {
+    new InstanceView(
+        1,
+        VmState.RUNNING,
+        'euca-1-2-3-4.eucalyptus.example.com',
+        instance.ipAddress,
+        'euca-10-0-0-1.eucalyptus.internal',
+        instance.privateIpAddress,
+        null,
+        status.instanceStatus.status,
+        'passed',
+        ImmutableMap.<String,Integer>of( ),
+        reservation,
+        instance,
+        status )
+  }
+
+  private static ReservationInfoType reservationItem( final String reservationId ) {
+    new ReservationInfoType( reservationId, '000000000001', [
+        new GroupItemType( 'sg-00000001', 'default' ),
+        new GroupItemType( 'sg-00000002', 'web' ),
+    ] )
+  }
+
+  // instance item with DNS disabled, as for the database path
+  private static RunningInstancesItemType instanceItem( final String instanceId ) {
+    new RunningInstancesItemType(
+        instanceId: instanceId,
+        imageId: 'emi-00000001',
+        stateCode: '16',
+        stateName: 'running',
+        privateDnsName: '10.0.0.1',
+        dnsName: '1.2.3.4',
+        reason: 'NORMAL:  -- []',
+        keyName: 'key',
+        amiLaunchIndex: '0',
+        instanceType: 'm1.small',
+        launchTime: new Date( 0 ),
+        placement: 'zone-1',
+        kernel: 'eki-00000001',
+        ramdisk: 'eri-00000001',
+        monitoring: 'disabled',
+        ipAddress: '1.2.3.4',
+        privateIpAddress: '10.0.0.1',
+        blockDevices: [ new InstanceBlockDeviceMapping( '/dev/sda', 'vol-00000001', 'attached', new Date( 0 ), true ) ],
+        virtualizationType: 'paravirtual',
+        clientToken: 'token',
+        subnetId: 'subnet-00000001',
+        vpcId: 'vpc-00000001',
+    )
+  }
+
+  private static InstanceStatusItemType statusItem( final String instanceId ) {
+    new InstanceStatusItemType(
+        instanceId: instanceId,
+        availabilityZone: 'zone-1',
+        eventsSet: new InstanceStatusEventsSetType( item: [
+            new InstanceStatusEventType( code: 'system-reboot', description: 'reboot', notBefore: new Date( 0 ) )
+        ] ),
+        instanceState: new InstanceStateType( code: 16, name: 'running' ),
+        systemStatus: new InstanceStatusType( status: 'ok' ),
+        instanceStatus: new InstanceStatusType( status: 'ok' ),
+    )
+  }
+}
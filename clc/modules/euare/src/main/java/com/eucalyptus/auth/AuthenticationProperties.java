@@ -130,12 +130,18 @@ public class AuthenticationProperties {
       changeListener = PropertyChangeListeners.CacheSpecListener.class )
   public static volatile String AUTHORIZATION_CACHE = DEFAULT_AUTHORIZATION_CACHE;
 
-  @ConfigurableField( description = "Default expiry for cached authorization metadata", initial = "5s", changeListener = AuthenticationIntervalPropertyChangeListener.class )
+  @ConfigurableField(
+      description = "Default expiry for cached authorization metadata. Changes invalidate cached metadata only on the host making the change, other hosts use cached metadata until expiry",
+      initial = "5s",
+      changeListener = AuthenticationIntervalPropertyChangeListener.class )
   public static volatile String AUTHORIZATION_EXPIRY = "5s";
 
   @ConfigurableField( description = "Default expiry for re-use of cached authorization metadata on failure", initial = "0s", changeListener = AuthenticationIntervalPropertyChangeListener.class )
   public static volatile String AUTHORIZATION_REUSE_EXPIRY = "0s";
 
+  @ConfigurableField( description = "Interval before expiry at which cached authorization metadata is refreshed in the background, expired metadata is also used while refreshing for this interval after expiry", initial = "2s", changeListener = AuthenticationIntervalPropertyChangeListener.class )
+  public static volatile String AUTHORIZATION_REFRESH_AHEAD = "2s";
+
   @ConfigurableField( description = "Maximum number of attached managed policies", initial = DEFAULT_MAX_ATTACHMENTS_TEXT )
   public static volatile int MAX_POLICY_ATTACHMENTS = Integer.parseInt( DEFAULT_MAX_ATTACHMENTS_TEXT );
 
@@ -151,6 +157,8 @@ public class AuthenticationProperties {
 
   private static AtomicLong AUTHORIZATION_REUSE_EXPIRY_MILLIS = new AtomicLong( 0 );
 
+  private static AtomicLong AUTHORIZATION_REFRESH_AHEAD_MILLIS = new AtomicLong( TimeUnit.SECONDS.toMillis( 2 ) );
+
   private static volatile CredentialDownloadGenerateCertificateStrategy credentialDownloadGenerateCertificateStrategy =
       Enums.getIfPresent(
           CredentialDownloadGenerateCertificateStrategy.class,
@@ -182,6 +190,10 @@ public class AuthenticationProperties {
     return AUTHORIZATION_REUSE_EXPIRY_MILLIS.get( );
   }
 
+  public static long getAuthorizationRefreshAhead( ) {
+    return AUTHORIZATION_REFRESH_AHEAD_MILLIS.get( );
+  }
+
   @Nonnull
   public static CredentialDownloadGenerateCertificateStrategy getCredentialDownloadGenerateCertificateStrategy( ) {
     return com.google.common.base.Objects.firstNonNull(
@@ -22,29 +22,91 @@ package com.eucalyptus.auth.euare;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.text.IsEmptyString.isEmptyOrNullString;
+import java.lang.management.ManagementFactory;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.management.ObjectName;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import org.apache.log4j.Logger;
 import com.eucalyptus.auth.AuthException;
 import com.eucalyptus.auth.AuthenticationProperties;
+import com.eucalyptus.auth.euare.persist.entities.AccessKeyEntity;
+import com.eucalyptus.auth.euare.persist.entities.AccountEntity;
+import com.eucalyptus.auth.euare.persist.entities.CertificateEntity;
+import com.eucalyptus.auth.euare.persist.entities.GroupEntity;
+import com.eucalyptus.auth.euare.persist.entities.ManagedPolicyEntity;
+import com.eucalyptus.auth.euare.persist.entities.PolicyEntity;
+import com.eucalyptus.auth.euare.persist.entities.RoleEntity;
+import com.eucalyptus.auth.euare.persist.entities.UserEntity;
 import com.eucalyptus.auth.principal.UserPrincipal;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.system.Threads;
 import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.Parameters;
 import com.eucalyptus.util.async.AsyncExceptions;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Maps;
 
 /**
+ * Principal provider that caches principals for the configured authorization expiry.
  *
+ * <p>Principals are refreshed in the background shortly before they expire, and
+ * an expired principal is used while it is refreshed for up to the refresh ahead
+ * interval after expiry.</p>
+ *
+ * <p>Changes to identity entities invalidate cached principals for the affected
+ * account once the change is committed. Invalidated principals are reloaded on
+ * next use.</p>
+ *
+ * <p>Invalidations are not sent to other hosts. Only the cache on the host where
+ * a change was made is invalidated, on other hosts changes (e.g. revoked access
+ * keys or policies) are visible once cached principals expire.</p>
  */
 public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider {
 
+  private static final Logger LOG = Logger.getLogger( CachingPrincipalProvider.class );
+
   private final static AtomicReference<Pair<String,Cache<PrincipalCacheKey,PrincipalCacheValue>>> cacheReference =
       new AtomicReference<>( );
 
+  private static final ExecutorService refreshExecutor = Executors.newFixedThreadPool(
+      4,
+      Threads.threadFactoryBuilder( ).setDaemon( true ).setNameFormat( "principal-cache-refresh-%d" ).build( ) );
+
+  private static final AtomicLong refreshCount = new AtomicLong( );
+  private static final AtomicLong refreshFailureCount = new AtomicLong( );
+  private static final AtomicLong refreshTotalNanos = new AtomicLong( );
+
+  // principals loaded before an invalidation of their account (or all accounts) are invalid
+  private static final AtomicLong invalidationCount = new AtomicLong( );
+  private static final AtomicLong allInvalidated = new AtomicLong( );
+  private static final ConcurrentMap<String,Long> accountInvalidated = Maps.newConcurrentMap( );
+
+  static volatile LongSupplier clock = System::currentTimeMillis; // replaced for testing
+
+  static {
+    registerStatistics( );
+  }
+
   @Override
   public UserPrincipal lookupCachedPrincipalByUserId( final UserPrincipal cached, final String userId, final String nonce ) throws AuthException {
     return cache( new UserIdPrincipalCacheKey( userId, nonce ), new PrincipalLoader( ) {
@@ -94,23 +156,29 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
     } );
   }
 
-  private UserPrincipal cache(
+  static UserPrincipal cache(
       final PrincipalCacheKey key,
       final PrincipalLoader loader ) throws AuthException {
     PrincipalCacheValue principalValue = null;
     final Cache<PrincipalCacheKey,PrincipalCacheValue> cache = cache( );
     try {
       principalValue = cache.get( key, loader.callable( null ) );
-      if ( principalValue.updated + AuthenticationProperties.getAuthorizationExpiry( ) < System.currentTimeMillis( ) ) {
-        cache.invalidate( key ); // invalidate expired and refresh
+      final long age = clock.getAsLong( ) - principalValue.updated;
+      final long expiry = AuthenticationProperties.getAuthorizationExpiry( );
+      final long refreshAhead = AuthenticationProperties.getAuthorizationRefreshAhead( );
+      if ( !isValid( principalValue ) || age > expiry + refreshAhead ) {
+        cache.asMap( ).remove( key, principalValue ); // invalidate expired and refresh, unless already reloaded
         principalValue =  cache.get( key, loader.callable( principalValue.principal ) );
+      } else if ( age > expiry - refreshAhead ) {
+        refresh( cache, key, principalValue, loader );
       }
       return principalValue.principal;
     } catch ( final ExecutionException e ) {
       // reuse cached value on failure within configured limit, but not for web service error responses
       if ( !AsyncExceptions.asWebServiceError( e ).isPresent( ) &&
           principalValue != null &&
-          principalValue.created + AuthenticationProperties.getAuthorizationReuseExpiry( ) > System.currentTimeMillis( ) ) {
+          isValid( principalValue ) &&
+          principalValue.created + AuthenticationProperties.getAuthorizationReuseExpiry( ) > clock.getAsLong( ) ) {
         cache.put( key, new PrincipalCacheValue( principalValue ) );
         return principalValue.principal;
       }
@@ -122,6 +190,82 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
     }
   }
 
+  /**
+   * Refresh the given value in the background, the cached principal continues
+   * to be used until the refreshed value is available or the value expires.
+   *
+   * <p>Only one refresh is performed for a cached value.</p>
+   */
+  private static void refresh(
+      final Cache<PrincipalCacheKey,PrincipalCacheValue> cache,
+      final PrincipalCacheKey key,
+      final PrincipalCacheValue principalValue,
+      final PrincipalLoader loader
+  ) {
+    if ( principalValue.refreshing.compareAndSet( false, true ) ) try {
+      refreshExecutor.execute( new Runnable( ) {
+        @Override
+        public void run( ) {
+          final long start = System.nanoTime( );
+          try {
+            final PrincipalCacheValue refreshedValue = loader.callable( principalValue.principal ).call( );
+            // replace only if not invalidated or reloaded while refreshing
+            cache.asMap( ).replace( key, principalValue, refreshedValue );
+          } catch ( final Exception e ) {
+            // expiry handling applies on next use
+            refreshFailureCount.incrementAndGet( );
+            LOG.debug( "Error refreshing cached principal: " + e.getMessage( ) );
+          } finally {
+            refreshCount.incrementAndGet( );
+            refreshTotalNanos.addAndGet( System.nanoTime( ) - start );
+          }
+        }
+      } );
+    } catch ( final RejectedExecutionException e ) {
+      principalValue.refreshing.set( false );
+    }
+  }
+
+  /**
+   * Invalidate all cached principals, e.g. on change of identity information.
+   *
+   * <p>Principals being loaded when invalidated are reloaded on next use.</p>
+   */
+  public static void invalidateAll( ) {
+    allInvalidated.accumulateAndGet( invalidationCount.incrementAndGet( ), Math::max );
+    final Pair<String,Cache<PrincipalCacheKey,PrincipalCacheValue>> cachePair = cacheReference.get( );
+    if ( cachePair != null ) {
+      cachePair.getRight( ).invalidateAll( );
+    }
+  }
+
+  /**
+   * Invalidate cached principals for an account, e.g. on change of identity information.
+   *
+   * <p>Principals for the account that were loaded before invalidation are
+   * reloaded on next use.</p>
+   */
+  public static void invalidateAccount( @Nonnull final String accountNumber ) {
+    accountInvalidated.merge( accountNumber, invalidationCount.incrementAndGet( ), Math::max );
+  }
+
+  private static boolean isValid( final PrincipalCacheValue value ) {
+    final String accountNumber = value.principal.getAccountNumber( );
+    final Long accountInvalidation = accountNumber == null ? null : accountInvalidated.get( accountNumber );
+    return value.invalidation >= allInvalidated.get( ) &&
+        ( accountInvalidation == null || value.invalidation >= accountInvalidation );
+  }
+
+  private static void registerStatistics( ) {
+    try {
+      ManagementFactory.getPlatformMBeanServer( ).registerMBean(
+          new PrincipalCacheStatistics( ),
+          new ObjectName( "com.eucalyptus.auth:type=PrincipalCache" ) );
+    } catch ( final Exception e ) {
+      LOG.warn( "Unable to register principal cache statistics: " + e.getMessage( ) );
+    }
+  }
+
   private static Cache<PrincipalCacheKey,PrincipalCacheValue> cache( ) {
     Cache<PrincipalCacheKey,PrincipalCacheValue> cache;
     final Pair<String,Cache<PrincipalCacheKey,PrincipalCacheValue>> cachePair = cacheReference.get( );
@@ -143,17 +287,176 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
   private static Cache<PrincipalCacheKey,PrincipalCacheValue> cache( final String cacheSpec ) {
     return CacheBuilder
         .from( CacheBuilderSpec.parse( cacheSpec ) )
+        .recordStats( )
         .build( );
   }
 
-  private static abstract class PrincipalLoader {
+  /**
+   * Entity listener for invalidation of cached principals on identity change.
+   *
+   * <p>Cached principals are invalidated after the transaction commits so that
+   * principals reloaded following invalidation see the change. Only the local
+   * cache is invalidated.</p>
+   *
+   * <p>The account is determined without loading any associations, as the
+   * listener is called while the session is flushed. All principals are
+   * invalidated if the account cannot be determined.</p>
+   */
+  public static final class PrincipalEntityListener {
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void invalidate( final Object entity ) {
+      String accountNumber = null;
+      try {
+        accountNumber = accountNumber( entity );
+      } catch ( final Exception e ) {
+        LOG.debug( "Unable to determine account for principal cache invalidation: " + e.getMessage( ) );
+      }
+      try {
+        Entities.registerSynchronization( entity.getClass( ), new PrincipalInvalidationSynchronization( accountNumber ) );
+      } catch ( final Exception e ) {
+        LOG.debug( "Unable to defer principal cache invalidation: " + e.getMessage( ) );
+        invalidateAll( );
+      }
+    }
+  }
+
+  /**
+   * Invalidates cached principals for an account, or all principals if the
+   * account is not known, after commit.
+   */
+  static final class PrincipalInvalidationSynchronization implements Synchronization {
+    @Nullable private final String accountNumber;
+
+    PrincipalInvalidationSynchronization( @Nullable final String accountNumber ) {
+      this.accountNumber = accountNumber;
+    }
+
+    @Override
+    public void beforeCompletion( ) {
+    }
+
+    @Override
+    public void afterCompletion( final int status ) {
+      if ( status == Status.STATUS_COMMITTED ) {
+        if ( accountNumber != null ) {
+          invalidateAccount( accountNumber );
+        } else {
+          invalidateAll( );
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the account number for an entity using only initialized associations.
+   */
+  @Nullable
+  static String accountNumber( @Nullable final Object entity ) {
+    if ( !Entities.isInitialized( entity ) ) {
+      return null;
+    } else if ( entity instanceof AccountEntity ) {
+      return ( (AccountEntity) entity ).getAccountNumber( );
+    } else if ( entity instanceof GroupEntity ) {
+      return accountNumber( ( (GroupEntity) entity ).getAccount( ) );
+    } else if ( entity instanceof RoleEntity ) {
+      return accountNumber( ( (RoleEntity) entity ).getAccount( ) );
+    } else if ( entity instanceof ManagedPolicyEntity ) {
+      return accountNumber( ( (ManagedPolicyEntity) entity ).getAccount( ) );
+    } else if ( entity instanceof UserEntity ) {
+      final List<GroupEntity> groups = ( (UserEntity) entity ).getGroups( );
+      return !Entities.isInitialized( groups ) || groups.isEmpty( ) ? null : accountNumber( groups.get( 0 ) );
+    } else if ( entity instanceof PolicyEntity ) {
+      final PolicyEntity policy = (PolicyEntity) entity;
+      return accountNumber( policy.getGroup( ) != null ? policy.getGroup( ) : policy.getRole( ) );
+    } else if ( entity instanceof AccessKeyEntity ) {
+      return accountNumber( ( (AccessKeyEntity) entity ).getUser( ) );
+    } else if ( entity instanceof CertificateEntity ) {
+      return accountNumber( ( (CertificateEntity) entity ).getUser( ) );
+    }
+    return null;
+  }
+
+  public interface PrincipalCacheStatisticsMXBean {
+    long getSize( );
+    long getHitCount( );
+    long getMissCount( );
+    double getHitRate( );
+    long getLoadCount( );
+    long getLoadExceptionCount( );
+    double getAverageLoadMillis( );
+    long getRefreshCount( );
+    long getRefreshFailureCount( );
+    double getAverageRefreshMillis( );
+  }
+
+  private static final class PrincipalCacheStatistics implements PrincipalCacheStatisticsMXBean {
+    private static CacheStats stats( ) {
+      return cache( ).stats( );
+    }
+
+    @Override
+    public long getSize( ) {
+      return cache( ).size( );
+    }
+
+    @Override
+    public long getHitCount( ) {
+      return stats( ).hitCount( );
+    }
+
+    @Override
+    public long getMissCount( ) {
+      return stats( ).missCount( );
+    }
+
+    @Override
+    public double getHitRate( ) {
+      return stats( ).hitRate( );
+    }
+
+    @Override
+    public long getLoadCount( ) {
+      return stats( ).loadCount( );
+    }
+
+    @Override
+    public long getLoadExceptionCount( ) {
+      return stats( ).loadExceptionCount( );
+    }
+
+    @Override
+    public double getAverageLoadMillis( ) {
+      return stats( ).averageLoadPenalty( ) / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+
+    @Override
+    public long getRefreshCount( ) {
+      return refreshCount.get( );
+    }
+
+    @Override
+    public long getRefreshFailureCount( ) {
+      return refreshFailureCount.get( );
+    }
+
+    @Override
+    public double getAverageRefreshMillis( ) {
+      final long count = refreshCount.get( );
+      return count == 0 ? 0.0 : (double) refreshTotalNanos.get( ) / count / TimeUnit.MILLISECONDS.toNanos( 1 );
+    }
+  }
+
+  static abstract class PrincipalLoader {
     abstract UserPrincipal load( UserPrincipal cached ) throws AuthException;
 
     Callable<PrincipalCacheValue> callable( final UserPrincipal cached ) {
       return new Callable<PrincipalCacheValue>( ) {
         @Override
         public PrincipalCacheValue call( ) throws AuthException {
-          return new PrincipalCacheValue( load( cached ) );
+          final long invalidation = invalidationCount.get( );
+          return new PrincipalCacheValue( load( cached ), invalidation );
         }
       };
     }
@@ -162,24 +465,28 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
   private static final class PrincipalCacheValue {
              private final long created;
              private final long updated;
+             private final long invalidation;
     @Nonnull private final UserPrincipal principal;
+             private final AtomicBoolean refreshing = new AtomicBoolean( );
 
-    public PrincipalCacheValue( @Nonnull final UserPrincipal principal ) {
+    public PrincipalCacheValue( @Nonnull final UserPrincipal principal, final long invalidation ) {
       Parameters.checkParam( "principal", principal, notNullValue( ) );
-      this.created = System.currentTimeMillis( );
+      this.created = clock.getAsLong( );
       this.updated = created;
+      this.invalidation = invalidation;
       this.principal = principal;
     }
 
     public PrincipalCacheValue( @Nonnull final PrincipalCacheValue value ) {
       Parameters.checkParam( "value", value, notNullValue( ) );
       this.created = value.created;
-      this.updated = System.currentTimeMillis( );
+      this.updated = clock.getAsLong( );
+      this.invalidation = value.invalidation;
       this.principal = value.principal;
     }
   }
 
-  private static abstract class PrincipalCacheKey {
+  static abstract class PrincipalCacheKey {
     @Nonnull  private final String identifier;
     @Nullable private final String nonce;
 
@@ -214,7 +521,7 @@ public class CachingPrincipalProvider extends RegionDelegatingPrincipalProvider
     }
   }
 
-  private static final class UserIdPrincipalCacheKey extends PrincipalCacheKey {
+  static final class UserIdPrincipalCacheKey extends PrincipalCacheKey {
     protected UserIdPrincipalCacheKey(
         @Nonnull final String identifier,
         @Nullable final String nonce
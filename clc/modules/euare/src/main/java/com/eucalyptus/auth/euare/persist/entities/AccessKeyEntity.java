@@ -68,6 +68,7 @@ import java.util.Date;
 import java.util.concurrent.Callable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
@@ -77,6 +78,7 @@ import javax.persistence.PrePersist;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 import org.apache.log4j.Logger;
+import com.eucalyptus.auth.euare.CachingPrincipalProvider;
 import com.eucalyptus.auth.util.Identifiers;
 import com.eucalyptus.component.id.Euare;
 import com.eucalyptus.crypto.Crypto;
@@ -88,6 +90,7 @@ import groovy.sql.Sql;
  * Database secret key entity.
  */
 @Entity
+@EntityListeners( CachingPrincipalProvider.PrincipalEntityListener.class )
 @PersistenceContext( name = "eucalyptus_auth" )
 @Table( name = "auth_access_key", indexes = {
     @Index( name = "auth_access_key_owning_user_idx", columnList = "auth_access_key_owning_user" )
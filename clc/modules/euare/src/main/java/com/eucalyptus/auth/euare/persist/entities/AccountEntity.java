@@ -68,6 +68,7 @@ import java.util.Set;
 import javax.annotation.Nullable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.EntityTransaction;
 import javax.persistence.FetchType;
 import javax.persistence.OneToMany;
@@ -77,6 +78,7 @@ import javax.persistence.Table;
 import javax.persistence.Transient;
 
 import com.eucalyptus.auth.AuthException;
+import com.eucalyptus.auth.euare.CachingPrincipalProvider;
 import com.eucalyptus.auth.util.Identifiers;
 import com.eucalyptus.component.id.Euare;
 import com.eucalyptus.entities.Entities;
@@ -92,6 +94,7 @@ import com.google.common.base.Predicate;
  */
 
 @Entity
+@EntityListeners( CachingPrincipalProvider.PrincipalEntityListener.class )
 @PersistenceContext( name = "eucalyptus_auth" )
 @Table( name = "auth_account" )
 public class AccountEntity extends AbstractPersistent implements Serializable {
@@ -69,6 +69,7 @@ import java.util.Date;
 import java.util.List;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
@@ -80,6 +81,7 @@ import javax.persistence.Transient;
 import org.apache.log4j.Logger;
 import org.hibernate.annotations.Type;
 import org.hibernate.criterion.Restrictions;
+import com.eucalyptus.auth.euare.CachingPrincipalProvider;
 import com.eucalyptus.auth.euare.common.identity.Certificate;
 import com.eucalyptus.auth.util.Identifiers;
 import com.eucalyptus.auth.util.X509CertHelper;
@@ -94,6 +96,7 @@ import com.google.common.base.Predicate;
  * Database X509 certificate entity.
  */
 @Entity
+@EntityListeners( CachingPrincipalProvider.PrincipalEntityListener.class )
 @PersistenceContext( name = "eucalyptus_auth" )
 @Table( name = "auth_cert", indexes = {
     @Index( name = "auth_certificate_hash_id_idx", columnList = "auth_certificate_hash_id" ),
@@ -70,6 +70,7 @@ import java.util.concurrent.Callable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
@@ -85,6 +86,7 @@ import javax.persistence.Transient;
 import org.apache.log4j.Logger;
 import org.hibernate.annotations.NotFound;
 import org.hibernate.annotations.NotFoundAction;
+import com.eucalyptus.auth.euare.CachingPrincipalProvider;
 import com.eucalyptus.auth.util.Identifiers;
 import com.eucalyptus.component.id.Euare;
 import com.eucalyptus.entities.AuxiliaryDatabaseObject;
@@ -98,6 +100,7 @@ import groovy.sql.Sql;
  * Database group entity.
  */
 @Entity
+@EntityListeners( CachingPrincipalProvider.PrincipalEntityListener.class )
 @AuxiliaryDatabaseObjects({
     @AuxiliaryDatabaseObject(
         dialect = "org.hibernate.dialect.PostgreSQLDialect",
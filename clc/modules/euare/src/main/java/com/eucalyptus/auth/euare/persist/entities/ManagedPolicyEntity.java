@@ -26,6 +26,7 @@ import javax.annotation.Nullable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
@@ -41,6 +42,7 @@ import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import org.hibernate.annotations.Type;
+import com.eucalyptus.auth.euare.CachingPrincipalProvider;
 import com.eucalyptus.auth.util.Identifiers;
 import com.eucalyptus.entities.AbstractPersistent;
 import com.eucalyptus.entities.AuxiliaryDatabaseObject;
@@ -54,6 +56,7 @@ import com.google.common.collect.Lists;
  *
  */
 @Entity
+@EntityListeners( CachingPrincipalProvider.PrincipalEntityListener.class )
 @PersistenceContext( name = "eucalyptus_auth" )
 @Table( name = "auth_managed_policy", indexes = {
     @Index( name = "auth_policy_owning_account_idx", columnList = "auth_policy_owning_account" ),
@@ -65,6 +65,7 @@ package com.eucalyptus.auth.euare.persist.entities;
 import java.io.Serializable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Index;
 import javax.persistence.JoinColumn;
@@ -75,12 +76,14 @@ import javax.persistence.PersistenceContext;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 import org.hibernate.annotations.Type;
+import com.eucalyptus.auth.euare.CachingPrincipalProvider;
 import com.eucalyptus.entities.AbstractPersistent;
 
 /**
  * Database policy entity.
  */
 @Entity
+@EntityListeners( CachingPrincipalProvider.PrincipalEntityListener.class )
 @PersistenceContext( name = "eucalyptus_auth" )
 @Table( name = "auth_policy", indexes = {
     @Index( name = "auth_policy_owning_group_idx", columnList = "auth_policy_owning_group" ),
@@ -0,0 +1,207 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.auth.euare
+
+import com.eucalyptus.auth.AuthException
+import com.eucalyptus.auth.AuthenticationProperties
+import com.eucalyptus.auth.euare.persist.entities.AccessKeyEntity
+import com.eucalyptus.auth.euare.persist.entities.AccountEntity
+import com.eucalyptus.auth.euare.persist.entities.GroupEntity
+import com.eucalyptus.auth.euare.persist.entities.UserEntity
+import com.eucalyptus.auth.principal.UserPrincipal
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import javax.transaction.Status
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for principal caching, expiry, refresh and invalidation.
+ */
+class CachingPrincipalProviderTest {
+
+  private static final AtomicInteger keys = new AtomicInteger( )
+
+  private long time = 1_000_000L
+
+  @Before
+  void setUp( ) {
+    CachingPrincipalProvider.clock = { time }
+    AuthenticationProperties.AUTHORIZATION_EXPIRY_MILLIS.set( 5000 )
+    AuthenticationProperties.AUTHORIZATION_REFRESH_AHEAD_MILLIS.set( 1000 )
+    AuthenticationProperties.AUTHORIZATION_REUSE_EXPIRY_MILLIS.set( 0 )
+  }
+
+  @After
+  void tearDown( ) {
+    CachingPrincipalProvider.clock = System.&currentTimeMillis
+  }
+
+  @Test
+  void testCached( ) {
+    final TestLoader loader = new TestLoader( accountNumber: '000000000001' )
+    final CachingPrincipalProvider.PrincipalCacheKey key = key( )
+    final UserPrincipal principal = CachingPrincipalProvider.cache( key, loader )
+    time += 3999
+    assertSame( 'Cached principal', principal, CachingPrincipalProvider.cache( key, loader ) )
+    assertEquals( 'Loads', 1, loader.loads.get( ) )
+  }
+
+  @Test
+  void testRefreshAhead( ) {
+    final CountDownLatch release = new CountDownLatch( 1 )
+    final TestLoader loader = new TestLoader( accountNumber: '000000000002' )
+    final CachingPrincipalProvider.PrincipalCacheKey key = key( )
+    final UserPrincipal principal = CachingPrincipalProvider.cache( key, loader )
+
+    // stale value used while refreshing in the background
+    loader.release = release
+    time += 4500
+    assertSame( 'Stale principal', principal, CachingPrincipalProvider.cache( key, loader ) )
+    assertSame( 'Stale principal while refreshing', principal, CachingPrincipalProvider.cache( key, loader ) )
+    release.countDown( )
+
+    UserPrincipal refreshed = principal
+    for ( int i = 0; i < 500 && refreshed.is( principal ); i++ ) {
+      Thread.sleep( 10 )
+      refreshed = CachingPrincipalProvider.cache( key, loader )
+    }
+    assertNotSame( 'Refreshed principal', principal, refreshed )
+    assertEquals( 'Loads', 2, loader.loads.get( ) )
+  }
+
+  @Test
+  void testExpiredReload( ) {
+    final TestLoader loader = new TestLoader( accountNumber: '000000000003' )
+    final CachingPrincipalProvider.PrincipalCacheKey key = key( )
+    final UserPrincipal principal = CachingPrincipalProvider.cache( key, loader )
+    time += 6001
+    final UserPrincipal reloaded = CachingPrincipalProvider.cache( key, loader )
+    assertNotSame( 'Reloaded principal', principal, reloaded )
+    assertSame( 'Cached principal', reloaded, CachingPrincipalProvider.cache( key, loader ) )
+    assertEquals( 'Loads', 2, loader.loads.get( ) )
+  }
+
+  @Test
+  void testExpiredReloadFailure( ) {
+    final TestLoader loader = new TestLoader( accountNumber: '000000000004' )
+    final CachingPrincipalProvider.PrincipalCacheKey key = key( )
+    final UserPrincipal principal = CachingPrincipalProvider.cache( key, loader )
+    AuthenticationProperties.AUTHORIZATION_REUSE_EXPIRY_MILLIS.set( 60000 )
+    loader.failure = new AuthException( 'database' )
+    time += 6001
+    assertSame( 'Reused principal', principal, CachingPrincipalProvider.cache( key, loader ) )
+    time += 60000
+    try {
+      CachingPrincipalProvider.cache( key, loader )
+      fail( 'Expected failure after reuse expiry' )
+    } catch ( AuthException e ) {
+      // expected
+    }
+  }
+
+  @Test
+  void testInvalidateAfterCommit( ) {
+    final TestLoader loader = new TestLoader( accountNumber: '000000000005' )
+    final CachingPrincipalProvider.PrincipalCacheKey key = key( )
+    final UserPrincipal principal = CachingPrincipalProvider.cache( key, loader )
+
+    complete( '000000000005', Status.STATUS_ROLLEDBACK )
+    assertSame( 'Cached principal after rollback', principal, CachingPrincipalProvider.cache( key, loader ) )
+    complete( '000000000006', Status.STATUS_COMMITTED )
+    assertSame( 'Cached principal after other account commit', principal, CachingPrincipalProvider.cache( key, loader ) )
+    complete( '000000000005', Status.STATUS_COMMITTED )
+    final UserPrincipal reloaded = CachingPrincipalProvider.cache( key, loader )
+    assertNotSame( 'Reloaded principal after commit', principal, reloaded )
+    assertSame( 'Cached principal', reloaded, CachingPrincipalProvider.cache( key, loader ) )
+    assertEquals( 'Loads', 2, loader.loads.get( ) )
+  }
+
+  @Test
+  void testInvalidateAllAfterCommit( ) {
+    final TestLoader loader = new TestLoader( accountNumber: '000000000007' )
+    final CachingPrincipalProvider.PrincipalCacheKey key = key( )
+    final UserPrincipal principal = CachingPrincipalProvider.cache( key, loader )
+    complete( null, Status.STATUS_COMMITTED )
+    assertNotSame( 'Reloaded principal', principal, CachingPrincipalProvider.cache( key, loader ) )
+  }
+
+  @Test
+  void testInvalidateDuringLoad( ) {
+    final TestLoader loader = new TestLoader( accountNumber: '000000000008' )
+    loader.onLoad = { CachingPrincipalProvider.invalidateAccount( '000000000008' ) }
+    final CachingPrincipalProvider.PrincipalCacheKey key = key( )
+    final UserPrincipal principal = CachingPrincipalProvider.cache( key, loader )
+    loader.onLoad = null
+    assertNotSame( 'Reloaded principal', principal, CachingPrincipalProvider.cache( key, loader ) )
+  }
+
+  @Test
+  void testAccountNumber( ) {
+    final AccountEntity account = new AccountEntity( 'account' )
+    account.setAccountNumber( '000000000009' )
+    final GroupEntity group = new GroupEntity( '000000000009', 'group' )
+    group.setAccount( account )
+    final UserEntity user = new UserEntity( '000000000009', 'user' )
+    user.getGroups( ).add( group )
+    assertEquals( 'Account', '000000000009', CachingPrincipalProvider.accountNumber( account ) )
+    assertEquals( 'Group', '000000000009', CachingPrincipalProvider.accountNumber( group ) )
+    assertEquals( 'User', '000000000009', CachingPrincipalProvider.accountNumber( user ) )
+    final AccessKeyEntity accessKey = new AccessKeyEntity( )
+    accessKey.setUser( user )
+    assertEquals( 'Access key', '000000000009', CachingPrincipalProvider.accountNumber( accessKey ) )
+    assertNull( 'User without groups', CachingPrincipalProvider.accountNumber( new UserEntity( '000000000009', 'user' ) ) )
+    assertNull( 'Null', CachingPrincipalProvider.accountNumber( null ) )
+  }
+
+  private static CachingPrincipalProvider.PrincipalCacheKey key( ) {
+    new CachingPrincipalProvider.UserIdPrincipalCacheKey( "AIDTEST${keys.incrementAndGet( )}", null )
+  }
+
+  private static void complete( final String accountNumber, final int status ) {
+    final CachingPrincipalProvider.PrincipalInvalidationSynchronization synchronization =
+        new CachingPrincipalProvider.PrincipalInvalidationSynchronization( accountNumber )
+    synchronization.beforeCompletion( )
+    synchronization.afterCompletion( status )
+  }
+
+  private static final class TestLoader extends CachingPrincipalProvider.PrincipalLoader {
+    String accountNumber
+    volatile Exception failure
+    volatile CountDownLatch release
+    volatile Closure<?> onLoad
+    final AtomicInteger loads = new AtomicInteger( )
+
+    @Override
+    UserPrincipal load( final UserPrincipal cached ) throws AuthException {
+      loads.incrementAndGet( )
+      if ( failure != null ) throw failure
+      if ( release != null ) release.await( 5, TimeUnit.SECONDS )
+      if ( onLoad != null ) onLoad.call( )
+      final String account = accountNumber
+      [ getAccountNumber: { account } ] as UserPrincipal
+    }
+  }
+}
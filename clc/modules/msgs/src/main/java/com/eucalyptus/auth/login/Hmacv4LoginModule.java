@@ -27,7 +27,9 @@ import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
@@ -46,14 +48,17 @@ import com.eucalyptus.crypto.util.SecurityParameter;
 import com.eucalyptus.crypto.util.Timestamps;
 import com.eucalyptus.ws.util.HmacUtils;
 import com.google.common.base.Function;
-import com.google.common.base.Joiner;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Ordering;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
 import com.google.common.io.BaseEncoding;
 
 public class Hmacv4LoginModule extends HmacLoginModuleSupport {
   private static final Logger LOG = Logger.getLogger( Hmacv4LoginModule.class );
   private static final String V4_TERMINATOR = "aws4_request";
+  private static final Cache<SignatureCredential,SigningKey> signingKeyCache = CacheBuilder
+      .from( CacheBuilderSpec.parse( System.getProperty( "com.eucalyptus.auth.login.signingKeyCache", "maximumSize=10000, expireAfterAccess=1h" ) ) )
+      .build( );
 
   public Hmacv4LoginModule() {
     super(4);
@@ -75,13 +80,14 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     signatureCredential.verify( date, null, null, V4_TERMINATOR ); //TODO Do we want to validate region and service name?
     final UserPrincipal user = accessKey.getPrincipal( );
     final String secretKey = accessKey.getSecretKey( );
-    final byte[] signatureKey = getSignatureKey( secretKey, signatureCredential );
-    final CharSequence canonicalString = this.makeSubjectString( credentials, signatureCredential, authorizationParameters, date, false );
-    final byte[] computedSig = this.getHmacSHA256( signatureKey, canonicalString );
+    final Key signingKey = getSigningKey( secretKey, signatureCredential );
+    final CharSequence canonicalRequestSuffix = this.makeCanonicalRequestSuffix( credentials, authorizationParameters );
+    final CharSequence canonicalString = this.makeSubjectString( credentials, signatureCredential, canonicalRequestSuffix, date, false );
+    final byte[] computedSig = getHmacSHA256( signingKey, canonicalString );
     final byte[] providedSig = BaseEncoding.base16( ).lowerCase( ).decode( sig );
     if ( !MessageDigest.isEqual( computedSig, providedSig ) ) {
-      final CharSequence canonicalStringNoPath = this.makeSubjectString( credentials, signatureCredential, authorizationParameters, date, true );
-      final byte[] computedSigNoPath = this.getHmacSHA256( signatureKey, canonicalStringNoPath );
+      final CharSequence canonicalStringNoPath = this.makeSubjectString( credentials, signatureCredential, canonicalRequestSuffix, date, true );
+      final byte[] computedSigNoPath = getHmacSHA256( signingKey, canonicalStringNoPath );
       if( !MessageDigest.isEqual( computedSigNoPath, providedSig ) ) {
         throw new InvalidSignatureAuthException( "Signature validation failed" );
       }
@@ -94,7 +100,7 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
 
   private CharSequence makeSubjectString( @Nonnull final HmacCredentials credentials,
                                           @Nonnull final SignatureCredential signatureCredential,
-                                          @Nonnull final Map<String,String> authorizationParameters,
+                                          @Nonnull final CharSequence canonicalRequestSuffix,
                                           @Nonnull final Date date,
                                           final boolean skipPath ) throws Exception {
     final String timestamp = Timestamps.formatShortIso8601Timestamp( date );
@@ -102,54 +108,83 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     sb.append( SecurityHeader.Value.AWS4_HMAC_SHA256.value() ).append( '\n' );
     sb.append( timestamp ).append( '\n' );
     sb.append( signatureCredential.getCredentialScope() ).append( '\n' );
-    sb.append( digestUTF8( makeCanonicalRequest( credentials, authorizationParameters, skipPath ) ) );
+    sb.append( digestUTF8( makeCanonicalRequest( credentials, canonicalRequestSuffix, skipPath ) ) );
     if ( signatureLogger.isTraceEnabled( ) ) signatureLogger.trace( "VERSION4: " + sb.toString( ) );
     return sb;
   }
 
   private CharSequence makeCanonicalRequest( @Nonnull final HmacCredentials credentials,
-                                             @Nonnull final Map<String,String> authorizationParameters,
+                                             @Nonnull final CharSequence canonicalRequestSuffix,
                                              final boolean skipPath ) throws Exception {
-    final StringBuilder sb = new StringBuilder( 512 );
+    final StringBuilder sb = new StringBuilder( 64 + canonicalRequestSuffix.length( ) );
     sb.append( credentials.getVerb( ) );
     sb.append( '\n' );
     sb.append( skipPath ? "/" : canonicalizePath( credentials.getServicePath( ) ) ); // AWS Java SDK always uses "/"
     sb.append( '\n' );
+    sb.append( canonicalRequestSuffix );
+    if ( signatureLogger.isTraceEnabled( ) ) signatureLogger.trace( "VERSION4: " + sb.toString( ) );
+    return sb;
+  }
+
+  /**
+   * The canonical request without the verb and path, these are the same for
+   * each path that we attempt to validate the signature with.
+   */
+  private CharSequence makeCanonicalRequestSuffix( @Nonnull final HmacCredentials credentials,
+                                                   @Nonnull final Map<String,String> authorizationParameters ) throws Exception {
+    final StringBuilder sb = new StringBuilder( 512 );
+    final Map<String,List<String>> parameters = credentials.getParameters( );
+    final String[] parameterNames = parameters.keySet( ).toArray( new String[ parameters.size( ) ] );
+    Arrays.sort( parameterNames );
+    final boolean skipSignature = credentials.getVariant() == HmacUtils.SignatureVariant.SignatureV4Query;
     boolean addedParam = false;
-    for ( final String parameter : Ordering.natural( ).sortedCopy( credentials.getParameters().keySet() ) ) {
-      if ( credentials.getVariant() == HmacUtils.SignatureVariant.SignatureV4Query && SecurityParameter.X_Amz_Signature.parameter().equals( parameter ) ) {
+    for ( final String parameter : parameterNames ) {
+      if ( skipSignature && SecurityParameter.X_Amz_Signature.parameter().equals( parameter ) ) {
         continue;
       }
-      for ( final String value : Ordering.natural().sortedCopy( credentials.getParameters().get( parameter ) ) ) {
-        sb.append( urlencode(parameter) );
+      final String encodedParameter = urlencode( parameter );
+      for ( final String value : sorted( parameters.get( parameter ), false ) ) {
+        sb.append( encodedParameter );
         sb.append( '=' );
-        sb.append( urlencode(value) );
+        sb.append( urlencode( value ) );
         sb.append( '&' );
         addedParam = true;
       }
     }
     if ( addedParam ) sb.setLength( sb.length()-1 );
     sb.append( '\n' );
-    for ( final String header : authorizationParameters.get("SignedHeaders").split(";") ) {
-      final List<String> values = Lists.transform( credentials.getHeaders().get( header ), new Function<String, String>() {
-        @Override
-        public String apply( final String text ) {
-          return text.trim();
-        }
-      } );
+    final String signedHeaders = authorizationParameters.get( "SignedHeaders" );
+    for ( final String header : signedHeaders.split( ";" ) ) {
+      final List<String> values = credentials.getHeaders( ).get( header );
+      if ( values == null ) {
+        throw new AuthenticationException( "Signed header not present: " + header );
+      }
       sb.append( header );
       sb.append( ':' );
-      sb.append( Joiner.on( ',' ).join( Ordering.<String>natural().sortedCopy( values ) ) );
+      final String[] sortedValues = sorted( values, true );
+      for ( int i = 0; i < sortedValues.length; i++ ) {
+        if ( i > 0 ) sb.append( ',' );
+        sb.append( sortedValues[ i ] );
+      }
       sb.append( '\n' );
     }
     sb.append( '\n' );
-    sb.append( authorizationParameters.get("SignedHeaders") );
+    sb.append( signedHeaders );
     sb.append( '\n' );
     sb.append( digestUTF8( credentials.getBody() ) );
-    if ( signatureLogger.isTraceEnabled( ) ) signatureLogger.trace( "VERSION4: " + sb.toString( ) );
     return sb;
   }
 
+  private static String[] sorted( final List<String> values, final boolean trim ) {
+    final String[] sorted = new String[ values.size( ) ];
+    for ( int i = 0; i < sorted.length; i++ ) {
+      final String value = values.get( i );
+      sorted[ i ] = trim ? value.trim( ) : value;
+    }
+    if ( sorted.length > 1 ) Arrays.sort( sorted );
+    return sorted;
+  }
+
   /**
    * Returns a hex encoded SHA256 hash of the {@code text}.
    */
@@ -164,7 +199,11 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
 
   public static byte[] getHmacSHA256( final byte[] signatureKey,
                                 final CharSequence data ) throws AuthenticationException {
-    final SecretKeySpec signingKey = new SecretKeySpec( signatureKey, Hmac.HmacSHA256.toString( ) );
+    return getHmacSHA256( new SecretKeySpec( signatureKey, Hmac.HmacSHA256.toString( ) ), data );
+  }
+
+  public static byte[] getHmacSHA256( final Key signingKey,
+                                      final CharSequence data ) throws AuthenticationException {
     try {
       final ByteBuffer byteBuffer = StandardCharsets.UTF_8.encode( CharBuffer.wrap( data ) );
       return Hmac.HmacSHA256.digestBinary( signingKey, byteBuffer );
@@ -174,6 +213,29 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
     }
   }
 
+  /**
+   * Get the signing key for the given secret key and credential scope.
+   *
+   * <p>Derived keys are cached by access key identifier and scope. A cached
+   * key is only used when it was derived from the given secret key, so a
+   * changed secret results in the key being derived again. The cache holds
+   * a digest of the secret key rather than the secret key.</p>
+   */
+  public static Key getSigningKey( final String secretKey,
+                                   final SignatureCredential credential ) throws Exception {
+    final byte[] secretKeyDigest =
+        Digest.SHA256.digestBinary( StandardCharsets.UTF_8.encode( CharBuffer.wrap( secretKey ) ) );
+    final SigningKey cachedKey = signingKeyCache.getIfPresent( credential );
+    if ( cachedKey != null && MessageDigest.isEqual( cachedKey.secretKeyDigest, secretKeyDigest ) ) {
+      return cachedKey.key;
+    }
+    final SigningKey signingKey = new SigningKey(
+        secretKeyDigest,
+        new SecretKeySpec( getSignatureKey( secretKey, credential ), Hmac.HmacSHA256.toString( ) ) );
+    signingKeyCache.put( credential, signingKey );
+    return signingKey.key;
+  }
+
   public static byte[] getSignatureKey( final String key,
                                   final SignatureCredential credential ) throws Exception {
     return getHmacSHA256(
@@ -184,4 +246,14 @@ public class Hmacv4LoginModule extends HmacLoginModuleSupport {
             credential.getServiceName() ),
         credential.getTerminator() );
   }
+
+  private static final class SigningKey {
+    private final byte[] secretKeyDigest;
+    private final SecretKeySpec key;
+
+    private SigningKey( final byte[] secretKeyDigest, final SecretKeySpec key ) {
+      this.secretKeyDigest = secretKeyDigest;
+      this.key = key;
+    }
+  }
 }
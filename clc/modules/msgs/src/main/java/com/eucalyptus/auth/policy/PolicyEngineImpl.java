@@ -118,6 +118,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 /**
  * The implementation of policy engine, which evaluates a request against specified policies.
@@ -126,8 +127,8 @@ public class PolicyEngineImpl implements PolicyEngine {
 
   private static final Logger LOG = Logger.getLogger( PolicyEngineImpl.class );
 
-  private static final Cache<String,ImmutableList<Authorization>> authorizationCache = CacheBuilder
-      .<String,ImmutableList<Authorization>>newBuilder()
+  private static final Cache<String,PolicyAuthorizations> authorizationCache = CacheBuilder
+      .<String,PolicyAuthorizations>newBuilder()
       .maximumSize( 10_000 )
       .expireAfterWrite( 1, TimeUnit.HOURS )
       .build( );
@@ -154,11 +155,7 @@ public class PolicyEngineImpl implements PolicyEngine {
   private static final Matcher PATTERN_MATCHER = new Matcher( ) {
     @Override
     public boolean match( String pattern, String instance ) {
-      pattern = PolicyUtils.toJavaPattern( pattern );
-      if ( pattern == null ) {
-        return false;
-      }
-      return Pattern.matches( pattern, instance );
+      return PolicyUtils.matchesPattern( pattern, instance );
     }
   };
 
@@ -277,7 +274,7 @@ public class PolicyEngineImpl implements PolicyEngine {
         // Check resource authorizations, ignore authorizations for own account
         final Decision resourceDecision = resourcePolicy == null ?
                 Decision.DEFAULT :
-                processAuthorizations( AuthEvaluationContextImpl.authorizations( resourcePolicy, true ), AuthorizationMatch.All, action, resourceAccountNumber, evaluationContext.getResourceType( ), resourceName, evaluationContext.getPrincipals( ), isAccountPrincipal( resourceAccountNumber ), keyEval, contractEval );
+                processAuthorizations( AuthEvaluationContextImpl.policyAuthorizations( resourcePolicy, true ).getAuthorizations( action ), AuthorizationMatch.All, action, resourceAccountNumber, evaluationContext.getResourceType( ), resourceName, evaluationContext.getPrincipals( ), isAccountPrincipal( resourceAccountNumber ), keyEval, contractEval );
         // Denied by explicit or default deny
         if ( ( resourceDecision == Decision.DENY ) ||
             ( !requestAccountDefaultAllow && !sameAccount && sameResourceAccount && resourceDecision != Decision.ALLOW ) ) {
@@ -778,11 +775,17 @@ public class PolicyEngineImpl implements PolicyEngine {
       return systemUser;
     }
 
+    /**
+     * Lookup the authorizations that may apply to the action for this context.
+     */
     public List<Authorization> lookupAuthorizations( ) throws AuthException {
       if ( authorizations == null ) {
-        final List<Pair<PolicyVersion,Authorization>> authorizations = authorizations( policies, false );
+        final List<Authorization> authorizations = Lists.newArrayList( );
+        for ( final PolicyVersion policy : policies ) {
+          authorizations.addAll( policyAuthorizations( policy, false ).getAuthorizations( action ) );
+        }
         this.authorizations = ImmutableList.copyOf( Iterables.filter(
-            Iterables.transform( authorizations, Pair.<PolicyVersion,Authorization>right( ) ),
+            authorizations,
             resourceType == null ?
                 AuthorizationPredicates.ALLOW_EFFECT :
                 Predicates.not( AuthorizationPredicates.LIMIT_EFFECT )
@@ -791,12 +794,12 @@ public class PolicyEngineImpl implements PolicyEngine {
       return authorizations;
     }
 
-    static List<Authorization> authorizations( final PolicyVersion policy, final boolean resourcePolicy ) throws AuthException {
+    static PolicyAuthorizations policyAuthorizations( final PolicyVersion policy, final boolean resourcePolicy ) throws AuthException {
       try {
-        return authorizationCache.get( policy.getPolicyHash( ), new Callable<ImmutableList<Authorization>>() {
+        return authorizationCache.get( policy.getPolicyHash( ), new Callable<PolicyAuthorizations>() {
           @Override
-          public ImmutableList<Authorization> call() throws Exception {
-            return ImmutableList.copyOf(  ( resourcePolicy ? PolicyParser.getLaxResourceInstance( ) : PolicyParser.getLaxInstance( ) ).parse( policy.getPolicy( ) ).getAuthorizations( ) );
+          public PolicyAuthorizations call() throws Exception {
+            return new PolicyAuthorizations( ( resourcePolicy ? PolicyParser.getLaxResourceInstance( ) : PolicyParser.getLaxInstance( ) ).parse( policy.getPolicy( ) ).getAuthorizations( ) );
           }
         } );
       } catch ( final ExecutionException e ) {
@@ -807,7 +810,7 @@ public class PolicyEngineImpl implements PolicyEngine {
     static List<Pair<PolicyVersion,Authorization>> authorizations( final List<PolicyVersion> policies, final boolean resourcePolicy ) throws AuthException {
       final List<Pair<PolicyVersion,Authorization>> authorizations = Lists.newArrayList( );
       for ( final PolicyVersion policy : policies ) {
-        Iterables.addAll( authorizations, Iterables.transform( authorizations( policy, resourcePolicy ), Pair.<PolicyVersion,Authorization>pair( ).apply( policy ) ) );
+        Iterables.addAll( authorizations, Iterables.transform( policyAuthorizations( policy, resourcePolicy ).getAuthorizations( ), Pair.<PolicyVersion,Authorization>pair( ).apply( policy ) ) );
       }
       return authorizations;
     }
@@ -823,7 +826,62 @@ public class PolicyEngineImpl implements PolicyEngine {
     }
   }
 
+  /**
+   * Authorizations for a policy with an index of the authorizations that may
+   * match each action.
+   *
+   * <p>Authorizations that use action wildcards or NotAction are candidates
+   * for every action, others only for their listed actions. Candidates are in
+   * policy order and must still be matched against the action.</p>
+   */
+  static final class PolicyAuthorizations {
+    private final ImmutableList<Authorization> authorizations;
+    private final ImmutableList<Authorization> patternAuthorizations;
+    private final ImmutableMap<String,ImmutableList<Authorization>> authorizationsByAction;
+
+    PolicyAuthorizations( final List<Authorization> authorizations ) {
+      this.authorizations = ImmutableList.copyOf( authorizations );
+      this.patternAuthorizations =
+          ImmutableList.copyOf( Iterables.filter( this.authorizations, AuthorizationPredicates.ACTION_PATTERN ) );
+      final Set<String> actions = Sets.newHashSet( );
+      for ( final Authorization authorization : this.authorizations ) {
+        if ( !AuthorizationPredicates.ACTION_PATTERN.apply( authorization ) ) {
+          actions.addAll( authorization.getActions( ) );
+        }
+      }
+      final ImmutableMap.Builder<String,ImmutableList<Authorization>> authorizationsByActionBuilder = ImmutableMap.builder( );
+      for ( final String action : actions ) {
+        authorizationsByActionBuilder.put( action, ImmutableList.copyOf( Iterables.filter(
+            this.authorizations,
+            Predicates.or( AuthorizationPredicates.ACTION_PATTERN, authorization -> authorization.getActions( ).contains( action ) ) ) ) );
+      }
+      this.authorizationsByAction = authorizationsByActionBuilder.build( );
+    }
+
+    /**
+     * All authorizations for the policy
+     */
+    List<Authorization> getAuthorizations( ) {
+      return authorizations;
+    }
+
+    /**
+     * Authorizations for the policy that may match the given (lower case) action
+     */
+    List<Authorization> getAuthorizations( final String action ) {
+      final List<Authorization> actionAuthorizations = authorizationsByAction.get( action );
+      return actionAuthorizations != null ? actionAuthorizations : patternAuthorizations;
+    }
+  }
+
   private enum AuthorizationPredicates implements Predicate<Authorization> {
+    ACTION_PATTERN {
+      @Override
+      public boolean apply( @Nullable final Authorization authorization ) {
+        return authorization != null &&
+            ( authorization.isNotAction( ) || Iterables.any( authorization.getActions( ), PolicyUtils::isPattern ) );
+      }
+    },
     ALLOW_EFFECT {
       @Override
       public boolean apply( @Nullable final Authorization authorization ) {
@@ -62,6 +62,7 @@
 
 package com.eucalyptus.auth.policy;
 
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -69,6 +70,10 @@ import org.hamcrest.StringDescription;
 import com.eucalyptus.auth.principal.Authorization;
 import com.eucalyptus.auth.principal.Condition;
 import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Interners;
 
@@ -84,6 +89,11 @@ public class PolicyUtils {
   private static final Interner<Condition> conditionInterner = Interners.newWeakInterner( );
   private static final Interner<PolicyPolicy> policyInterner = Interners.newWeakInterner( );
 
+  private static final LoadingCache<String,Predicate<String>> patternCache = CacheBuilder
+      .newBuilder( )
+      .maximumSize( 10_000 )
+      .build( CacheLoader.from( PolicyUtils::compilePattern ) );
+
   private static final Function<String,String> stringInternFunction = Interners.asFunction( stringInterner );
   private static final Function<Authorization,Authorization> authorizationInternFunction = Interners.asFunction( authorizationInterner );
   private static final Function<Condition,Condition> conditionInternFunction = Interners.asFunction( conditionInterner );
@@ -105,6 +115,69 @@ public class PolicyUtils {
     return result;
   }
 
+  /**
+   * Match an IAM policy pattern (action pattern or resource pattern with * and ?)
+   * against a value.
+   *
+   * <p>The result is the same as matching the value against the Java regex
+   * pattern from toJavaPattern, the compiled pattern is cached.</p>
+   */
+  public static boolean matchesPattern( final String pattern, final String value ) {
+    Preconditions.checkNotNull( value, "value" );
+    return pattern != null && patternCache.getUnchecked( pattern ).test( value );
+  }
+
+  /**
+   * Does the IAM policy pattern contain any wildcards.
+   */
+  public static boolean isPattern( final String pattern ) {
+    return indexOfWildcard( pattern ) >= 0;
+  }
+
+  /**
+   * Compile an IAM policy pattern, literal and prefix patterns are matched
+   * without using a regular expression.
+   */
+  static Predicate<String> compilePattern( final String pattern ) {
+    final int wildcardIndex = indexOfWildcard( pattern );
+    if ( wildcardIndex < 0 ) {
+      return pattern::equals;
+    } else if ( wildcardIndex == pattern.length( ) - 1 && pattern.charAt( wildcardIndex ) == '*' ) {
+      final String prefix = pattern.substring( 0, wildcardIndex );
+      return value -> value.startsWith( prefix ) && !containsLineTerminator( value, prefix.length( ) );
+    } else {
+      final Pattern compiled = Pattern.compile( toJavaPattern( pattern ) );
+      return value -> compiled.matcher( value ).matches( );
+    }
+  }
+
+  private static int indexOfWildcard( final String pattern ) {
+    for ( int i = 0; i < pattern.length( ); i++ ) {
+      final char character = pattern.charAt( i );
+      if ( character == '*' || character == '?' ) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Line terminators are not matched by a regex wildcard
+   */
+  private static boolean containsLineTerminator( final String value, final int fromIndex ) {
+    for ( int i = fromIndex; i < value.length( ); i++ ) {
+      switch ( value.charAt( i ) ) {
+        case '\n':
+        case '\r':
+        case '\u0085':
+        case '\u2028':
+        case '\u2029':
+          return true;
+      }
+    }
+    return false;
+  }
+
   static String intern( final String string ) {
     return string == null ? null : stringInterner.intern( string );
   }
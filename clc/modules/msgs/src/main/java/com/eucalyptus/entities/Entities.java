@@ -116,6 +116,7 @@ import org.hibernate.collection.internal.AbstractPersistentCollection;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Example;
 import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
@@ -124,6 +125,7 @@ import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.engine.transaction.spi.TransactionCoordinator;
 import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.jdbc.Work;
 import org.hibernate.jpa.internal.EntityManagerFactoryImpl;
 import org.hibernate.proxy.HibernateProxy;
 import org.hibernate.sql.JoinType;
@@ -519,6 +521,19 @@ public class Entities {
     getTransaction( object ).txState.getSession( ).clear( );
   }
 
+  /**
+   * Perform JDBC work using the connection for the current transaction.
+   *
+   * <p>The work bypasses the session so changes are not reflected in any
+   * entities loaded in the transaction.</p>
+   *
+   * @param object The object used to determine the transaction context
+   * @param work The work to perform
+   */
+  public static <T> void doWork( final T object, final Work work ) {
+    getTransaction( object ).txState.getSession( ).doWork( work );
+  }
+
   /**
    * @see #query(T,QueryOptions)
    */
@@ -604,6 +619,77 @@ public class Entities {
     return Lists.newArrayList( Sets.newHashSet( resultList ) );
   }
 
+  /**
+   * Query a page of items matching the given example restricted by the given criterion.
+   *
+   * <P>Items are ordered by the given properties, which must uniquely identify
+   * an item. If values are given the page starts after the item with those
+   * values (keyset pagination).</P>
+   *
+   * <P>The caller must have an active transaction for the entity.</P>
+   *
+   * <P>Rows are limited to the given maximum, so a page can contain fewer
+   * items than the maximum when aliases result in duplicate rows. An empty
+   * page indicates there are no further items.</P>
+   *
+   * @param example The example object
+   * @param readOnly Use True if the results will not be modified
+   * @param criterion Additional restrictions for the query
+   * @param aliases Any aliases necessary for the given criterion
+   * @param orderProperties The properties to order by
+   * @param afterValues The property values for the last item of the previous page
+   * @param maxResults The maximum number of rows to query
+   * @param <T> The entity type
+   * @return The result list, in order
+   */
+  @SuppressWarnings( { "unchecked", "cast" } )
+  public static <T> List<T> queryPage( final T example,
+                                       final boolean readOnly,
+                                       final Criterion criterion,
+                                       final Map<String,String> aliases,
+                                       final List<String> orderProperties,
+                                       @Nullable final List<?> afterValues,
+                                       final int maxResults ) {
+    final Example qbe = Example.create( example );
+    final Criteria criteria = getTransaction( example ).getTxState( ).getSession( )
+        .createCriteria( example.getClass( ) )
+        .setReadOnly( readOnly )
+        .setResultTransformer( Criteria.DISTINCT_ROOT_ENTITY )
+        .add( qbe )
+        .add( criterion )
+        .setMaxResults( maxResults )
+        .setFetchSize( maxResults );
+    for ( final Map.Entry<String,String> aliasEntry : aliases.entrySet() ) {
+      criteria.createAlias( aliasEntry.getKey( ), aliasEntry.getValue( ) );
+    }
+    if ( afterValues != null ) {
+      criteria.add( after( orderProperties, afterValues ) );
+    }
+    for ( final String orderProperty : orderProperties ) {
+      criteria.addOrder( Order.asc( orderProperty ) );
+    }
+    final List<T> resultList = ( List<T> ) criteria.list( );
+    return Lists.newArrayList( Sets.newLinkedHashSet( resultList ) );
+  }
+
+  /**
+   * Criterion for items ordered after the given values, i.e.
+   * (a > x) or (a = x and b > y) ...
+   */
+  private static Criterion after( final List<String> properties, final List<?> values ) {
+    if ( properties.isEmpty( ) || properties.size( ) != values.size( ) ) {
+      throw new IllegalArgumentException( "Invalid page values for properties " + properties );
+    }
+    Criterion after = null;
+    for ( int i = properties.size( ) - 1; i >= 0; i-- ) {
+      final Criterion greater = Restrictions.gt( properties.get( i ), values.get( i ) );
+      after = after == null ?
+          greater :
+          Restrictions.or( greater, Restrictions.and( Restrictions.eq( properties.get( i ), values.get( i ) ), after ) );
+    }
+    return after;
+  }
+
   /**
    * @see #query(T,QueryOptions)
    */
@@ -21,10 +21,16 @@ package com.eucalyptus.entities;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.criterion.Criterion;
@@ -33,9 +39,10 @@ import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import com.eucalyptus.util.Pair;
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
@@ -51,7 +58,13 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
   private final Set<String> eagerAssociationPaths;
   private final Set<String> lazyAssociationPaths;
   private final Function<? super E,TE> transformFunction;
-  private final ConcurrentMap<Pair<String,Integer>,TE> cache = Maps.newConcurrentMap( );
+  private final ConcurrentMap<String,Pair<Integer,TE>> cache = Maps.newConcurrentMap( );
+  private volatile ImmutableList<TE> snapshot = ImmutableList.of( );
+  private volatile EntityChanges.Tracker changeTracker;
+  private volatile long fullRefreshInterval;
+  private volatile boolean loaded;
+  private final Lock refreshLock = new ReentrantLock( );
+  private long lastFullRefresh = 0L;
 
   /**
    * Create an entity cache for the given example.
@@ -90,8 +103,28 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
     this.transformFunction = transformFunction;
   }
 
+  /**
+   * Refresh using entity changes committed in this JVM.
+   *
+   * Only changed entities are reloaded, the full id/version scan is performed
+   * when the given interval has passed to pick up changes that are not
+   * tracked (e.g. bulk updates or changes from other hosts). This can be
+   * called again to change the interval.
+   *
+   * @param fullRefreshInterval The interval between full refreshes
+   * @param unit The unit for the interval
+   * @return This cache
+   */
+  public EntityCache<E,TE> trackChanges( final long fullRefreshInterval, final TimeUnit unit ) {
+    this.fullRefreshInterval = unit.toMillis( fullRefreshInterval );
+    if ( this.changeTracker == null ) {
+      this.changeTracker = EntityChanges.track( example.getClass( ) );
+    }
+    return this;
+  }
+
   @SuppressWarnings( "unchecked" )
-  private Collection<Pair<String,Integer>> loadVersionMap( ) {
+  Collection<Pair<String,Integer>> loadVersionMap( ) {
     try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ){
       final Criteria criteria = Entities.createCriteria( example.getClass( ) )
           .add( Example.create( example ) )
@@ -106,32 +139,133 @@ public class EntityCache<E extends AbstractPersistent, TE extends Comparable<TE>
     }
   }
 
+  /**
+   * @return True if the cache was modified
+   */
   @SuppressWarnings( { "unchecked", "ConstantConditions" } )
-  private void refresh( ) {
+  private boolean refresh( ) {
     final Collection<Pair<String,Integer>> currentKeys = loadVersionMap( );
-    cache.keySet( ).retainAll( currentKeys );
-    currentKeys.removeAll( cache.keySet( ) );
-    for ( final List<Pair<String,Integer>> keyBatch : Iterables.partition( currentKeys, batchSize ) ) {
-      try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ) {
-        final Criteria criteria =  Entities.createCriteria( example.getClass( ) )
-            .add( Example.create( example ) )
-            .add( criterion )
-            .setFetchSize( batchSize )
-            .add( Restrictions.in( "id", Lists.newArrayList( Iterables.transform( keyBatch, Pair.<String, Integer>left( ) ) ) ) );
-        for ( final String path : eagerAssociationPaths ) criteria.setFetchMode( path, FetchMode.JOIN );
-        for ( final String path : lazyAssociationPaths ) criteria.setFetchMode( path, FetchMode.SELECT );
-        final List<E> entities = (List<E> ) criteria.list( );
-        for ( final E entity : entities ) {
-          cache.put( Pair.pair( getId( entity ), entity.getVersion( ) ), transformFunction.apply( entity ) );
-        }
+    final Map<String,Integer> currentVersions = Maps.newHashMapWithExpectedSize( currentKeys.size( ) );
+    for ( final Pair<String,Integer> key : currentKeys ) {
+      currentVersions.put( key.getLeft( ), key.getRight( ) );
+    }
+    boolean modified = false;
+    for ( final Iterator<Map.Entry<String,Pair<Integer,TE>>> entryIterator = cache.entrySet( ).iterator( ); entryIterator.hasNext( ); ) {
+      final Map.Entry<String,Pair<Integer,TE>> entry = entryIterator.next( );
+      if ( entry.getValue( ).getLeft( ).equals( currentVersions.get( entry.getKey( ) ) ) ) {
+        currentVersions.remove( entry.getKey( ) );
+      } else {
+        entryIterator.remove( );
+        modified = true;
+      }
+    }
+    return load( currentVersions.keySet( ) ) || modified;
+  }
+
+  /**
+   * Reload the given entities, removing any that no longer match.
+   *
+   * @return True if the cache was modified
+   */
+  private boolean refresh( final Set<String> changedIds ) {
+    boolean modified = false;
+    for ( final String id : changedIds ) {
+      modified = ( cache.remove( id ) != null ) || modified;
+    }
+    return load( changedIds ) || modified;
+  }
+
+  private boolean load( final Collection<String> ids ) {
+    boolean modified = false;
+    for ( final List<String> idBatch : Iterables.partition( ids, batchSize ) ) {
+      final Map<String,Pair<Integer,TE>> loaded = loadBatch( idBatch );
+      cache.putAll( loaded );
+      modified = !loaded.isEmpty( ) || modified;
+    }
+    return modified;
+  }
+
+  /**
+   * Load and transform the given entities.
+   *
+   * @return The versions and transformed values by identifier
+   */
+  @SuppressWarnings( { "unchecked", "ConstantConditions" } )
+  Map<String,Pair<Integer,TE>> loadBatch( final List<String> idBatch ) {
+    try ( final TransactionResource db = Entities.readOnlyDistinctTransactionFor( example ) ) {
+      final Criteria criteria =  Entities.createCriteria( example.getClass( ) )
+          .add( Example.create( example ) )
+          .add( criterion )
+          .setFetchSize( batchSize )
+          .add( Restrictions.in( "id", idBatch ) );
+      for ( final String path : eagerAssociationPaths ) criteria.setFetchMode( path, FetchMode.JOIN );
+      for ( final String path : lazyAssociationPaths ) criteria.setFetchMode( path, FetchMode.SELECT );
+      final List<E> entities = (List<E> ) criteria.list( );
+      final Map<String,Pair<Integer,TE>> loaded = Maps.newHashMapWithExpectedSize( entities.size( ) );
+      for ( final E entity : entities ) {
+        loaded.put( getId( entity ), Pair.pair( entity.getVersion( ), transformFunction.apply( entity ) ) );
       }
+      return loaded;
     }
   }
 
   @Override
   public Iterable<TE> get( ) {
-    refresh( );
-    return Ordering.natural( ).sortedCopy( cache.values( ) );
+    refreshLock.lock( );
+    try {
+      final EntityChanges.Tracker tracker = changeTracker;
+      final long now = System.currentTimeMillis( );
+      final boolean modified;
+      if ( tracker == null ) {
+        modified = refresh( );
+        loaded = true;
+      } else if ( lastFullRefresh + fullRefreshInterval < now ) {
+        tracker.drain( );
+        modified = refresh( );
+        lastFullRefresh = now;
+        loaded = true;
+      } else {
+        modified = refreshChanges( tracker );
+      }
+      if ( modified ) {
+        updateSnapshot( );
+      }
+      return snapshot;
+    } finally {
+      refreshLock.unlock( );
+    }
+  }
+
+  /**
+   * Get the current cached values without waiting for any refresh.
+   *
+   * <p>Tracked changes are applied if no other refresh is in progress, a full
+   * refresh is never performed. The cache must be refreshed using {@link #get()},
+   * e.g. from a background task.</p>
+   *
+   * @return The cached values, absent if the cache is not yet loaded
+   * @see #trackChanges(long, TimeUnit)
+   */
+  public Optional<Iterable<TE>> getIfLoaded( ) {
+    if ( loaded && refreshLock.tryLock( ) ) try {
+      if ( refreshChanges( changeTracker ) ) {
+        updateSnapshot( );
+      }
+    } finally {
+      refreshLock.unlock( );
+    }
+    return loaded ?
+        Optional.<Iterable<TE>>of( snapshot ) :
+        Optional.<Iterable<TE>>absent( );
+  }
+
+  private boolean refreshChanges( @Nullable final EntityChanges.Tracker tracker ) {
+    final Set<String> changedIds = tracker == null ? Collections.<String>emptySet( ) : tracker.drain( );
+    return !changedIds.isEmpty( ) && refresh( changedIds );
+  }
+
+  private void updateSnapshot( ) {
+    snapshot = ImmutableList.copyOf( Ordering.natural( ).sortedCopy( Iterables.transform( cache.values( ), Pair.<Integer,TE>right( ) ) ) );
   }
 
   private String getId( final E entity ) {
@@ -0,0 +1,106 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.log4j.Logger;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+
+/**
+ * Tracks entities changed by committed transactions in this JVM.
+ *
+ * Changes made using bulk (HQL / SQL) updates or by other hosts are not
+ * tracked.
+ *
+ * @see DelegatingInterceptor
+ */
+class EntityChanges {
+
+  private static final Logger logger = Logger.getLogger( EntityChanges.class );
+  private static final CopyOnWriteArrayList<Tracker> trackers = new CopyOnWriteArrayList<>( );
+  private static final ConcurrentMap<Class<?>,Boolean> trackedTypes = Maps.newConcurrentMap( );
+
+  /**
+   * Track changes for the given entity type (and subclasses)
+   */
+  static Tracker track( final Class<?> type ) {
+    final Tracker tracker = new Tracker( type );
+    trackers.add( tracker );
+    trackedTypes.clear( );
+    return tracker;
+  }
+
+  static boolean isTracked( final Class<?> type ) {
+    Boolean tracked = trackedTypes.get( type );
+    if ( tracked == null ) {
+      tracked = false;
+      for ( final Tracker tracker : trackers ) {
+        if ( tracker.type.isAssignableFrom( type ) ) {
+          tracked = true;
+          break;
+        }
+      }
+      trackedTypes.put( type, tracked );
+    }
+    return tracked;
+  }
+
+  /**
+   * Notify trackers of changes to the given entity types / ids.
+   */
+  static void committed( final Multimap<Class<?>,String> changes ) {
+    for ( final Tracker tracker : trackers ) {
+      for ( final Class<?> type : changes.keySet( ) ) {
+        if ( tracker.type.isAssignableFrom( type ) ) try {
+          tracker.changed( changes.get( type ) );
+        } catch ( final Exception e ) {
+          logger.error( "Error tracking changes for " + type.getName( ), e );
+        }
+      }
+    }
+  }
+
+  static final class Tracker {
+    private final Class<?> type;
+    private Set<String> changedIds = Sets.newHashSet( );
+
+    private Tracker( final Class<?> type ) {
+      this.type = type;
+    }
+
+    private synchronized void changed( final Collection<String> ids ) {
+      changedIds.addAll( ids );
+    }
+
+    /**
+     * Get the identifiers of entities changed since the last drain.
+     */
+    synchronized Set<String> drain( ) {
+      final Set<String> drained = changedIds;
+      changedIds = Sets.newHashSet( );
+      return drained;
+    }
+  }
+}
@@ -29,16 +29,24 @@ public enum MonitoredAction {
   CLUSTER_LIST_METRIC_MANAGER_CALL_PUT_METRIC_DATA("Cluster:Timing:ListMetricManager.callPutMetricData():time"),
   CLUSTER_TIMING("Cluster:Timing:time"),
   PUT_DATA_QUEUE_SIZE("PutMetricDataQueue:Timing:dataBatch.size"),
-  PUT_DATA_QUEUE_CONVERT("PutMetricDataQueue:Timing:dataBatch.convertToSimpleDataBatch():time"),
-  PUT_DATA_QUEUE_AGGREGATE("PutMetricDataQueue:Timing:dataBatch.aggregate():time"),
   PUT_DATA_QUEUE_MERTIC_ADD_BATCH("PutMetricDataQueue:Timing:dataBatch.MetricManager.addMetricBatch():time"),
   PUT_DATA_QUEUE_MERTIC_QUEUE_ADDALL("PutMetricDataQueue:Timing:ListMetricQueue.addAll():time"),
   PUT_DATA_TIMING("PutMetricDataQueue:Timing:time"),
+  PUT_DATA_QUEUE_DEPTH("PutMetricDataQueue:Shard:pending.size"),
+  PUT_DATA_QUEUE_LATENCY("PutMetricDataQueue:Shard:enqueueToFlush:time"),
+  PUT_DATA_QUEUE_REJECTED("PutMetricDataQueue:Shard:rejected.size"),
   LIST_METRIC_SIZE("ListMetricQueue:Timing:dataBatch.size"),
   LIST_METRIC_PRUNE("ListMetricQueue:Timing:dataBatch.pruneDuplicates:time"),
   LIST_METRIC_CONVERT("ListMetricQueue:Timing:convertToListMetrics:time"),
   LIST_METRIC_MERTIC_ADD_BATCH("ListMetricQueue:Timing:ListMetricManager.addMetricBatch:time"),
   LIST_METRIC_TIMING("ListMetricQueue:Timing:time"),
+  // Network
+  NETWORK_INFO_BUILD("NetworkInfoBroadcaster:Timing:buildNetworkConfiguration():time"),
+  NETWORK_INFO_BROADCAST_SIZE("NetworkInfoBroadcaster:Broadcast:encodedNetworkInfo.size"),
+  NETWORK_INFO_BROADCAST_SKIPPED("NetworkInfoBroadcaster:Broadcast:unchangedClusters.size"),
+  // Polled notifications
+  POLLED_NOTIFICATION_WAITING_POLLERS("PolledNotifications:Pollers:waiting.size"),
+  POLLED_NOTIFICATION_NOTIFIED_POLLERS("PolledNotifications:Notify:notified.size"),
   // Storage
   CREATE_VOLUME("Create Volume"),
   CREATE_VOLUME_FROM_SNAPSHOT("Create Volume from Snapshot"),
@@ -66,8 +66,12 @@ import static com.eucalyptus.auth.principal.TemporaryAccessKey.TemporaryKeyType;
 import java.lang.reflect.Modifier;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.net.URLCodec;
 import org.apache.log4j.Logger;
@@ -105,6 +109,7 @@ import com.eucalyptus.ws.protocol.OperationParameter;
 import com.eucalyptus.ws.handlers.SoapHandler;
 import com.eucalyptus.ws.util.HmacUtils.SignatureVersion;
 import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import edu.ucsb.eucalyptus.cloud.entities.SystemConfiguration;
 
@@ -117,6 +122,7 @@ public class Pipelines {
   private static final Set<FilteredPipeline>                                     pipelines         = Sets.newHashSet( );
   //GRZE:TODO: this is not happy ==> {@link DomainNames}
   private static final Supplier<String> subDomain = () -> SystemConfiguration.getSystemConfiguration( ).getDnsDomain( );
+  private static final AtomicReference<HostRoutingTable>                         hostRoutingTable  = new AtomicReference<>( );
 
 
 
@@ -160,27 +166,17 @@ public class Pipelines {
     }
 
     final String hostHeader = request.getHeader( HttpHeaders.Names.HOST );
-    if ( hostHeader != null && ( hostHeader.contains( "amazonaws.com" ) || hostHeader.contains( subDomain.get( ) ) ) ) {
+    final String dnsDomain = subDomain.get( );
+    if ( hostHeader != null && ( hostHeader.contains( "amazonaws.com" ) || hostHeader.contains( dnsDomain ) ) ) {
       final String host = hostHeader.indexOf( ':' ) > 0 ? hostHeader.substring( 0, hostHeader.indexOf( ':' ) ) : hostHeader;
       LOG.debug( "Trying to intercept request for " + hostHeader );
-      for ( final FilteredPipeline f : pipelines ) {
-        if ( Ats.from( f ).has( ComponentPart.class ) ) {
-          Class<? extends ComponentId> compIdClass = Ats.from( f ).get( ComponentPart.class ).value( );
-          ComponentId compId = ComponentIds.lookup( compIdClass );
-          if ( Ats.from( compIdClass ).has( PublicService.class ) ) {
-            if ( request.getHeaderNames().contains( "SOAPAction" ) && f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) == null ) {
-              continue;//Skip pipeline which doesn't handle SOAP for this SOAP request
-            } else if ( !request.getHeaderNames().contains( "SOAPAction" ) && f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) != null ) {
-              continue;//Skip pipeline which handles SOAP for this non-SOAP request
-            }
-            LOG.debug( "Maybe intercepting: " + hostHeader + " using " + f.getClass( ) );
-            if ( Ats.from( compIdClass ).has( AwsServiceName.class )
-                && host.matches( "[\\w\\.-_]*" + compId.getAwsServiceName( ) + "(?:\\.[\\w\\-]+)?\\.amazonaws.com" ) ) {
-              return f;//Return pipeline which can handle the request for ${service}.${region}.amazonaws.com
-            } else if ( host.matches( "[\\w\\.-_]*" + compId.name( ) + "\\." + subDomain.get( ) ) ) {
-              return f;//Return pipeline which can handle the request for ${service}.${system.dns.dnsdomain}
-            }
-          }
+      final HostRoutingTable routingTable = hostRoutingTable( dnsDomain );
+      for ( final HostRoute route : request.getHeaderNames( ).contains( "SOAPAction" ) ? routingTable.soapRoutes : routingTable.queryRoutes ) {
+        LOG.debug( "Maybe intercepting: " + hostHeader + " using " + route.pipeline.getClass( ) );
+        if ( route.awsHostPattern != null && route.awsHostPattern.matcher( host ).matches( ) ) {
+          return route.pipeline;//Return pipeline which can handle the request for ${service}.${region}.amazonaws.com
+        } else if ( route.hostPattern.matcher( host ).matches( ) ) {
+          return route.pipeline;//Return pipeline which can handle the request for ${service}.${system.dns.dnsdomain}
         }
       }
     }
@@ -194,6 +190,76 @@ public class Pipelines {
     return null;
   }
 
+  /**
+   * Get the table for routing public service requests by host, the table is
+   * rebuilt when the DNS domain or registered pipelines change.
+   */
+  private static HostRoutingTable hostRoutingTable( final String dnsDomain ) {
+    HostRoutingTable routingTable = hostRoutingTable.get( );
+    if ( routingTable == null ||
+        !routingTable.dnsDomain.equals( dnsDomain ) ||
+        routingTable.pipelineCount != pipelines.size( ) ) {
+      routingTable = new HostRoutingTable( dnsDomain, pipelines );
+      hostRoutingTable.set( routingTable );
+    }
+    return routingTable;
+  }
+
+  private static final class HostRoute {
+    private final FilteredPipeline pipeline;
+    @Nullable
+    private final Pattern awsHostPattern;
+    private final Pattern hostPattern;
+
+    private HostRoute(
+        final FilteredPipeline pipeline,
+        @Nullable final Pattern awsHostPattern,
+        final Pattern hostPattern
+    ) {
+      this.pipeline = pipeline;
+      this.awsHostPattern = awsHostPattern;
+      this.hostPattern = hostPattern;
+    }
+  }
+
+  private static final class HostRoutingTable {
+    private final String dnsDomain;
+    private final int pipelineCount;
+    private final List<HostRoute> soapRoutes;
+    private final List<HostRoute> queryRoutes;
+
+    private HostRoutingTable( final String dnsDomain, final Set<FilteredPipeline> pipelines ) {
+      final ImmutableList.Builder<HostRoute> soapRoutesBuilder = ImmutableList.builder( );
+      final ImmutableList.Builder<HostRoute> queryRoutesBuilder = ImmutableList.builder( );
+      int pipelineCount = 0;
+      for ( final FilteredPipeline f : pipelines ) {
+        pipelineCount++;
+        if ( Ats.from( f ).has( ComponentPart.class ) ) {
+          final Class<? extends ComponentId> compIdClass = Ats.from( f ).get( ComponentPart.class ).value( );
+          final ComponentId compId = ComponentIds.lookup( compIdClass );
+          if ( Ats.from( compIdClass ).has( PublicService.class ) ) {
+            final HostRoute route = new HostRoute(
+                f,
+                Ats.from( compIdClass ).has( AwsServiceName.class ) ?
+                    Pattern.compile( "[\\w\\.-_]*" + compId.getAwsServiceName( ) + "(?:\\.[\\w\\-]+)?\\.amazonaws.com" ) :
+                    null,
+                Pattern.compile( "[\\w\\.-_]*" + compId.name( ) + "\\." + dnsDomain )
+            );
+            if ( f.addHandlers( Channels.pipeline( ) ).get( SoapHandler.class ) != null ) {
+              soapRoutesBuilder.add( route );
+            } else {
+              queryRoutesBuilder.add( route );
+            }
+          }
+        }
+      }
+      this.dnsDomain = dnsDomain;
+      this.pipelineCount = pipelineCount;
+      this.soapRoutes = soapRoutesBuilder.build( );
+      this.queryRoutes = queryRoutesBuilder.build( );
+    }
+  }
+
   /**
    * Registers internal query and SOAP pipelines for all components.
    */
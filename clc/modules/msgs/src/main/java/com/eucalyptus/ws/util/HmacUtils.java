@@ -619,5 +619,27 @@ public class HmacUtils {
     public String getCredentialScope() {
       return date + "/" + region + "/" + serviceName + "/" + terminator;
     }
+
+    @Override
+    public boolean equals( final Object o ) {
+      if ( this == o ) return true;
+      if ( o == null || getClass( ) != o.getClass( ) ) return false;
+      final SignatureCredential that = (SignatureCredential) o;
+      return accessKeyId.equals( that.accessKeyId ) &&
+          date.equals( that.date ) &&
+          region.equals( that.region ) &&
+          serviceName.equals( that.serviceName ) &&
+          terminator.equals( that.terminator );
+    }
+
+    @Override
+    public int hashCode( ) {
+      int result = accessKeyId.hashCode( );
+      result = 31 * result + date.hashCode( );
+      result = 31 * result + region.hashCode( );
+      result = 31 * result + serviceName.hashCode( );
+      result = 31 * result + terminator.hashCode( );
+      return result;
+    }
   }  
 }
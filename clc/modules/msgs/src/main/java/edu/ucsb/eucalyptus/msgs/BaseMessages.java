@@ -21,6 +21,7 @@ package edu.ucsb.eucalyptus.msgs;
 
 import java.io.IOException;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
@@ -47,6 +48,18 @@ public class BaseMessages {
     return (R) mapper.treeToValue( mapper.valueToTree( message ), resultType );
   }
 
+  @SuppressWarnings( "unchecked" )
+  public static <T extends BaseData> T deepCopy( final T data ) throws IOException {
+    return (T) mapper.treeToValue( mapper.valueToTree( data ), data.getClass( ) );
+  }
+
+  /**
+   * Get the tree for the given data, trees for equivalent data are equal.
+   */
+  public static JsonNode toTree( final BaseData data ) {
+    return mapper.valueToTree( data );
+  }
+
   @JsonIgnoreProperties( { "correlationId", "effectiveUserId", "reply", "statusMessage", "userId" } )
   private static final class BaseMessageMixIn { }
 }
@@ -666,6 +666,37 @@ public class HmacLoginModuleTest {
     assertTrue("Authentication successful", hmacV4LoginModule("vNhDy9ERZQP5WXCdmPR7ZbbzZwdlQXETeZ6wM64i").authenticate(creds));
   }
 
+  /**
+   * Signing keys are cached, verify a changed secret key is used
+   */
+  @Test
+  public void testSigV4SecretKeyChange() throws Exception {
+    final HmacCredentials creds = new HmacCredentials(
+        "1234567890",
+        HmacUtils.SignatureVariant.SignatureV4Standard,
+        ImmutableMap.<String,List<String>>builder()
+            .put( "Action", Lists.newArrayList( "ListMetrics" ) )
+            .put( "Version", Lists.newArrayList( "2010-08-01" ) )
+            .build(),
+        ImmutableMap.<String,List<String>>builder()
+            .put( "host", Lists.newArrayList( "cloudwatch.g-12-03.autoqa.qa1.eucalyptus-systems.com:8773" ) )
+            .put( "x-amz-date", Lists.newArrayList( "20140507T202657Z" ) )
+            .put( "authorization", Lists.newArrayList( "AWS4-HMAC-SHA256 Credential=AKI67CCVBS1XAL7UG9KE/20140507/g-12-03/cloudwatch/aws4_request, SignedHeaders=host;x-amz-date, Signature=1a74acf1bf2b22bddad7314cc44eef6fe562a50373ca239113d2c1942a677739" ) )
+            .build(),
+        "GET",
+        "/",
+        ""
+    );
+    assertTrue("Authentication successful", hmacV4LoginModule("vNhDy9ERZQP5WXCdmPR7ZbbzZwdlQXETeZ6wM64i").authenticate(creds));
+    try {
+      hmacV4LoginModule("ZRvYnXG04PxhYuP228IWLmCG0o3kYIr2fPByxMlb").authenticate(creds);
+      fail("Expected authentication failure for changed secret key");
+    } catch ( InvalidSignatureAuthException e ) {
+      // expected
+    }
+    assertTrue("Authentication successful", hmacV4LoginModule("vNhDy9ERZQP5WXCdmPR7ZbbzZwdlQXETeZ6wM64i").authenticate(creds));
+  }
+
   /**
    * EUCA-4748 sig v2
    */
@@ -26,6 +26,7 @@ import com.eucalyptus.auth.policy.ern.Ern
 import com.eucalyptus.auth.policy.ern.EuareErnBuilder
 import com.eucalyptus.auth.policy.ern.ResourceNameSupport
 import com.eucalyptus.auth.policy.ern.ServiceErnBuilder
+import com.eucalyptus.auth.principal.Authorization
 import com.eucalyptus.auth.principal.PolicyScope
 import com.eucalyptus.auth.principal.PolicyVersion
 import com.eucalyptus.auth.principal.Principal
@@ -42,6 +43,7 @@ import org.junit.BeforeClass
 import java.nio.charset.StandardCharsets
 
 import static com.eucalyptus.auth.api.PolicyEngine.AuthorizationMatch.All
+import static org.junit.Assert.assertEquals
 
 import groovy.transform.TypeChecked
 import org.junit.Test
@@ -676,6 +678,47 @@ class PolicyEngineTest {
   void testResourcePolicyDistinctOwnerAuthDeny( ) {
   }
 
+  @Test
+  void testPolicyAuthorizationsActionIndex( ) {
+    List<Authorization> authorizations = PolicyParser.getLaxInstance( ).parse( """\
+      {
+        "Statement":[ {
+          "Effect": "Allow",
+          "Action": [ "ec2:describeinstances", "ec2:runinstances" ],
+          "Resource": "*"
+        }, {
+          "Effect": "Deny",
+          "Action": "ec2:terminate*",
+          "Resource": "*"
+        }, {
+          "Effect": "Allow",
+          "NotAction": "iam:*",
+          "Resource": "*"
+        }, {
+          "Effect": "Allow",
+          "Action": [ "s3:getobject", "ec2:describe?mages" ],
+          "Resource": "*"
+        }, {
+          "Effect": "Deny",
+          "Action": "ec2:runinstances",
+          "Resource": "*"
+        } ]
+      }
+      """.stripIndent( ) ).getAuthorizations( )
+    PolicyEngineImpl.PolicyAuthorizations policyAuthorizations = new PolicyEngineImpl.PolicyAuthorizations( authorizations )
+    [ 'ec2:describeinstances', 'ec2:runinstances', 'ec2:terminateinstances', 'ec2:describeimages',
+      's3:getobject', 'iam:listusers', 'sqs:sendmessage' ].each { String action ->
+      assertEquals(
+          action,
+          authorizations.findAll{ Authorization auth -> matchesAction( auth, action ) },
+          policyAuthorizations.getAuthorizations( action ).findAll{ Authorization auth -> matchesAction( auth, action ) } )
+    }
+  }
+
+  private static boolean matchesAction( Authorization auth, String action ) {
+    auth.getActions( ).any{ String pattern -> PolicyUtils.matchesPattern( pattern, action ) } != auth.isNotAction( )
+  }
+
   private void evaluateAuthorization( String policy,
                                       String resourceType,
                                       String requestAction,
@@ -69,6 +69,32 @@ class PolicyUtilsTest {
     assertNotMatches "??", "a"
   }
 
+  @Test
+  void testCompiledPatternMatchesRegex( ) {
+    Random random = new Random( 42 )
+    String alphabet = 'ab:-*?.\n/'
+    Closure<String> randomString = { int maxLength ->
+      StringBuilder builder = new StringBuilder( )
+      int length = random.nextInt( maxLength + 1 )
+      for ( int i=0; i<length; i++ ) builder.append( alphabet.charAt( random.nextInt( alphabet.length( ) ) ) )
+      builder.toString( )
+    }
+    10_000.times {
+      String pattern = randomString( 6 )
+      String value = randomString( 8 ).replace( '*', 'a' ).replace( '?', 'b' )
+      assertEquals( pattern+"~="+value, matches( pattern, value ), PolicyUtils.matchesPattern( pattern, value ) )
+    }
+  }
+
+  @Test
+  void testCompiledPatternLineTerminators( ) {
+    [ '*', 'a*', 'a?', 'a*b' ].each { String pattern ->
+      [ 'a\n', 'a\r', 'a\u0085', 'a\u2028', 'a\u2029', 'a\nb' ].each { String value ->
+        assertEquals( pattern+"~="+value, matches( pattern, value ), PolicyUtils.matchesPattern( pattern, value ) )
+      }
+    }
+  }
+
   void assertMatches( String pattern, String value ) {
     assertTrue( pattern+"~="+value, matches( pattern, value ) )
   }
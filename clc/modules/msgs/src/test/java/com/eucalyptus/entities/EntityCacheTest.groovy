@@ -0,0 +1,174 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.entities
+
+import com.eucalyptus.util.Pair
+import com.google.common.base.Function
+import com.google.common.base.Optional
+import com.google.common.collect.ImmutableMultimap
+import org.junit.Test
+
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for entity cache refresh, using a map in place of the database.
+ */
+class EntityCacheTest {
+
+  @Test
+  void testGetIfLoaded( ) {
+    final TestEntityCache cache = new TestEntityCache( TestEntity1 )
+    cache.database.put( 'id-1', 1 )
+    assertFalse( 'Loaded before get', cache.getIfLoaded( ).isPresent( ) )
+    assertEquals( 'Values', [ 'id-1:1' ], cache.get( ).collect( ) )
+    assertEquals( 'Loaded values', [ 'id-1:1' ], cache.getIfLoaded( ).get( ).collect( ) )
+  }
+
+  @Test
+  void testTrackedChanges( ) {
+    final TestEntityCache cache = new TestEntityCache( TestEntity2 )
+    cache.trackChanges( 1, TimeUnit.HOURS )
+    cache.database.put( 'id-1', 1 )
+    cache.database.put( 'id-2', 1 )
+    assertEquals( 'Values', [ 'id-1:1', 'id-2:1' ], cache.get( ).collect( ) )
+
+    cache.database.put( 'id-1', 2 )
+    cache.database.remove( 'id-2' )
+    cache.database.put( 'id-3', 1 )
+    cache.commit( 'id-1', 'id-2', 'id-3' )
+    assertEquals( 'Loaded values', [ 'id-1:2', 'id-3:1' ], cache.getIfLoaded( ).get( ).collect( ) )
+    assertEquals( 'Version scans', 1, cache.versionScans )
+  }
+
+  @Test
+  void testGetIfLoadedDuringRefresh( ) {
+    final TestEntityCache cache = new TestEntityCache( TestEntity3 )
+    cache.database.put( 'id-1', 1 )
+    cache.get( )
+
+    final CountDownLatch loading = new CountDownLatch( 1 )
+    final CountDownLatch release = new CountDownLatch( 1 )
+    cache.loading = loading
+    cache.release = release
+    cache.database.put( 'id-2', 1 )
+    final AtomicReference<List<String>> refreshed = new AtomicReference<>( )
+    final Thread refresh = Thread.start { refreshed.set( cache.get( ).collect( ) ) }
+    assertTrue( 'Loading', loading.await( 5, TimeUnit.SECONDS ) )
+
+    // does not wait for the refresh in progress
+    final long start = System.nanoTime( )
+    final Optional<Iterable<String>> values = cache.getIfLoaded( )
+    assertTrue( 'Returned without waiting', System.nanoTime( ) - start < TimeUnit.SECONDS.toNanos( 1 ) )
+    assertEquals( 'Values during refresh', [ 'id-1:1' ], values.get( ).collect( ) )
+
+    release.countDown( )
+    refresh.join( 5000 )
+    assertEquals( 'Refreshed values', [ 'id-1:1', 'id-2:1' ], refreshed.get( ) )
+    assertEquals( 'Loaded values', [ 'id-1:1', 'id-2:1' ], cache.getIfLoaded( ).get( ).collect( ) )
+  }
+
+  @Test
+  void testConcurrentRefresh( ) {
+    final TestEntityCache cache = new TestEntityCache( TestEntity4 )
+    cache.trackChanges( 0, TimeUnit.MILLISECONDS )
+    ( 1..50 ).each { int id -> cache.database.put( "id-${id}" as String, 1 ) }
+    cache.get( )
+
+    final AtomicBoolean running = new AtomicBoolean( true )
+    final List<String> errors = Collections.synchronizedList( [ ] )
+    final Closure<?> checkSnapshot = { Iterable<String> values ->
+      final List<String> ids = values.collect { String value -> value.substring( 0, value.indexOf( ':' ) ) }
+      if ( ids.size( ) != ids.toSet( ).size( ) ) errors.add( "Duplicate ids ${ids}" as String )
+      if ( values.collect( ) != values.collect( ).sort( false ) ) errors.add( "Unordered values ${values}" as String )
+    }
+    final List<Thread> readers = ( 1..4 ).collect { int reader ->
+      Thread.start {
+        while ( running.get( ) ) {
+          if ( reader % 2 ) {
+            checkSnapshot( cache.get( ) )
+          } else {
+            checkSnapshot( cache.getIfLoaded( ).get( ) )
+          }
+        }
+      }
+    }
+    for ( int i = 0; i < 2000; i++ ) {
+      final String id = "id-${1 + ( i % 50 )}" as String
+      cache.database.put( id, cache.database.get( id ) + 1 )
+      cache.commit( id )
+    }
+    running.set( false )
+    readers*.join( 5000 )
+
+    assertEquals( 'Errors', [ ], errors )
+    final List<String> expected = cache.database.collect { String id, Integer version -> "${id}:${version}" as String }.sort( )
+    assertEquals( 'Values', expected, cache.get( ).collect( ) )
+    assertEquals( 'Loaded values', expected, cache.getIfLoaded( ).get( ).collect( ) )
+  }
+
+  static class TestEntity1 extends AbstractPersistent { }
+  static class TestEntity2 extends AbstractPersistent { }
+  static class TestEntity3 extends AbstractPersistent { }
+  static class TestEntity4 extends AbstractPersistent { }
+
+  private static final class TestEntityCache extends EntityCache<AbstractPersistent,String> {
+    final ConcurrentMap<String,Integer> database = new ConcurrentSkipListMap<>( )
+    final Class<? extends AbstractPersistent> type
+    volatile int versionScans
+    volatile CountDownLatch loading
+    volatile CountDownLatch release
+
+    TestEntityCache( final Class<? extends AbstractPersistent> type ) {
+      super( type.newInstance( ), { throw new UnsupportedOperationException( ) } as Function<AbstractPersistent,String> )
+      this.type = type
+    }
+
+    void commit( final String... ids ) {
+      EntityChanges.committed( ImmutableMultimap.<Class<?>,String>builder( ).putAll( type, ids ).build( ) )
+    }
+
+    @Override
+    Collection<Pair<String,Integer>> loadVersionMap( ) {
+      versionScans++
+      database.collect { String id, Integer version -> Pair.pair( id, version ) }
+    }
+
+    @Override
+    Map<String,Pair<Integer,String>> loadBatch( final List<String> idBatch ) {
+      if ( loading != null ) {
+        loading.countDown( )
+        release.await( 5, TimeUnit.SECONDS )
+      }
+      final Map<String,Pair<Integer,String>> loaded = [:]
+      for ( final String id : idBatch ) {
+        final Integer version = database.get( id )
+        if ( version != null ) loaded.put( id, Pair.pair( version, "${id}:${version}" as String ) )
+      }
+      loaded
+    }
+  }
+}
@@ -0,0 +1,244 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+
+
+package com.eucalyptus.objectstorage.metadata;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nonnull;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.log4j.Logger;
+
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.objectstorage.MpuPartMetadataManagers;
+import com.eucalyptus.objectstorage.ObjectMetadataManagers;
+import com.eucalyptus.objectstorage.ObjectState;
+import com.eucalyptus.objectstorage.entities.Bucket;
+
+/**
+ * In-memory per-bucket usage counters for quota enforcement.
+ *
+ * Counters are loaded from the metadata aggregate queries the first time a bucket is checked and are then maintained from the deltas recorded by
+ * the object and part state transitions. Deltas are applied only once the transaction that recorded them commits.
+ *
+ * A committing change holds the bucket's read lock from before completion until its delta is applied, and counters are loaded (and reconciled)
+ * under the write lock. A delta is therefore either included in the loaded totals or applied after the load, never both or neither. Changes
+ * committed before a bucket's counters are first loaded are tracked against an unloaded counter that the load replaces.
+ *
+ * Counters are local to each OSG host. Changes made through other hosts, and any change not made via a state transition, are only included once
+ * the counters are reconciled against the database (see {@link com.eucalyptus.objectstorage.jobs.BucketUsageReconcileJob}), so with multiple
+ * OSG hosts the reported usage is only correct as of the last reconciliation.
+ */
+public class BucketUsageCounters {
+  private static final Logger LOG = Logger.getLogger(BucketUsageCounters.class);
+  private static final BucketUsageCounters instance = new BucketUsageCounters(new DatabaseTotalsLoader());
+
+  private final ConcurrentMap<String, Usage> usageByBucketUuid = new ConcurrentHashMap<>();
+  private final TotalsLoader loader;
+
+  BucketUsageCounters(final TotalsLoader loader) {
+    this.loader = loader;
+  }
+
+  public static BucketUsageCounters getInstance() {
+    return instance;
+  }
+
+  /**
+   * Number of extant objects in the bucket.
+   */
+  public long getObjectCount(@Nonnull final Bucket bucket) throws Exception {
+    return loadedUsage(bucket.getBucketUuid()).objects.get();
+  }
+
+  /**
+   * Total size in bytes of creating/extant objects and parts in the bucket.
+   */
+  public long getTotalSize(@Nonnull final Bucket bucket) throws Exception {
+    return loadedUsage(bucket.getBucketUuid()).size.get();
+  }
+
+  /**
+   * Record a usage change for the bucket, to be applied when the current transaction for the entity class commits.
+   */
+  public void recordChange(final Class<?> entityClass, final Bucket bucket, final long sizeDelta, final long objectsDelta) {
+    if (bucket == null || bucket.getBucketUuid() == null || (sizeDelta == 0 && objectsDelta == 0)) {
+      return;
+    }
+    Entities.registerSynchronization(entityClass, change(bucket.getBucketUuid(), sizeDelta, objectsDelta));
+  }
+
+  /**
+   * Discard the counters for a removed bucket.
+   */
+  public void remove(@Nonnull final String bucketUuid) {
+    usageByBucketUuid.remove(bucketUuid);
+  }
+
+  /**
+   * Recalculate the counters for all loaded buckets from the database.
+   */
+  public void reconcile() {
+    for (final Map.Entry<String, Usage> entry : usageByBucketUuid.entrySet()) {
+      final String bucketUuid = entry.getKey();
+      final Usage usage = entry.getValue();
+      if (!usage.loaded) {
+        continue;
+      }
+      usage.lock.writeLock().lock();
+      try {
+        usage.set(loader.load(bucketUuid));
+      } catch (NoSuchElementException e) {
+        usageByBucketUuid.remove(bucketUuid, usage);
+      } catch (Exception e) {
+        // Keep the counter so in-flight deltas are not lost, it is loaded again on next use
+        LOG.warn("Error reconciling usage for bucket " + bucketUuid + ": " + e.getMessage());
+        usage.loaded = false;
+      } finally {
+        usage.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  static long countedSize(final ObjectState state, final Long size) {
+    return size != null && (ObjectState.creating.equals(state) || ObjectState.extant.equals(state)) ? size : 0;
+  }
+
+  static long countedObjects(final ObjectState state) {
+    return ObjectState.extant.equals(state) ? 1 : 0;
+  }
+
+  /**
+   * Synchronization applying a usage change for the bucket on commit.
+   */
+  Synchronization change(final String bucketUuid, final long sizeDelta, final long objectsDelta) {
+    return new Synchronization() {
+      private Usage usage;
+
+      @Override
+      public void beforeCompletion() {
+        final Usage usage = usage(bucketUuid);
+        usage.lock.readLock().lock();
+        this.usage = usage;
+      }
+
+      @Override
+      public void afterCompletion(final int status) {
+        if (usage != null) {
+          try {
+            if (Status.STATUS_COMMITTED == status) {
+              usage.size.addAndGet(sizeDelta);
+              usage.objects.addAndGet(objectsDelta);
+            }
+          } finally {
+            usage.lock.readLock().unlock();
+            usage = null;
+          }
+        }
+      }
+    };
+  }
+
+  private Usage usage(final String bucketUuid) {
+    Usage usage = usageByBucketUuid.get(bucketUuid);
+    if (usage == null) {
+      final Usage created = new Usage();
+      usage = usageByBucketUuid.putIfAbsent(bucketUuid, created);
+      if (usage == null) {
+        usage = created;
+      }
+    }
+    return usage;
+  }
+
+  private Usage loadedUsage(final String bucketUuid) throws Exception {
+    final Usage usage = usage(bucketUuid);
+    if (!usage.loaded) {
+      usage.lock.writeLock().lock();
+      try {
+        if (!usage.loaded) {
+          usage.set(loader.load(bucketUuid));
+        }
+      } finally {
+        usage.lock.writeLock().unlock();
+      }
+    }
+    return usage;
+  }
+
+  /**
+   * Loads the usage totals for a bucket.
+   */
+  interface TotalsLoader {
+    /**
+     * @throws NoSuchElementException If the bucket does not exist
+     */
+    Totals load(String bucketUuid) throws Exception;
+  }
+
+  static final class Totals {
+    private final long size;
+    private final long objects;
+
+    Totals(final long size, final long objects) {
+      this.size = size;
+      this.objects = objects;
+    }
+  }
+
+  private static final class DatabaseTotalsLoader implements TotalsLoader {
+    @Override
+    public Totals load(final String bucketUuid) throws Exception {
+      final Bucket bucket;
+      try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
+        bucket = Entities.uniqueResult(new Bucket().withUuid(bucketUuid));
+        db.commit();
+      }
+      return new Totals(
+          ObjectMetadataManagers.getInstance().getTotalSize(bucket) + MpuPartMetadataManagers.getInstance().getTotalSize(bucket),
+          ObjectMetadataManagers.getInstance().countValid(bucket));
+    }
+  }
+
+  private static final class Usage {
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong objects = new AtomicLong();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded;
+
+    /**
+     * Caller must hold the write lock.
+     */
+    private void set(final Totals totals) {
+      size.set(totals.size);
+      objects.set(totals.objects);
+      loaded = true;
+    }
+  }
+}
@@ -187,6 +187,7 @@ public class DbBucketMetadataManagerImpl implements BucketMetadataManager {
             BucketState.deleting.toString(), bucketToDelete.getState().toString());
       }
       trans.commit();
+      BucketUsageCounters.getInstance().remove(bucket.getBucketUuid());
     } catch (NoSuchElementException e) {
       // Ok, continue.
       LOG.trace("Bucket deletion finalization for (bucket uuid) " + bucket.getBucketUuid() + " failed to find entity record. Returning normally");
@@ -252,11 +252,13 @@ public class DbMpuPartMetadataManagerImpl implements MpuPartMetadataManager {
       public boolean apply(String uploadId) {
         try (TransactionResource db = Entities.transactionFor(PartEntity.class)) {
           // Calculate the sum size of the parts to update the bucket size.
-          PartEntity searchExample = new PartEntity().withUploadId(uploadId).withState(ObjectState.extant);
+          PartEntity searchExample = new PartEntity().withUploadId(uploadId);
           long size =
               Objects.firstNonNull(
-                  (Number) Entities.createCriteria(PartEntity.class).add(Example.create(searchExample)).setProjection(Projections.sum("size"))
-                      .setReadOnly(true).uniqueResult(), 0).longValue();
+                  (Number) Entities.createCriteria(PartEntity.class).add(Example.create(searchExample))
+                      .add(Restrictions.or(Restrictions.eq("state", ObjectState.creating), Restrictions.eq("state", ObjectState.extant)))
+                      .setProjection(Projections.sum("size")).setReadOnly(true).uniqueResult(), 0).longValue();
+          BucketUsageCounters.getInstance().recordChange(PartEntity.class, bucket, -size, 0);
 
           // Remove all part records with this upload id
           Entities.deleteAllMatching(PartEntity.class, "where part_number IS NOT NULL and upload_id=:uploadId",
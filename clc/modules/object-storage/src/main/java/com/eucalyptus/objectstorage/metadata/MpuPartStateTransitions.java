@@ -80,7 +80,10 @@ public class MpuPartStateTransitions {
           initializedObject.setBucket(extantBucket);
           initializedObject.setState(ObjectState.creating);
           initializedObject.updateCreationExpiration();
-          return Entities.persist(initializedObject);
+          final PartEntity persisted = Entities.persist(initializedObject);
+          BucketUsageCounters.getInstance().recordChange(PartEntity.class, extantBucket,
+              BucketUsageCounters.countedSize(ObjectState.creating, persisted.getSize()), 0);
+          return persisted;
         }
 
       }
@@ -100,6 +103,8 @@ public class MpuPartStateTransitions {
         try {
           PartEntity updatingEntity = Entities.uniqueResult(new PartEntity().withUuid(entity.getPartUuid()));
           if (!ObjectState.deleting.equals(entity.getState())) {
+            final long priorSize = BucketUsageCounters.countedSize(updatingEntity.getState(), updatingEntity.getSize());
+
             // Set the new part state
             updatingEntity.setState(ObjectState.extant);
             updatingEntity.setCreationExpiration(null);
@@ -107,6 +112,8 @@ public class MpuPartStateTransitions {
             updatingEntity.setIsLatest(true);
             updatingEntity.seteTag(entity.geteTag());
             updatingEntity.setSize(entity.getSize());
+            BucketUsageCounters.getInstance().recordChange(PartEntity.class, updatingEntity.getBucket(),
+                BucketUsageCounters.countedSize(ObjectState.extant, updatingEntity.getSize()) - priorSize, 0);
 
             // Remove old versions and update bucket size within this transaction.
             MpuPartMetadataManagers.getInstance().cleanupInvalidParts(entity.getBucket(), entity.getObjectKey(), entity.getUploadId(),
@@ -149,6 +156,8 @@ public class MpuPartStateTransitions {
             entity = objectToUpdate;
           }
 
+          BucketUsageCounters.getInstance().recordChange(PartEntity.class, entity.getBucket(),
+              -BucketUsageCounters.countedSize(entity.getState(), entity.getSize()), 0);
           entity.setState(ObjectState.deleting);
           return entity;
         } catch (NoSuchElementException e) {
@@ -82,7 +82,10 @@ public class ObjectStateTransitions {
           initializedObject.setBucket(extantBucket);
           initializedObject.setState(ObjectState.creating);
           initializedObject.updateCreationExpiration();
-          return Entities.persist(initializedObject);
+          final ObjectEntity persisted = Entities.persist(initializedObject);
+          BucketUsageCounters.getInstance().recordChange(ObjectEntity.class, extantBucket,
+              BucketUsageCounters.countedSize(ObjectState.creating, persisted.getSize()), 0);
+          return persisted;
         }
 
       }
@@ -113,6 +116,9 @@ public class ObjectStateTransitions {
              * entity.getUploadId()); }
              */
 
+            final ObjectState priorState = updatingEntity.getState();
+            final long priorSize = BucketUsageCounters.countedSize(priorState, updatingEntity.getSize());
+
             // Set the new object state
             updatingEntity.setState(ObjectState.extant);
             updatingEntity.setCreationExpiration(null);
@@ -121,6 +127,9 @@ public class ObjectStateTransitions {
             updatingEntity.seteTag(entity.geteTag());
             updatingEntity.setSize(entity.getSize());
             updatingEntity.setStoredHeaders(entity.getStoredHeaders());
+            BucketUsageCounters.getInstance().recordChange(ObjectEntity.class, updatingEntity.getBucket(),
+                BucketUsageCounters.countedSize(ObjectState.extant, updatingEntity.getSize()) - priorSize,
+                1 - BucketUsageCounters.countedObjects(priorState));
 
             if (ObjectState.mpu_pending.equals(updatingEntity.getLastState())) {
               // Remove the parts, this will remove the sizes for the parts.
@@ -160,6 +169,8 @@ public class ObjectStateTransitions {
         try {
           ObjectEntity updatingEntity = Entities.uniqueResult(new ObjectEntity().withUuid(entity.getObjectUuid()));
           if (ObjectState.creating.equals(updatingEntity.getState())) {
+            BucketUsageCounters.getInstance().recordChange(ObjectEntity.class, updatingEntity.getBucket(),
+                -BucketUsageCounters.countedSize(ObjectState.creating, updatingEntity.getSize()), 0);
             updatingEntity.setState(ObjectState.mpu_pending);
             updatingEntity.setCreationExpiration(null);
             updatingEntity.setObjectModifiedTimestamp(entity.getObjectModifiedTimestamp());
@@ -198,6 +209,8 @@ public class ObjectStateTransitions {
           } else {
             entity = objectToUpdate;
           }
+          BucketUsageCounters.getInstance().recordChange(ObjectEntity.class, entity.getBucket(),
+              -BucketUsageCounters.countedSize(entity.getState(), entity.getSize()), -BucketUsageCounters.countedObjects(entity.getState()));
           entity.setState(ObjectState.deleting);
           entity.setIsLatest(Boolean.FALSE);
 
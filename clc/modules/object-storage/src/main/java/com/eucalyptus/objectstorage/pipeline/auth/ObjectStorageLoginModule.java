@@ -78,6 +78,7 @@ import org.apache.xml.security.utils.Base64;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.login.LoginException;
+import java.security.Key;
 import java.security.MessageDigest;
 
 public class ObjectStorageLoginModule extends BaseLoginModule<ObjectStorageWrappedCredentials> {
@@ -117,8 +118,8 @@ public class ObjectStorageLoginModule extends BaseLoginModule<ObjectStorageWrapp
 
   private boolean authV4(ObjectStorageWrappedCredentials credentials) throws Exception {
     AccessKey accessKey = lookupAccessKey(credentials.credential.getAccessKeyId(), credentials.securityToken);
-    byte[] signatureKey = Hmacv4LoginModule.getSignatureKey(accessKey.getSecretKey(), credentials.credential);
-    byte[] computedSig = Hmacv4LoginModule.getHmacSHA256(signatureKey, credentials.getLoginData());
+    Key signingKey = Hmacv4LoginModule.getSigningKey(accessKey.getSecretKey(), credentials.credential);
+    byte[] computedSig = Hmacv4LoginModule.getHmacSHA256(signingKey, credentials.getLoginData());
     byte[] providedSig = BaseEncoding.base16().lowerCase().decode(credentials.signature);
 
     // Compare signatures
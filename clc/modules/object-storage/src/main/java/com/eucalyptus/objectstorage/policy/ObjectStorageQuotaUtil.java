@@ -72,6 +72,7 @@ import com.eucalyptus.objectstorage.BucketMetadataManagers;
 import com.eucalyptus.objectstorage.MpuPartMetadataManagers;
 import com.eucalyptus.objectstorage.ObjectMetadataManagers;
 import com.eucalyptus.objectstorage.entities.Bucket;
+import com.eucalyptus.objectstorage.metadata.BucketUsageCounters;
 
 public class ObjectStorageQuotaUtil {
 
@@ -93,7 +94,7 @@ public class ObjectStorageQuotaUtil {
 
   public static long countBucketObjects(String bucketName) throws AuthException {
     try {
-      return ObjectMetadataManagers.getInstance().countValid(BucketMetadataManagers.getInstance().lookupBucket(bucketName));
+      return BucketUsageCounters.getInstance().getObjectCount(BucketMetadataManagers.getInstance().lookupBucket(bucketName));
     } catch (Exception e) {
       throw new AuthException("Failed to search object", e);
     }
@@ -102,9 +103,7 @@ public class ObjectStorageQuotaUtil {
   public static long getBucketSize(String bucketName) throws AuthException {
     try (TransactionResource db = Entities.transactionFor(Bucket.class)) {
       Bucket bucket = BucketMetadataManagers.getInstance().lookupBucket(bucketName);
-      long objectSize = ObjectMetadataManagers.getInstance().getTotalSize(bucket);
-      long mpuPartsSize = MpuPartMetadataManagers.getInstance().getTotalSize(bucket);
-      return objectSize + mpuPartsSize;
+      return BucketUsageCounters.getInstance().getTotalSize(bucket);
     } catch (Exception e) {
       throw new AuthException("Failed to get bucket total size", e);
     }
@@ -116,8 +115,7 @@ public class ObjectStorageQuotaUtil {
       List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByOwner(canonicalId);
       long size = 0;
       for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
+        size += BucketUsageCounters.getInstance().getTotalSize(b);
       }
       return size;
     } catch (Exception e) {
@@ -130,8 +128,7 @@ public class ObjectStorageQuotaUtil {
       List<Bucket> bucketList = BucketMetadataManagers.getInstance().lookupBucketsByUser(userId);
       long size = 0;
       for (Bucket b : bucketList) {
-        size += ObjectMetadataManagers.getInstance().getTotalSize(b);
-        size += MpuPartMetadataManagers.getInstance().getTotalSize(b);
+        size += BucketUsageCounters.getInstance().getTotalSize(b);
       }
       return size;
     } catch (Exception e) {
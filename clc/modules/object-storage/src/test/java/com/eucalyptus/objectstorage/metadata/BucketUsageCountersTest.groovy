@@ -0,0 +1,209 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.objectstorage.metadata
+
+import com.eucalyptus.objectstorage.entities.Bucket
+import org.junit.Test
+
+import javax.transaction.Status
+import javax.transaction.Synchronization
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for bucket usage counters, using a totals loader in place of the database.
+ */
+class BucketUsageCountersTest {
+
+  private static final Bucket BUCKET = new Bucket( ).withUuid( 'bucket-uuid-1' )
+
+  @Test
+  void testLoad( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2 )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    assertEquals( 'Size', 100, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects', 2, counters.getObjectCount( BUCKET ) )
+    assertEquals( 'Loads', 1, loader.loads.get( ) )
+  }
+
+  @Test
+  void testLoadFailure( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2, failure: new IllegalStateException( 'database' ) )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    try {
+      counters.getTotalSize( BUCKET )
+      fail( 'Expected load failure' )
+    } catch ( IllegalStateException e ) {
+      // expected
+    }
+    loader.failure = null
+    assertEquals( 'Size', 100, counters.getTotalSize( BUCKET ) )
+  }
+
+  @Test
+  void testChanges( ) {
+    final BucketUsageCounters counters = new BucketUsageCounters( new TestLoader( size: 100, objects: 2 ) )
+    counters.getTotalSize( BUCKET )
+    complete( counters.change( BUCKET.bucketUuid, 10, 1 ), Status.STATUS_COMMITTED )
+    assertEquals( 'Size after commit', 110, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects after commit', 3, counters.getObjectCount( BUCKET ) )
+    complete( counters.change( BUCKET.bucketUuid, 10, 1 ), Status.STATUS_ROLLEDBACK )
+    assertEquals( 'Size after rollback', 110, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects after rollback', 3, counters.getObjectCount( BUCKET ) )
+    complete( counters.change( BUCKET.bucketUuid, -110, -3 ), Status.STATUS_COMMITTED )
+    assertEquals( 'Size after delete', 0, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects after delete', 0, counters.getObjectCount( BUCKET ) )
+  }
+
+  @Test
+  void testChangeBeforeLoad( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2 )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    complete( counters.change( BUCKET.bucketUuid, 10, 1 ), Status.STATUS_COMMITTED )
+    // database totals include the committed change
+    loader.size = 110
+    loader.objects = 3
+    assertEquals( 'Size', 110, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects', 3, counters.getObjectCount( BUCKET ) )
+  }
+
+  @Test
+  void testChangeCommittingDuringLoad( ) {
+    final CountDownLatch loading = new CountDownLatch( 1 )
+    final CountDownLatch release = new CountDownLatch( 1 )
+    final TestLoader loader = new TestLoader( size: 100, objects: 2, loading: loading, release: release )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    final Thread load = Thread.start { counters.getTotalSize( BUCKET ) }
+    assertTrue( 'Loading', loading.await( 5, TimeUnit.SECONDS ) )
+
+    // change commits after the database totals are read
+    final Thread commit = Thread.start {
+      complete( counters.change( BUCKET.bucketUuid, 10, 1 ), Status.STATUS_COMMITTED )
+    }
+    commit.join( 100 )
+    assertTrue( 'Commit waits for load', commit.isAlive( ) )
+    release.countDown( )
+    load.join( 5000 )
+    commit.join( 5000 )
+
+    assertEquals( 'Size', 110, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects', 3, counters.getObjectCount( BUCKET ) )
+    assertEquals( 'Loads', 1, loader.loads.get( ) )
+  }
+
+  @Test
+  void testChangeInFlightDuringLoad( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2 )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    final Synchronization change = counters.change( BUCKET.bucketUuid, 10, 1 )
+    change.beforeCompletion( )
+
+    final Thread load = Thread.start { counters.getTotalSize( BUCKET ) }
+    load.join( 100 )
+    assertTrue( 'Load waits for commit', load.isAlive( ) )
+    assertEquals( 'Loads', 0, loader.loads.get( ) )
+
+    // database totals include the change once committed
+    loader.size = 110
+    loader.objects = 3
+    change.afterCompletion( Status.STATUS_COMMITTED )
+    load.join( 5000 )
+
+    assertEquals( 'Size', 110, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects', 3, counters.getObjectCount( BUCKET ) )
+  }
+
+  @Test
+  void testReconcile( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2 )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    counters.getTotalSize( BUCKET )
+    loader.size = 150
+    loader.objects = 4
+    counters.reconcile( )
+    assertEquals( 'Size', 150, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Objects', 4, counters.getObjectCount( BUCKET ) )
+    assertEquals( 'Loads', 2, loader.loads.get( ) )
+  }
+
+  @Test
+  void testReconcileSkipsUnloaded( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2 )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    complete( counters.change( BUCKET.bucketUuid, 10, 1 ), Status.STATUS_COMMITTED )
+    counters.reconcile( )
+    assertEquals( 'Loads', 0, loader.loads.get( ) )
+  }
+
+  @Test
+  void testReconcileFailure( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2 )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    counters.getTotalSize( BUCKET )
+    loader.failure = new IllegalStateException( 'database' )
+    counters.reconcile( )
+    loader.failure = null
+    loader.size = 120
+    assertEquals( 'Size reloaded', 120, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Loads', 3, loader.loads.get( ) )
+  }
+
+  @Test
+  void testReconcileRemovedBucket( ) {
+    final TestLoader loader = new TestLoader( size: 100, objects: 2 )
+    final BucketUsageCounters counters = new BucketUsageCounters( loader )
+    counters.getTotalSize( BUCKET )
+    loader.failure = new NoSuchElementException( )
+    counters.reconcile( )
+    loader.failure = null
+    loader.size = 0
+    assertEquals( 'Size', 0, counters.getTotalSize( BUCKET ) )
+    assertEquals( 'Loads', 3, loader.loads.get( ) )
+  }
+
+  private static void complete( final Synchronization synchronization, final int status ) {
+    synchronization.beforeCompletion( )
+    synchronization.afterCompletion( status )
+  }
+
+  private static final class TestLoader implements BucketUsageCounters.TotalsLoader {
+    volatile long size
+    volatile long objects
+    volatile Exception failure
+    CountDownLatch loading
+    CountDownLatch release
+    final AtomicInteger loads = new AtomicInteger( )
+
+    @Override
+    BucketUsageCounters.Totals load( final String bucketUuid ) throws Exception {
+      loads.incrementAndGet( )
+      if ( failure != null ) throw failure
+      final BucketUsageCounters.Totals totals = new BucketUsageCounters.Totals( size, objects )
+      if ( loading != null ) {
+        loading.countDown( )
+        release.await( 5, TimeUnit.SECONDS )
+      }
+      totals
+    }
+  }
+}
@@ -42,7 +42,6 @@ import com.eucalyptus.auth.euare.identity.region.RegionConfigurations;
 import com.eucalyptus.auth.policy.PolicyParser;
 import com.eucalyptus.auth.policy.ern.Ern;
 import com.eucalyptus.auth.type.LimitedType;
-import com.eucalyptus.cloudwatch.common.msgs.PutMetricDataType;
 import com.eucalyptus.component.ServiceUris;
 import com.eucalyptus.component.Topology;
 import com.eucalyptus.component.annotation.ComponentNamed;
@@ -70,6 +69,7 @@ import com.eucalyptus.simplequeue.exceptions.UnsupportedOperationException;
 import com.eucalyptus.simplequeue.persistence.PersistenceFactory;
 import com.eucalyptus.simplequeue.persistence.Queue;
 import com.eucalyptus.system.Threads;
+import com.eucalyptus.util.Either;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.RestrictedTypes;
@@ -717,9 +717,7 @@ public class SimpleQueueService {
       String receiptHandle = request.getReceiptHandle();
       if (PersistenceFactory.getMessagePersistence().deleteMessage(queue.getKey(), receiptHandle)) {
         if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION) {
-          PutMetricDataType putMetricDataType = CloudWatchClient.getSQSPutMetricDataType(queue.getKey());
-          CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), new Date(), Constants.NUMBER_OF_MESSAGES_DELETED, 1.0, "Count");
-          CloudWatchClient.putMetricData(putMetricDataType);
+          CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), new Date(), Constants.NUMBER_OF_MESSAGES_DELETED, 1.0, "Count");
         }
       }
     } catch (Exception ex) {
@@ -993,17 +991,13 @@ public class SimpleQueueService {
       filterReceiveMessageAttributes(message, messageAttributeNames);
     }
     if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION) {
-      PutMetricDataType putMetricDataType = CloudWatchClient.getSQSPutMetricDataType(queue.getKey());
-      CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), now, Constants.NUMBER_OF_MESSAGES_RECEIVED, messages.size(), 1.0, 1.0, messages.size(), "Count");
-      CloudWatchClient.putMetricData(putMetricDataType);
+      CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), now, Constants.NUMBER_OF_MESSAGES_RECEIVED, messages.size(), 1.0, 1.0, messages.size(), "Count");
     }
   }
 
   static void sendEmptyReceiveCW(Queue queue) throws AuthException {
     if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION) {
-      PutMetricDataType putMetricDataType = CloudWatchClient.getSQSPutMetricDataType(queue.getKey());
-      CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), new Date(), Constants.NUMBER_OF_EMPTY_RECEIVES, 1.0, "Count");
-      CloudWatchClient.putMetricData(putMetricDataType);
+      CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), new Date(), Constants.NUMBER_OF_EMPTY_RECEIVES, 1.0, "Count");
     }
   }
 
@@ -1299,10 +1293,8 @@ public class SimpleQueueService {
       }
       if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION) {
         Date now = new Date();
-        PutMetricDataType putMetricDataType = CloudWatchClient.getSQSPutMetricDataType(queue.getKey());
-        CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), now, Constants.NUMBER_OF_MESSAGES_SENT, 1.0, "Count");
-        CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), now, Constants.SENT_MESSAGE_SIZE, (double) messageInfo.getMessageLength(), "Bytes");
-        CloudWatchClient.putMetricData(putMetricDataType);
+        CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), now, Constants.NUMBER_OF_MESSAGES_SENT, 1.0, "Count");
+        CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), now, Constants.SENT_MESSAGE_SIZE, (double) messageInfo.getMessageLength(), "Bytes");
       }
     } catch (Exception ex) {
       handleException(ex);
@@ -1414,9 +1406,19 @@ public class SimpleQueueService {
       }
       Date now = new Date();
       int numSuccessfulRealDeletes = 0;
+      List<String> receiptHandles = Lists.newArrayList();
+      for (DeleteMessageBatchRequestEntry batchRequestEntry: request.getDeleteMessageBatchRequestEntry()) {
+        receiptHandles.add(batchRequestEntry.getReceiptHandle());
+      }
+      Map<String, Either<Exception, Boolean>> deleteResults =
+        PersistenceFactory.getMessagePersistence().deleteMessages(queue.getKey(), receiptHandles);
       for (DeleteMessageBatchRequestEntry batchRequestEntry: request.getDeleteMessageBatchRequestEntry()) {
         try {
-          if (PersistenceFactory.getMessagePersistence().deleteMessage(queue.getKey(), batchRequestEntry.getReceiptHandle())) {
+          Either<Exception, Boolean> deleteResult = deleteResults.get(batchRequestEntry.getReceiptHandle());
+          if (deleteResult.isLeft()) {
+            throw deleteResult.getLeft();
+          }
+          if (deleteResult.getRight()) {
             // note: only send a CW metric if we actually delete a message.  We can still 'succeed' on a stale
             // receipt handle.
             numSuccessfulRealDeletes++;
@@ -1438,10 +1440,8 @@ public class SimpleQueueService {
         }
       }
       if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION && numSuccessfulRealDeletes > 0) {
-        PutMetricDataType putMetricDataType = CloudWatchClient.getSQSPutMetricDataType(queue.getKey());
-        CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), new Date(), Constants.NUMBER_OF_MESSAGES_DELETED,
+        CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), new Date(), Constants.NUMBER_OF_MESSAGES_DELETED,
           numSuccessfulRealDeletes, 1.0, 1.0, numSuccessfulRealDeletes, "Count");
-        CloudWatchClient.putMetricData(putMetricDataType);
       }
     } catch (Exception ex) {
       handleException(ex);
@@ -1531,10 +1531,8 @@ public class SimpleQueueService {
         }
       }
       if (SimpleQueueProperties.ENABLE_METRICS_COLLECTION && numSuccessfulMessages > 0) {
-        PutMetricDataType putMetricDataType = CloudWatchClient.getSQSPutMetricDataType(queue.getKey());
-        CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), now, Constants.NUMBER_OF_MESSAGES_SENT, numSuccessfulMessages, 1.0, 1.0, numSuccessfulMessages, "Count");
-        CloudWatchClient.addSQSMetricDatum(putMetricDataType, queue.getKey(), now, Constants.SENT_MESSAGE_SIZE, numSuccessfulMessages, smallestSuccessfulMessageLength, largestSuccessfulMessageLength, totalSuccessfulMessagesLength, "Bytes");
-        CloudWatchClient.putMetricData(putMetricDataType);
+        CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), now, Constants.NUMBER_OF_MESSAGES_SENT, numSuccessfulMessages, 1.0, 1.0, numSuccessfulMessages, "Count");
+        CloudWatchClient.accumulateSQSMetricDatum(queue.getKey(), now, Constants.SENT_MESSAGE_SIZE, numSuccessfulMessages, smallestSuccessfulMessageLength, largestSuccessfulMessageLength, totalSuccessfulMessagesLength, "Bytes");
       }
     } catch (Exception ex) {
       handleException(ex);
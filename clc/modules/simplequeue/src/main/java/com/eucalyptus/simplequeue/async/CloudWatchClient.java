@@ -16,6 +16,7 @@
 package com.eucalyptus.simplequeue.async;
 
 import com.eucalyptus.auth.AuthException;
+import com.eucalyptus.bootstrap.Bootstrap;
 import com.eucalyptus.cloudwatch.common.CloudWatch;
 import com.eucalyptus.cloudwatch.common.msgs.Dimension;
 import com.eucalyptus.cloudwatch.common.msgs.Dimensions;
@@ -24,14 +25,24 @@ import com.eucalyptus.cloudwatch.common.msgs.MetricDatum;
 import com.eucalyptus.cloudwatch.common.msgs.PutMetricDataType;
 import com.eucalyptus.cloudwatch.common.msgs.StatisticSet;
 import com.eucalyptus.component.Topology;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
 import com.eucalyptus.simplequeue.Constants;
+import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
 import com.eucalyptus.simplequeue.persistence.Queue;
 import com.eucalyptus.simpleworkflow.stateful.NotifyResponseType;
 import com.eucalyptus.util.async.AsyncRequests;
 import com.eucalyptus.util.concurrent.ListenableFuture;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.apache.log4j.Logger;
 
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -42,6 +53,10 @@ public class CloudWatchClient {
 
   static final Logger LOG = Logger.getLogger(CloudWatchClient.class);
 
+  private static final int MAX_METRIC_DATA_PER_REQUEST = 20;
+
+  private static final ConcurrentHashMap<MetricKey, MetricAccumulator> accumulatedMetrics = new ConcurrentHashMap<>();
+
   private static Date roundDown5Minutes(Date date) {
     if (date == null) return date;
     long timestamp = date.getTime();
@@ -74,9 +89,63 @@ public class CloudWatchClient {
     putMetricDataType.getMetricData().getMember().add(metricDatum);
   }
 
+  /**
+   * Accumulate a metric value for the queue, it will be sent with the next flush.
+   */
+  public static void accumulateSQSMetricDatum(Queue.Key queueKey, Date date, String metricName, double value, String unit) {
+    accumulateSQSMetricDatum(queueKey, date, metricName, 1.0, value, value, value, unit);
+  }
+
+  /**
+   * Accumulate metric statistics for the queue, they will be sent with the next flush.
+   */
+  public static void accumulateSQSMetricDatum(Queue.Key queueKey, Date date, String metricName, double sampleCount, double minimum, double maximum, double sum, String unit) {
+    MetricKey metricKey = new MetricKey(queueKey, roundDown5Minutes(date), metricName, unit);
+    // compute is atomic with the remove on flush, so the add goes to the current accumulator
+    accumulatedMetrics.compute(metricKey, (key, accumulator) -> {
+      MetricAccumulator metricAccumulator = accumulator == null ? new MetricAccumulator() : accumulator;
+      metricAccumulator.add(sampleCount, minimum, maximum, sum);
+      return metricAccumulator;
+    });
+  }
+
+  /**
+   * Send all accumulated metrics, batched by account.
+   */
+  public static void flushAccumulatedMetrics() {
+    Map<String, List<MetricDatum>> metricDataByAccount = Maps.newHashMap();
+    for (MetricKey metricKey : Lists.newArrayList(accumulatedMetrics.keySet())) {
+      MetricAccumulator accumulator = accumulatedMetrics.remove(metricKey);
+      if (accumulator != null) {
+        MetricDatum metricDatum = new MetricDatum();
+        metricDatum.setTimestamp(metricKey.timestamp);
+        metricDatum.setDimensions(getDimensions(metricKey.queueKey));
+        metricDatum.setMetricName(metricKey.metricName);
+        metricDatum.setStatisticValues(accumulator.drain());
+        metricDatum.setUnit(metricKey.unit);
+        metricDataByAccount.computeIfAbsent(metricKey.queueKey.getAccountId(), accountId -> Lists.newArrayList()).add(metricDatum);
+      }
+    }
+    for (Map.Entry<String, List<MetricDatum>> entry : metricDataByAccount.entrySet()) {
+      for (List<MetricDatum> metricData : Lists.partition(entry.getValue(), MAX_METRIC_DATA_PER_REQUEST)) {
+        try {
+          PutMetricDataType putMetricDataType = getSQSPutMetricDataType(entry.getKey());
+          putMetricDataType.getMetricData().getMember().addAll(metricData);
+          putMetricData(putMetricDataType);
+        } catch (final Exception e) {
+          LOG.error("Error while sending put metric data request", e);
+        }
+      }
+    }
+  }
+
   public static PutMetricDataType getSQSPutMetricDataType(Queue.Key queueKey) throws AuthException {
+    return getSQSPutMetricDataType(queueKey.getAccountId());
+  }
+
+  private static PutMetricDataType getSQSPutMetricDataType(String accountId) throws AuthException {
     PutMetricDataType putMetricDataType = new PutMetricDataType();
-    putMetricDataType.setUserId(queueKey.getAccountId());
+    putMetricDataType.setUserId(accountId);
     putMetricDataType.markPrivileged();
     putMetricDataType.setNamespace(Constants.AWS_SQS);
     putMetricDataType.setMetricData(new MetricData());
@@ -112,4 +181,79 @@ public class CloudWatchClient {
       LOG.error("Error while sending put metric data request", e);
     }
   }
+
+  private static final class MetricKey {
+    private final Queue.Key queueKey;
+    private final Date timestamp;
+    private final String metricName;
+    private final String unit;
+
+    private MetricKey(Queue.Key queueKey, Date timestamp, String metricName, String unit) {
+      this.queueKey = queueKey;
+      this.timestamp = timestamp;
+      this.metricName = metricName;
+      this.unit = unit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      MetricKey metricKey = (MetricKey) o;
+      return Objects.equals(queueKey, metricKey.queueKey) &&
+        Objects.equals(timestamp, metricKey.timestamp) &&
+        Objects.equals(metricName, metricKey.metricName) &&
+        Objects.equals(unit, metricKey.unit);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(queueKey, timestamp, metricName, unit);
+    }
+  }
+
+  /**
+   * Only updated inside a compute on the accumulated metrics map, so a flush that has removed the
+   * accumulator from the map sees all additions to it.
+   */
+  private static final class MetricAccumulator {
+    private double sampleCount = 0;
+    private double minimum = Double.MAX_VALUE;
+    private double maximum = -Double.MAX_VALUE;
+    private double sum = 0;
+
+    void add(double sampleCount, double minimum, double maximum, double sum) {
+      this.sampleCount += sampleCount;
+      this.minimum = Math.min(this.minimum, minimum);
+      this.maximum = Math.max(this.maximum, maximum);
+      this.sum += sum;
+    }
+
+    StatisticSet drain() {
+      StatisticSet statisticSet = new StatisticSet();
+      statisticSet.setMaximum(maximum);
+      statisticSet.setMinimum(minimum);
+      statisticSet.setSampleCount(sampleCount);
+      statisticSet.setSum(sum);
+      return statisticSet;
+    }
+  }
+
+  public static class MetricFlushEventListener implements EventListener<ClockTick> {
+    private volatile long lastFlushMillis = System.currentTimeMillis();
+
+    public static void register() {
+      Listeners.register(ClockTick.class, new MetricFlushEventListener());
+    }
+
+    @Override
+    public void fireEvent(final ClockTick event) {
+      long nowMillis = System.currentTimeMillis();
+      if (nowMillis - lastFlushMillis >= SimpleQueueProperties.METRICS_FLUSH_INTERVAL_SECS * 1000L &&
+        Bootstrap.isOperational()) {
+        lastFlushMillis = nowMillis;
+        flushAccumulatedMetrics();
+      }
+    }
+  }
 }
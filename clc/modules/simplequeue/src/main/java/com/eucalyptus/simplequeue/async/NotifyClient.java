@@ -38,8 +38,14 @@ public class NotifyClient {
   }
   private static final Logger logger = Logger.getLogger(NotifyClient.class);
 
+  /**
+   * Notify a queue that a message was sent.
+   *
+   * Only a single poller is woken for each message, waking every poller would
+   * have them all query for the one message.
+   */
   public static void notifyQueue(final Queue queue) {
-    NotifyClientUtils.notifyChannel(new QueueChannelWrapper(queue));
+    NotifyClientUtils.notifyChannel(new QueueChannelWrapper(queue), 1);
   }
 
   public static void pollQueue(final Queue queue,
@@ -135,11 +135,19 @@ public class SimpleQueueProperties {
     description = "Set 'true' to allow CloudWatch Metrics for SQS",
     changeListener = PropertyChangeListeners.IsBoolean.class )
   public static volatile Boolean ENABLE_METRICS_COLLECTION = true;
+  @ConfigurableField( description = "Seconds between sends of accumulated CloudWatch metrics for SQS.",
+    initial = "60", changeListener = MinValuePropertyChangeListener.class )
+  @MinValue(min = 1)
+  public volatile static int METRICS_FLUSH_INTERVAL_SECS = 60;
   @ConfigurableField(
     initial = "true",
     description = "Set 'true' to allow Long Polling for SQS",
     changeListener = PropertyChangeListeners.IsBoolean.class )
   public static volatile Boolean ENABLE_LONG_POLLING = true;
+  @ConfigurableField( description = "Seconds between background sweeps that delete expired messages and move messages to dead letter queues (postgres only).",
+    initial = "30", changeListener = MinValuePropertyChangeListener.class )
+  @MinValue(min = 1)
+  public volatile static int MESSAGE_SWEEP_INTERVAL_SECS = 30;
 
   @Target(ElementType.FIELD)
   @Retention(RetentionPolicy.RUNTIME)
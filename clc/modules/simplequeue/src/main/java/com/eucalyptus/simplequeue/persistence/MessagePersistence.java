@@ -17,6 +17,8 @@ package com.eucalyptus.simplequeue.persistence;
 
 import com.eucalyptus.simplequeue.Message;
 import com.eucalyptus.simplequeue.exceptions.SimpleQueueException;
+import com.eucalyptus.util.Either;
+import com.google.common.collect.Maps;
 
 import java.util.Collection;
 import java.util.Map;
@@ -35,6 +37,24 @@ public interface MessagePersistence {
 
   boolean deleteMessage(Queue.Key queueKey, String receiptHandle) throws SimpleQueueException;
 
+  /**
+   * Delete messages for a batch of receipt handles.
+   *
+   * @return The result for each receipt handle, true if a message was deleted, false for a stale
+   *         receipt handle or the failure for the receipt handle.
+   */
+  default Map<String, Either<Exception, Boolean>> deleteMessages(Queue.Key queueKey, Collection<String> receiptHandles) {
+    Map<String, Either<Exception, Boolean>> results = Maps.newHashMap();
+    for (String receiptHandle : receiptHandles) {
+      try {
+        results.put(receiptHandle, Either.right(deleteMessage(queueKey, receiptHandle)));
+      } catch (Exception ex) {
+        results.put(receiptHandle, Either.left(ex));
+      }
+    }
+    return results;
+  }
+
   void deleteAllMessages(Queue.Key queueKey);
 
   Map<String, String> getApproximateMessageCounts(Queue.Key queueKey);
@@ -31,12 +31,13 @@
 package com.eucalyptus.simplequeue.persistence.cassandra;
 
 import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.utils.UUIDs;
 import com.eucalyptus.auth.policy.ern.Ern;
+import com.eucalyptus.cassandra.common.CassandraPersistence;
 import com.eucalyptus.simplequeue.Attribute;
 import com.eucalyptus.simplequeue.Constants;
 import com.eucalyptus.simplequeue.Message;
@@ -47,9 +48,12 @@ import com.eucalyptus.simplequeue.exceptions.SimpleQueueException;
 import com.eucalyptus.simplequeue.persistence.MessageJsonHelper;
 import com.eucalyptus.simplequeue.persistence.MessagePersistence;
 import com.eucalyptus.simplequeue.persistence.Queue;
+import com.eucalyptus.util.Either;
+import com.eucalyptus.util.Pair;
 import com.eucalyptus.util.ThrowingFunction;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.apache.log4j.Logger;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -68,11 +72,14 @@ import java.util.stream.IntStream;
  * Created by ethomas on 11/23/16.
  */
 public class CassandraMessagePersistence implements MessagePersistence {
+  private static final Logger LOG = Logger.getLogger( CassandraMessagePersistence.class );
 
   static Random random = new Random();
 
   private static final int NUM_PARTITIONS = 25;
 
+  private static final int RECEIVE_PARTITION_FANOUT = 5;
+
   private static final List<String> partitionTokens = IntStream.range(0, NUM_PARTITIONS).boxed().map(String::valueOf).collect(Collectors.toList());
 
   private final CassandraSessionManager.SessionProvider sessionProvider;
@@ -122,17 +129,27 @@ public class CassandraMessagePersistence implements MessagePersistence {
       } catch ( Exception ignore ) {
       }
 
-      for ( String partitionToken : randomPartitionTokens ) {
+      // query partitions a few at a time concurrently, claiming from each result in turn
+      // and not querying further partitions once we have enough messages
+      Iterator<String> partitionTokenIterator = randomPartitionTokens.iterator( );
+      List<Pair<String,ResultSetFuture>> partitionResults = Lists.newArrayList( );
+      while ( messages.size( ) < maxNumMessages && ( partitionTokenIterator.hasNext( ) || !partitionResults.isEmpty( ) ) ) {
+        while ( partitionResults.size( ) < RECEIVE_PARTITION_FANOUT && partitionTokenIterator.hasNext( ) ) {
+          String partitionToken = partitionTokenIterator.next( );
+          Statement statement1 = prepared( session,
+              "SELECT message_id, message_json, send_time_secs, receive_count, total_receive_count, expiration_timestamp, " +
+                  "is_delayed, is_invisible FROM eucalyptus_simplequeue.messages WHERE account_id = ? " +
+                  "AND queue_name = ? AND partition_token = ?",
+              queue.getAccountId( ),
+              queue.getQueueName( ),
+              partitionToken
+          );
+          partitionResults.add( Pair.pair( partitionToken, session.executeAsync( statement1 ) ) );
+        }
+        Pair<String,ResultSetFuture> partitionResult = partitionResults.remove( 0 );
+        String partitionToken = partitionResult.getLeft( );
         long nowSecs = SimpleQueueService.currentTimeSeconds( );
-        Statement statement1 = new SimpleStatement(
-            "SELECT message_id, message_json, send_time_secs, receive_count, total_receive_count, expiration_timestamp, " +
-                "is_delayed, is_invisible FROM eucalyptus_simplequeue.messages WHERE account_id = ? " +
-                "AND queue_name = ? AND partition_token = ?",
-            queue.getAccountId( ),
-            queue.getQueueName( ),
-            partitionToken
-        );
-        for ( Row row : session.execute( statement1 ) ) {
+        for ( Row row : partitionResult.getRight( ).getUninterruptibly( ) ) {
           boolean isDelayed = row.getBool( "is_delayed" );
           boolean isInvisible = row.getBool( "is_invisible" );
           if ( isDelayed || isInvisible ) continue;
@@ -144,7 +161,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
           long sendTimeSecs = row.getLong( "send_time_secs" );
           if ( deadLetterQueue && receiveCount >= maxReceiveCount ) {
             BatchStatement batchStatement1 = new BatchStatement( );
-            Statement statement2 = new SimpleStatement(
+            Statement statement2 = prepared( session,
                 "DELETE FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
                 queue.getAccountId( ),
                 queue.getQueueName( ),
@@ -153,7 +170,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
             );
             batchStatement1.add( statement2 );
             Date deadLetterExpirationTimestamp = new Date( ( nowSecs + deadLetterQueueMessageRetentionPeriod ) * 1000L );
-            Statement statement3 = new SimpleStatement(
+            Statement statement3 = prepared( session,
                 "INSERT INTO eucalyptus_simplequeue.messages (account_id, queue_name, partition_token, message_id, message_json, send_time_secs," +
                     "receive_count, total_receive_count, expiration_timestamp) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) USING TTL ?",
@@ -180,7 +197,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
           if ( totalReceiveCount == 0 ) {
             message.getAttribute( ).add( new Attribute( Constants.APPROXIMATE_FIRST_RECEIVE_TIMESTAMP, "" + nowSecs ) );
             messageJson = MessageJsonHelper.messageToJson( message );
-            Statement statement4 = new SimpleStatement(
+            Statement statement4 = prepared( session,
                 "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET message_json = ? WHERE account_id = ? " +
                     "AND queue_name = ? AND partition_token = ? AND message_id = ?",
                 visibleTtl,
@@ -199,7 +216,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
 
           receiveCount++;
           totalReceiveCount++;
-          Statement statement5 = new SimpleStatement(
+          Statement statement5 = prepared( session,
               "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET receive_count = ?, total_receive_count = ? " +
                   "WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
               visibleTtl,
@@ -218,7 +235,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
           }
 
           if ( visibilityTimeout > 0 ) {
-            Statement statement6 = new SimpleStatement(
+            Statement statement6 = prepared( session,
                 "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET is_invisible = ? " +
                     "WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
                 visibilityTimeout,
@@ -243,7 +260,9 @@ public class CassandraMessagePersistence implements MessagePersistence {
           messages.add( message );
           if ( messages.size( ) >= maxNumMessages ) break;
         }
-        if ( messages.size( ) >= maxNumMessages ) break;
+      }
+      for ( Pair<String,ResultSetFuture> unusedPartitionResult : partitionResults ) {
+        unusedPartitionResult.getRight( ).cancel( true );
       }
       return messages;
     } );
@@ -268,7 +287,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
 
       Date expirationTimestamp = new Date( ( nowSecs + queue.getMessageRetentionPeriod( ) ) * 1000L );
 
-      Statement statement1 = new SimpleStatement(
+      Statement statement1 = prepared( session,
           "INSERT INTO eucalyptus_simplequeue.messages (account_id, queue_name, partition_token, message_id, message_json, send_time_secs," +
               "receive_count, total_receive_count, expiration_timestamp) " +
               "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) USING TTL ?",
@@ -286,7 +305,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
       batchStatement.add( statement1 );
 
       if ( delaySeconds > 0 ) {
-        Statement statement2 = new SimpleStatement(
+        Statement statement2 = prepared( session,
             "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET is_delayed = ? " +
                 "WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
             delaySeconds,
@@ -305,62 +324,108 @@ public class CassandraMessagePersistence implements MessagePersistence {
 
   @Override
   public boolean deleteMessage(Queue.Key queueKey, String receiptHandle) throws SimpleQueueException {
-    // receipt handle (currently) looks like accountId:queueName:message-id:partition-token:receive-count
-    StringTokenizer stok = new StringTokenizer(receiptHandle,":");
-    if (stok.countTokens() != 5) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
-    }
-    String receiptHandleAccountId = stok.nextToken();
-    String receiptHandleQueueName = stok.nextToken();
-    UUID messageId = UUID.fromString(stok.nextToken());
-    String partitionToken = stok.nextToken();
-    if (!partitionTokens.contains(partitionToken)) {
-      throw new ReceiptHandleIsInvalidException("The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue.");
-    }
-    return doThrowsWithSession( session -> {
+    ReceiptHandle handle = ReceiptHandle.parse( queueKey, receiptHandle );
+    return doWithSession( session -> {
       boolean found = false;
-      int receiveCount = 0;
-      try {
-        receiveCount = Integer.parseInt(stok.nextToken());
-      } catch (NumberFormatException e) {
-        throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid receipt handle.");
-      }
-      if (!receiptHandleAccountId.equals(queueKey.getAccountId()) || !receiptHandleQueueName.equals(queueKey.getQueueName())) {
-        throw new ReceiptHandleIsInvalidException("The input receipt handle \""+receiptHandle+"\" is not a valid for this queue.");
-      }
-      Statement statement1 = new SimpleStatement(
+      Statement statement1 = prepared( session,
           "SELECT receive_count FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND " +
               "partition_token = ? AND message_id = ?",
           queueKey.getAccountId( ),
           queueKey.getQueueName( ),
-          partitionToken,
-          messageId
+          handle.partitionToken,
+          handle.messageId
       );
       for ( Row row : session.execute( statement1 ) ) {
-        if ( row.getInt( "receive_count" ) == receiveCount ) {
+        if ( row.getInt( "receive_count" ) == handle.receiveCount ) {
           found = true;
           break;
         }
       }
       if ( found ) {
-        Statement statement2 = new SimpleStatement(
-            "DELETE FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
-            queueKey.getAccountId( ),
-            queueKey.getQueueName( ),
-            partitionToken,
-            messageId
-        );
-        session.execute( statement2 );
+        session.execute( deleteStatement( session, queueKey, handle ) );
       }
       return found;
     } );
   }
 
+  @Override
+  public Map<String, Either<Exception, Boolean>> deleteMessages(Queue.Key queueKey, Collection<String> receiptHandles) {
+    Map<String, Either<Exception, Boolean>> results = Maps.newHashMap( );
+    List<ReceiptHandle> handles = Lists.newArrayList( );
+    for ( String receiptHandle : receiptHandles ) {
+      try {
+        handles.add( ReceiptHandle.parse( queueKey, receiptHandle ) );
+      } catch ( Exception ex ) {
+        results.put( receiptHandle, Either.left( ex ) );
+      }
+    }
+    if ( !handles.isEmpty( ) ) {
+      try {
+        doWithSession( session -> {
+          // check all receive counts concurrently, then delete the matching messages in one batch
+          List<ResultSetFuture> receiveCountResults = Lists.newArrayList( );
+          for ( ReceiptHandle handle : handles ) {
+            Statement statement1 = prepared( session,
+                "SELECT receive_count FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND " +
+                    "partition_token = ? AND message_id = ?",
+                queueKey.getAccountId( ),
+                queueKey.getQueueName( ),
+                handle.partitionToken,
+                handle.messageId
+            );
+            receiveCountResults.add( session.executeAsync( statement1 ) );
+          }
+          BatchStatement batchStatement = new BatchStatement( );
+          for ( int i = 0; i < handles.size( ); i++ ) {
+            ReceiptHandle handle = handles.get( i );
+            boolean found = false;
+            for ( Row row : receiveCountResults.get( i ).getUninterruptibly( ) ) {
+              if ( row.getInt( "receive_count" ) == handle.receiveCount ) {
+                found = true;
+                break;
+              }
+            }
+            if ( found ) {
+              batchStatement.add( deleteStatement( session, queueKey, handle ) );
+            }
+            results.put( handle.receiptHandle, Either.right( found ) );
+          }
+          if ( batchStatement.size( ) > 0 ) {
+            session.execute( batchStatement );
+          }
+          return null;
+        } );
+      } catch ( Exception ex ) {
+        // deletes are idempotent so fall back to deleting each message, a message deleted
+        // by the failed batch is reported as a stale receipt handle
+        LOG.warn( "Batch delete failed for queue " + queueKey.getAccountId( ) + "/" + queueKey.getQueueName( ) + ", deleting messages individually: " + ex.getMessage( ) );
+        for ( ReceiptHandle handle : handles ) {
+          try {
+            results.put( handle.receiptHandle, Either.right( deleteMessage( queueKey, handle.receiptHandle ) ) );
+          } catch ( Exception ex1 ) {
+            results.put( handle.receiptHandle, Either.left( ex1 ) );
+          }
+        }
+      }
+    }
+    return results;
+  }
+
+  private static Statement deleteStatement( final Session session, final Queue.Key queueKey, final ReceiptHandle handle ) {
+    return prepared( session,
+        "DELETE FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
+        queueKey.getAccountId( ),
+        queueKey.getQueueName( ),
+        handle.partitionToken,
+        handle.messageId
+    );
+  }
+
   @Override
   public void deleteAllMessages(Queue.Key queueKey) {
     doWithSession( session -> {
       for ( String partitionToken : partitionTokens ) {
-        Statement statement1 = new SimpleStatement(
+        Statement statement1 = prepared( session,
             "DELETE FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? AND partition_token = ?",
             queueKey.getAccountId( ),
             queueKey.getQueueName( ),
@@ -380,7 +445,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
       long totalInvisibleMessages = 0;
       long totalMessages = 0;
       for ( String partitionToken : partitionTokens ) {
-        Statement statement = new SimpleStatement(
+        Statement statement = prepared( session,
             "SELECT COUNT(message_id), COUNT(is_delayed), COUNT(is_invisible) FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? " +
                 "AND partition_token = ?",
             queueKey.getAccountId( ),
@@ -407,28 +472,11 @@ public class CassandraMessagePersistence implements MessagePersistence {
   public void changeMessageVisibility(Queue.Key queueKey, String receiptHandle, Integer inVisibilityTimeout) throws SimpleQueueException {
     doThrowsWithSession( session -> {
       boolean found = false;
-      // receipt handle (currently) looks like accountId:queueName:message-id:partition-token:receive-count
-      StringTokenizer stok = new StringTokenizer( receiptHandle, ":" );
-      if ( stok.countTokens( ) != 5 ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
-      }
-      String receiptHandleAccountId = stok.nextToken( );
-      String receiptHandleQueueName = stok.nextToken( );
-      UUID messageId = UUID.fromString( stok.nextToken( ) );
-      String partitionToken = stok.nextToken( );
-      if ( !partitionTokens.contains( partitionToken ) ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
-      }
-      int receiveCount = 0;
-      try {
-        receiveCount = Integer.parseInt( stok.nextToken( ) );
-      } catch ( NumberFormatException e ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
-      }
-      if ( !receiptHandleAccountId.equals( queueKey.getAccountId( ) ) || !receiptHandleQueueName.equals( queueKey.getQueueName( ) ) ) {
-        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
-      }
-      Statement statement1 = new SimpleStatement(
+      ReceiptHandle handle = ReceiptHandle.parse( queueKey, receiptHandle );
+      UUID messageId = handle.messageId;
+      String partitionToken = handle.partitionToken;
+      int receiveCount = handle.receiveCount;
+      Statement statement1 = prepared( session,
           "SELECT receive_count, expiration_timestamp FROM eucalyptus_simplequeue.messages WHERE account_id = ? " +
               "AND queue_name = ? AND partition_token = ? AND message_id = ?",
           queueKey.getAccountId( ),
@@ -454,7 +502,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
       }
       int ttl = visibilityTimeout > 0 ? visibilityTimeout : 1;
       Boolean isInvisible = ( visibilityTimeout > 0 ) ? true : null;
-      Statement statement2 = new SimpleStatement(
+      Statement statement2 = prepared( session,
           "UPDATE eucalyptus_simplequeue.messages USING TTL ? SET is_invisible = ? " +
               "WHERE account_id = ? AND queue_name = ? AND partition_token = ? AND message_id = ?",
           ttl,
@@ -474,7 +522,7 @@ public class CassandraMessagePersistence implements MessagePersistence {
     return doWithSession( session -> {
       Long oldestTimestamp = null;
       for ( String partitionToken : partitionTokens ) {
-        Statement statement = new SimpleStatement(
+        Statement statement = prepared( session,
             "SELECT MIN(send_time_secs) FROM eucalyptus_simplequeue.messages WHERE account_id = ? AND queue_name = ? " +
                 "AND partition_token = ?",
             queueKey.getAccountId( ),
@@ -499,6 +547,51 @@ public class CassandraMessagePersistence implements MessagePersistence {
     } );
   }
 
+  /**
+   * Receipt handle (currently) looks like accountId:queueName:message-id:partition-token:receive-count
+   */
+  private static final class ReceiptHandle {
+    private final String receiptHandle;
+    private final UUID messageId;
+    private final String partitionToken;
+    private final int receiveCount;
+
+    private ReceiptHandle( final String receiptHandle, final UUID messageId, final String partitionToken, final int receiveCount ) {
+      this.receiptHandle = receiptHandle;
+      this.messageId = messageId;
+      this.partitionToken = partitionToken;
+      this.receiveCount = receiveCount;
+    }
+
+    static ReceiptHandle parse( final Queue.Key queueKey, final String receiptHandle ) throws ReceiptHandleIsInvalidException {
+      StringTokenizer stok = new StringTokenizer( receiptHandle, ":" );
+      if ( stok.countTokens( ) != 5 ) {
+        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
+      }
+      String receiptHandleAccountId = stok.nextToken( );
+      String receiptHandleQueueName = stok.nextToken( );
+      UUID messageId = UUID.fromString( stok.nextToken( ) );
+      String partitionToken = stok.nextToken( );
+      if ( !partitionTokens.contains( partitionToken ) ) {
+        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
+      }
+      int receiveCount;
+      try {
+        receiveCount = Integer.parseInt( stok.nextToken( ) );
+      } catch ( NumberFormatException e ) {
+        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid receipt handle." );
+      }
+      if ( !receiptHandleAccountId.equals( queueKey.getAccountId( ) ) || !receiptHandleQueueName.equals( queueKey.getQueueName( ) ) ) {
+        throw new ReceiptHandleIsInvalidException( "The input receipt handle \"" + receiptHandle + "\" is not a valid for this queue." );
+      }
+      return new ReceiptHandle( receiptHandle, messageId, partitionToken, receiveCount );
+    }
+  }
+
+  private static Statement prepared( final Session session, final String cql, final Object... values ) {
+    return CassandraPersistence.prepare( session, cql ).bind( values );
+  }
+
   private <R,E extends SimpleQueueException> R doThrowsWithSession(
       final ThrowingFunction<Session,R,E> callbackFunction
   ) throws E {
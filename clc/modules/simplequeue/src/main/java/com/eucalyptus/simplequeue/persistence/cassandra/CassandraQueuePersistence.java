@@ -33,9 +33,9 @@ package com.eucalyptus.simplequeue.persistence.cassandra;
 import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.utils.UUIDs;
+import com.eucalyptus.cassandra.common.CassandraPersistence;
 import com.eucalyptus.simplequeue.Constants;
 import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
 import com.eucalyptus.simplequeue.exceptions.QueueAlreadyExistsException;
@@ -87,7 +87,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
   @Override
   public Queue lookupQueue(String accountId, String queueName) {
     return doWithSession( session -> {
-      Statement statement1 = new SimpleStatement(
+      Statement statement1 = prepared( session,
           "SELECT unique_id_per_version, attributes, partition_token FROM eucalyptus_simplequeue.queues WHERE account_id=? AND queue_name = ?",
           accountId,
           queueName
@@ -103,7 +103,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
       queue.setQueueName( queueName );
       queue.setUniqueIdPerVersion( row.getUUID( "unique_id_per_version" ).toString( ) );
       queue.setAttributes( row.getMap( "attributes", String.class, String.class ) );
-      Statement statement2 = new SimpleStatement(
+      Statement statement2 = prepared( session,
           "UPDATE eucalyptus_simplequeue.queues_by_partition SET last_lookup = ? WHERE partition_token = ? AND account_id=? AND queue_name = ?",
           new Date( ),
           partitionToken,
@@ -124,7 +124,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
       String partitionToken = String.valueOf( random.nextInt( NUM_PARTITIONS ) );
       UUID uniqueIdPerVersion = UUIDs.timeBased( );
       BatchStatement batchStatement = new BatchStatement( );
-      Statement statement1 = new SimpleStatement(
+      Statement statement1 = prepared( session,
           "INSERT INTO eucalyptus_simplequeue.queues (account_id, queue_name, unique_id_per_version, attributes, partition_token) VALUES (?, ?, ?, ?, ?)",
           accountId,
           queueName,
@@ -133,7 +133,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
           partitionToken
       );
       batchStatement.add( statement1 );
-      Statement statement2 = new SimpleStatement(
+      Statement statement2 = prepared( session,
           "INSERT INTO eucalyptus_simplequeue.queues_by_partition (partition_token, account_id, queue_name, last_lookup) VALUES (?, ?, ?, ?)",
           partitionToken,
           accountId,
@@ -149,7 +149,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
       queue.setAttributes( attributes );
       String deadLetterTargetArn = queue.getDeadLetterTargetArn( );
       if ( deadLetterTargetArn != null ) {
-        Statement statement3 = new SimpleStatement(
+        Statement statement3 = prepared( session,
             "INSERT INTO eucalyptus_simplequeue.queues_by_source_queue (source_queue_arn, account_id, queue_name) VALUES (?, ?, ?)",
             deadLetterTargetArn,
             accountId,
@@ -168,16 +168,16 @@ public class CassandraQueuePersistence implements QueuePersistence {
     return doWithSession( session -> {
       Statement statement;
       if ( queueNamePrefix == null && accountId == null ) {
-        statement = new SimpleStatement(
+        statement = prepared( session,
             "SELECT queue_name FROM eucalyptus_simplequeue.queues"
         );
       } else if ( queueNamePrefix == null ) {
-        statement = new SimpleStatement(
+        statement = prepared( session,
             "SELECT queue_name FROM eucalyptus_simplequeue.queues WHERE account_id = ?",
             accountId
         );
       } else {
-        statement = new SimpleStatement(
+        statement = prepared( session,
             "SELECT queue_name FROM eucalyptus_simplequeue.queues WHERE account_id = ? AND queue_name >= ? AND queue_name < ?",
             accountId,
             queueNamePrefix,
@@ -202,7 +202,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
   @Override
   public Collection<Queue.Key> listDeadLetterSourceQueues(String accountId, String deadLetterTargetArn) {
     return doWithSession( session -> {
-      Statement statement = new SimpleStatement(
+      Statement statement = prepared( session,
           "SELECT queue_name, attributes FROM eucalyptus_simplequeue.queues WHERE account_id = ?",
           accountId
       );
@@ -236,7 +236,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
       }
       UUID uniqueIdPerVersion = UUIDs.timeBased( );
       BatchStatement batchStatement = new BatchStatement( );
-      Statement statement1 = new SimpleStatement(
+      Statement statement1 = prepared( session,
           "UPDATE eucalyptus_simplequeue.queues SET unique_id_per_version = ?, attributes = ? WHERE account_id = ? AND queue_name = ?",
           uniqueIdPerVersion,
           attributes,
@@ -250,7 +250,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
       String newDeadLetterTargetArn = queue.getDeadLetterTargetArn( );
       if ( !Objects.equals( oldDeadLetterTargetArn, newDeadLetterTargetArn ) ) {
         if ( oldDeadLetterTargetArn != null ) {
-          Statement statement2 = new SimpleStatement(
+          Statement statement2 = prepared( session,
               "DELETE FROM eucalyptus_simplequeue.queues_by_source_queue WHERE source_queue_arn = ? AND account_id = ? AND queue_name = ?",
               oldDeadLetterTargetArn,
               accountId,
@@ -259,7 +259,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
           batchStatement.add( statement2 );
         }
         if ( newDeadLetterTargetArn != null ) {
-          Statement statement3 = new SimpleStatement(
+          Statement statement3 = prepared( session,
               "INSERT INTO eucalyptus_simplequeue.queues_by_source_queue (source_queue_arn, account_id, queue_name) VALUES (?, ?, ?)",
               newDeadLetterTargetArn,
               accountId,
@@ -276,7 +276,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
   @Override
   public void deleteQueue(String accountId, String queueName) throws QueueDoesNotExistException {
     doThrowsWithSession( session -> {
-      Statement statement1 = new SimpleStatement(
+      Statement statement1 = prepared( session,
           "SELECT partition_token, attributes FROM eucalyptus_simplequeue.queues WHERE account_id=? AND queue_name = ?",
           accountId,
           queueName
@@ -295,13 +295,13 @@ public class CassandraQueuePersistence implements QueuePersistence {
       String deadLetterTargetArn = queue.getDeadLetterTargetArn( );
 
       BatchStatement batchStatement = new BatchStatement( );
-      Statement statement2 = new SimpleStatement(
+      Statement statement2 = prepared( session,
           "DELETE FROM eucalyptus_simplequeue.queues WHERE account_id = ? AND queue_name = ?",
           accountId,
           queueName
       );
       batchStatement.add( statement2 );
-      Statement statement3 = new SimpleStatement(
+      Statement statement3 = prepared( session,
           "DELETE FROM eucalyptus_simplequeue.queues_by_partition WHERE partition_token = ? AND account_id = ? AND queue_name = ?",
           partitionToken,
           accountId,
@@ -309,7 +309,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
       );
       batchStatement.add( statement3 );
       if ( deadLetterTargetArn != null ) {
-        Statement statement4 = new SimpleStatement(
+        Statement statement4 = prepared( session,
             "DELETE FROM eucalyptus_simplequeue.queues_by_source_queue WHERE source_queue_arn = ? AND account_id = ? AND queue_name = ?",
             deadLetterTargetArn,
             accountId,
@@ -325,7 +325,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
   @Override
   public Collection<Queue.Key> listActiveQueues(String partitionToken) {
     return doWithSession( session -> {
-      Statement statement = new SimpleStatement(
+      Statement statement = prepared( session,
           "SELECT account_id, queue_name, last_lookup FROM eucalyptus_simplequeue.queues_by_partition WHERE partition_token = ?",
           partitionToken
       );
@@ -353,7 +353,7 @@ public class CassandraQueuePersistence implements QueuePersistence {
   @Override
   public long countQueues(String accountNumber) {
     return doWithSession( session -> {
-      Statement statement = new SimpleStatement(
+      Statement statement = prepared( session,
           "SELECT COUNT(*) FROM eucalyptus_simplequeue.queues WHERE account_id = ?",
           accountNumber
       );
@@ -366,6 +366,10 @@ public class CassandraQueuePersistence implements QueuePersistence {
     } );
   }
 
+  private static Statement prepared( final Session session, final String cql, final Object... values ) {
+    return CassandraPersistence.prepare( session, cql ).bind( values );
+  }
+
   private <R,E extends SimpleQueueException> R doThrowsWithSession(
       final ThrowingFunction<Session,R,E> callbackFunction
   ) throws E {
@@ -30,8 +30,8 @@
  ************************************************************************/
 package com.eucalyptus.simplequeue.persistence.postgresql;
 
-import com.eucalyptus.auth.policy.ern.Ern;
 import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.PersistenceContexts;
 import com.eucalyptus.entities.TransactionResource;
 import com.eucalyptus.simplequeue.Attribute;
 import com.eucalyptus.simplequeue.Constants;
@@ -46,10 +46,17 @@ import com.eucalyptus.simplequeue.persistence.Queue;
 import com.eucalyptus.util.Either;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 
 import javax.annotation.Nullable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -79,55 +86,34 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
         List<Message> messages = Lists.newArrayList();
         Optional<SimpleQueueException> simpleQueueExceptionOptional;
         try {
-          List<MessageEntity> messageEntityList = Entities.criteriaQuery(MessageEntity.class)
-            .whereEqual(MessageEntity_.accountId, queue.getAccountId())
-            .whereEqual(MessageEntity_.queueName, queue.getQueueName())
-//      -- Just delete the expired messages here
-//        // messages with an expiration time of exactly now should expire, so we want the expiration
-//        // timestamp to be strictly greater than now
-//        .where(Entities.restriction(MessageEntity.class).gt(MessageEntity_.expiredTimestampSecs, now))
-              // messages with a visibility time of exactly now should be visible, so we want the the visibility
-              // timestamp to be less than or equal to now.
-            .where(Entities.restriction(MessageEntity.class).le(MessageEntity_.visibleTimestampSecs, now))
-            .orderBy(MessageEntity_.visibleTimestampSecs)
-              // TODO: consider what happens if this returns too many results.
-            .list();
-          boolean deadLetterQueue = false;
-          String deadLetterQueueAccountId = null;
-          String deadLetterQueueName = null;
           int maxReceiveCount = 0;
-          long deadLetterQueueMessageRetentionPeriod = 0;
-          try {
-            Ern deadLetterQueueErn = Ern.parse(receiveAttributes.get(Constants.DEAD_LETTER_TARGET_ARN));
-            deadLetterQueueAccountId = deadLetterQueueErn.getAccount();
-            deadLetterQueueName = deadLetterQueueErn.getResourceName();
-            maxReceiveCount = Integer.parseInt(receiveAttributes.get(Constants.MAX_RECEIVE_COUNT));
-            deadLetterQueueMessageRetentionPeriod = Long.parseLong(receiveAttributes.get(Constants.MESSAGE_RETENTION_PERIOD));
-            deadLetterQueue = true;
-          } catch (Exception ignore) {
+          if (receiveAttributes.containsKey(Constants.DEAD_LETTER_TARGET_ARN)) {
+            try {
+              maxReceiveCount = Integer.parseInt(receiveAttributes.get(Constants.MAX_RECEIVE_COUNT));
+            } catch (Exception ignore) {
+            }
           }
-          int numMessages = 0;
           int maxNumMessages = 1;
           try {
             maxNumMessages = Integer.parseInt(receiveAttributes.get(Constants.MAX_NUMBER_OF_MESSAGES));
           } catch (Exception ignore) {
           }
 
+          // Expired messages and messages due for the dead letter queue are left for the
+          // PostgresqlMessageSweeper, here we only take (and lock) what we will return.
+          List<String> messageIds = lockReceivableMessageIds(queue, now, maxNumMessages, maxReceiveCount);
+          List<MessageEntity> messageEntityList = null;
+          if (!messageIds.isEmpty()) {
+            @SuppressWarnings("unchecked")
+            List<MessageEntity> lockedMessageEntityList = (List<MessageEntity>) Entities.createCriteria(MessageEntity.class)
+              .add(Restrictions.in("id", messageIds))
+              .addOrder(Order.asc("visibleTimestampSecs"))
+              .list();
+            messageEntityList = lockedMessageEntityList;
+          }
+
           if (messageEntityList != null) {
             for (MessageEntity messageEntity : messageEntityList) {
-              if (messageEntity.getExpiredTimestampSecs() <= now) {
-                Entities.delete(messageEntity);
-                continue;
-              }
-              if (deadLetterQueue && messageEntity.getLocalReceiveCount() >= maxReceiveCount) {
-                // move to dead letter
-                messageEntity.setLocalReceiveCount(0);
-                messageEntity.setAccountId(deadLetterQueueAccountId);
-                messageEntity.setQueueName(deadLetterQueueName);
-                messageEntity.setExpiredTimestampSecs(messageEntity.getSentTimestampSecs() + deadLetterQueueMessageRetentionPeriod);
-                continue;
-              }
-
               Message message = MessageJsonHelper.jsonToMessage(messageEntity.getMessageJson());
               message.setMessageId(messageEntity.getMessageId());
               // set receive timestamp if first time being received
@@ -152,8 +138,6 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
               message.getAttribute().add(new Attribute(Constants.SENT_TIMESTAMP, "" + (messageEntity.getSentTimestampSecs())));
               message.setReceiptHandle(messageEntity.getAccountId() + ":" + messageEntity.getQueueName() + ":" + messageEntity.getMessageId() + ":" + messageEntity.getLocalReceiveCount());
               messages.add(message);
-              numMessages++;
-              if (numMessages >= maxNumMessages) break;
             }
           }
           either = Either.right(messages);
@@ -170,6 +154,60 @@ public class PostgresqlMessagePersistence implements MessagePersistence {
     }
   }
 
+  /**
+   * Select and lock the ids of at most maxNumMessages visible, unexpired messages for the queue.
+   *
+   * <p>Rows locked by a concurrent receive are skipped rather than waited on, so receivers
+   * for the same queue do not serialize on each other. The select is issued directly as
+   * the hibernate dialect does not support SKIP LOCKED.</p>
+   *
+   * @param maxReceiveCount The redrive receive count limit, or zero if there is no redrive policy
+   */
+  private static List<String> lockReceivableMessageIds(final Queue queue,
+                                                       final long now,
+                                                       final int maxNumMessages,
+                                                       final int maxReceiveCount) {
+    final List<String> messageIds = Lists.newArrayList();
+    Entities.doWork(MessageEntity.class, connection -> {
+      try (final PreparedStatement statement = connection.prepareStatement(
+        receivableMessageIdsSql(messagesTable.get(), maxReceiveCount))) {
+        int index = 1;
+        statement.setString(index++, queue.getAccountId());
+        statement.setString(index++, queue.getQueueName());
+        statement.setLong(index++, now);
+        statement.setLong(index++, now);
+        if (maxReceiveCount > 0) {
+          statement.setInt(index++, maxReceiveCount);
+        }
+        statement.setInt(index, maxNumMessages);
+        try (final ResultSet resultSet = statement.executeQuery()) {
+          while (resultSet.next()) {
+            messageIds.add(resultSet.getString(1));
+          }
+        }
+      }
+    });
+    return messageIds;
+  }
+
+  /**
+   * Messages received maxReceiveCount or more times are excluded, they are not returned by
+   * receive until the PostgresqlMessageSweeper moves them to the dead letter queue.
+   */
+  static String receivableMessageIdsSql(final String table, final int maxReceiveCount) {
+    return "select id from " + table +
+      " where account_id = ? and queue_name = ?" +
+      // messages with a visibility time of exactly now should be visible, messages with
+      // an expiration time of exactly now should expire
+      " and visible_timestamp_secs <= ? and expired_timestamp_secs > ?" +
+      (maxReceiveCount > 0 ? " and local_receive_count < ?" : "") +
+      " order by visible_timestamp_secs limit ? for update skip locked";
+  }
+
+  private static final Supplier<String> messagesTable = Suppliers.memoize(() ->
+    ((AbstractEntityPersister) PersistenceContexts.getEntityManagerFactory("eucalyptus_simplequeue")
+      .getSessionFactory().getClassMetadata(MessageEntity.class)).getTableName());
+
   @Override
   public void sendMessage(Queue queue, Message message, Map<String, String> sendAttributes) {
     Entities.asDistinctTransaction(MessageEntity.class, new Function<Void, Void>() {
@@ -0,0 +1,141 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.postgresql;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import com.eucalyptus.auth.policy.ern.Ern;
+import com.eucalyptus.bootstrap.Databases;
+import com.eucalyptus.component.Topology;
+import com.eucalyptus.entities.Entities;
+import com.eucalyptus.entities.TransactionResource;
+import com.eucalyptus.event.ClockTick;
+import com.eucalyptus.event.EventListener;
+import com.eucalyptus.event.Listeners;
+import com.eucalyptus.simplequeue.Constants;
+import com.eucalyptus.simplequeue.SimpleQueue;
+import com.eucalyptus.simplequeue.SimpleQueueService;
+import com.eucalyptus.simplequeue.config.SimpleQueueProperties;
+import com.eucalyptus.simplequeue.persistence.PersistenceFactory;
+import com.eucalyptus.simplequeue.persistence.Queue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Maps;
+
+/**
+ * Deletes expired messages and moves messages that exceeded their queues maxReceiveCount
+ * to the dead letter queue.
+ *
+ * <p>This work was previously done inline by receive, which meant loading every visible
+ * message for the queue on each request.</p>
+ */
+public class PostgresqlMessageSweeper implements EventListener<ClockTick> {
+
+  private static final Logger logger = Logger.getLogger( PostgresqlMessageSweeper.class );
+
+  private static final int REDRIVE_BATCH_SIZE = 1000;
+
+  private final PostgresqlQueuePersistence queuePersistence = new PostgresqlQueuePersistence( );
+  private volatile long lastSweepMillis = 0L;
+
+  public static void register( ) {
+    Listeners.register( ClockTick.class, new PostgresqlMessageSweeper( ) );
+  }
+
+  @Override
+  public void fireEvent( final ClockTick event ) {
+    final long nowMillis = System.currentTimeMillis( );
+    if ( nowMillis - lastSweepMillis >= SimpleQueueProperties.MESSAGE_SWEEP_INTERVAL_SECS * 1000L &&
+        Topology.isEnabledLocally( SimpleQueue.class ) &&
+        !Databases.isVolatile( ) &&
+        PersistenceFactory.getMessagePersistence( ) instanceof PostgresqlMessagePersistence ) {
+      lastSweepMillis = nowMillis;
+      deleteExpiredMessages( );
+      redriveMessages( );
+    }
+  }
+
+  private void deleteExpiredMessages( ) {
+    final long now = SimpleQueueService.currentTimeSeconds( );
+    try ( final TransactionResource tx = Entities.transactionFor( MessageEntity.class ) ) {
+      // messages with an expiration time of exactly now should expire
+      Entities.delete(
+          Entities.restriction( MessageEntity.class ).le( MessageEntity_.expiredTimestampSecs, now ).build( )
+      ).delete( );
+      tx.commit( );
+    } catch ( final Exception e ) {
+      logger.error( "Error deleting expired messages", e );
+    }
+  }
+
+  private void redriveMessages( ) {
+    final List<Queue> queues;
+    try {
+      queues = queuePersistence.listAllQueues( );
+    } catch ( final Exception e ) {
+      logger.error( "Error listing queues for dead letter redrive", e );
+      return;
+    }
+    final Map<Queue.Key,Queue> queuesByKey = Maps.newHashMap( );
+    for ( final Queue queue : queues ) {
+      queuesByKey.put( queue.getKey( ), queue );
+    }
+    for ( final Queue queue : queues ) {
+      final String deadLetterTargetArn = queue.getDeadLetterTargetArn( );
+      if ( deadLetterTargetArn == null ) continue;
+      Queue deadLetterQueue = null;
+      int maxReceiveCount = 0;
+      try {
+        final Ern deadLetterQueueErn = Ern.parse( deadLetterTargetArn );
+        deadLetterQueue = queuesByKey.get( new Queue.Key( deadLetterQueueErn.getAccount( ), deadLetterQueueErn.getResourceName( ) ) );
+        final JsonNode maxReceiveCountNode = queue.getRedrivePolicy( ).get( Constants.MAX_RECEIVE_COUNT );
+        if ( maxReceiveCountNode != null ) {
+          maxReceiveCount = maxReceiveCountNode.asInt( );
+        }
+      } catch ( final Exception ignore ) {
+        // malformed redrive policy, leave the messages where they are
+      }
+      if ( deadLetterQueue != null && maxReceiveCount > 0 ) {
+        try {
+          redriveMessages( queue, deadLetterQueue, maxReceiveCount );
+        } catch ( final Exception e ) {
+          logger.error( "Error moving messages from " + queue.getArn( ) + " to dead letter queue " + deadLetterTargetArn, e );
+        }
+      }
+    }
+  }
+
+  private void redriveMessages( final Queue queue, final Queue deadLetterQueue, final int maxReceiveCount ) {
+    final long now = SimpleQueueService.currentTimeSeconds( );
+    try ( final TransactionResource tx = Entities.transactionFor( MessageEntity.class ) ) {
+      final List<MessageEntity> messageEntities = Entities.criteriaQuery( MessageEntity.class )
+          .whereEqual( MessageEntity_.accountId, queue.getAccountId( ) )
+          .whereEqual( MessageEntity_.queueName, queue.getQueueName( ) )
+          // only messages that are visible, in flight messages stay with their receiver
+          .where( Entities.restriction( MessageEntity.class ).le( MessageEntity_.visibleTimestampSecs, now ) )
+          .where( Entities.restriction( MessageEntity.class ).ge( MessageEntity_.localReceiveCount, maxReceiveCount ) )
+          .maxResults( REDRIVE_BATCH_SIZE )
+          .list( );
+      for ( final MessageEntity messageEntity : messageEntities ) {
+        messageEntity.setLocalReceiveCount( 0 );
+        messageEntity.setAccountId( deadLetterQueue.getAccountId( ) );
+        messageEntity.setQueueName( deadLetterQueue.getQueueName( ) );
+        messageEntity.setExpiredTimestampSecs( messageEntity.getSentTimestampSecs( ) + deadLetterQueue.getMessageRetentionPeriod( ) );
+      }
+      tx.commit( );
+    }
+  }
+}
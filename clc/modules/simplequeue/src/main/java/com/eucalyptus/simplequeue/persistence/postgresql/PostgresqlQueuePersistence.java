@@ -186,6 +186,23 @@ public class PostgresqlQueuePersistence implements QueuePersistence {
     }
   }
 
+  /**
+   * List all queues without updating their last lookup timestamps.
+   */
+  List<Queue> listAllQueues() {
+    try ( TransactionResource db =
+            Entities.transactionFor(QueueEntity.class) ) {
+      List<QueueEntity> queueEntities = Entities.criteriaQuery(QueueEntity.class).list();
+      List<Queue> queues = Lists.newArrayList();
+      if (queueEntities != null) {
+        for (QueueEntity queueEntity: queueEntities) {
+          queues.add(queueFromQueueEntity(queueEntity));
+        }
+      }
+      return queues;
+    }
+  }
+
   @Override
   public Queue updateQueueAttributes(String accountId, String queueName, Map<String, String> attributes) throws QueueDoesNotExistException {
     try ( TransactionResource db =
@@ -0,0 +1,43 @@
+/*************************************************************************
+ * (c) Copyright 2016 Hewlett Packard Enterprise Development Company LP
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ ************************************************************************/
+package com.eucalyptus.simplequeue.persistence.postgresql
+
+import org.junit.Test
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for the receivable message selection used by receive.
+ */
+class PostgresqlMessagePersistenceTest {
+
+  @Test
+  void testReceivableWithoutRedrive( ) {
+    final String sql = PostgresqlMessagePersistence.receivableMessageIdsSql( 'messages', 0 )
+    assertTrue( 'Visible', sql.contains( 'visible_timestamp_secs <= ?' ) )
+    assertTrue( 'Unexpired', sql.contains( 'expired_timestamp_secs > ?' ) )
+    assertFalse( 'Receive count restricted', sql.contains( 'local_receive_count' ) )
+    assertTrue( 'Limited and skips locked', sql.endsWith( 'limit ? for update skip locked' ) )
+  }
+
+  @Test
+  void testReceivableWithRedrive( ) {
+    // messages at or above the max receive count are left for the sweeper to redrive
+    final String sql = PostgresqlMessagePersistence.receivableMessageIdsSql( 'messages', 3 )
+    assertTrue( 'Receive count restricted', sql.contains( 'and local_receive_count < ?' ) )
+    assertEquals( 'Parameters', 6, sql.count( '?' ) )
+  }
+}
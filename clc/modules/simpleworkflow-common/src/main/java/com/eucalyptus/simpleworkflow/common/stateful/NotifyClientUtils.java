@@ -50,8 +50,19 @@ public class NotifyClientUtils {
   private static final Logger logger = Logger.getLogger( NotifyClientUtils.class );
 
   public static void notifyChannel(final ChannelWrapper channelWrapper) {
+    notifyChannel(channelWrapper, null);
+  }
+
+  /**
+   * Notify pollers for the channel.
+   *
+   * @param channelWrapper The channel to notify
+   * @param maxPollers The maximum number of pollers to wake (oldest first) or null for all pollers
+   */
+  public static void notifyChannel(final ChannelWrapper channelWrapper, final Integer maxPollers) {
     final NotifyType notify = new NotifyType( );
     notify.setChannel(channelWrapper.getChannelName());
+    notify.setMaxPollers(maxPollers);
     try {
       final ListenableFuture<NotifyResponseType> dispatchFuture =
           AsyncRequests.dispatch(Topology.lookup(PolledNotifications.class), notify);
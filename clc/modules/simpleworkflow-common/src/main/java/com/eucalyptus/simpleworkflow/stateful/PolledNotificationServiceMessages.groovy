@@ -32,6 +32,7 @@ class PolledNotificationServiceMessage extends BaseMessage {
 class NotifyType extends PolledNotificationServiceMessage {
   String channel
   String details
+  Integer maxPollers // null to notify all pollers
 }
 
 class NotifyResponseType extends PolledNotificationServiceMessage {
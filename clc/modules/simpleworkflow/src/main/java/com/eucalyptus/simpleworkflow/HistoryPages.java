@@ -0,0 +1,193 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Support for workflow history paging.
+ *
+ * <p>History is queried by event identifier, the next page token identifies
+ * the first event for the following page.</p>
+ *
+ * <p>Tokens are bound to a scope, a digest of the account, domain, execution
+ * and event order for the request. A token is rejected if used with a
+ * different scope. The run identifier is also included in the token as it
+ * is needed to find the execution when polling for a decision task.</p>
+ */
+final class HistoryPages {
+
+  static final int MAXIMUM_PAGE_SIZE = 1000;
+
+  private static final int SCOPE_LENGTH = 16;
+
+  /**
+   * Get the page size for the maximum page size parameter.
+   */
+  static int pageSize( @Nullable final Integer maximumPageSize ) {
+    return maximumPageSize == null || maximumPageSize < 1 ?
+        MAXIMUM_PAGE_SIZE :
+        Math.min( maximumPageSize, MAXIMUM_PAGE_SIZE );
+  }
+
+  /**
+   * Get the scope for a request.
+   *
+   * @param accountNumber The account for the request
+   * @param domain The domain name for the request
+   * @param workflowId The workflow identifier for the execution
+   * @param runId The run identifier for the execution
+   * @param reverse True if events are in reverse order
+   * @return The scope
+   */
+  static String scope(
+      @Nonnull  final String accountNumber,
+      @Nonnull  final String domain,
+      @Nullable final String workflowId,
+      @Nonnull  final String runId,
+                final boolean reverse
+  ) {
+    final String scope = Joiner.on( '\n' ).useForNull( "" ).join(
+        accountNumber,
+        domain,
+        workflowId,
+        runId,
+        reverse );
+    return Hashing.sha256( ).hashString( scope, StandardCharsets.UTF_8 ).toString( ).substring( 0, SCOPE_LENGTH );
+  }
+
+  /**
+   * Get the run identifier for a token, the scope is not checked.
+   *
+   * @throws SimpleWorkflowClientException If the token is not valid
+   */
+  static String runId( @Nonnull final String pageToken ) throws SimpleWorkflowClientException {
+    return parseToken( pageToken ).get( 1 );
+  }
+
+  /**
+   * Get the identifier for the first event of the page.
+   *
+   * @param pageToken The token for the page, null for the first page
+   * @param scope The scope for the request
+   * @param reverse True if events are in reverse order
+   * @param eventCount The number of events in the history
+   * @return The event identifier
+   * @throws SimpleWorkflowClientException If the token is not valid for the scope
+   */
+  static long firstEventId(
+      @Nullable final String pageToken,
+      @Nonnull  final String scope,
+                final boolean reverse,
+                final long eventCount
+  ) throws SimpleWorkflowClientException {
+    if ( Strings.isNullOrEmpty( pageToken ) ) {
+      return reverse ? eventCount : 1L;
+    }
+    final List<String> tokenParts = parseToken( pageToken );
+    if ( !scope.equals( tokenParts.get( 0 ) ) ) {
+      throw invalidToken( );
+    }
+    try {
+      final long eventId = Long.parseLong( tokenParts.get( 2 ) );
+      if ( eventId > 0 ) {
+        return eventId;
+      }
+    } catch ( final NumberFormatException e ) {
+      // invalid token
+    }
+    throw invalidToken( );
+  }
+
+  /**
+   * Build a page from events queried from the first event of the page.
+   *
+   * @param events Events in page order, up to one more than the page size
+   * @param pageSize The number of events for the page
+   * @param eventIdFunction Function for the identifier of an event
+   * @param scope The scope for the request
+   * @param runId The run identifier for the execution
+   * @return The page of events
+   */
+  static <T> HistoryPage<T> page(
+      @Nonnull  final List<T> events,
+                final int pageSize,
+      @Nonnull  final Function<? super T,Long> eventIdFunction,
+      @Nonnull  final String scope,
+      @Nonnull  final String runId
+  ) {
+    return new HistoryPage<>(
+        Lists.newArrayList( events.subList( 0, Math.min( pageSize, events.size( ) ) ) ),
+        events.size( ) > pageSize ?
+            token( scope, runId, eventIdFunction.apply( events.get( pageSize ) ) ) :
+            null );
+  }
+
+  static String token( @Nonnull final String scope, @Nonnull final String runId, final long eventId ) {
+    return BaseEncoding.base64Url( ).encode(
+        Joiner.on( '/' ).join( scope, runId, eventId ).getBytes( StandardCharsets.UTF_8 ) );
+  }
+
+  private static List<String> parseToken( @Nonnull final String pageToken ) throws SimpleWorkflowClientException {
+    try {
+      final List<String> tokenParts = Splitter.on( '/' ).splitToList(
+          new String( BaseEncoding.base64Url( ).decode( pageToken ), StandardCharsets.UTF_8 ) );
+      if ( tokenParts.size( ) == 3 && !tokenParts.get( 1 ).isEmpty( ) ) {
+        return tokenParts;
+      }
+    } catch ( final IllegalArgumentException e ) {
+      // invalid token
+    }
+    throw invalidToken( );
+  }
+
+  private static SimpleWorkflowClientException invalidToken( ) {
+    return new SimpleWorkflowClientException( "ValidationError", "Invalid page token" );
+  }
+
+  static final class HistoryPage<T> {
+    private final List<T> events;
+    private final String nextPageToken;
+
+    private HistoryPage( final List<T> events, @Nullable final String nextPageToken ) {
+      this.events = events;
+      this.nextPageToken = nextPageToken;
+    }
+
+    public List<T> getEvents( ) {
+      return events;
+    }
+
+    @Nullable
+    public String getNextPageToken( ) {
+      return nextPageToken;
+    }
+  }
+}
@@ -59,6 +59,7 @@ import com.eucalyptus.entities.PersistenceExceptions;
 import com.eucalyptus.event.ClockTick;
 import com.eucalyptus.event.EventListener;
 import com.eucalyptus.event.Listeners;
+import com.eucalyptus.simpleworkflow.HistoryPages.HistoryPage;
 import com.eucalyptus.simpleworkflow.NotifyClient.NotifyTaskList;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflowMetadatas;
 import com.eucalyptus.simpleworkflow.common.model.*;
@@ -79,9 +80,9 @@ import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -1179,6 +1180,10 @@ public class SimpleWorkflowService {
     final Predicate<? super WorkflowExecution> accessible =
         SimpleWorkflowMetadatas.filteringFor( WorkflowExecution.class ).byPrivileges( ).buildPredicate( );
 
+    if ( !Strings.isNullOrEmpty( request.getNextPageToken( ) ) ) {
+      return pollForDecisionTaskHistoryPage( accountFullName, accessible, request );
+    }
+
     final String domain = request.getDomain( );
     final String taskList = request.getTaskList( ).getName( );
     final Callable<DecisionTask> taskCallable = () -> {
@@ -1207,43 +1212,29 @@ public class SimpleWorkflowService {
                   @Override
                   public DecisionTask apply( final WorkflowExecution workflowExecution ) {
                     if ( workflowExecution.getDecisionStatus( ) == Pending ) {
-                      final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                      final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                      final WorkflowHistoryEvent scheduled = Iterables.find(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
-                      final Optional<WorkflowHistoryEvent> previousStarted = Iterables.tryFind(
-                          reverseEvents,
-                          CollectionUtils.propertyPredicate( "DecisionTaskStarted", EVENT_TYPE ) );
+                      final Long scheduledId = workflowExecution.getLatestDecisionTaskScheduledEventId( );
+                      final Long previousStartedId = workflowExecution.getLatestDecisionTaskStartedEventId( );
                       workflowExecution.setDecisionStatus( Active );
                       workflowExecution.setDecisionTimestamp( new Date( ) );
                       final WorkflowHistoryEvent started = WorkflowHistoryEvent.create(
                           workflowExecution,
                           new DecisionTaskStartedEventAttributes()
                               .withIdentity( request.getIdentity() )
-                              .withScheduledEventId( scheduled.getEventId() ) );
+                              .withScheduledEventId( scheduledId ) );
                       workflowExecution.addHistoryEvent( started );
-                      return new DecisionTask( )
-                          .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
-                              .withWorkflowId( workflowExecution.getWorkflowId( ) )
-                              .withRunId( workflowExecution.getDisplayName( ) ) )
-                          .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
-                              .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
-                              .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
-                          .withTaskToken( taskTokenManager.encryptTaskToken( new TaskToken(
-                              accountFullName.getAccountNumber( ),
-                              workflowExecution.getDomain( ).getNaturalId( ),
-                              workflowExecution.getDisplayName( ),
-                              scheduled.getEventId( ),
-                              started.getEventId( ),
-                              System.currentTimeMillis( ),
-                              System.currentTimeMillis( ) ) ) )  //TODO:STEVE: token expiry date
-                          .withStartedEventId( started.getEventId() )
-                          .withPreviousStartedEventId( previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).or( 0L ) )
-                          .withEvents( Collections2.transform(
-                              MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
-                              TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                          ) );
+                      return decisionTask(
+                          accountFullName,
+                          workflowExecution,
+                          scheduledId,
+                          started.getEventId( ),
+                          previousStartedId,
+                          historyPage(
+                              accountFullName,
+                              domain,
+                              workflowExecution,
+                              null,
+                              request.getMaximumPageSize( ),
+                              request.isReverseOrder( ) ) );
                     }
                     return null;
                   }
@@ -1273,6 +1264,113 @@ public class SimpleWorkflowService {
     }
   }
 
+  private DecisionTask pollForDecisionTaskHistoryPage(
+      final AccountFullName accountFullName,
+      final Predicate<? super WorkflowExecution> accessible,
+      final PollForDecisionTaskRequest request
+  ) throws SimpleWorkflowException {
+    final String runId;
+    final DecisionTask decisionTask;
+    try {
+      runId = HistoryPages.runId( request.getNextPageToken( ) );
+    } catch ( Exception e ) {
+      throw handleException( e );
+    }
+    try {
+      decisionTask = workflowExecutions.lookupByExample(
+          WorkflowExecution.exampleWithName( accountFullName, runId ),
+          accountFullName,
+          runId,
+          accessible,
+          workflowExecution -> decisionTask(
+              accountFullName,
+              workflowExecution,
+              workflowExecution.getLatestDecisionTaskScheduledEventId( ),
+              workflowExecution.getLatestDecisionTaskStartedEventId( ),
+              null,
+              historyPage(
+                  accountFullName,
+                  request.getDomain( ),
+                  workflowExecution,
+                  request.getNextPageToken( ),
+                  request.getMaximumPageSize( ),
+                  request.isReverseOrder( ) ) )
+      );
+    } catch ( SwfMetadataNotFoundException e ) {
+      throw new SimpleWorkflowClientException(
+          "UnknownResourceFault",
+          "Unknown execution, runId = " + runId );
+    } catch ( Exception e ) {
+      throw handleException( e );
+    }
+    return request.reply( decisionTask );
+  }
+
+  private DecisionTask decisionTask( final AccountFullName accountFullName,
+                                     final WorkflowExecution workflowExecution,
+                                     final Long scheduledEventId,
+                                     final Long startedEventId,
+                                     @Nullable final Long previousStartedEventId,
+                                     final HistoryPage<HistoryEvent> historyPage ) {
+    return new DecisionTask( )
+        .withWorkflowExecution( new com.eucalyptus.simpleworkflow.common.model.WorkflowExecution( )
+            .withWorkflowId( workflowExecution.getWorkflowId( ) )
+            .withRunId( workflowExecution.getDisplayName( ) ) )
+        .withWorkflowType( new com.eucalyptus.simpleworkflow.common.model.WorkflowType()
+            .withName( workflowExecution.getWorkflowType( ).getDisplayName( ) )
+            .withVersion( workflowExecution.getWorkflowType( ).getWorkflowVersion( ) ) )
+        .withTaskToken( taskTokenManager.encryptTaskToken( new TaskToken(
+            accountFullName.getAccountNumber( ),
+            workflowExecution.getDomain( ).getNaturalId( ),
+            workflowExecution.getDisplayName( ),
+            scheduledEventId,
+            startedEventId,
+            System.currentTimeMillis( ),
+            System.currentTimeMillis( ) ) ) )  //TODO:STEVE: token expiry date
+        .withStartedEventId( startedEventId )
+        .withPreviousStartedEventId( MoreObjects.firstNonNull( previousStartedEventId, 0L ) )
+        .withEvents( historyPage.getEvents( ) )
+        .withNextPageToken( historyPage.getNextPageToken( ) );
+  }
+
+  /**
+   * Load a page of history for the execution, only the events for the page are loaded.
+   *
+   * Page tokens are scoped to the domain and execution for the request.
+   */
+  private static HistoryPage<HistoryEvent> historyPage( final AccountFullName accountFullName,
+                                                        final String domain,
+                                                        final WorkflowExecution workflowExecution,
+                                                        @Nullable final String pageToken,
+                                                        @Nullable final Integer maximumPageSize,
+                                                        @Nullable final Boolean reverseOrder ) {
+    final boolean reverse = MoreObjects.firstNonNull( reverseOrder, Boolean.FALSE );
+    final int pageSize = HistoryPages.pageSize( maximumPageSize );
+    final String scope = HistoryPages.scope(
+        accountFullName.getAccountNumber( ),
+        domain,
+        workflowExecution.getWorkflowId( ),
+        workflowExecution.getDisplayName( ),
+        reverse );
+    final long fromEventId;
+    try {
+      fromEventId = HistoryPages.firstEventId( pageToken, scope, reverse, workflowExecution.getHistoryEventCount( ) );
+    } catch ( final SimpleWorkflowClientException e ) {
+      throw up( e );
+    }
+    final HistoryPage<WorkflowHistoryEvent> page = HistoryPages.page(
+        workflowExecution.getWorkflowHistoryPage( fromEventId, reverse, pageSize + 1 ),
+        pageSize,
+        WorkflowHistoryEvent::getEventId,
+        scope,
+        workflowExecution.getDisplayName( ) );
+    return new HistoryPage<>(
+        Lists.newArrayList( Iterables.transform(
+            page.getEvents( ),
+            TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class ) ) ),
+        page.getNextPageToken( ) );
+  }
+
   public SimpleWorkflowMessage respondDecisionTaskCompleted( final RespondDecisionTaskCompletedRequest request ) throws SimpleWorkflowException {
     final Context ctx = Contexts.lookup( );
     final UserFullName userFullName = ctx.getUserFullName( );
@@ -1305,18 +1403,12 @@ public class SimpleWorkflowService {
                 notificationTypeListPairs.clear( );
 
                 // verify token is valid
-                final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                final WorkflowHistoryEvent started = Iterables.find(
-                    reverseEvents,
-                    CollectionUtils.propertyPredicate( "DecisionTaskStarted", EVENT_TYPE ) );
-                if ( !started.getEventId( ).equals( token.getStartedEventId( ) ) ) {
+                final Long startedId = workflowExecution.getLatestDecisionTaskStartedEventId( );
+                if ( startedId == null || !startedId.equals( token.getStartedEventId( ) ) ) {
                   throw upClient( "ValidationError", "Bad token" );
                 }
-                final WorkflowHistoryEvent scheduled = Iterables.find(
-                    reverseEvents,
-                    CollectionUtils.propertyPredicate( "DecisionTaskScheduled", EVENT_TYPE ) );
-                if ( scheduled.getEventId( ) < started.getEventId() ) {
+                final Long scheduledId = workflowExecution.getLatestDecisionTaskScheduledEventId( );
+                if ( scheduledId < startedId ) {
                   workflowExecution.setDecisionStatus( Idle );
                   workflowExecution.setDecisionTimestamp( new Date( ) );
                 } else {
@@ -2061,13 +2153,16 @@ public class SimpleWorkflowService {
           request.getExecution().getRunId(),
           accessible,
           workflowExecution -> {
-            final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-            final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
+            final HistoryPage<HistoryEvent> historyPage = historyPage(
+                accountFullName,
+                request.getDomain( ),
+                workflowExecution,
+                request.getNextPageToken( ),
+                request.getMaximumPageSize( ),
+                request.isReverseOrder( ) );
             return new History( )
-                .withEvents( Collections2.transform(
-                    MoreObjects.firstNonNull( request.isReverseOrder( ), Boolean.FALSE ) ? reverseEvents : events,
-                    TypeMappers.lookup( WorkflowHistoryEvent.class, HistoryEvent.class )
-                ) );
+                .withEvents( historyPage.getEvents( ) )
+                .withNextPageToken( historyPage.getNextPageToken( ) );
           }
       );
     } catch ( SwfMetadataNotFoundException e ) {
@@ -49,6 +49,7 @@ import org.hibernate.annotations.Type;
 import com.eucalyptus.component.ComponentIds;
 import com.eucalyptus.entities.AuxiliaryDatabaseObject;
 import com.eucalyptus.entities.AuxiliaryDatabaseObjects;
+import com.eucalyptus.entities.Entities;
 import com.eucalyptus.entities.UserMetadata;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflow;
 import com.eucalyptus.simpleworkflow.common.SimpleWorkflowMetadatas;
@@ -185,6 +186,15 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
   @Temporal( TemporalType.TIMESTAMP )
   private Date timeoutTimestamp;
 
+  @Column( name = "history_event_count" )
+  private Long historyEventCount;
+
+  @Column( name = "latest_decision_scheduled_id" )
+  private Long latestDecisionTaskScheduledEventId;
+
+  @Column( name = "latest_decision_started_id" )
+  private Long latestDecisionTaskStartedEventId;
+
   @OneToMany( fetch = FetchType.LAZY, cascade = { CascadeType.PERSIST, CascadeType.REMOVE }, orphanRemoval = true, mappedBy = "workflowExecution" )
   @OrderBy( "eventOrder" )
   private List<WorkflowHistoryEvent> workflowHistory;
@@ -231,6 +241,7 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
     workflowExecution.setDecisionStatus( DecisionStatus.Pending );
     workflowExecution.setDecisionTimestamp( new Date( ) );
     workflowExecution.setWorkflowHistory( Lists.<WorkflowHistoryEvent>newArrayList( ) );
+    workflowExecution.setHistoryEventCount( 0L );
     for ( final WorkflowEventAttributes attributes : eventAttributes ) {
       workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create( workflowExecution, attributes ) );
     }
@@ -341,17 +352,67 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
   }
 
   public Long addHistoryEvent( final WorkflowHistoryEvent event ) throws WorkflowHistorySizeLimitException {
+    initializeHistoryState( );
     // Order would be filled in on save, but we may need the event
     // identifier before the entity is stored
-    event.setEventOrder( (long) workflowHistory.size( ) );
+    event.setEventOrder( historyEventCount );
+    // history is append only, for a stored execution the add is queued
+    // and existing events are not loaded
     workflowHistory.add( event );
-    if ( workflowHistory.size( ) > SimpleWorkflowProperties.getWorkflowExecutionHistorySize() ) {
+    historyEventCount = historyEventCount + 1;
+    if ( historyEventCount > SimpleWorkflowProperties.getWorkflowExecutionHistorySize() ) {
       throw new WorkflowHistorySizeLimitException( this );
     }
+    switch ( event.getEventType( ) ) {
+      case "DecisionTaskScheduled":
+        latestDecisionTaskScheduledEventId = event.getEventId( );
+        break;
+      case "DecisionTaskStarted":
+        latestDecisionTaskStartedEventId = event.getEventId( );
+        break;
+    }
     updateTimeStamps( ); // ensure workflow version incremented
     return event.getEventId();
   }
 
+  /**
+   * Get a page of history events.
+   *
+   * @param fromEventId The identifier of the first event to include
+   * @param reverse True to page from newest to oldest
+   * @param maxResults The maximum number of events to return
+   * @return The events in page order
+   */
+  public List<WorkflowHistoryEvent> getWorkflowHistoryPage( final long fromEventId,
+                                                            final boolean reverse,
+                                                            final int maxResults ) {
+    final Entities.EntityRestrictionBuilder<WorkflowHistoryEvent> restriction =
+        Entities.restriction( WorkflowHistoryEvent.class ).equal( WorkflowHistoryEvent_.workflowExecution, this );
+    final Entities.EntityCriteriaQuery<WorkflowHistoryEvent,WorkflowHistoryEvent> query = reverse ?
+        Entities.criteriaQuery( restriction.le( WorkflowHistoryEvent_.eventOrder, fromEventId - 1 ) )
+            .orderByDesc( WorkflowHistoryEvent_.eventOrder ) :
+        Entities.criteriaQuery( restriction.ge( WorkflowHistoryEvent_.eventOrder, fromEventId - 1 ) )
+            .orderBy( WorkflowHistoryEvent_.eventOrder );
+    return query.maxResults( maxResults ).list( );
+  }
+
+  /**
+   * Executions stored before history state was tracked are initialized from
+   * the full history on first use.
+   */
+  private void initializeHistoryState( ) {
+    if ( historyEventCount == null ) {
+      historyEventCount = (long) workflowHistory.size( );
+      for ( final WorkflowHistoryEvent event : Lists.reverse( workflowHistory ) ) {
+        if ( latestDecisionTaskScheduledEventId == null && "DecisionTaskScheduled".equals( event.getEventType( ) ) ) {
+          latestDecisionTaskScheduledEventId = event.getEventId( );
+        } else if ( latestDecisionTaskStartedEventId == null && "DecisionTaskStarted".equals( event.getEventType( ) ) ) {
+          latestDecisionTaskStartedEventId = event.getEventId( );
+        }
+      }
+    }
+  }
+
   public void closeWorkflow( final CloseStatus closeStatus,
                              final WorkflowHistoryEvent event ) {
     setState( WorkflowExecution.ExecutionStatus.Closed );
@@ -530,6 +591,35 @@ public class WorkflowExecution extends UserMetadata<WorkflowExecution.ExecutionS
     this.timeoutTimestamp = timeoutTimestamp;
   }
 
+  public Long getHistoryEventCount( ) {
+    initializeHistoryState( );
+    return historyEventCount;
+  }
+
+  public void setHistoryEventCount( final Long historyEventCount ) {
+    this.historyEventCount = historyEventCount;
+  }
+
+  @Nullable
+  public Long getLatestDecisionTaskScheduledEventId( ) {
+    initializeHistoryState( );
+    return latestDecisionTaskScheduledEventId;
+  }
+
+  public void setLatestDecisionTaskScheduledEventId( final Long latestDecisionTaskScheduledEventId ) {
+    this.latestDecisionTaskScheduledEventId = latestDecisionTaskScheduledEventId;
+  }
+
+  @Nullable
+  public Long getLatestDecisionTaskStartedEventId( ) {
+    initializeHistoryState( );
+    return latestDecisionTaskStartedEventId;
+  }
+
+  public void setLatestDecisionTaskStartedEventId( final Long latestDecisionTaskStartedEventId ) {
+    this.latestDecisionTaskStartedEventId = latestDecisionTaskStartedEventId;
+  }
+
   public List<WorkflowHistoryEvent> getWorkflowHistory() {
     return workflowHistory;
   }
@@ -44,6 +44,8 @@ import com.eucalyptus.event.Listeners;
 import com.eucalyptus.util.EucalyptusCloudException;
 import com.eucalyptus.util.async.CheckedListenableFuture;
 import com.eucalyptus.util.async.Futures;
+import com.eucalyptus.util.metrics.MonitoredAction;
+import com.eucalyptus.util.metrics.ThruputMetrics;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
@@ -59,6 +61,7 @@ public class PolledNotificationService {
   private static final ConcurrentMap<String,Pollers> pollersByChannel = new ConcurrentHashMap<>( );
   private static final ConcurrentMap<String,PendingNotification> pendingNotificationsByChannel =
       new ConcurrentHashMap<>( );
+  private static final AtomicLong notifiedPollerCount = new AtomicLong( );
   private static final PolledNotificationChecker checker = new PolledNotificationChecker(){
     @Override
     public boolean apply( final String channel ) {
@@ -70,9 +73,8 @@ public class PolledNotificationService {
     final NotifyResponseType response = notify.getReply( );
     final Context context = Contexts.lookup( );
     if ( context.hasAdministrativePrivileges( ) ) {
-      if ( !notifyPollers( notify.getChannel( ), notify.getDetails( ) ) ) {
-        pendingNotificationsByChannel.put( notify.getChannel( ), new PendingNotification( notify.getChannel( ), notify.getDetails() ) );
-      }
+      final int notified = notifyPollers( notify.getChannel( ), notify.getDetails( ), notify.getMaxPollers( ) );
+      addPendingNotification( notify.getChannel( ), notify.getDetails( ), notify.getMaxPollers( ), notified );
     }
     return response;
   }
@@ -96,14 +98,39 @@ public class PolledNotificationService {
   private static void checkNotify( final String channel ) {
     final PendingNotification pendingNotification = pendingNotificationsByChannel.remove( channel );
     if ( pendingNotification != null && !pendingNotification.isExpired( System.currentTimeMillis( ) ) ) {
-      notifyPollers( channel, pendingNotification.getDetails( ) );
+      final int notified =
+          notifyPollers( channel, pendingNotification.getDetails( ), pendingNotification.getMaxPollers( ) );
+      addPendingNotification( channel, pendingNotification.getDetails( ), pendingNotification.getMaxPollers( ), notified );
     } else if ( checker.apply( channel ) ) {
-      notifyPollers( channel, null );
+      // wake the longest waiting poller, others are woken as further polls arrive
+      notifyPollers( channel, null, 1 );
     }
   }
 
-  private static boolean notifyPollers( final String channel, final String details ) {
-    return getPollers( channel ).notifyPollers( details );
+  /**
+   * Notify up to maxPollers pollers (all if null) in the order they started polling.
+   *
+   * @return The number of pollers notified
+   */
+  private static int notifyPollers( final String channel, final String details, final Integer maxPollers ) {
+    final int notified = getPollers( channel ).notifyPollers( details, maxPollers );
+    notifiedPollerCount.addAndGet( notified );
+    return notified;
+  }
+
+  /**
+   * Retain any part of a notification that could not be delivered for the next poller.
+   */
+  private static void addPendingNotification( final String channel,
+                                              final String details,
+                                              final Integer maxPollers,
+                                              final int notified ) {
+    if ( maxPollers == null ? notified == 0 : notified < maxPollers ) {
+      pendingNotificationsByChannel.merge(
+          channel,
+          new PendingNotification( channel, details, maxPollers == null ? null : maxPollers - notified ),
+          PendingNotification::merge );
+    }
   }
 
   private static Future<PollForNotificationResponseType> addPoller( final String channel, final Poller poller ) {
@@ -134,6 +161,18 @@ public class PolledNotificationService {
     timeoutPollers( time );
     timeoutPollerMetadata( time );
     timeoutPendingNotifications( time );
+    recordMetrics( );
+  }
+
+  private static void recordMetrics( ) {
+    if ( !pollersByChannel.isEmpty( ) ) {
+      long waitingPollers = 0;
+      for ( final Pollers pollers : pollersByChannel.values( ) ) {
+        waitingPollers += pollers.size( );
+      }
+      ThruputMetrics.addDataPoint( MonitoredAction.POLLED_NOTIFICATION_WAITING_POLLERS, waitingPollers );
+      ThruputMetrics.addDataPoint( MonitoredAction.POLLED_NOTIFICATION_NOTIFIED_POLLERS, notifiedPollerCount.getAndSet( 0 ) );
+    }
   }
 
   private static void timeoutPollers( final long time ) {
@@ -179,8 +218,8 @@ public class PolledNotificationService {
       pollersQueue.add( poller );
     }
 
-    public boolean notifyPollers( final String details ) {
-      return notifyPollers( queuedPollers( ), new Predicate<PollForNotificationResponseType>() {
+    public int notifyPollers( final String details, final Integer maxPollers ) {
+      return notifyPollers( queuedPollers( maxPollers ), new Predicate<PollForNotificationResponseType>() {
         @Override
         public boolean apply( final PollForNotificationResponseType response ) {
           response.setNotified( true );
@@ -204,20 +243,24 @@ public class PolledNotificationService {
       return pollersQueue.isEmpty( );
     }
 
+    public int size( ) {
+      return pollersQueue.size( );
+    }
+
     public boolean isExpired( final long time ) {
       return ( timestamp.get( ) + EXPIRY_MILLIS ) < time;
     }
 
-    private boolean notifyPollers( final Iterable<Poller> pollers,
-                                   final Predicate<PollForNotificationResponseType> responsePredicate ) {
+    private int notifyPollers( final Iterable<Poller> pollers,
+                               final Predicate<PollForNotificationResponseType> responsePredicate ) {
       touch( );
-      boolean notified = false;
+      int notified = 0;
       for ( final Poller poller : pollers ) try {
         final PollForNotificationResponseType response = new PollForNotificationResponseType( );
         response.setCorrelationId( poller.getCorrelationId( ) );
         if ( responsePredicate.apply( response ) ) {
           poller.response( response );
-          notified = true;
+          notified++;
         }
       } catch ( final Exception e ){
         logger.error( "Error notifying poller " + poller, e );
@@ -225,9 +268,13 @@ public class PolledNotificationService {
       return notified;
     }
 
-    private Iterable<Poller> queuedPollers( ) {
+    private Iterable<Poller> queuedPollers( final Integer maxPollers ) {
       final List<Poller> pollers = Lists.newArrayList( );
-      pollersQueue.drainTo( pollers );
+      if ( maxPollers == null ) {
+        pollersQueue.drainTo( pollers );
+      } else {
+        pollersQueue.drainTo( pollers, maxPollers );
+      }
       return pollers;
     }
 
@@ -259,12 +306,15 @@ public class PolledNotificationService {
     private final long timestamp;
     private final String channel;
     private final String details;
+    private final Integer maxPollers;
 
     private PendingNotification( final String channel,
-                                 final String details ) {
+                                 final String details,
+                                 final Integer maxPollers ) {
       this.timestamp = System.currentTimeMillis( );
       this.channel = channel;
       this.details = details;
+      this.maxPollers = maxPollers;
     }
 
     public long getTimestamp() {
@@ -279,14 +329,29 @@ public class PolledNotificationService {
       return details;
     }
 
+    public Integer getMaxPollers() {
+      return maxPollers;
+    }
+
     public boolean isExpired( final long time ) {
       return ( timestamp + EXPIRY_MILLIS ) < time;
     }
 
+    /**
+     * Combine with a later notification for the same channel, counts accumulate.
+     */
+    public PendingNotification merge( final PendingNotification later ) {
+      return new PendingNotification(
+          channel,
+          later.getDetails( ),
+          maxPollers == null || later.getMaxPollers( ) == null ? null : maxPollers + later.getMaxPollers( ) );
+    }
+
     public String toString( ) {
       return Objects.toStringHelper( this )
           .add( "channel", getChannel() )
           .add( "details", getDetails() )
+          .add( "maxPollers", getMaxPollers() )
           .add( "timestamp", getTimestamp() )
           .toString( );
     }
@@ -25,7 +25,6 @@ import static com.eucalyptus.simpleworkflow.WorkflowExecution.DecisionStatus.Idl
 import static com.eucalyptus.simpleworkflow.WorkflowExecution.DecisionStatus.Pending;
 import java.util.Collection;
 import java.util.Date;
-import java.util.List;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -67,14 +66,10 @@ import com.eucalyptus.simpleworkflow.persist.PersistenceDomains;
 import com.eucalyptus.simpleworkflow.persist.PersistenceTimers;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowExecutions;
 import com.eucalyptus.simpleworkflow.persist.PersistenceWorkflowTypes;
-import com.eucalyptus.util.CollectionUtils;
 import com.eucalyptus.util.Exceptions;
 import com.eucalyptus.util.Pair;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
-import com.google.common.base.Optional;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -295,20 +290,12 @@ public class TimeoutManager {
                               .withChildPolicy( workflowExecution.getChildPolicy() )
                       ) );
                 } else { // decision task timed out
-                  final List<WorkflowHistoryEvent> events = workflowExecution.getWorkflowHistory();
-                  final List<WorkflowHistoryEvent> reverseEvents = Lists.reverse( events );
-                  final WorkflowHistoryEvent scheduled = Iterables.find(
-                      reverseEvents,
-                      CollectionUtils.propertyPredicate( "DecisionTaskScheduled", WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) );
-                  final Optional<WorkflowHistoryEvent> previousStarted = Iterables.tryFind(
-                      reverseEvents,
-                      CollectionUtils.propertyPredicate( "DecisionTaskStarted", WorkflowExecutions.WorkflowHistoryEventStringFunctions.EVENT_TYPE ) );
                   workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
                       workflowExecution,
                       new DecisionTaskTimedOutEventAttributes( )
                           .withTimeoutType( "START_TO_CLOSE" )
-                          .withScheduledEventId( scheduled.getEventId( ) )
-                          .withStartedEventId( previousStarted.transform( WorkflowExecutions.WorkflowHistoryEventLongFunctions.EVENT_ID ).orNull( ) )
+                          .withScheduledEventId( workflowExecution.getLatestDecisionTaskScheduledEventId( ) )
+                          .withStartedEventId( workflowExecution.getLatestDecisionTaskStartedEventId( ) )
                   ) );
                   workflowExecution.addHistoryEvent( WorkflowHistoryEvent.create(
                       workflowExecution,
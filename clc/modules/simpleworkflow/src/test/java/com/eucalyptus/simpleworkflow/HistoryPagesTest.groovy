@@ -0,0 +1,143 @@
+/*************************************************************************
+ * Copyright 2009-2016 Eucalyptus Systems, Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ * Please contact Eucalyptus Systems, Inc., 6755 Hollister Ave., Goleta
+ * CA 93117, USA or visit http://www.eucalyptus.com/licenses/ if you need
+ * additional information or have any questions.
+ ************************************************************************/
+package com.eucalyptus.simpleworkflow
+
+import com.google.common.base.Function
+import com.google.common.io.BaseEncoding
+import groovy.transform.CompileStatic
+import org.junit.Test
+
+import java.nio.charset.StandardCharsets
+
+import static org.junit.Assert.*
+
+/**
+ * Unit tests for workflow history page tokens and keyset paging.
+ */
+@CompileStatic
+class HistoryPagesTest {
+
+  private static final String SCOPE = HistoryPages.scope( '000000000001', 'domain', 'workflow-1', 'run-1', false )
+
+  @Test
+  void testPageSize( ) {
+    assertEquals( 'Default page size', HistoryPages.MAXIMUM_PAGE_SIZE, HistoryPages.pageSize( null ) )
+    assertEquals( 'Zero page size', HistoryPages.MAXIMUM_PAGE_SIZE, HistoryPages.pageSize( 0 ) )
+    assertEquals( 'Page size', 10, HistoryPages.pageSize( 10 ) )
+    assertEquals( 'Limited page size', HistoryPages.MAXIMUM_PAGE_SIZE, HistoryPages.pageSize( 5000 ) )
+  }
+
+  @Test
+  void testTokenRoundTrip( ) {
+    final String token = HistoryPages.token( SCOPE, 'run-1', 42 )
+    assertEquals( 'Run id', 'run-1', HistoryPages.runId( token ) )
+    assertEquals( 'Event id', 42L, HistoryPages.firstEventId( token, SCOPE, false, 100 ) )
+  }
+
+  @Test
+  void testFirstPage( ) {
+    assertEquals( 'Forward first event', 1L, HistoryPages.firstEventId( null, SCOPE, false, 100 ) )
+    assertEquals( 'Reverse first event', 100L, HistoryPages.firstEventId( '', SCOPE, true, 100 ) )
+  }
+
+  @Test
+  void testScopeMismatch( ) {
+    final String token = HistoryPages.token( SCOPE, 'run-1', 42 )
+    [
+        HistoryPages.scope( '000000000002', 'domain', 'workflow-1', 'run-1', false ),
+        HistoryPages.scope( '000000000001', 'domain-2', 'workflow-1', 'run-1', false ),
+        HistoryPages.scope( '000000000001', 'domain', 'workflow-2', 'run-1', false ),
+        HistoryPages.scope( '000000000001', 'domain', 'workflow-1', 'run-2', false ),
+        HistoryPages.scope( '000000000001', 'domain', 'workflow-1', 'run-1', true ),
+    ].each { String scope ->
+      assertFalse( 'Scope', SCOPE == scope )
+      assertInvalid( token, scope )
+    }
+  }
+
+  @Test
+  void testInvalidTokens( ) {
+    [
+        'not base64!',
+        encode( 'run-1:42' ),
+        encode( "${SCOPE}/run-1" as String ),
+        encode( "${SCOPE}//42" as String ),
+        encode( "${SCOPE}/run-1/forty-two" as String ),
+        encode( "${SCOPE}/run-1/0" as String ),
+        encode( "${SCOPE}/run-1/42/1" as String ),
+    ].each { String token ->
+      assertInvalid( token, SCOPE )
+    }
+    try {
+      HistoryPages.runId( encode( 'run-1:42' ) )
+      fail( 'Expected invalid token' )
+    } catch ( SimpleWorkflowClientException e ) {
+      assertEquals( 'Error code', 'ValidationError', e.code )
+    }
+  }
+
+  @Test
+  void testKeysetPaging( ) {
+    assertEquals( 'Forward events', ( 1L..7L ).toList( ), pageAll( 7, 3, false ) )
+    assertEquals( 'Reverse events', ( 7L..1L ).toList( ), pageAll( 7, 3, true ) )
+    assertEquals( 'Exact page events', ( 1L..6L ).toList( ), pageAll( 6, 3, false ) )
+    assertEquals( 'Single page events', ( 1L..2L ).toList( ), pageAll( 2, 3, false ) )
+  }
+
+  /**
+   * Page through events with identifiers 1 to count, querying like the execution history.
+   */
+  private static List<Long> pageAll( final long count, final int pageSize, final boolean reverse ) {
+    final String scope = HistoryPages.scope( '000000000001', 'domain', 'workflow-1', 'run-1', reverse )
+    final List<Long> events = [ ]
+    String token = null
+    int pages = 0
+    while ( pages++ < 10 ) {
+      final long from = HistoryPages.firstEventId( token, scope, reverse, count )
+      final List<Long> queried = ( 1L..count ).toList( ).findAll { Long eventId ->
+        reverse ? eventId <= from : eventId >= from
+      }
+      final HistoryPages.HistoryPage<Long> page = HistoryPages.page(
+          ( reverse ? queried.reverse( ) : queried ).take( pageSize + 1 ),
+          pageSize,
+          { Long eventId -> eventId } as Function<Long,Long>,
+          scope,
+          'run-1' )
+      assertTrue( 'Page size', page.events.size( ) <= pageSize )
+      events.addAll( page.events )
+      token = page.nextPageToken
+      if ( token == null ) break
+    }
+    events
+  }
+
+  private static void assertInvalid( final String token, final String scope ) {
+    try {
+      HistoryPages.firstEventId( token, scope, false, 100 )
+      fail( 'Expected invalid token ' + token )
+    } catch ( SimpleWorkflowClientException e ) {
+      assertEquals( 'Error code', 'ValidationError', e.code )
+    }
+  }
+
+  private static String encode( final String token ) {
+    BaseEncoding.base64Url( ).encode( token.getBytes( StandardCharsets.UTF_8 ) )
+  }
+}
@@ -66,6 +66,8 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import org.apache.log4j.Logger;
+import org.jboss.netty.channel.DefaultFileRegion;
+import org.jboss.netty.channel.FileRegion;
 import org.jboss.netty.handler.stream.ChunkedFile;
 
 import edu.ucsb.eucalyptus.constants.IsData;
@@ -73,7 +75,25 @@ import edu.ucsb.eucalyptus.constants.IsData;
 public class ChunkedDataFile extends ChunkedFile implements IsData {
   private static Logger LOG = Logger.getLogger(ChunkedDataFile.class);
 
+  public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+  private final RandomAccessFile file;
+  private final long offset;
+  private final long length;
+
   public ChunkedDataFile(RandomAccessFile file, long offset, long length, int chunkSize) throws IOException {
     super(file, offset, length, chunkSize);
+    this.file = file;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  /**
+   * Get a region for the same range of the file that can be transferred without copying through the heap.
+   *
+   * The region must be written in place of this chunked input, not as well as it. Closing this input releases the region.
+   */
+  public FileRegion toFileRegion() {
+    return new DefaultFileRegion(file.getChannel(), offset, length);
   }
 }
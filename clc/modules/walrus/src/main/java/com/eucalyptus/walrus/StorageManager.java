@@ -105,6 +105,12 @@ public interface StorageManager {
 
   public void copyMultipartObject(List<PartInfo> parts, String destinationBucket, String destinationObject) throws Exception;
 
+  /**
+   * Create the destination object sharing the data of the source object where supported, copying otherwise. Neither object may be modified in
+   * place afterwards.
+   */
+  public void linkObject(String sourceBucket, String sourceObject, String destinationBucket, String destinationObject) throws IOException;
+
   public void renameObject(String bucket, String oldName, String newName) throws IOException;
 
   public String getObjectPath(String bucket, String object);
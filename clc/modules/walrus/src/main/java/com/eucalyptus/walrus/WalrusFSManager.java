@@ -1353,15 +1353,16 @@ public class WalrusFSManager extends WalrusManager {
     }
 
     String prevDestObjectName = null;
+    String prevDestUploadId = null;
     String destinationObjectName = UUID.randomUUID().toString();
+    String destinationUploadId = null;
     String etag = srcObjectInfo.getEtag();
     Date lastModified = null;
 
     try {
-      // Copy object
+      // Copy object, a multipart object is copied as a new set of parts rather than concatenated
       if (srcObjectInfo.isMultipart()) {
-        List<PartInfo> parts = getOrderedListOfParts(srcObjectInfo);
-        storageManager.copyMultipartObject(parts, destBucketName, destinationObjectName);
+        destinationUploadId = copyMultipartParts(srcObjectInfo, destBucketName, destObjectKey);
       } else {
         storageManager.copyObject(srcBucketName, srcObjectInfo.getObjectName(), destBucketName, destinationObjectName);
       }
@@ -1374,11 +1375,13 @@ public class WalrusFSManager extends WalrusManager {
         try {
           destObjectInfo = Entities.uniqueResult(new ObjectInfo(destBucketName, destObjectKey));
           prevDestObjectName = destObjectInfo.getObjectName();
+          prevDestUploadId = destObjectInfo.getUploadId();
         } catch (NoSuchElementException e) {
           destObjectInfo = Entities.persist(new ObjectInfo(destBucketName, destObjectKey));
         }
 
-        destObjectInfo.setObjectName(destinationObjectName);
+        destObjectInfo.setObjectName(destinationUploadId == null ? destinationObjectName : null);
+        destObjectInfo.setUploadId(destinationUploadId);
         destObjectInfo.setSize(srcObjectInfo.getSize());
         destObjectInfo.setStorageClass(srcObjectInfo.getStorageClass());
         destObjectInfo.setContentType(srcObjectInfo.getContentType());
@@ -1393,11 +1396,18 @@ public class WalrusFSManager extends WalrusManager {
         tr.commit();
       } catch (Exception e) {
         LOG.error("Failed to update metadata for object-key=" + destObjectKey + ", bucket=" + destBucketName, e);
+        if (destinationUploadId != null) {
+          ObjectDeleter partsDeleter = new ObjectDeleter(destBucketName, null, destObjectKey, destinationUploadId);
+          Threads.lookup(WalrusBackend.class, WalrusFSManager.ObjectDeleter.class).limitTo(10).submit(partsDeleter);
+        }
         throw new InternalErrorException("Failed to update metadata for object-key=" + destObjectKey + ", bucket=" + destBucketName, e);
       }
 
       // Delete the previously uploaded object on the disk
-      if (prevDestObjectName != null) {
+      if (StringUtils.isNotBlank(prevDestUploadId) && !prevDestUploadId.equals(destinationUploadId)) {
+        ObjectDeleter objectDeleter = new ObjectDeleter(destBucketName, null, destObjectKey, prevDestUploadId);
+        Threads.lookup(WalrusBackend.class, WalrusFSManager.ObjectDeleter.class).limitTo(10).submit(objectDeleter);
+      } else if (prevDestObjectName != null) {
         ObjectDeleter objectDeleter = new ObjectDeleter(destBucketName, prevDestObjectName, null, null);
         Threads.lookup(WalrusBackend.class, WalrusFSManager.ObjectDeleter.class).limitTo(10).submit(objectDeleter);
       }
@@ -2019,6 +2029,53 @@ public class WalrusFSManager extends WalrusManager {
     }
   }
 
+  /**
+   * Copy the parts of a multipart object to a new completed upload for the destination object. Part data is shared with the source parts where the
+   * storage manager supports it, so the object is not concatenated or rewritten.
+   *
+   * @return The upload id of the copied parts
+   */
+  private String copyMultipartParts(ObjectInfo srcObjectInfo, String destBucketName, String destObjectKey) throws Exception {
+    List<PartInfo> parts = getOrderedListOfParts(srcObjectInfo);
+    PartInfo manifest = PartInfo.generateManifest(destBucketName, destObjectKey);
+    manifest.setStorageClass(srcObjectInfo.getStorageClass());
+    manifest.setObjectName(null);
+    manifest.setCleanup(Boolean.FALSE);
+
+    List<PartInfo> partCopies = new ArrayList<PartInfo>(parts.size());
+    try {
+      for (PartInfo part : parts) {
+        PartInfo partCopy =
+            PartInfo.generatePart(destBucketName, destObjectKey, manifest.getUploadId(), part.getPartNumber(), UUID.randomUUID().toString());
+        storageManager.linkObject(part.getBucketName(), part.getObjectName(), destBucketName, partCopy.getObjectName());
+        partCopies.add(partCopy);
+        partCopy.setEtag(part.getEtag());
+        partCopy.setSize(part.getSize());
+        partCopy.setLastModified(part.getLastModified());
+        partCopy.setStorageClass(part.getStorageClass());
+        partCopy.setCleanup(Boolean.FALSE);
+      }
+
+      try (TransactionResource tr = Entities.transactionFor(PartInfo.class)) {
+        Entities.persist(manifest);
+        for (PartInfo partCopy : partCopies) {
+          Entities.persist(partCopy);
+        }
+        tr.commit();
+      }
+    } catch (Exception e) {
+      for (PartInfo partCopy : partCopies) {
+        try {
+          storageManager.deleteObject(destBucketName, partCopy.getObjectName());
+        } catch (IOException ex) {
+          LOG.warn("Unable to delete file on disk for part-file=" + partCopy.getObjectName() + ", bucket=" + destBucketName + ": " + ex.getMessage());
+        }
+      }
+      throw e;
+    }
+    return manifest.getUploadId();
+  }
+
   /**
    * Utility method for fetching ordered listing of parts that make up an object. Use this method against objects that have been previously created
    * and persisted to the database.
@@ -78,9 +78,11 @@ import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.jboss.netty.handler.codec.http.HttpVersion;
+import org.jboss.netty.handler.ssl.SslHandler;
 import org.jboss.netty.handler.stream.ChunkedInput;
 
 import com.eucalyptus.http.MappingHttpResponse;
+import com.eucalyptus.storage.common.ChunkedDataFile;
 import com.eucalyptus.storage.common.DateFormatter;
 import com.eucalyptus.storage.msgs.s3.MetaDataEntry;
 import com.eucalyptus.walrus.exceptions.HeadExceptionInterface;
@@ -232,8 +234,11 @@ public class WalrusOutboundHandler extends MessageStackHandler {
       Channels.write(ctx, writeFuture, httpResponse);
       List<ChunkedInput> dataStreams = response.getDataInputStream();
       if (dataStreams != null) {
+        // Uncompressed file data is sent zero-copy unless it must pass through TLS
+        final boolean zeroCopy = ctx.getPipeline().get(SslHandler.class) == null;
         for (final ChunkedInput dataStream : dataStreams) {
-          channel.write(dataStream).addListener(new ChannelFutureListener() {
+          final Object data = zeroCopy && dataStream instanceof ChunkedDataFile ? ((ChunkedDataFile) dataStream).toFileRegion() : dataStream;
+          channel.write(data).addListener(new ChannelFutureListener() {
             @Override
             public void operationComplete(ChannelFuture future) throws Exception {
               dataStream.close();
@@ -70,6 +70,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -279,6 +280,21 @@ public class FileSystemStorageManager implements StorageManager {
     }
   }
 
+  @Override
+  public void linkObject(String sourceBucket, String sourceObject, String destinationBucket, String destinationObject) throws IOException {
+    File oldObjectFile = new File(WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + sourceBucket + FILE_SEPARATOR + sourceObject);
+    File newObjectFile =
+        new File(WalrusInfo.getWalrusInfo().getStorageDir() + FILE_SEPARATOR + destinationBucket + FILE_SEPARATOR + destinationObject);
+    if (!oldObjectFile.equals(newObjectFile)) {
+      try {
+        Files.createLink(newObjectFile.toPath(), oldObjectFile.toPath());
+      } catch (IOException | UnsupportedOperationException e) {
+        LOG.debug("Unable to link " + oldObjectFile.getAbsolutePath() + " to " + newObjectFile.getAbsolutePath() + ", copying: " + e.getMessage());
+        copyObject(sourceBucket, sourceObject, destinationBucket, destinationObject);
+      }
+    }
+  }
+
   @Override
   public void copyMultipartObject(List<PartInfo> parts, String destinationBucket, String destinationObject) throws Exception {
     Iterator<PartInfo> partIterator = null;
@@ -411,7 +427,7 @@ public class FileSystemStorageManager implements StorageManager {
       if (isCompressed) {
         file = new CompressedChunkedFile(raf, size);
       } else {
-        file = new ChunkedDataFile(raf, 0, size, 8192);
+        file = new ChunkedDataFile(raf, 0, size, ChunkedDataFile.DEFAULT_CHUNK_SIZE);
       }
       List<ChunkedInput> dataStreams = new ArrayList<ChunkedInput>();
       dataStreams.add(file);
@@ -429,9 +445,9 @@ public class FileSystemStorageManager implements StorageManager {
       final ChunkedInput file;
       isCompressed = isCompressed == null ? false : isCompressed;
       if (isCompressed) {
-        file = new CompressedChunkedFile(raf, byteRangeStart, byteRangeEnd, (int) Math.min((byteRangeEnd - byteRangeStart), 8192));
+        file = new CompressedChunkedFile(raf, byteRangeStart, byteRangeEnd, (int) Math.min((byteRangeEnd - byteRangeStart), ChunkedDataFile.DEFAULT_CHUNK_SIZE));
       } else {
-        file = new ChunkedDataFile(raf, byteRangeStart, (int) (byteRangeEnd - byteRangeStart), (int) Math.min((byteRangeEnd - byteRangeStart), 8192));
+        file = new ChunkedDataFile(raf, byteRangeStart, (int) (byteRangeEnd - byteRangeStart), (int) Math.min((byteRangeEnd - byteRangeStart), ChunkedDataFile.DEFAULT_CHUNK_SIZE));
       }
       List<ChunkedInput> dataStreams = new ArrayList<>();
       dataStreams.add(file);
@@ -452,7 +468,7 @@ public class FileSystemStorageManager implements StorageManager {
         if (isCompressed) {
           file = new CompressedChunkedFile(raf, part.getSize());
         } else {
-          file = new ChunkedDataFile(raf, 0, part.getSize(), 8192);
+          file = new ChunkedDataFile(raf, 0, part.getSize(), ChunkedDataFile.DEFAULT_CHUNK_SIZE);
         }
         dataStreams.add(file);
       }
@@ -504,9 +520,9 @@ public class FileSystemStorageManager implements StorageManager {
         }
 
         if (isCompressed) {
-          file = new CompressedChunkedFile(raf, startMarker, tempLength, (int) Math.min(tempLength, 8192));
+          file = new CompressedChunkedFile(raf, startMarker, tempLength, (int) Math.min(tempLength, ChunkedDataFile.DEFAULT_CHUNK_SIZE));
         } else {
-          file = new ChunkedDataFile(raf, startMarker, tempLength, (int) Math.min(tempLength, 8192));
+          file = new ChunkedDataFile(raf, startMarker, tempLength, (int) Math.min(tempLength, ChunkedDataFile.DEFAULT_CHUNK_SIZE));
         }
 
         dataStreams.add(file);